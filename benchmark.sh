@@ -0,0 +1,21 @@
+#!/bin/bash
+
+mkdir -p out-benchmark
+
+# compile sources together with benchmarks
+javac -d out-benchmark -cp "lib/*" $(find src benchmark -name "*.java")
+
+if [ $? -eq 0 ]; then
+    cp -r lib/* out-benchmark/
+
+    if [ "$1" == "loopback" ]; then
+        # end-to-end run with udpcast stand-in, e.g. ./benchmark.sh loopback -clients 4 -size 512 -loss 0.01
+        shift
+        java -cp out-benchmark harness.LoopbackBenchmark "$@"
+    else
+        # micro benchmarks, e.g. ./benchmark.sh -o results.json -baseline previous.json FileService
+        java -cp out-benchmark harness.BenchmarkMain "$@"
+    fi
+else
+    echo "Compilation error"
+fi
@@ -0,0 +1,59 @@
+package common;
+
+import common.checksums.PartHashTree;
+import common.infos.EndInfoFile;
+import harness.Benchmark;
+import harness.BenchmarkFiles;
+
+import java.nio.file.Path;
+import java.util.*;
+
+public class EndInfoFileBenchmark implements Benchmark {
+    private Path directory;
+    private Path filePath;
+
+    @Override
+    public String getName() {
+        return "EndInfoFile.parse";
+    }
+
+    @Override
+    public Map<String, List<String>> getDefaultParams() {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        params.put("parts", Arrays.asList("20", "200"));
+        params.put("leavesPerPart", Arrays.asList("1", "512"));
+        return params;
+    }
+
+    @Override
+    public void setup(Map<String, String> params) throws Exception {
+        int parts = Integer.parseInt(params.get("parts"));
+        int leavesPerPart = Integer.parseInt(params.get("leavesPerPart"));
+        Random random = new Random(parts);
+
+        List<String> checksums = new ArrayList<>();
+        List<PartHashTree> hashTrees = new ArrayList<>();
+        for (int i = 0; i < parts; i++) {
+            List<String> leaves = new ArrayList<>();
+            for (int j = 0; j < leavesPerPart; j++) {
+                leaves.add(Integer.toHexString(random.nextInt()));
+            }
+            checksums.add(Integer.toHexString(random.nextInt()));
+            hashTrees.add(new PartHashTree(4 * 1024 * 1024, leaves));
+        }
+
+        directory = BenchmarkFiles.createDirectory("disk");
+        filePath = new EndInfoFile(directory.toString(), checksums, hashTrees).filePath;
+    }
+
+    @Override
+    public long run() throws Exception {
+        new EndInfoFile(filePath);
+        return 0;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        BenchmarkFiles.removeDirectory(directory);
+    }
+}
@@ -0,0 +1,67 @@
+package common;
+
+import common.models.ChecksumAlgorithmEnum;
+import common.services.FileService;
+import common.utils.ChecksumUtils;
+import harness.Benchmark;
+import harness.BenchmarkFiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FileServiceBenchmark implements Benchmark {
+    private Path directory;
+    private Path sourcePart;
+    private long partSizeInBytes;
+    private int threads;
+    private ChecksumAlgorithmEnum algorithm;
+
+    @Override
+    public String getName() {
+        return "FileService.checksumAndMerge";
+    }
+
+    @Override
+    public Map<String, List<String>> getDefaultParams() {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        params.put("partSizeMB", Arrays.asList("16", "128"));
+        params.put("location", Arrays.asList("tmpfs", "disk"));
+        params.put("algorithm", Collections.singletonList(ChecksumUtils.getDefaultAlgorithm().name()));
+        params.put("threads", Collections.singletonList(String.valueOf(Math.min(Runtime.getRuntime().availableProcessors(), 64))));
+        return params;
+    }
+
+    @Override
+    public void setup(Map<String, String> params) throws Exception {
+        partSizeInBytes = Long.parseLong(params.get("partSizeMB")) * 1024 * 1024;
+        algorithm = ChecksumAlgorithmEnum.valueOf(params.get("algorithm"));
+        threads = Integer.parseInt(params.get("threads"));
+        directory = BenchmarkFiles.createDirectory(params.get("location"));
+        sourcePart = BenchmarkFiles.createRandomFile(directory, "source.part", partSizeInBytes);
+    }
+
+    @Override
+    public long run() throws Exception {
+        Path part = directory.resolve("merged.part");
+        Files.createLink(part, sourcePart);
+
+        FileService fileService = new FileService(directory.resolve("final.bin"), false, 0, threads, algorithm);
+        try {
+            fileService.addFileToProcess(part);
+            fileService.waitForProcessedParts();
+        } finally {
+            fileService.shutdownNow();
+        }
+        return partSizeInBytes;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        BenchmarkFiles.removeDirectory(directory);
+    }
+}
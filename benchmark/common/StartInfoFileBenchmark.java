@@ -0,0 +1,45 @@
+package common;
+
+import common.infos.StartInfoFile;
+import common.models.ChecksumAlgorithmEnum;
+import harness.Benchmark;
+import harness.BenchmarkFiles;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class StartInfoFileBenchmark implements Benchmark {
+    private Path directory;
+    private Path filePath;
+
+    @Override
+    public String getName() {
+        return "StartInfoFile.parse";
+    }
+
+    @Override
+    public Map<String, List<String>> getDefaultParams() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void setup(Map<String, String> params) throws Exception {
+        directory = BenchmarkFiles.createDirectory("disk");
+        StartInfoFile startInfoFile = new StartInfoFile(directory.toString(), "http://example.com/image.iso", "image.iso",
+                40960, 2048, ChecksumAlgorithmEnum.CRC32C);
+        filePath = startInfoFile.filePath;
+    }
+
+    @Override
+    public long run() throws Exception {
+        new StartInfoFile(filePath);
+        return 0;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        BenchmarkFiles.removeDirectory(directory);
+    }
+}
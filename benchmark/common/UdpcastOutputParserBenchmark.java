@@ -0,0 +1,102 @@
+package common;
+
+import common.services.UdpcastOutputParser;
+import harness.Benchmark;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class UdpcastOutputParserBenchmark implements Benchmark {
+    private static final int linesCount = 20_000;
+    private static final byte[] speedLinePrefix = UdpcastOutputParser.toBytes("bytes=");
+
+    private byte[] output;
+    private boolean isBytesParser;
+    private long checksum = 0;
+
+    @Override
+    public String getName() {
+        return "UdpcastOutputParser.parse";
+    }
+
+    @Override
+    public Map<String, List<String>> getDefaultParams() {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        params.put("parser", Arrays.asList("string", "bytes"));
+        return params;
+    }
+
+    @Override
+    public void setup(Map<String, String> params) {
+        output = generateOutput();
+        isBytesParser = "bytes".equals(params.get("parser"));
+    }
+
+    @Override
+    public long run() throws IOException {
+        if (isBytesParser) {
+            parseWithBytes(new ByteArrayInputStream(output));
+        } else {
+            parseWithStrings(new ByteArrayInputStream(output));
+        }
+        return output.length;
+    }
+
+    @Override
+    public void tearDown() {
+        output = null;
+    }
+
+    private void parseWithBytes(InputStream inputStream) throws IOException {
+        UdpcastOutputParser parser = new UdpcastOutputParser((line, length) -> {
+            if (UdpcastOutputParser.startsWith(line, length, speedLinePrefix)) {
+                checksum += UdpcastOutputParser.parseNumber(line, speedLinePrefix.length, length);
+            }
+        });
+        parser.parse(inputStream);
+    }
+
+    private void parseWithStrings(InputStream inputStream) throws IOException {
+        List<String> latestLines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                latestLines.add(line);
+                if (latestLines.size() > 10) {
+                    latestLines.remove(0);
+                }
+                if (line.startsWith("bytes=")) {
+                    checksum += parseWithStringBuilder(line.substring("bytes=".length()));
+                }
+            }
+        }
+    }
+
+    private static long parseWithStringBuilder(String text) {
+        StringBuilder result = new StringBuilder();
+        for (char character : text.toCharArray()) {
+            if (Character.isDigit(character)) {
+                result.append(character);
+            } else if (character != ' ') {
+                if (character == 'K' || character == 'k') {
+                    result.append("000");
+                } else if (character == 'M' || character == 'm') {
+                    result.append("000000");
+                }
+                break;
+            }
+        }
+        return Long.parseLong(result.toString());
+    }
+
+    private static byte[] generateOutput() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < linesCount; i++) {
+            long bytes = (long) i * 1_048_576;
+            builder.append("bytes=").append(String.format("%4d %03d %03d", bytes / 1_000_000, bytes / 1000 % 1000, bytes % 1000))
+                    .append(" re-xmits=0000012 ( 0.1%) slice=0112 ").append('\r');
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
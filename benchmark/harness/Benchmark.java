@@ -0,0 +1,16 @@
+package harness;
+
+import java.util.List;
+import java.util.Map;
+
+public interface Benchmark {
+    String getName();
+
+    Map<String, List<String>> getDefaultParams();
+
+    void setup(Map<String, String> params) throws Exception;
+
+    long run() throws Exception;
+
+    void tearDown() throws Exception;
+}
@@ -0,0 +1,59 @@
+package harness;
+
+import common.utils.FilePartUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+public class BenchmarkFiles {
+    public static Path createDirectory(String location) throws IOException {
+        Path parent;
+        if ("tmpfs".equals(location)) {
+            parent = Paths.get("/dev/shm");
+            if (FilePartUtils.isWindows || !Files.isDirectory(parent)) {
+                throw new UnsupportedOperationException("tmpfs is not available at /dev/shm");
+            }
+        } else if ("disk".equals(location)) {
+            parent = Paths.get(System.getProperty("benchmark.disk", "benchmark-work")).toAbsolutePath();
+            Files.createDirectories(parent);
+        } else {
+            throw new IllegalArgumentException("Unknown location: " + location);
+        }
+        return Files.createTempDirectory(parent, "pgd-benchmark");
+    }
+
+    public static Path createRandomFile(Path directory, String name, long sizeInBytes) throws IOException {
+        Path path = directory.resolve(name);
+        byte[] buffer = new byte[1024 * 1024];
+        Random random = new Random(sizeInBytes);
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            for (long written = 0; written < sizeInBytes; written += buffer.length) {
+                random.nextBytes(buffer);
+                outputStream.write(buffer, 0, (int) Math.min(buffer.length, sizeInBytes - written));
+            }
+        }
+        return path;
+    }
+
+    public static void removeDirectory(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exception) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,24 @@
+package harness;
+
+import common.EndInfoFileBenchmark;
+import common.FileServiceBenchmark;
+import common.StartInfoFileBenchmark;
+import common.UdpcastOutputParserBenchmark;
+import server.FileDownloaderBenchmark;
+
+import java.util.Arrays;
+
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = new BenchmarkRunner(Arrays.asList(
+                new FileServiceBenchmark(),
+                new FileDownloaderBenchmark(),
+                new StartInfoFileBenchmark(),
+                new EndInfoFileBenchmark(),
+                new UdpcastOutputParserBenchmark()
+        ));
+        runner.parseArgs(args);
+        runner.run();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,74 @@
+package harness;
+
+import java.util.List;
+import java.util.Map;
+
+public class BenchmarkResult {
+    public final String benchmark;
+    public final Map<String, String> params;
+    public final String unit;
+    public final List<Double> rawData;
+    public final double score;
+    public final double scoreError;
+    public final double allocationPerOperation;
+
+    public BenchmarkResult(String benchmark, Map<String, String> params, String unit, List<Double> rawData,
+                           List<Double> allocations) {
+        this.benchmark = benchmark;
+        this.params = params;
+        this.unit = unit;
+        this.rawData = rawData;
+        this.score = average(rawData);
+        this.allocationPerOperation = average(allocations);
+
+        double squares = 0;
+        for (double value : rawData) {
+            squares += (value - score) * (value - score);
+        }
+        double deviation = rawData.size() > 1 ? Math.sqrt(squares / (rawData.size() - 1)) : 0;
+        this.scoreError = rawData.size() > 1 ? 2 * deviation / Math.sqrt(rawData.size()) : 0;
+    }
+
+    public String toJson() {
+        StringBuilder builder = new StringBuilder("{\"benchmark\":").append(quote(benchmark))
+                .append(",\"mode\":\"thrpt\",\"params\":{");
+        boolean isFirst = true;
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            if (!isFirst) {
+                builder.append(',');
+            }
+            builder.append(quote(param.getKey())).append(':').append(quote(param.getValue()));
+            isFirst = false;
+        }
+        builder.append("},\"primaryMetric\":{\"score\":").append(score)
+                .append(",\"scoreError\":").append(scoreError)
+                .append(",\"scoreUnit\":").append(quote(unit))
+                .append(",\"rawData\":[").append(join(rawData)).append("]}")
+                .append(",\"secondaryMetrics\":{\"\u00b7gc.alloc.rate.norm\":{\"score\":").append(allocationPerOperation)
+                .append(",\"scoreUnit\":\"B/op\"}}}");
+        return builder.toString();
+    }
+
+    private static double average(List<Double> values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return values.isEmpty() ? 0 : sum / values.size();
+    }
+
+    private static String join(List<Double> values) {
+        StringBuilder builder = new StringBuilder();
+        for (double value : values) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    private static String quote(String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,206 @@
+package harness;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class BenchmarkRunner {
+    private static final Pattern resultPattern = Pattern.compile(
+            "\\{\"benchmark\":\"([^\"]*)\",\"mode\":\"[^\"]*\",\"params\":(\\{[^}]*\\}),\"primaryMetric\":\\{\"score\":([^,]*),");
+
+    private final List<Benchmark> benchmarks;
+    private int warmupIterations = 2;
+    private int iterations = 5;
+    private long iterationTimeInNanos = TimeUnit.SECONDS.toNanos(1);
+    private Pattern filter = Pattern.compile(".*");
+    private Path outputPath;
+    private Path baselinePath;
+    private final Map<String, List<String>> paramOverrides = new HashMap<>();
+    private final PrintStream out = System.out;
+    private final PrintStream silentOut = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    public BenchmarkRunner(List<Benchmark> benchmarks) {
+        this.benchmarks = benchmarks;
+    }
+
+    public void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi":
+                    warmupIterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-t":
+                    iterationTimeInNanos = TimeUnit.MILLISECONDS.toNanos((long) (Double.parseDouble(args[++i]) * 1000));
+                    break;
+                case "-o":
+                    outputPath = Paths.get(args[++i]);
+                    break;
+                case "-baseline":
+                    baselinePath = Paths.get(args[++i]);
+                    break;
+                case "-p":
+                    String[] param = args[++i].split("=", 2);
+                    paramOverrides.put(param[0], Arrays.asList(param[1].split(",")));
+                    break;
+                default:
+                    filter = Pattern.compile(args[i]);
+            }
+        }
+    }
+
+    public List<BenchmarkResult> run() throws Exception {
+        List<BenchmarkResult> results = new ArrayList<>();
+        for (Benchmark benchmark : benchmarks) {
+            if (!filter.matcher(benchmark.getName()).find()) {
+                continue;
+            }
+            for (Map<String, String> params : expandParams(benchmark.getDefaultParams())) {
+                BenchmarkResult result = run(benchmark, params);
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+        }
+
+        if (outputPath != null) {
+            writeResults(results);
+        }
+        if (baselinePath != null) {
+            compareWithBaseline(results);
+        }
+        return results;
+    }
+
+    private BenchmarkResult run(Benchmark benchmark, Map<String, String> params) throws Exception {
+        try {
+            benchmark.setup(params);
+        } catch (UnsupportedOperationException e) {
+            out.printf("%-40s %-50s skipped: %s%n", benchmark.getName(), params, e.getMessage());
+            benchmark.tearDown();
+            return null;
+        }
+
+        System.setOut(silentOut);
+        try {
+            String unit = null;
+            for (int i = 0; i < warmupIterations; i++) {
+                unit = runIteration(benchmark, null, null);
+            }
+
+            List<Double> rawData = new ArrayList<>();
+            List<Double> allocations = new ArrayList<>();
+            for (int i = 0; i < iterations; i++) {
+                unit = runIteration(benchmark, rawData, allocations);
+            }
+
+            BenchmarkResult result = new BenchmarkResult(benchmark.getName(), params, unit, rawData, allocations);
+            out.printf("%-40s %-50s %12.2f +- %8.2f %s %14.1f B/op%n", result.benchmark, result.params,
+                    result.score, result.scoreError, result.unit, result.allocationPerOperation);
+            return result;
+        } finally {
+            System.setOut(out);
+            benchmark.tearDown();
+        }
+    }
+
+    private String runIteration(Benchmark benchmark, List<Double> rawData, List<Double> allocations) throws Exception {
+        long operations = 0;
+        long bytes = 0;
+        long allocatedBefore = getAllocatedBytes();
+        long startTime = System.nanoTime();
+        long elapsed;
+        do {
+            bytes += benchmark.run();
+            operations++;
+            elapsed = System.nanoTime() - startTime;
+        } while (elapsed < iterationTimeInNanos);
+        long allocated = getAllocatedBytes() - allocatedBefore;
+
+        double seconds = (double) elapsed / TimeUnit.SECONDS.toNanos(1);
+        boolean isBytesMetric = bytes > 0;
+        if (rawData != null) {
+            rawData.add(isBytesMetric ? bytes / (1024.0 * 1024.0) / seconds : operations / seconds);
+            allocations.add((double) allocated / operations);
+        }
+        return isBytesMetric ? "MB/s" : "ops/s";
+    }
+
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private List<Map<String, String>> expandParams(Map<String, List<String>> defaultParams) {
+        List<Map<String, String>> combinations = new ArrayList<>();
+        combinations.add(new LinkedHashMap<>());
+        for (Map.Entry<String, List<String>> param : defaultParams.entrySet()) {
+            List<String> values = paramOverrides.getOrDefault(param.getKey(), param.getValue());
+            List<Map<String, String>> expanded = new ArrayList<>();
+            for (Map<String, String> combination : combinations) {
+                for (String value : values) {
+                    Map<String, String> next = new LinkedHashMap<>(combination);
+                    next.put(param.getKey(), value);
+                    expanded.add(next);
+                }
+            }
+            combinations = expanded;
+        }
+        return combinations;
+    }
+
+    private void writeResults(List<BenchmarkResult> results) throws IOException {
+        StringBuilder builder = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            builder.append(results.get(i).toJson()).append(i + 1 < results.size() ? ",\n" : "\n");
+        }
+        builder.append("]\n");
+        Files.write(outputPath, builder.toString().getBytes(StandardCharsets.UTF_8));
+        out.println("Results saved to: " + outputPath.toAbsolutePath());
+    }
+
+    private void compareWithBaseline(List<BenchmarkResult> results) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(baselinePath, StandardCharsets.UTF_8)) {
+            Matcher matcher = resultPattern.matcher(line);
+            if (matcher.find()) {
+                baseline.put(matcher.group(1) + matcher.group(2), Double.parseDouble(matcher.group(3)));
+            }
+        }
+
+        out.println("Comparison with baseline: " + baselinePath);
+        for (BenchmarkResult result : results) {
+            String json = result.toJson();
+            Matcher matcher = resultPattern.matcher(json);
+            if (!matcher.find() || !baseline.containsKey(matcher.group(1) + matcher.group(2))) {
+                continue;
+            }
+            double baselineScore = baseline.get(matcher.group(1) + matcher.group(2));
+            double change = (result.score - baselineScore) / baselineScore * 100;
+            out.printf("%-40s %-50s %12.2f -> %12.2f %s (%+.1f%%)%n", result.benchmark, result.params,
+                    baselineScore, result.score, result.unit, change);
+        }
+    }
+}
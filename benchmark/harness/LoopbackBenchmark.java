@@ -0,0 +1,382 @@
+package harness;
+
+import common.services.UdpcastService;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class LoopbackBenchmark {
+    private static final Pattern traceEventPattern = Pattern.compile(
+            "\\{\"ph\":\"([Xbe])\",\"cat\":\"([^\"]*)\",\"name\":\"((?:[^\"\\\\]|\\\\.)*)\",\"pid\":\\d+,\"tid\":\\d+" +
+                    "(?:,\"id\":(\\d+))?,\"ts\":(-?[0-9.]+(?:E-?\\d+)?)(?:,\"dur\":([0-9.]+(?:E-?\\d+)?))?");
+    private static final Pattern peakHeapPattern = Pattern.compile("(?m)^pgd_jvm_heap_peak_bytes (\\d+)$");
+
+    private int clients = 3;
+    private int sizeInMB = 256;
+    private int blockSizeInMB = 64;
+    private String rate = "0";
+    private String loss = "0";
+    private String burst = "1";
+    private String roundTrip = "1";
+    private int portbase = 9400;
+    private int metricsPortbase = 9500;
+    private long timeoutSeconds = 600;
+    private boolean keepFiles = false;
+    private Path workDirectory;
+    private final List<String> serverArgs = new ArrayList<>();
+    private final List<String> clientArgs = new ArrayList<>();
+
+    private final List<ProcessRun> runs = new ArrayList<>();
+    private long baselineUsedSpace;
+    private volatile long peakUsedSpace;
+
+    public static void main(String[] args) throws Exception {
+        LoopbackBenchmark benchmark = new LoopbackBenchmark();
+        benchmark.parseArgs(args);
+        boolean isSuccess = benchmark.run();
+        System.exit(isSuccess ? 0 : 1);
+    }
+
+    private void parseArgs(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-clients":
+                    clients = Integer.parseInt(args[++i]);
+                    break;
+                case "-size":
+                    sizeInMB = Integer.parseInt(args[++i]);
+                    break;
+                case "-blocksize":
+                    blockSizeInMB = Integer.parseInt(args[++i]);
+                    break;
+                case "-rate":
+                    rate = args[++i];
+                    break;
+                case "-loss":
+                    loss = args[++i];
+                    break;
+                case "-burst":
+                    burst = args[++i];
+                    break;
+                case "-rtt":
+                    roundTrip = args[++i];
+                    break;
+                case "-portbase":
+                    portbase = Integer.parseInt(args[++i]);
+                    break;
+                case "-metricsportbase":
+                    metricsPortbase = Integer.parseInt(args[++i]);
+                    break;
+                case "-timeout":
+                    timeoutSeconds = Long.parseLong(args[++i]);
+                    break;
+                case "-work":
+                    workDirectory = Paths.get(args[++i]).toAbsolutePath();
+                    break;
+                case "-server":
+                    serverArgs.addAll(splitArgs(args[++i]));
+                    break;
+                case "-client":
+                    clientArgs.addAll(splitArgs(args[++i]));
+                    break;
+                case "-keep":
+                    keepFiles = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i] + ". Available: -clients, -size, -blocksize, " +
+                            "-rate <MBps>, -loss <probability>, -burst <slices>, -rtt <ms>, -portbase, -metricsportbase, " +
+                            "-timeout <seconds>, -work <dir>, -server \"<args>\", -client \"<args>\", -keep");
+            }
+        }
+
+        if (workDirectory == null) {
+            Path sharedMemory = Paths.get("/dev/shm");
+            workDirectory = Files.isDirectory(sharedMemory) ? sharedMemory : Paths.get(System.getProperty("java.io.tmpdir"));
+        }
+        workDirectory = Files.createTempDirectory(workDirectory, "pgd-loopback");
+    }
+
+    private boolean run() throws Exception {
+        Path standInDirectory = createStandInScripts();
+        Path source = BenchmarkFiles.createRandomFile(workDirectory, "source.bin", (long) sizeInMB * 1024 * 1024 + 12345);
+        FileStore fileStore = Files.getFileStore(workDirectory);
+        baselineUsedSpace = getUsedSpace(fileStore);
+
+        for (int i = 1; i <= clients; i++) {
+            List<String> args = new ArrayList<>(clientArgs);
+            runs.add(new ProcessRun("client-" + i, metricsPortbase + i, args));
+        }
+        List<String> args = new ArrayList<>(serverArgs);
+        args.addAll(Arrays.asList("-url", source.toString(), "-blocksize", String.valueOf(blockSizeInMB)));
+        ProcessRun server = new ProcessRun("server", metricsPortbase, args);
+
+        System.out.printf("Loopback benchmark: 1 server, %d clients, %d MB, block %d MB, rate %s MBps, loss %s, burst %s, work dir %s%n",
+                clients, sizeInMB, blockSizeInMB, "0".equals(rate) ? "unlimited" : rate, loss, burst, workDirectory);
+
+        for (ProcessRun run : runs) {
+            run.start(standInDirectory);
+        }
+        long startTime = System.nanoTime();
+        server.start(standInDirectory);
+        runs.add(0, server);
+
+        Thread sampler = new Thread(() -> sample(fileStore), "loopback-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long deadline = startTime + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        for (ProcessRun run : runs) {
+            run.waitFor(deadline);
+        }
+        long wallTime = System.nanoTime() - startTime;
+        sampler.interrupt();
+        sampler.join();
+
+        boolean isSuccess = true;
+        for (ProcessRun run : runs) {
+            Path result = run.directory.resolve(source.getFileName());
+            run.isVerified = run.exitCode == 0 && Files.exists(result) && isSameContent(source, result);
+            isSuccess &= run.isVerified;
+            run.readTrace();
+        }
+
+        printReport(wallTime, fileStore);
+        if (!keepFiles) {
+            BenchmarkFiles.removeDirectory(workDirectory);
+        } else {
+            System.out.println("Logs and traces kept in: " + workDirectory);
+        }
+        return isSuccess;
+    }
+
+    private Path createStandInScripts() throws IOException {
+        Path directory = Files.createDirectories(workDirectory.resolve("bin"));
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = getAbsoluteClassPath();
+        for (String[] program : new String[][]{{"udp-sender", "sender"}, {"udp-receiver", "receiver"}}) {
+            Path script = directory.resolve(program[0]);
+            String content = "#!/bin/sh\nexec \"" + java + "\" -XX:TieredStopAtLevel=1 -XX:+UseSerialGC -cp \"" + classPath +
+                    "\" " + UdpcastStandIn.class.getName() + " " + program[1] + " \"$@\"\n";
+            Files.write(script, content.getBytes(StandardCharsets.UTF_8));
+            boolean ignored = script.toFile().setExecutable(true);
+        }
+        return directory;
+    }
+
+    private void sample(FileStore fileStore) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                peakUsedSpace = Math.max(peakUsedSpace, getUsedSpace(fileStore) - baselineUsedSpace);
+            } catch (IOException ignored) {
+            }
+            for (ProcessRun run : runs) {
+                run.scrapeMetrics();
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void printReport(long wallTime, FileStore fileStore) {
+        System.out.printf("%nWall time (server start -> last process exit): %.2f s, effective %.1f MBps per client%n",
+                wallTime / 1e9, sizeInMB / (wallTime / 1e9));
+        String storeName = "tmpfs".equals(fileStore.type()) ? "/dev/shm" : fileStore.toString();
+        System.out.printf("Peak %s usage above baseline: %d MB%n%n", storeName, peakUsedSpace / (1024 * 1024));
+
+        System.out.printf("%-10s %5s %9s %14s %9s%n", "process", "exit", "wall[s]", "peak heap[MB]", "verified");
+        for (ProcessRun run : runs) {
+            System.out.printf("%-10s %5d %9.2f %14s %9s%n", run.name, run.exitCode, run.wallTime / 1e9,
+                    run.peakHeap < 0 ? "n/a" : String.valueOf(run.peakHeap / (1024 * 1024)), run.isVerified ? "yes" : "NO");
+        }
+
+        Set<String> stages = new TreeSet<>();
+        for (ProcessRun run : runs) {
+            stages.addAll(run.stageMillis.keySet());
+        }
+        if (stages.isEmpty()) {
+            return;
+        }
+        System.out.printf("%nStage time (sum of spans)%n%-28s %12s %16s%n", "stage", "server[ms]", "client avg[ms]");
+        for (String stage : stages) {
+            double clientsSum = 0;
+            for (ProcessRun run : runs.subList(1, runs.size())) {
+                clientsSum += run.stageMillis.getOrDefault(stage, 0.0);
+            }
+            System.out.printf("%-28s %12.1f %16.1f%n", stage, runs.get(0).stageMillis.getOrDefault(stage, 0.0),
+                    clients == 0 ? 0 : clientsSum / clients);
+        }
+    }
+
+    private static long getUsedSpace(FileStore fileStore) throws IOException {
+        return fileStore.getTotalSpace() - fileStore.getUsableSpace();
+    }
+
+    private static boolean isSameContent(Path first, Path second) throws IOException {
+        if (Files.size(first) != Files.size(second)) {
+            return false;
+        }
+        byte[] firstBuffer = new byte[1024 * 1024];
+        byte[] secondBuffer = new byte[1024 * 1024];
+        try (InputStream firstStream = Files.newInputStream(first); InputStream secondStream = Files.newInputStream(second)) {
+            int length;
+            while ((length = readFully(firstStream, firstBuffer)) > 0) {
+                if (readFully(secondStream, secondBuffer) != length || !Arrays.equals(firstBuffer, secondBuffer)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+        int length = 0;
+        int bytesRead;
+        while (length < buffer.length && (bytesRead = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += bytesRead;
+        }
+        return length;
+    }
+
+    private static String getAbsoluteClassPath() {
+        StringBuilder builder = new StringBuilder();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (builder.length() > 0) {
+                builder.append(File.pathSeparator);
+            }
+            builder.append(entry.endsWith("*") ? entry : Paths.get(entry).toAbsolutePath().toString());
+        }
+        return builder.toString();
+    }
+
+    private static List<String> splitArgs(String args) {
+        List<String> result = new ArrayList<>();
+        for (String arg : args.trim().split("\\s+")) {
+            if (!arg.isEmpty()) {
+                result.add(arg);
+            }
+        }
+        return result;
+    }
+
+    private static String getStage(String category, String name) {
+        if ("control".equals(category) || "download".equals(category)) {
+            return category + ":" + name.replaceAll("\\s*\\d+$", "");
+        }
+        return category;
+    }
+
+    private class ProcessRun {
+        private final String name;
+        private final int metricsPort;
+        private final List<String> args;
+        private final Path directory;
+        private final Path tracePath;
+        private final Map<String, Double> stageMillis = new HashMap<>();
+        private Process process;
+        private long startTime;
+        private long wallTime;
+        private int exitCode = -1;
+        private volatile long peakHeap = -1;
+        private boolean isVerified;
+
+        private ProcessRun(String name, int metricsPort, List<String> args) {
+            this.name = name;
+            this.metricsPort = metricsPort;
+            this.args = args;
+            this.directory = workDirectory.resolve(name);
+            this.tracePath = workDirectory.resolve(name + ".trace.json");
+        }
+
+        private void start(Path standInDirectory) throws IOException {
+            List<String> command = new ArrayList<>(Arrays.asList(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-D" + UdpcastService.executableDirectoryProperty + "=" + standInDirectory,
+                    "-cp", getAbsoluteClassPath(), "Main",
+                    "-portbase", String.valueOf(portbase),
+                    "-directory", directory.toString(),
+                    "-metrics", String.valueOf(metricsPort),
+                    "-trace", tracePath.toString()));
+            command.addAll(args);
+
+            ProcessBuilder processBuilder = new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(workDirectory.resolve(name + ".log").toFile());
+            processBuilder.environment().put(UdpcastStandIn.rateVariable, rate);
+            processBuilder.environment().put(UdpcastStandIn.lossVariable, loss);
+            processBuilder.environment().put(UdpcastStandIn.burstVariable, burst);
+            processBuilder.environment().put(UdpcastStandIn.roundTripVariable, roundTrip);
+            startTime = System.nanoTime();
+            process = processBuilder.start();
+        }
+
+        private void waitFor(long deadline) throws InterruptedException {
+            long timeout = Math.max(0, deadline - System.nanoTime());
+            if (!process.waitFor(timeout, TimeUnit.NANOSECONDS)) {
+                System.err.println("Timeout, killing: " + name);
+                process.destroyForcibly().waitFor();
+            }
+            wallTime = System.nanoTime() - startTime;
+            exitCode = process.exitValue();
+        }
+
+        private void scrapeMetrics() {
+            if (!process.isAlive()) {
+                return;
+            }
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + metricsPort + "/metrics").openConnection();
+                connection.setConnectTimeout(100);
+                connection.setReadTimeout(500);
+                try (InputStream inputStream = connection.getInputStream()) {
+                    ByteArrayOutputStream body = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    int length;
+                    while ((length = inputStream.read(buffer)) != -1) {
+                        body.write(buffer, 0, length);
+                    }
+                    Matcher matcher = peakHeapPattern.matcher(body.toString("UTF-8"));
+                    if (matcher.find()) {
+                        peakHeap = Math.max(peakHeap, Long.parseLong(matcher.group(1)));
+                    }
+                }
+            } catch (IOException ignored) {
+            }
+        }
+
+        private void readTrace() throws IOException {
+            if (!Files.exists(tracePath)) {
+                return;
+            }
+            String trace = new String(Files.readAllBytes(tracePath), StandardCharsets.UTF_8);
+            Map<String, Double> asyncStarts = new HashMap<>();
+            Matcher matcher = traceEventPattern.matcher(trace);
+            while (matcher.find()) {
+                String stage = getStage(matcher.group(2), matcher.group(3));
+                double timestamp = Double.parseDouble(matcher.group(5));
+                double durationInMicros;
+                if ("X".equals(matcher.group(1))) {
+                    durationInMicros = Double.parseDouble(matcher.group(6));
+                } else if ("b".equals(matcher.group(1))) {
+                    asyncStarts.put(stage + matcher.group(4), timestamp);
+                    continue;
+                } else {
+                    Double start = asyncStarts.remove(stage + matcher.group(4));
+                    if (start == null) {
+                        continue;
+                    }
+                    durationInMicros = timestamp - start;
+                }
+                stageMillis.merge(stage, durationInMicros / 1000, Double::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package harness;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+public class UdpcastStandIn {
+    public static final String rateVariable = "PGD_STANDIN_RATE";
+    public static final String lossVariable = "PGD_STANDIN_LOSS";
+    public static final String burstVariable = "PGD_STANDIN_BURST";
+    public static final String roundTripVariable = "PGD_STANDIN_RTT_MS";
+
+    private static final int sliceSize = 64 * 1024;
+    private static final int startMarker = 1;
+    private static final int acknowledgement = 2;
+
+    private final PrintStream stats = System.err;
+    private String file;
+    private int portbase = 9000;
+    private int minReceivers = 1;
+    private int minWaitSeconds = 0;
+    private int maxWaitSeconds = 0;
+    private int startTimeoutSeconds = 0;
+    private int receiveTimeoutSeconds = 0;
+    private long statPeriodMillis = 500;
+
+    private final double bytesPerNano;
+    private final double lossProbability;
+    private final int burstLength;
+    private final long roundTripNanos;
+    private final Random random = new Random(1);
+
+    private long bytes = 0;
+    private long retransmits = 0;
+    private long slices = 0;
+    private long lastStatTime = System.nanoTime();
+
+    private UdpcastStandIn(String[] args) {
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--file":
+                    file = args[++i];
+                    break;
+                case "--portbase":
+                    portbase = Integer.parseInt(args[++i]);
+                    break;
+                case "--min-receivers":
+                    minReceivers = Integer.parseInt(args[++i]);
+                    break;
+                case "--min-wait":
+                    minWaitSeconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-wait":
+                    maxWaitSeconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--start-timeout":
+                    startTimeoutSeconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--receive-timeout":
+                    receiveTimeoutSeconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--stat-period":
+                    statPeriodMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--interface":
+                    i++;
+                    break;
+                default:
+            }
+        }
+
+        double rateInMBps = Double.parseDouble(getVariable(rateVariable, "0"));
+        bytesPerNano = rateInMBps * 1024 * 1024 / TimeUnit.SECONDS.toNanos(1);
+        lossProbability = Double.parseDouble(getVariable(lossVariable, "0"));
+        burstLength = Math.max(1, Integer.parseInt(getVariable(burstVariable, "1")));
+        roundTripNanos = TimeUnit.MICROSECONDS.toNanos((long) (Double.parseDouble(getVariable(roundTripVariable, "1")) * 1000));
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0 || (!"sender".equals(args[0]) && !"receiver".equals(args[0]))) {
+            System.err.println("Usage: UdpcastStandIn <sender|receiver> [udp-sender/udp-receiver options]");
+            System.exit(2);
+        }
+
+        UdpcastStandIn standIn = new UdpcastStandIn(args);
+        int exitCode;
+        try {
+            exitCode = "sender".equals(args[0]) ? standIn.send() : standIn.receive();
+        } catch (IOException e) {
+            System.err.println("Stand-in error: " + e);
+            exitCode = 1;
+        }
+        System.exit(exitCode);
+    }
+
+    private int send() throws IOException {
+        List<Socket> receivers = acceptReceivers();
+        if (receivers.isEmpty()) {
+            stats.println("Timeout: no receivers connected");
+            return 1;
+        }
+
+        List<OutputStream> outputs = new ArrayList<>();
+        for (Socket receiver : receivers) {
+            OutputStream outputStream = receiver.getOutputStream();
+            outputStream.write(startMarker);
+            outputs.add(outputStream);
+        }
+
+        long startTime = System.nanoTime();
+        long wireBytes = 0;
+        int lostSlicesLeft = 0;
+        byte[] slice = new byte[sliceSize];
+        try (InputStream inputStream = file != null ? Files.newInputStream(Paths.get(file)) : System.in) {
+            int length;
+            while ((length = readSlice(inputStream, slice)) > 0) {
+                if (lostSlicesLeft == 0 && lossProbability > 0 && random.nextDouble() < lossProbability) {
+                    lostSlicesLeft = burstLength;
+                    LockSupport.parkNanos(roundTripNanos);
+                }
+                if (lostSlicesLeft > 0) {
+                    lostSlicesLeft--;
+                    retransmits++;
+                    wireBytes += length;
+                }
+                wireBytes += length;
+                pace(startTime, wireBytes);
+
+                writeToReceivers(receivers, outputs, slice, length);
+                if (receivers.isEmpty()) {
+                    stats.println("No receivers left");
+                    return 1;
+                }
+                bytes += length;
+                slices++;
+                printStatsIfNeeded(false);
+            }
+        }
+
+        for (Socket receiver : receivers) {
+            receiver.shutdownOutput();
+        }
+        for (Socket receiver : receivers) {
+            try {
+                receiver.setSoTimeout(10_000);
+                receiver.getInputStream().read();
+            } catch (IOException ignored) {
+            }
+            receiver.close();
+        }
+
+        printStatsIfNeeded(true);
+        stats.println("Transfer complete.");
+        return 0;
+    }
+
+    private List<Socket> acceptReceivers() throws IOException {
+        List<Socket> receivers = new ArrayList<>();
+        long startTime = System.nanoTime();
+        long firstConnectionTime = 0;
+
+        try (ServerSocket serverSocket = new ServerSocket()) {
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), portbase), 64);
+            serverSocket.setSoTimeout(50);
+
+            while (true) {
+                long now = System.nanoTime();
+                if (receivers.isEmpty()) {
+                    if (startTimeoutSeconds > 0 && now - startTime > TimeUnit.SECONDS.toNanos(startTimeoutSeconds)) {
+                        return receivers;
+                    }
+                } else {
+                    long waited = now - firstConnectionTime;
+                    boolean isReady = receivers.size() >= minReceivers && waited >= TimeUnit.SECONDS.toNanos(minWaitSeconds);
+                    boolean isWaitedTooLong = maxWaitSeconds > 0 && waited >= TimeUnit.SECONDS.toNanos(maxWaitSeconds);
+                    if (isReady || isWaitedTooLong) {
+                        return receivers;
+                    }
+                }
+
+                try {
+                    Socket receiver = serverSocket.accept();
+                    receiver.setTcpNoDelay(true);
+                    if (receivers.isEmpty()) {
+                        firstConnectionTime = System.nanoTime();
+                    }
+                    stats.printf("New connection from %s  (#%d) 00000009%n", receiver.getInetAddress().getHostAddress(), receivers.size());
+                    receivers.add(receiver);
+                } catch (SocketTimeoutException ignored) {
+                }
+            }
+        }
+    }
+
+    private void writeToReceivers(List<Socket> receivers, List<OutputStream> outputs, byte[] slice, int length) {
+        Iterator<Socket> receiverIterator = receivers.iterator();
+        Iterator<OutputStream> outputIterator = outputs.iterator();
+        while (receiverIterator.hasNext()) {
+            Socket receiver = receiverIterator.next();
+            OutputStream outputStream = outputIterator.next();
+            try {
+                outputStream.write(slice, 0, length);
+            } catch (IOException e) {
+                stats.println("Dropping one of clients: " + e.getMessage());
+                receiverIterator.remove();
+                outputIterator.remove();
+                try {
+                    receiver.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private int receive() throws IOException {
+        Socket sender = connect();
+        if (sender == null) {
+            stats.println("Timeout: could not connect to sender");
+            return 1;
+        }
+        stats.println("Connected as #0 to " + sender.getInetAddress().getHostAddress());
+
+        sender.setSoTimeout((int) TimeUnit.SECONDS.toMillis(receiveTimeoutSeconds));
+        byte[] slice = new byte[sliceSize];
+        OutputStream output = file != null ? Files.newOutputStream(Paths.get(file)) : new FileOutputStream(FileDescriptor.out);
+        try (InputStream inputStream = sender.getInputStream(); OutputStream outputStream = output) {
+            int length;
+            while ((length = inputStream.read(slice)) != -1) {
+                outputStream.write(slice, 0, length);
+                bytes += length;
+                printStatsIfNeeded(false);
+            }
+            outputStream.flush();
+            sender.getOutputStream().write(acknowledgement);
+        } catch (SocketTimeoutException e) {
+            stats.println("Timeout: sender stopped sending data");
+            return 1;
+        } finally {
+            sender.close();
+        }
+
+        printStatsIfNeeded(true);
+        stats.println("Transfer complete.");
+        return 0;
+    }
+
+    private Socket connect() throws IOException {
+        long startTime = System.nanoTime();
+        while (startTimeoutSeconds == 0 || System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(startTimeoutSeconds)) {
+            Socket sender = new Socket();
+            try {
+                sender.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), portbase), 1000);
+                sender.setSoTimeout(startTimeoutSeconds > 0 ? (int) TimeUnit.SECONDS.toMillis(startTimeoutSeconds) : 0);
+                if (sender.getInputStream().read() == startMarker) {
+                    return sender;
+                }
+            } catch (SocketTimeoutException e) {
+                sender.close();
+                return null;
+            } catch (IOException ignored) {
+            }
+            sender.close();
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        return null;
+    }
+
+    private void pace(long startTime, long wireBytes) {
+        if (bytesPerNano <= 0) {
+            return;
+        }
+        long sendTime = startTime + (long) (wireBytes / bytesPerNano);
+        long delay = sendTime - System.nanoTime();
+        if (delay > 0) {
+            LockSupport.parkNanos(delay);
+        }
+    }
+
+    private void printStatsIfNeeded(boolean isFinal) {
+        long now = System.nanoTime();
+        if (!isFinal && now - lastStatTime < TimeUnit.MILLISECONDS.toNanos(statPeriodMillis)) {
+            return;
+        }
+        lastStatTime = now;
+        double retransmitPercent = slices == 0 ? 0 : retransmits * 100.0 / slices;
+        stats.printf("bytes=%s re-xmits=%07d (%5.1f%%) slice=%04d %s", groupDigits(bytes), retransmits, retransmitPercent,
+                sliceSize / 1024, isFinal ? System.lineSeparator() : "\r");
+        stats.flush();
+    }
+
+    private static String groupDigits(long value) {
+        String digits = String.valueOf(value);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < digits.length(); i++) {
+            if (i > 0 && (digits.length() - i) % 3 == 0) {
+                builder.append(' ');
+            }
+            builder.append(digits.charAt(i));
+        }
+        return builder.toString();
+    }
+
+    private static int readSlice(InputStream inputStream, byte[] slice) throws IOException {
+        int length = 0;
+        while (length < slice.length) {
+            int bytesRead = inputStream.read(slice, length, slice.length - length);
+            if (bytesRead == -1) {
+                break;
+            }
+            length += bytesRead;
+        }
+        return length;
+    }
+
+    private static String getVariable(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+}
@@ -0,0 +1,65 @@
+package server;
+
+import common.models.ChecksumAlgorithmEnum;
+import common.utils.FilePartUtils;
+import harness.Benchmark;
+import harness.BenchmarkFiles;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FileDownloaderBenchmark implements Benchmark {
+    private Path sourceDirectory;
+    private Path targetDirectory;
+    private Path source;
+    private long sizeInBytes;
+    private int blockSizeInMB;
+    private ChecksumAlgorithmEnum checksumAlgorithm;
+
+    @Override
+    public String getName() {
+        return "FileDownloader.fileSource";
+    }
+
+    @Override
+    public Map<String, List<String>> getDefaultParams() {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        params.put("sizeMB", Arrays.asList("256"));
+        params.put("blockSizeMB", Arrays.asList("16", "64"));
+        params.put("location", Arrays.asList("tmpfs", "disk"));
+        params.put("checksum", Arrays.asList("none", "CRC32C"));
+        return params;
+    }
+
+    @Override
+    public void setup(Map<String, String> params) throws Exception {
+        sizeInBytes = Long.parseLong(params.get("sizeMB")) * 1024 * 1024;
+        blockSizeInMB = Integer.parseInt(params.get("blockSizeMB"));
+        String checksum = params.get("checksum");
+        checksumAlgorithm = "none".equals(checksum) ? null : ChecksumAlgorithmEnum.valueOf(checksum);
+
+        sourceDirectory = BenchmarkFiles.createDirectory(params.get("location"));
+        targetDirectory = BenchmarkFiles.createDirectory(params.get("location"));
+        source = BenchmarkFiles.createRandomFile(sourceDirectory, "source.bin", sizeInBytes);
+    }
+
+    @Override
+    public long run() throws Exception {
+        FileDownloader fileDownloader = new FileDownloader(source.toString(), targetDirectory.toString(), "download.bin", blockSizeInMB);
+        fileDownloader.setChecksumAlgorithm(checksumAlgorithm);
+        fileDownloader.call();
+        for (DownloadingFilePart part : fileDownloader.getStartedParts()) {
+            FilePartUtils.removeFile(part.path);
+        }
+        return sizeInBytes;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        BenchmarkFiles.removeDirectory(sourceDirectory);
+        BenchmarkFiles.removeDirectory(targetDirectory);
+    }
+}
@@ -2,13 +2,25 @@ import client.ClientLogic;
 import common.CommonLogic;
 import common.exceptions.ConfigurationException;
 import common.exceptions.DownloadException;
+import common.metrics.MetricsMBean;
+import common.metrics.MetricsRegistry;
+import common.metrics.MetricsServer;
 import common.models.StatusEnum;
 import common.models.UdpcastConfiguration;
+import common.tracing.Tracer;
+import server.PartRelay;
 import server.ServerLogic;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Path;
+
 public class Main {
     public static void main(String[] args) {
         StatusEnum result;
+        Path tracePath = null;
         try {
             UdpcastConfiguration configuration = new UdpcastConfiguration(args);
             if (configuration.isHelpInvoked()) {
@@ -16,6 +28,18 @@ public class Main {
                 return;
             }
 
+            tracePath = configuration.getTracePath();
+            if (tracePath != null) {
+                Tracer.getInstance().enable();
+            }
+
+            MetricsMBean.register(MetricsRegistry.getInstance());
+            MetricsRegistry.getInstance().gauge("pgd_jvm_heap_peak_bytes", "Peak heap usage of this process.")
+                    .setSupplier(Main::getPeakHeapUsage);
+            if (configuration.getMetricsPort() > 0) {
+                new MetricsServer(MetricsRegistry.getInstance(), configuration.getMetricsPort()).start();
+            }
+
             CommonLogic logic;
             if (configuration.getUrl() == null) {
                 logic = new ClientLogic(configuration);
@@ -30,9 +54,31 @@ public class Main {
             result = StatusEnum.Error;
         }
 
+        if (tracePath != null) {
+            writeTrace(tracePath);
+        }
         System.exit(result.ordinal());
     }
 
+    private static long getPeakHeapUsage() {
+        long peakUsage = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakUsage += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peakUsage;
+    }
+
+    private static void writeTrace(Path tracePath) {
+        try {
+            Tracer.getInstance().writeTo(tracePath);
+            System.out.println("Trace saved to: " + tracePath.toAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Cannot save trace to: " + tracePath + ". Error: " + e.getMessage());
+        }
+    }
+
     private static void showHelp() {
         try {
             UdpcastConfiguration configuration = new UdpcastConfiguration(new String[]{});
@@ -49,14 +95,70 @@ public class Main {
                     "Ports from range <1024-65534> are allowed. Default value: " + configuration.getPortbase() +
                     newLine +
                     "-interface <name> " +
-                    "- network interface used to send out the data. By default udpcast library chooses it on its own" +
+                    "- network interface used to send out the data. By default udpcast library chooses it on its own. " +
+                    "Comma separated list assigns interfaces to stripes in turn" +
                     newLine +
                     "-directory <value> " +
                     "- directory to which will be saved downloaded files. " +
                     "Default directory is created in running directory with name: " + configuration.getDirectory() +
                     newLine +
                     "-filename <value> " +
-                    "- destination file name. If name not given it will be taken from URL from server"
+                    "- destination file name. If name not given it will be taken from URL from server" +
+                    newLine +
+                    "-persistent " +
+                    "- send all file parts through one UDPCast session instead of starting new one for each part. " +
+                    "MUST be specified for both sender and receiver" +
+                    newLine +
+                    "-threads <number> " +
+                    "- count of threads used to calculate checksums of file parts. Allowed range <1-64>. " +
+                    "Default value: " + configuration.getChecksumThreads() +
+                    newLine +
+                    "-trace <file> " +
+                    "- record timeline of downloading, sending, checksum and merge of each file part " +
+                    "and save it as Chrome trace JSON (chrome://tracing, ui.perfetto.dev) when program ends" +
+                    newLine +
+                    "-metrics <port> " +
+                    "- serve transfer metrics in Prometheus text format at http://127.0.0.1:<port>/metrics. " +
+                    "Metrics are also available through JMX. Allowed range <1024-65535>. Disabled by default" +
+                    newLine +
+                    "-transport <udpcast|nio> " +
+                    "- udpcast runs bundled udp-sender/udp-receiver for each file part, " +
+                    "nio sends multicast from this process with NACK based retransmission. " +
+                    "MUST be the same for both sender and receiver. Default value: " + configuration.getTransport().name().toLowerCase() +
+                    newLine +
+                    "-stripes <number> " +
+                    "- count of concurrent transfer sessions. Stripe k uses portbase+2k and file parts are assigned to stripes in turn. " +
+                    "MUST be the same for both sender and receiver, cannot be used with -persistent and -direct. " +
+                    "Allowed range <1-16>. Default value: " + configuration.getStripes() +
+                    newLine +
+                    "-carousel " +
+                    "- server keeps sending already sent file parts in a loop, so clients started late can still join. " +
+                    "Clients report to server over TCP on portbase+1. MUST be specified for both sender and receiver" +
+                    newLine +
+                    "-peers <minutes> " +
+                    "- client which verified the file serves it to other clients over TCP for given minutes, " +
+                    "client with corrupted file parts fetches them from such peers first. Peers are found by multicast " +
+                    "query on portbase+2*stripes. Allowed range <0-1440>. Default value: " + configuration.getPeerMinutes() +
+                    newLine +
+                    "-relayportbase <port> " +
+                    "- client sends each received file part again on given portbase, so it can be received in another subnet or VLAN. " +
+                    "Clients of relay use default (not persistent, striped or direct) mode with this portbase. " +
+                    "Parts are relayed before they are verified, so after the transfer relay waits at most " + PartRelay.repairMinutes +
+                    " minutes for its clients which failed to verify file parts and sends them again corrupted ranges from verified file. " +
+                    "Clients of relay report to it over TCP on relay portbase+1. " +
+                    "Cannot be used with -direct. Disabled by default" +
+                    newLine +
+                    "-relayinterface <name> " +
+                    "- network interface used by relay. By default chosen by udpcast/system" +
+                    newLine +
+                    "-resume " +
+                    "- client keeps journal of joined file parts next to the downloaded file, so after crash or reboot " +
+                    "it can be started again with this option and receive only missing parts from next carousel or repair session. " +
+                    "Cannot be used with -direct and -relayportbase" +
+                    newLine +
+                    "-direct " +
+                    "- write file parts directly into preallocated destination file at their offsets " +
+                    "instead of saving them separately and joining afterwards"
             );
             System.out.println("Server only options:" +
                     newLine +
@@ -68,7 +170,36 @@ public class Main {
                     "- sending file to clients delay in minutes. Default value: " + configuration.getDelayMinutes() +
                     newLine +
                     "-blocksize <megabytes> " +
-                    "- size of single file part in MB to which original file will be split. Default value in MB: " + configuration.getBlockSizeInMb()
+                    "- size of single file part in MB to which original file will be split. Default value in MB: " + configuration.getBlockSizeInMb() +
+                    newLine +
+                    "-connections <number> " +
+                    "- count of parallel HTTP range requests used to download file. Used only when server supports ranges " +
+                    "and file size is known. Allowed range <1-32>. Default value: " + configuration.getConnections() +
+                    newLine +
+                    "-pipeline <parts> " +
+                    "- how many file parts can be downloaded ahead of the part being sent to clients. " +
+                    "Allowed range <1-64>. Default value: " + configuration.getPipelineDepth() +
+                    newLine +
+                    "-checksum <adler32|crc32c|sha256> " +
+                    "- algorithm used to verify file parts, announced to clients. sha256 hashes every byte twice " +
+                    "(whole part and its sub-blocks) and cannot be calculated in parallel. Default value: " +
+                    configuration.getChecksumAlgorithm().name().toLowerCase() +
+                    newLine +
+                    "-rate <MBps> " +
+                    "- maximal sending rate of nio transport. By default sending starts at 100 MBps and is adjusted only to losses reported by clients" +
+                    newLine +
+                    "-joinwindow <minutes> " +
+                    "- in carousel mode keep sending file parts at least for given minutes from start, " +
+                    "afterwards only until all registered clients are done. Allowed range <0-1440>. " +
+                    "Default value: " + configuration.getJoinWindowMinutes() +
+                    newLine +
+                    "-repair <minutes> " +
+                    "- after the transfer wait at most given minutes for clients which failed to verify file parts " +
+                    "and send them again only corrupted ranges. Clients report to server over TCP on portbase+1. " +
+                    "Cannot be used with -carousel. Allowed range <0-1440>. Default value: " + configuration.getRepairMinutes() +
+                    newLine +
+                    "-streaming " +
+                    "- start sending each file part to clients while it is still being downloaded, instead of waiting for the whole part"
             );
             System.out.println("Aim of this project is to quickly download and send big files between many PCs. " +
                     "It uses udpcast packet, which is bundled inside this app. " +
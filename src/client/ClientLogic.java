@@ -1,26 +1,101 @@
 package client;
 
 import common.CommonLogic;
+import common.checksums.BlockChecksum;
+import common.checksums.PartHashTree;
 import common.exceptions.DownloadException;
 import common.exceptions.InfoFileException;
 import common.infos.EndInfoFile;
+import common.infos.SessionFrame;
 import common.infos.StartInfoFile;
+import common.models.ChecksumAlgorithmEnum;
+import common.models.FeedbackCommandEnum;
+import common.models.FrameTypeEnum;
 import common.models.StatusEnum;
+import common.models.TransportEnum;
 import common.models.UdpcastConfiguration;
 import common.services.FileService;
+import common.services.Transport;
+import common.tracing.Span;
+import common.tracing.Tracer;
 import common.utils.FilePartUtils;
+import common.utils.VariousUtils;
+import server.PartRelay;
 
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.*;
+
+import static java.nio.file.StandardOpenOption.*;
 
 public class ClientLogic extends CommonLogic {
+    private static final int maxFailedCarouselSessions = 3;
+    private static final long unknownMaxEndInfoSizeInBytes = 64 * 1024 * 1024;
+    private static final long minMaxEndInfoSizeInBytes = 1024 * 1024;
+    private static final int maxEndInfoEntrySizeInBytes = 128;
+    private static final int maxRepairRounds = 3;
+
+    private final boolean isPersistent;
+    private final boolean isDirect;
+    private final boolean isCarousel;
+    private final boolean isResume;
+    private final int checksumThreads;
+    private final int peerMinutes;
+    private final int peerPort;
+    private final String networkInterface;
+    private final List<long[]> corruptedRanges = new ArrayList<>();
+    private final BitSet receivedParts = new BitSet();
+    private final UdpcastConfiguration relayConfiguration;
+    private FeedbackClient feedbackClient;
+    private PartRelay relay;
+    private PartJournal journal;
+    private int resumedPartsCount = 0;
     private String fileName;
+    private Path finalFileTempPath;
+    private long directOffset = 0;
+    private long maxEndInfoSizeInBytes = unknownMaxEndInfoSizeInBytes;
+    private ChecksumAlgorithmEnum checksumAlgorithm;
+
+    private StartInfoFile sessionStartInfoFile;
+    private EndInfoFile sessionEndInfoFile;
 
     public ClientLogic(UdpcastConfiguration configuration) throws DownloadException {
-        super(new ClientUdpcastService(configuration), configuration.getDirectory());
+        super(createTransports(configuration), configuration.getDirectory());
 
         this.fileName = configuration.getFileName();
+        this.isPersistent = configuration.isPersistent();
+        this.isDirect = configuration.isDirect();
+        this.isCarousel = configuration.isCarousel();
+        this.isResume = configuration.isResume();
+        this.checksumThreads = configuration.getChecksumThreads();
+        this.peerMinutes = configuration.getPeerMinutes();
+        this.peerPort = configuration.getPeerPort();
+        this.networkInterface = configuration.getNetworkInterface();
+        this.relayConfiguration = configuration.isRelay() ? configuration.getRelayConfiguration() : null;
+    }
+
+    private static List<Transport> createTransports(UdpcastConfiguration configuration) throws DownloadException {
+        List<Transport> transports = new ArrayList<>();
+        for (int stripe = 0; stripe < configuration.getStripes(); stripe++) {
+            if (configuration.getTransport() == TransportEnum.Nio) {
+                transports.add(new ClientMulticastTransport(configuration, stripe));
+            } else {
+                transports.add(new ClientUdpcastService(configuration, stripe));
+            }
+        }
+        return transports;
     }
 
     public StatusEnum doWork() {
@@ -28,33 +103,23 @@ public class ClientLogic extends CommonLogic {
 
         StatusEnum result;
         try {
-            StartInfoFile startInfoFile = processStartFile();
-            if (this.fileName == null) {
-                fileName = startInfoFile.fileName;
+            EndInfoFile endInfoFile = resumeInRepairSession();
+            if (endInfoFile == null) {
+                endInfoFile = receiveFile();
             }
-            Path finalFileTempPath = Paths.get(this.downloadDirectory, fileName + ".client");
-            FilePartUtils.markToDeleteOnExit(finalFileTempPath);
-
-            fileService = new FileService(finalFileTempPath);
 
-            EndInfoFile endInfoFile = null;
-            int partCount = 0;
-            while (endInfoFile == null) {
-                Path filePart = FilePartUtils.generateFilePartPath(downloadDirectory, fileName + ".clientpart" + partCount, startInfoFile.partSizeInMB);
-                udpcastService.processFile(filePart);
-                partCount++;
-
-                endInfoFile = tryProcessEndFile(filePart);
-                if (endInfoFile == null) {
-                    fileService.addFileToProcess(filePart);
-                }
+            verifyFile(endInfoFile);
+            if (relay != null) {
+                relay.finish(endInfoFile, finalFileTempPath);
             }
-
-            compareChecksums(endInfoFile.getChecksums(), fileService.waitForChecksums());
             Path finalFile = renameFile(finalFileTempPath, fileName);
+            if (journal != null) {
+                journal.delete();
+            }
 
             System.out.println("Success! Downloaded file: " + finalFile);
-            udpcastService.printStatsOnSuccess();
+            transport.printStatsOnSuccess();
+            servePeers(finalFile, endInfoFile);
             result = StatusEnum.Success;
         } catch (DownloadException e) {
             result = StatusEnum.Error;
@@ -64,31 +129,639 @@ public class ClientLogic extends CommonLogic {
         return result;
     }
 
-    private StartInfoFile processStartFile() throws DownloadException {
-        Path startFilePath = Paths.get(downloadDirectory, "startInfoClient.txt");
+    @Override
+    protected void cleanup() {
+        if (feedbackClient != null) {
+            feedbackClient.close();
+        }
+
+        if (relay != null) {
+            relay.abort();
+        }
+
+        super.cleanup();
+    }
+
+    private EndInfoFile receiveFile() throws DownloadException {
+        if (isPersistent) {
+            return receivePersistentSession();
+        } else if (isCarousel) {
+            return receiveCarousel();
+        }
+        return receivePartsSeparately();
+    }
+
+    private EndInfoFile resumeInRepairSession() throws DownloadException {
+        if (!isResume || isCarousel) {
+            return null;
+        }
+
+        Path journalPath = fileName != null ? PartJournal.getPath(downloadDirectory, fileName) : PartJournal.find(downloadDirectory);
+        PartJournal savedJournal = journalPath != null ? PartJournal.load(journalPath) : null;
+        if (savedJournal == null || savedJournal.getFeedbackAddresses().isEmpty()) {
+            return null;
+        }
+
+        feedbackClient = FeedbackClient.connect(savedJournal.getFeedbackAddresses());
+        if (feedbackClient == null) {
+            System.out.println("Server of interrupted download is not available. Waiting for next session...");
+            return null;
+        }
+
+        fileName = PartJournal.getFileName(journalPath);
+        journal = savedJournal;
+        StartInfoFile startInfoFile = journal.toStartInfoFile(downloadDirectory);
+        prepareFileService(startInfoFile);
+        sendFeedback(FeedbackCommandEnum.Register, journal.getClientId());
+
+        long resumedSize = journal.getJournaledSize();
+        System.out.println("Resuming download in repair session from byte: " + resumedSize);
+        repairFromServer(Collections.singletonList(new long[]{resumedSize, Long.MAX_VALUE - resumedSize}));
+        if (sessionEndInfoFile == null) {
+            throw new DownloadException("Repair session ended without end info.");
+        }
+
         try {
-            udpcastService.processFile(startFilePath);
-            StartInfoFile startInfoFile = new StartInfoFile(startFilePath);
+            long fileSize = Files.size(finalFileTempPath);
+            long partSizeInBytes = FilePartUtils.megabytesToBytes(startInfoFile.partSizeInMB);
+            for (long offset = resumedSize; offset < fileSize; offset += partSizeInBytes) {
+                fileService.addWrittenRangeToProcess(offset, Math.min(partSizeInBytes, fileSize - offset));
+            }
+        } catch (IOException e) {
+            throw new DownloadException(e, "Could not read file: " + finalFileTempPath);
+        }
+        return sessionEndInfoFile;
+    }
 
-            System.out.println("Download started. Url: " + startInfoFile.url + ", file name: " + startInfoFile.fileName);
-            if (startInfoFile.summarySizeInMB < 1) {
-                System.out.println("Not known file size - program will try download it anyway.");
-            } else {
-                System.out.println("Expected file size (in MB): " + startInfoFile.summarySizeInMB);
-                int sizeInMBWithMargin = startInfoFile.summarySizeInMB + startInfoFile.partSizeInMB;
-                if (!FilePartUtils.checkFreeSpace(startFilePath, sizeInMBWithMargin)) {
-                    throw new DownloadException("Not enough free space.");
+    private EndInfoFile receivePartsSeparately() throws DownloadException {
+        StartInfoFile startInfoFile = processStartFile();
+        if (stripes.size() > 1) {
+            return receivePartsInStripes(startInfoFile);
+        }
+
+        EndInfoFile endInfoFile = null;
+        int partCount = 0;
+        while (endInfoFile == null) {
+            if (isDirect) {
+                Path streamPath = Paths.get(downloadDirectory, fileName + ".clientpart" + partCount);
+                transport.receiveStream(streamPath, this::readDirectPart);
+                partCount++;
+
+                endInfoFile = sessionEndInfoFile;
+                continue;
+            }
+
+            Path filePart = FilePartUtils.generateFilePartPath(downloadDirectory, fileName + ".clientpart" + partCount, startInfoFile.partSizeInMB);
+            transport.processFile(filePart);
+
+            endInfoFile = tryProcessEndFile(filePart);
+            if (endInfoFile == null) {
+                addPartToProcess(partCount, filePart);
+            }
+            partCount++;
+        }
+
+        return endInfoFile;
+    }
+
+    private EndInfoFile receivePartsInStripes(StartInfoFile startInfoFile) throws DownloadException {
+        ExecutorService executorService = Executors.newFixedThreadPool(stripes.size());
+        CompletionService<EndInfoFile> completionService = new ExecutorCompletionService<>(executorService);
+        try {
+            for (int stripe = 0; stripe < stripes.size(); stripe++) {
+                Transport stripeTransport = stripes.get(stripe);
+                int firstPart = stripe;
+                completionService.submit(() -> receiveStripe(stripeTransport, firstPart, startInfoFile));
+            }
+
+            EndInfoFile endInfoFile = null;
+            for (int i = 0; i < stripes.size(); i++) {
+                endInfoFile = completionService.take().get();
+            }
+            return endInfoFile;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DownloadException) {
+                throw (DownloadException) e.getCause();
+            }
+            throw new DownloadException(e, "Could not receive file parts of stripe.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownloadException(e, "Interrupted while receiving file parts.");
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private EndInfoFile receiveStripe(Transport stripe, int firstPart, StartInfoFile startInfoFile) throws DownloadException {
+        for (int partCount = firstPart; ; partCount += stripes.size()) {
+            Path filePart = FilePartUtils.generateFilePartPath(downloadDirectory, fileName + ".clientpart" + partCount, startInfoFile.partSizeInMB);
+            stripe.processFile(filePart);
+
+            EndInfoFile endInfoFile = tryProcessEndFile(filePart);
+            if (endInfoFile != null) {
+                return endInfoFile;
+            }
+            addPartToProcess(partCount, filePart);
+        }
+    }
+
+    private EndInfoFile receivePersistentSession() throws DownloadException {
+        transport.receiveStream(Paths.get(downloadDirectory, "session.client"), this::readSession);
+        if (sessionEndInfoFile == null) {
+            throw new DownloadException("Persistent session ended without end info.");
+        }
+
+        return sessionEndInfoFile;
+    }
+
+    private EndInfoFile receiveCarousel() throws DownloadException {
+        Path sessionPath = Paths.get(downloadDirectory, "carousel.client");
+        int failedSessions = 0;
+        while (sessionEndInfoFile == null || receivedParts.cardinality() < sessionEndInfoFile.getChecksums().size()) {
+            try {
+                transport.receiveStream(sessionPath, this::readSession);
+                failedSessions = 0;
+            } catch (DownloadException e) {
+                failedSessions++;
+                if (failedSessions >= maxFailedCarouselSessions) {
+                    throw e;
+                }
+            }
+        }
+
+        return sessionEndInfoFile;
+    }
+
+    private void verifyFile(EndInfoFile endInfoFile) throws DownloadException {
+        List<FileService.ProcessedPart> processedParts = fileService.waitForProcessedParts();
+        for (int round = 1; ; round++) {
+            try (Span ignored = Tracer.getInstance().span("control", "compareChecksums")) {
+                compareChecksums(endInfoFile, processedParts);
+                break;
+            } catch (DownloadException e) {
+                if (corruptedRanges.isEmpty() || round > maxRepairRounds || (peerMinutes == 0 && !canRepairFromServer())) {
+                    throw e;
+                }
+            }
+
+            try (Span ignored = Tracer.getInstance().span("control", "repair")) {
+                processedParts = repairFile(endInfoFile, processedParts);
+            }
+        }
+
+        sendFeedback(FeedbackCommandEnum.Done, "");
+    }
+
+    private List<FileService.ProcessedPart> repairFile(EndInfoFile endInfoFile, List<FileService.ProcessedPart> processedParts) throws DownloadException {
+        List<long[]> ranges = FilePartUtils.mergeRanges(corruptedRanges);
+        if (!repairFromPeers(endInfoFile, ranges)) {
+            repairFromServer(ranges);
+        }
+
+        List<FileService.ProcessedPart> repairedParts = new ArrayList<>();
+        for (FileService.ProcessedPart processedPart : processedParts) {
+            boolean isRepaired = ranges.stream().anyMatch(range ->
+                    range[0] < processedPart.offset + processedPart.length && processedPart.offset < range[0] + range[1]);
+            repairedParts.add(isRepaired ? fileService.recalculateProcessedPart(processedPart) : processedPart);
+        }
+        return repairedParts;
+    }
+
+    private boolean repairFromPeers(EndInfoFile endInfoFile, List<long[]> ranges) {
+        if (peerMinutes == 0) {
+            return false;
+        }
+
+        PeerClient peerClient = new PeerClient(networkInterface, peerPort, PeerServer.getFileId(endInfoFile.getChecksums()));
+        try {
+            List<InetSocketAddress> peers = peerClient.discoverPeers();
+            if (peers.isEmpty()) {
+                System.out.println("Could not find any peers.");
+                return false;
+            }
+
+            System.out.println("Fetching corrupted ranges count: " + ranges.size() + " from peers count: " + peers.size());
+            long fetchedBytes = peerClient.fetchRanges(peers, ranges, finalFileTempPath);
+            System.out.println("Fetched from peers bytes: " + fetchedBytes);
+            return true;
+        } catch (DownloadException e) {
+            return false;
+        }
+    }
+
+    private void repairFromServer(List<long[]> ranges) throws DownloadException {
+        if (!canRepairFromServer()) {
+            throw new DownloadException("Could not repair corrupted ranges.");
+        }
+
+        System.out.println("Requesting repair of corrupted ranges count: " + ranges.size());
+        if (!sendFeedback(FeedbackCommandEnum.Repair, FilePartUtils.formatRanges(ranges))) {
+            throw new DownloadException("Could not request repair.");
+        }
+
+        try {
+            if (!feedbackClient.waitForRepair()) {
+                throw new DownloadException("Server closed feedback connection before repair.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownloadException(e, "Interrupted while waiting for repair.");
+        }
+
+        feedbackClient.setServerClosedListener(transport::stop);
+        try {
+            transport.receiveStream(Paths.get(downloadDirectory, "repair.client"), this::readRepairSession);
+        } finally {
+            feedbackClient.setServerClosedListener(null);
+        }
+    }
+
+    private boolean canRepairFromServer() {
+        return feedbackClient != null && !isCarousel;
+    }
+
+    private void servePeers(Path finalFile, EndInfoFile endInfoFile) {
+        if (peerMinutes == 0) {
+            return;
+        }
+
+        try (PeerServer ignored = new PeerServer(networkInterface, peerPort, finalFile, PeerServer.getFileId(endInfoFile.getChecksums()))) {
+            System.out.println("Serving downloaded file to peers for minutes: " + peerMinutes);
+            VariousUtils.sleep(peerMinutes * 60);
+        } catch (DownloadException ignored) {
+        }
+    }
+
+    private void startRelay(StartInfoFile startInfoFile) throws DownloadException {
+        if (relayConfiguration == null) {
+            return;
+        }
+
+        relay = new PartRelay(relayConfiguration, downloadDirectory, fileService::addFileToProcess);
+        relay.start(startInfoFile);
+    }
+
+    private void addPartToProcess(int index, Path path) throws DownloadException {
+        if (index < resumedPartsCount) {
+            FilePartUtils.removeFile(path);
+        } else if (relay != null) {
+            relay.addPart(index, path);
+        } else {
+            fileService.addFileToProcess(index, path);
+        }
+    }
+
+    private void connectFeedback(StartInfoFile startInfoFile) {
+        if (startInfoFile.feedbackAddresses.isEmpty()) {
+            return;
+        }
+
+        feedbackClient = FeedbackClient.connect(startInfoFile.feedbackAddresses);
+        sendFeedback(FeedbackCommandEnum.Register, journal != null ? journal.getClientId() : "");
+    }
+
+    private boolean sendFeedback(FeedbackCommandEnum command, String argument) {
+        if (feedbackClient == null) {
+            return false;
+        }
+
+        boolean isSent = true;
+        try {
+            feedbackClient.send(command, argument);
+        } catch (IOException e) {
+            System.err.println("Could not send feedback to server.");
+            isSent = false;
+        }
+        if (command == FeedbackCommandEnum.Done) {
+            feedbackClient.close();
+        }
+        return isSent;
+    }
+
+    private void readSession(InputStream inputStream) throws IOException {
+        DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(inputStream, 128 * 1024));
+        ReadableByteChannel inputChannel = Channels.newChannel(dataInputStream);
+
+        FileChannel partChannel = null;
+        Path partPath = null;
+        FileService.PartWriter partWriter = null;
+        try {
+            SessionFrame frame;
+            while ((frame = SessionFrame.readFrom(dataInputStream)) != null) {
+                switch (frame.type) {
+                    case Start:
+                        if (sessionStartInfoFile != null) {
+                            skipFrameContent(dataInputStream, frame);
+                            break;
+                        }
+                        Path startFilePath = Paths.get(downloadDirectory, "startInfoClient.txt");
+                        saveFrameContent(dataInputStream, frame, startFilePath);
+                        try {
+                            sessionStartInfoFile = checkStartInfo(new StartInfoFile(startFilePath), startFilePath);
+                            prepareFileService(sessionStartInfoFile);
+                            connectFeedback(sessionStartInfoFile);
+                            startRelay(sessionStartInfoFile);
+                        } finally {
+                            FilePartUtils.removeFile(startFilePath);
+                        }
+                        break;
+                    case Part:
+                        if (sessionStartInfoFile == null) {
+                            throw new IOException("Received file part before start info.");
+                        }
+                        if (receivedParts.get(frame.index)) {
+                            skipFrameContent(dataInputStream, frame);
+                            break;
+                        }
+                        if (isDirect) {
+                            if (partWriter == null) {
+                                partWriter = fileService.openPartWriter(directOffset);
+                            }
+                            partWriter.writeFrom(dataInputStream, frame.length);
+                            break;
+                        }
+                        if (isCarousel && relay == null) {
+                            // late joiner places parts by index, so parts received before the gap closes are not staged
+                            if (partWriter == null) {
+                                long partSizeInBytes = FilePartUtils.megabytesToBytes(sessionStartInfoFile.partSizeInMB);
+                                partWriter = fileService.openRangeWriter(frame.index * partSizeInBytes);
+                            }
+                            if (frame.offset != partWriter.getWrittenBytes()) {
+                                throw new IOException("Unexpected offset of file part: " + frame.index);
+                            }
+                            partWriter.writeFrom(dataInputStream, frame.length);
+                            break;
+                        }
+                        if (partChannel == null) {
+                            partPath = generateSessionPartPath(frame.index);
+                            partChannel = FileChannel.open(partPath, CREATE, WRITE, TRUNCATE_EXISTING);
+                        }
+                        transferFrame(inputChannel, partChannel, frame);
+                        break;
+                    case PartEnd:
+                        if (partWriter != null) {
+                            partWriter.close();
+                            if (isDirect) {
+                                directOffset += partWriter.getWrittenBytes();
+                            } else {
+                                long partSizeInBytes = FilePartUtils.megabytesToBytes(sessionStartInfoFile.partSizeInMB);
+                                fileService.addWrittenRangeToProcess(frame.index, frame.index * partSizeInBytes,
+                                        partWriter.getWrittenBytes(), partWriter.getChecksum());
+                                receivedParts.set(frame.index);
+                            }
+                            partWriter = null;
+                        }
+                        if (partChannel != null) {
+                            partChannel.close();
+                            partChannel = null;
+                            addPartToProcess(frame.index, partPath);
+                            receivedParts.set(frame.index);
+                        }
+                        break;
+                    case End:
+                        if (sessionEndInfoFile != null) {
+                            skipFrameContent(dataInputStream, frame);
+                            return;
+                        }
+                        Path endFilePath = Paths.get(downloadDirectory, "endInfoClient.txt");
+                        saveFrameContent(dataInputStream, frame, endFilePath);
+                        try {
+                            sessionEndInfoFile = new EndInfoFile(endFilePath);
+                        } finally {
+                            FilePartUtils.removeFile(endFilePath);
+                        }
+                        return;
+                }
+            }
+        } catch (DownloadException | InfoFileException e) {
+            throw new IOException(e);
+        } finally {
+            if (partChannel != null) {
+                partChannel.close();
+            }
+            if (partWriter != null) {
+                partWriter.close();
+            }
+        }
+    }
+
+    private Path generateSessionPartPath(int index) {
+        String partFileName = fileName + ".clientpart" + index;
+        if (isCarousel) {
+            // parts kept for relay may wait for a whole round of carousel, so they must not fill ramdisk
+            Path path = Paths.get(downloadDirectory, partFileName);
+            FilePartUtils.markToDeleteOnExit(path);
+            return path.toAbsolutePath();
+        }
+        return FilePartUtils.generateFilePartPath(downloadDirectory, partFileName, sessionStartInfoFile.partSizeInMB);
+    }
+
+    private void readRepairSession(InputStream inputStream) throws IOException {
+        DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(inputStream, 128 * 1024));
+        ReadableByteChannel inputChannel = Channels.newChannel(dataInputStream);
+
+        try (FileChannel fileChannel = FileChannel.open(finalFileTempPath, WRITE)) {
+            SessionFrame frame;
+            while ((frame = SessionFrame.readFrom(dataInputStream)) != null) {
+                if (frame.type == FrameTypeEnum.End) {
+                    readRepairEndInfo(dataInputStream, frame);
+                    return;
+                }
+                if (frame.type != FrameTypeEnum.Range) {
+                    throw new IOException("Unexpected frame in repair session: " + frame.type);
                 }
+                transferFrame(inputChannel, fileChannel, frame);
+            }
+        }
+    }
+
+    private void readRepairEndInfo(DataInputStream inputStream, SessionFrame frame) throws IOException {
+        if (sessionEndInfoFile != null) {
+            skipFrameContent(inputStream, frame);
+            return;
+        }
+
+        Path endFilePath = Paths.get(downloadDirectory, "endInfoClient.txt");
+        saveFrameContent(inputStream, frame, endFilePath);
+        try {
+            sessionEndInfoFile = new EndInfoFile(endFilePath);
+        } catch (DownloadException | InfoFileException e) {
+            throw new IOException(e);
+        } finally {
+            FilePartUtils.removeFile(endFilePath);
+        }
+    }
 
-                udpcastService.setDownloadSize(startInfoFile.summarySizeInMB);
+    private void transferFrame(ReadableByteChannel inputChannel, FileChannel fileChannel, SessionFrame frame) throws IOException {
+        long transferred = 0;
+        while (transferred < frame.length) {
+            long count = fileChannel.transferFrom(inputChannel, frame.offset + transferred, frame.length - transferred);
+            if (count <= 0) {
+                throw new EOFException("Unexpected end of session stream.");
             }
+            transferred += count;
+        }
+    }
+
+    private void readDirectPart(InputStream inputStream) throws IOException {
+        byte[] separatorBytes = EndInfoFile.separator.getBytes(StandardCharsets.UTF_8);
+        byte[] head = new byte[separatorBytes.length];
+        int headLength = 0;
+        int count;
+        while (headLength < head.length && (count = inputStream.read(head, headLength, head.length - headLength)) != -1) {
+            headLength += count;
+        }
 
+        if (headLength == head.length && Arrays.equals(head, separatorBytes)) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            content.write(head);
+            byte[] buffer = new byte[1024];
+            while (content.size() <= maxEndInfoSizeInBytes && (count = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, count);
+            }
+
+            if (content.size() <= maxEndInfoSizeInBytes && tryReadDirectEndInfo(content.toByteArray())) {
+                return;
+            }
+            // part data only starts like end info, so everything read so far belongs to the part
+            head = content.toByteArray();
+            headLength = head.length;
+        }
+
+        if (headLength == 0) {
+            return;
+        }
+        try (FileService.PartWriter partWriter = fileService.openPartWriter(directOffset)) {
+            partWriter.write(head, 0, headLength);
+            byte[] buffer = new byte[1024 * 64];
+            while ((count = inputStream.read(buffer)) != -1) {
+                partWriter.write(buffer, 0, count);
+            }
+            directOffset += partWriter.getWrittenBytes();
+        } catch (DownloadException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private boolean tryReadDirectEndInfo(byte[] content) throws IOException {
+        Path endFilePath = Paths.get(downloadDirectory, "endInfoClient.txt");
+        FilePartUtils.markToDeleteOnExit(endFilePath);
+        Files.write(endFilePath, content);
+        try {
+            sessionEndInfoFile = new EndInfoFile(endFilePath);
+            return true;
+        } catch (InfoFileException e) {
+            return false;
+        } catch (DownloadException e) {
+            throw new IOException(e);
+        } finally {
+            FilePartUtils.removeFile(endFilePath);
+        }
+    }
+
+    private void skipFrameContent(DataInputStream inputStream, SessionFrame frame) throws IOException {
+        int remaining = frame.length;
+        while (remaining > 0) {
+            int skipped = inputStream.skipBytes(remaining);
+            if (skipped <= 0) {
+                inputStream.readByte();
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private void saveFrameContent(DataInputStream inputStream, SessionFrame frame, Path filePath) throws IOException {
+        byte[] content = new byte[frame.length];
+        inputStream.readFully(content);
+
+        FilePartUtils.markToDeleteOnExit(filePath);
+        Files.write(filePath, content);
+    }
+
+    private void prepareFileService(StartInfoFile startInfoFile) throws DownloadException {
+        if (this.fileName == null) {
+            fileName = startInfoFile.fileName;
+        }
+        finalFileTempPath = Paths.get(this.downloadDirectory, fileName + ".client");
+
+        checksumAlgorithm = startInfoFile.checksumAlgorithm;
+        long expectedSizeInBytes = FilePartUtils.megabytesToBytes(startInfoFile.summarySizeInMB);
+        if (expectedSizeInBytes > 0) {
+            // end info holds checksum of every part and of every sub-block of its hash tree
+            long partsCount = expectedSizeInBytes / FilePartUtils.megabytesToBytes(startInfoFile.partSizeInMB) + 1;
+            long blocksCount = expectedSizeInBytes / BlockChecksum.defaultBlockSizeInBytes + partsCount;
+            maxEndInfoSizeInBytes = Math.max(minMaxEndInfoSizeInBytes, (partsCount + blocksCount) * maxEndInfoEntrySizeInBytes);
+        }
+        if (!isResume) {
+            FilePartUtils.markToDeleteOnExit(finalFileTempPath);
+            // carousel parts are written at their offsets as well, just not in order
+            boolean isWrittenInPlace = isDirect || (isCarousel && relayConfiguration == null);
+            fileService = new FileService(finalFileTempPath, isWrittenInPlace, expectedSizeInBytes, checksumThreads, checksumAlgorithm);
+            return;
+        }
+
+        List<FileService.ProcessedPart> resumedParts = openJournal(startInfoFile);
+        fileService = new FileService(finalFileTempPath, false, expectedSizeInBytes, checksumThreads, checksumAlgorithm, resumedParts);
+        fileService.setPartProcessedListener(part -> journal.addPart(part, finalFileTempPath));
+        resumedPartsCount = resumedParts.size();
+        receivedParts.set(0, resumedPartsCount);
+    }
+
+    private List<FileService.ProcessedPart> openJournal(StartInfoFile startInfoFile) throws DownloadException {
+        Path journalPath = PartJournal.getPath(downloadDirectory, fileName);
+        if (journal == null) {
+            journal = PartJournal.load(journalPath);
+        }
+        if (journal != null && journal.matches(startInfoFile) && getFileSize(finalFileTempPath) >= journal.getJournaledSize()) {
+            System.out.println("Resuming download. Already joined file parts count: " + journal.getParts().size());
+            return new ArrayList<>(journal.getParts());
+        }
+
+        journal = PartJournal.create(journalPath, startInfoFile);
+        return new ArrayList<>();
+    }
+
+    private long getFileSize(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private StartInfoFile processStartFile() throws DownloadException {
+        Path startFilePath = Paths.get(downloadDirectory, "startInfoClient.txt");
+        try (Span ignored = Tracer.getInstance().span("control", "processStartFile")) {
+            transport.processFile(startFilePath);
+            StartInfoFile startInfoFile = checkStartInfo(new StartInfoFile(startFilePath), startFilePath);
+            prepareFileService(startInfoFile);
+            connectFeedback(startInfoFile);
+            startRelay(startInfoFile);
             return startInfoFile;
         } finally {
             FilePartUtils.removeFile(startFilePath);
         }
     }
 
+    private StartInfoFile checkStartInfo(StartInfoFile startInfoFile, Path startFilePath) throws DownloadException {
+        System.out.println("Download started. Url: " + startInfoFile.url + ", file name: " + startInfoFile.fileName +
+                ", checksum: " + startInfoFile.checksumAlgorithm);
+        if (startInfoFile.summarySizeInMB < 1) {
+            System.out.println("Not known file size - program will try download it anyway.");
+        } else {
+            System.out.println("Expected file size (in MB): " + startInfoFile.summarySizeInMB);
+            int sizeInMBWithMargin = startInfoFile.summarySizeInMB + startInfoFile.partSizeInMB;
+            if (!FilePartUtils.checkFreeSpace(startFilePath, sizeInMBWithMargin)) {
+                throw new DownloadException("Not enough free space.");
+            }
+
+            transport.setDownloadSize(startInfoFile.summarySizeInMB);
+        }
+
+        return startInfoFile;
+    }
+
     private EndInfoFile tryProcessEndFile(Path filePart) throws DownloadException {
         try {
             EndInfoFile endInfoFile = new EndInfoFile(filePart);
@@ -100,17 +773,39 @@ public class ClientLogic extends CommonLogic {
         }
     }
 
-    private void compareChecksums(List<String> expectedChecksums, List<String> actualChecksums) throws DownloadException {
-        if (expectedChecksums.size() != actualChecksums.size()) {
+    private void compareChecksums(EndInfoFile endInfoFile, List<FileService.ProcessedPart> processedParts) throws DownloadException {
+        List<String> expectedChecksums = endInfoFile.getChecksums();
+        if (expectedChecksums.size() != processedParts.size()) {
             throw new DownloadException("Checksums count does not equals downloaded files count.");
         }
 
+        corruptedRanges.clear();
         for (int i = 0; i < expectedChecksums.size(); i++) {
-            String expected = expectedChecksums.get(i);
-            String actual = actualChecksums.get(i);
-            if (!expected.equals(actual)) {
-                throw new DownloadException("Checksum mismatch.");
+            FileService.ProcessedPart processedPart = processedParts.get(i);
+            if (expectedChecksums.get(i).equalsIgnoreCase(processedPart.checksum)) {
+                continue;
             }
+
+            System.err.println("Checksum mismatch (" + checksumAlgorithm + ") of file part: " + i);
+            if (endInfoFile.getHashTrees().isEmpty() || processedPart.hashTree == null) {
+                corruptedRanges.add(new long[]{processedPart.offset, processedPart.length});
+                continue;
+            }
+
+            PartHashTree expectedTree = endInfoFile.getHashTrees().get(i);
+            for (int block : expectedTree.findMismatchedBlocks(processedPart.hashTree)) {
+                long blockOffset = block * expectedTree.blockSizeInBytes;
+                long blockLength = expectedTree.blockSizeInBytes;
+                if (blockOffset < processedPart.length) {
+                    blockLength = Math.min(blockLength, processedPart.length - blockOffset);
+                }
+                corruptedRanges.add(new long[]{processedPart.offset + blockOffset, blockLength});
+                System.err.println("Corrupted sub-block " + block + " of file part " + i + " at byte: " + (processedPart.offset + blockOffset));
+            }
+        }
+
+        if (!corruptedRanges.isEmpty()) {
+            throw new DownloadException("Checksum mismatch. Corrupted ranges count: " + corruptedRanges.size());
         }
     }
 }
@@ -0,0 +1,401 @@
+package client;
+
+import common.exceptions.DownloadException;
+import common.models.UdpcastConfiguration;
+import common.services.MulticastTransport;
+import common.utils.FilePartUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.file.StandardOpenOption.*;
+
+public class ClientMulticastTransport extends MulticastTransport {
+    private static final long helloPeriodInNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long startTimeoutInNanos = TimeUnit.SECONDS.toNanos(1800);
+    private static final long receiveTimeoutInNanos = TimeUnit.SECONDS.toNanos(10);
+
+    private final long receiverId = ThreadLocalRandom.current().nextLong();
+    private final ByteBuffer packet = ByteBuffer.allocateDirect(maxPacketSize);
+    private final ByteBuffer header = ByteBuffer.allocateDirect(headerSize + packetsPerSlice / 8);
+    private final ByteBuffer[] slices = new ByteBuffer[windowSlices];
+    private final BitSet[] receivedPackets = new BitSet[windowSlices];
+    private final int[] sliceLengths = new int[windowSlices];
+    private final BlockingQueue<ByteBuffer> spareSlices = new LinkedBlockingQueue<>();
+    private DatagramChannel dataChannel;
+    private DatagramChannel controlChannel;
+    private Selector selector;
+    private int finishedSessionId = 0;
+    private SocketAddress finishedSessionServer;
+
+    public ClientMulticastTransport(UdpcastConfiguration configuration) throws DownloadException {
+        this(configuration, 0);
+    }
+
+    public ClientMulticastTransport(UdpcastConfiguration configuration, int stripe) throws DownloadException {
+        super(configuration, stripe);
+        for (int i = 0; i < windowSlices; i++) {
+            slices[i] = ByteBuffer.allocateDirect(payloadSize * packetsPerSlice);
+            receivedPackets[i] = new BitSet(packetsPerSlice);
+        }
+    }
+
+    @Override
+    public void processFile(Path filePath) throws DownloadException {
+        FilePartUtils.markToDeleteOnExit(filePath);
+
+        System.out.println("Multicast - receiving file part: " + filePath.toAbsolutePath());
+        try {
+            runSession(filePath, () -> {
+                try (FileChannel fileChannel = FileChannel.open(filePath, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                    receive(data -> {
+                        while (data.hasRemaining()) {
+                            fileChannel.write(data);
+                        }
+                        return data;
+                    });
+                }
+            });
+        } catch (DownloadException e) {
+            FilePartUtils.removeFile(filePath);
+            throw e;
+        }
+    }
+
+    @Override
+    public void processStream(Path filePath, StreamFeeder feeder) throws DownloadException {
+        throw new DownloadException("Client multicast transport cannot send streams.");
+    }
+
+    @Override
+    public void receiveStream(Path filePath, StreamConsumer consumer) throws DownloadException {
+        FilePartUtils.markToDeleteOnExit(filePath);
+
+        System.out.println("Multicast - receiving stream: " + filePath.toAbsolutePath());
+        SliceInputStream inputStream = new SliceInputStream(spareSlices);
+        AtomicReference<IOException> consumerError = new AtomicReference<>();
+        Thread consumerThread = new Thread(() -> {
+            try (InputStream ignored = inputStream) {
+                consumer.consume(inputStream);
+            } catch (IOException e) {
+                consumerError.set(e);
+            }
+        });
+        consumerThread.start();
+
+        try {
+            runSession(filePath, () -> {
+                receive(inputStream::put);
+                inputStream.finish();
+                waitForConsumer(consumerThread);
+                if (consumerError.get() != null) {
+                    throw consumerError.get();
+                }
+            });
+        } catch (DownloadException e) {
+            inputStream.fail(new IOException("Multicast stream failed."));
+            throw e;
+        }
+    }
+
+    private void waitForConsumer(Thread consumerThread) throws IOException {
+        try {
+            consumerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for stream consumer.");
+        }
+    }
+
+    private void openChannels() throws IOException {
+        if (dataChannel != null && dataChannel.isOpen() && controlChannel.isOpen() && selector.isOpen()) {
+            return;
+        }
+
+        dataChannel = openChannel();
+        dataChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        dataChannel.setOption(StandardSocketOptions.SO_RCVBUF, 8 * 1024 * 1024);
+        dataChannel.bind(new InetSocketAddress(group.getPort()));
+        dataChannel.join(group.getAddress(), networkInterface);
+        dataChannel.configureBlocking(false);
+
+        controlChannel = openChannel();
+        controlChannel.bind(new InetSocketAddress(0));
+        controlChannel.configureBlocking(false);
+
+        selector = openSelector();
+        dataChannel.register(selector, SelectionKey.OP_READ);
+        controlChannel.register(selector, SelectionKey.OP_READ);
+    }
+
+    private void receive(SliceSink sink) throws IOException {
+        openChannels();
+
+        int sessionId = 0;
+        SocketAddress server = null;
+        boolean isWelcomed = false;
+        int currentSlice = 0;
+        long startTime = System.nanoTime();
+        long lastPacketTime = 0;
+        long nextHelloTime = 0;
+        for (int i = 0; i < windowSlices; i++) {
+            receivedPackets[i].clear();
+            sliceLengths[i] = -1;
+        }
+
+        while (true) {
+            checkStopped();
+            long now = System.nanoTime();
+            if (!isWelcomed && now - startTime > startTimeoutInNanos) {
+                throw new IOException("Timeout: no sender found.");
+            }
+            if (isWelcomed && now - lastPacketTime > receiveTimeoutInNanos) {
+                throw new IOException("Timeout: sender stopped sending data.");
+            }
+            if (server != null && !isWelcomed && now >= nextHelloTime) {
+                sendControl(server, helloType, sessionId, 0, 0, null);
+                nextHelloTime = now + helloPeriodInNanos;
+            }
+
+            selector.select(10);
+            selector.selectedKeys().clear();
+
+            while (controlChannel.receive(clearPacket()) != null) {
+                packet.flip();
+                if (isValid(packet) && getType(packet) == welcomeType && getSessionId(packet) == sessionId
+                        && getReceiverId(packet) == receiverId && !isWelcomed) {
+                    isWelcomed = true;
+                    lastPacketTime = System.nanoTime();
+                }
+            }
+
+            SocketAddress source;
+            while ((source = dataChannel.receive(clearPacket())) != null) {
+                packet.flip();
+                if (!isValid(packet)) {
+                    continue;
+                }
+
+                byte type = getType(packet);
+                int packetSessionId = getSessionId(packet);
+                if (type == abortType) {
+                    throw new IOException("Sender aborted transfer.");
+                }
+                if (packetSessionId == finishedSessionId) {
+                    if (type == finishType) {
+                        sendControl(finishedSessionServer, finishAckType, finishedSessionId, 0, 0, null);
+                    }
+                    continue;
+                }
+
+                if (!isWelcomed) {
+                    if (type == announceType && packetSessionId != sessionId
+                            && getIndex(packet) == packetsPerSlice && getValue(packet) == payloadSize) {
+                        sessionId = packetSessionId;
+                        server = new InetSocketAddress(((InetSocketAddress) source).getAddress(), controlPort);
+                        nextHelloTime = 0;
+                    } else if (packetSessionId == sessionId && type != announceType) {
+                        sessionId = 0;
+                        server = null;
+                    }
+                    continue;
+                }
+                if (packetSessionId != sessionId) {
+                    continue;
+                }
+
+                lastPacketTime = System.nanoTime();
+                int packetSlice = getSlice(packet);
+                switch (type) {
+                    case dataType:
+                        int index = getIndex(packet);
+                        if (isInWindow(packetSlice, currentSlice) && index < packetsPerSlice
+                                && !receivedPackets[packetSlice % windowSlices].get(index)) {
+                            int slot = packetSlice % windowSlices;
+                            packet.position(headerSize);
+                            slices[slot].limit(slices[slot].capacity()).position(index * payloadSize);
+                            slices[slot].put(packet);
+                            receivedPackets[slot].set(index);
+                            currentSlice = deliverSlices(currentSlice, sink);
+                        }
+                        break;
+                    case requestAckType:
+                        if (packetSlice < currentSlice) {
+                            sendControl(server, statusType, sessionId, packetSlice, getIndex(packet), new BitSet());
+                        } else if (isInWindow(packetSlice, currentSlice)) {
+                            int slot = packetSlice % windowSlices;
+                            sliceLengths[slot] = getValue(packet);
+                            BitSet missingPackets = new BitSet(packetsPerSlice);
+                            missingPackets.set(0, getPacketsCount(sliceLengths[slot], payloadSize));
+                            missingPackets.andNot(receivedPackets[slot]);
+                            currentSlice = deliverSlices(currentSlice, sink);
+                            sendControl(server, statusType, sessionId, packetSlice, getIndex(packet), missingPackets);
+                        }
+                        break;
+                    case finishType:
+                        if (packetSlice != currentSlice) {
+                            throw new IOException("Sender finished transfer, but not all data was received.");
+                        }
+                        finishedSessionId = sessionId;
+                        finishedSessionServer = server;
+                        sendControl(server, finishAckType, sessionId, packetSlice, 0, null);
+                        return;
+                    default:
+                }
+            }
+        }
+    }
+
+    private static boolean isInWindow(int slice, int currentSlice) {
+        return slice >= currentSlice && slice - currentSlice < windowSlices;
+    }
+
+    private int deliverSlices(int currentSlice, SliceSink sink) throws IOException {
+        while (true) {
+            int slot = currentSlice % windowSlices;
+            int length = sliceLengths[slot];
+            if (length < 0 || receivedPackets[slot].nextClearBit(0) < getPacketsCount(length, payloadSize)) {
+                return currentSlice;
+            }
+
+            slices[slot].position(0).limit(length);
+            slices[slot] = sink.write(slices[slot]);
+            addTransferredBytes(length);
+            receivedPackets[slot].clear();
+            sliceLengths[slot] = -1;
+            currentSlice++;
+        }
+    }
+
+    private ByteBuffer clearPacket() {
+        packet.clear();
+        return packet;
+    }
+
+    private void sendControl(SocketAddress server, byte type, int sessionId, int slice, int round, BitSet missingPackets) throws IOException {
+        putHeader(header, type, sessionId, slice, round, 0, receiverId);
+        if (missingPackets != null) {
+            header.put(missingPackets.toByteArray());
+        }
+        header.flip();
+        controlChannel.send(header, server);
+    }
+
+    private interface SliceSink {
+        // returns buffer for receiving next slices, the given one when data was already consumed
+        ByteBuffer write(ByteBuffer data) throws IOException;
+    }
+
+    private static class SliceInputStream extends InputStream {
+        private static final ByteBuffer end = ByteBuffer.allocate(0);
+
+        private final BlockingQueue<ByteBuffer> slices = new ArrayBlockingQueue<>(8);
+        private final BlockingQueue<ByteBuffer> spareSlices;
+        private ByteBuffer current;
+        private volatile boolean isClosed = false;
+        private volatile IOException failure;
+
+        private SliceInputStream(BlockingQueue<ByteBuffer> spareSlices) {
+            this.spareSlices = spareSlices;
+        }
+
+        private ByteBuffer put(ByteBuffer data) throws IOException {
+            // received slice is passed to consumer as it is and comes back to spare slices once it was read
+            offer(data);
+            ByteBuffer spare = spareSlices.poll();
+            return spare != null ? spare : ByteBuffer.allocateDirect(data.capacity());
+        }
+
+        private void finish() throws IOException {
+            offer(end);
+        }
+
+        private void fail(IOException e) {
+            failure = e;
+            recycleQueued();
+            slices.offer(end);
+        }
+
+        private void offer(ByteBuffer data) throws IOException {
+            try {
+                while (!isClosed && !slices.offer(data, 100, TimeUnit.MILLISECONDS)) {
+                    Thread.yield();
+                }
+                if (isClosed) {
+                    recycle(data);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while passing received data.");
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] singleByte = new byte[1];
+            int length = read(singleByte, 0, 1);
+            return length == -1 ? -1 : singleByte[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (current == null || !current.hasRemaining()) {
+                if (current == end) {
+                    return -1;
+                }
+                recycle(current);
+                try {
+                    current = slices.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for received data.");
+                }
+                if (current == end && failure != null) {
+                    throw failure;
+                }
+            }
+
+            int chunk = Math.min(length, current.remaining());
+            current.get(bytes, offset, chunk);
+            return chunk;
+        }
+
+        @Override
+        public void close() {
+            isClosed = true;
+            recycleQueued();
+        }
+
+        private void recycleQueued() {
+            ByteBuffer slice;
+            while ((slice = slices.poll()) != null) {
+                recycle(slice);
+            }
+        }
+
+        private void recycle(ByteBuffer slice) {
+            if (slice != null && slice != end) {
+                spareSlices.offer(slice);
+            }
+        }
+    }
+}
@@ -9,7 +9,11 @@ import java.util.Arrays;
 
 public class ClientUdpcastService extends UdpcastService {
     public ClientUdpcastService(UdpcastConfiguration configuration) throws DownloadException {
-        super("udp-receiver", configuration,
+        this(configuration, 0);
+    }
+
+    public ClientUdpcastService(UdpcastConfiguration configuration, int stripe) throws DownloadException {
+        super("udp-receiver", configuration, stripe,
                 new ArrayList<>(Arrays.asList(
                         "--receive-timeout", "10",
                         "--start-timeout", "1800"
@@ -0,0 +1,110 @@
+package client;
+
+import common.models.FeedbackCommandEnum;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class FeedbackClient implements Closeable {
+    private static final int connectTimeoutInMillis = 1000;
+
+    private final Socket socket;
+    private boolean isServerClosed = false;
+    private boolean isRepairAnnounced = false;
+    private Runnable serverClosedListener;
+
+    private FeedbackClient(Socket socket) {
+        this.socket = socket;
+
+        Thread watchThread = new Thread(this::watchServer, "feedback-client");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    static FeedbackClient connect(List<String> addresses) {
+        for (String address : addresses) {
+            int portStart = address.lastIndexOf(':');
+            if (portStart < 0) {
+                continue;
+            }
+
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(address.substring(0, portStart), Integer.parseInt(address.substring(portStart + 1))),
+                        connectTimeoutInMillis);
+                socket.setTcpNoDelay(true);
+                return new FeedbackClient(socket);
+            } catch (IOException | IllegalArgumentException e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        System.err.println("Could not connect to server feedback port. Addresses: " + addresses);
+        return null;
+    }
+
+    synchronized void send(FeedbackCommandEnum command, String argument) throws IOException {
+        String line = argument.isEmpty() ? command.name() : command.name() + " " + argument;
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write((line + "\n").getBytes(StandardCharsets.US_ASCII));
+        outputStream.flush();
+    }
+
+    synchronized boolean waitForRepair() throws InterruptedException {
+        while (!isRepairAnnounced && !isServerClosed) {
+            wait();
+        }
+        boolean result = isRepairAnnounced;
+        isRepairAnnounced = false;
+        return result;
+    }
+
+    synchronized void setServerClosedListener(Runnable listener) {
+        serverClosedListener = listener;
+        if (isServerClosed && listener != null) {
+            listener.run();
+        }
+    }
+
+    @Override
+    public void close() {
+        setServerClosedListener(null);
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void watchServer() {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals(FeedbackCommandEnum.Repair.name())) {
+                    synchronized (this) {
+                        isRepairAnnounced = true;
+                        notifyAll();
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+        }
+
+        synchronized (this) {
+            isServerClosed = true;
+            notifyAll();
+            if (serverClosedListener != null) {
+                serverClosedListener.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package client;
+
+import common.exceptions.DownloadException;
+import common.infos.StartInfoFile;
+import common.models.ChecksumAlgorithmEnum;
+import common.services.FileService;
+import common.utils.FilePartUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static java.nio.file.StandardOpenOption.*;
+
+class PartJournal {
+    private static final String extension = ".client.journal";
+    private static final String separator = "\t";
+
+    private final Path journalPath;
+    private final String url;
+    private final String fileName;
+    private final int summarySizeInMB;
+    private final int partSizeInMB;
+    private final ChecksumAlgorithmEnum checksumAlgorithm;
+    private final List<String> feedbackAddresses;
+    private final String clientId;
+    private final List<FileService.ProcessedPart> parts = new ArrayList<>();
+
+    private PartJournal(Path journalPath, Map<String, String> header) {
+        this.journalPath = journalPath;
+        this.url = header.get("url");
+        this.fileName = header.get("file");
+        this.summarySizeInMB = Integer.parseInt(header.get("size"));
+        this.partSizeInMB = Integer.parseInt(header.get("partsize"));
+        this.checksumAlgorithm = ChecksumAlgorithmEnum.valueOf(header.get("checksum"));
+        String addresses = header.getOrDefault("feedback", "");
+        this.feedbackAddresses = addresses.isEmpty() ? Collections.emptyList() : Arrays.asList(addresses.split(","));
+        this.clientId = Objects.requireNonNull(header.get("id"));
+    }
+
+    static Path getPath(String directory, String fileName) {
+        return Paths.get(directory, fileName + extension);
+    }
+
+    static String getFileName(Path journalPath) {
+        String name = String.valueOf(journalPath.getFileName());
+        return name.substring(0, name.length() - extension.length());
+    }
+
+    static Path find(String directory) {
+        Path foundPath = null;
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(Paths.get(directory), "*" + extension)) {
+            for (Path path : paths) {
+                if (foundPath != null) {
+                    System.err.println("More than one journal found, file name has to be given to resume download.");
+                    return null;
+                }
+                foundPath = path;
+            }
+        } catch (IOException ignored) {
+        }
+        return foundPath;
+    }
+
+    static PartJournal load(Path journalPath) {
+        if (!Files.exists(journalPath)) {
+            return null;
+        }
+
+        try {
+            String content = new String(Files.readAllBytes(journalPath), StandardCharsets.UTF_8);
+            List<String> lines = new ArrayList<>(Arrays.asList(content.split("\n")));
+            if (!content.endsWith("\n") && !lines.isEmpty()) {
+                // last line was not completely written before crash
+                lines.remove(lines.size() - 1);
+            }
+
+            Map<String, String> header = new HashMap<>();
+            List<String[]> partLines = new ArrayList<>();
+            for (String line : lines) {
+                String[] values = line.split(separator);
+                if (values[0].equals("part")) {
+                    partLines.add(values);
+                } else if (values.length == 2) {
+                    header.put(values[0], values[1]);
+                }
+            }
+
+            PartJournal journal = new PartJournal(journalPath, header);
+            long nextOffset = 0;
+            for (String[] values : partLines) {
+                if (values.length != 4) {
+                    throw new IllegalArgumentException("Wrong part entry.");
+                }
+                long offset = Long.parseLong(values[1]);
+                long length = Long.parseLong(values[2]);
+                if (offset != nextOffset || length < 1) {
+                    throw new IllegalArgumentException("Wrong part entry.");
+                }
+                journal.parts.add(new FileService.ProcessedPart(offset, length, values[3]));
+                nextOffset += length;
+            }
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not read journal, download will start from beginning. Journal: " + journalPath);
+            return null;
+        }
+    }
+
+    static PartJournal create(Path journalPath, StartInfoFile startInfoFile) throws DownloadException {
+        Map<String, String> header = new LinkedHashMap<>();
+        header.put("url", startInfoFile.url);
+        header.put("file", startInfoFile.fileName);
+        header.put("size", String.valueOf(startInfoFile.summarySizeInMB));
+        header.put("partsize", String.valueOf(startInfoFile.partSizeInMB));
+        header.put("checksum", startInfoFile.checksumAlgorithm.name());
+        header.put("feedback", String.join(",", startInfoFile.feedbackAddresses));
+        header.put("id", UUID.randomUUID().toString());
+
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : header.entrySet()) {
+            content.append(entry.getKey()).append(separator).append(entry.getValue()).append("\n");
+        }
+
+        FilePartUtils.removeFile(journalPath);
+        try (FileChannel channel = FileChannel.open(journalPath, CREATE_NEW, WRITE)) {
+            channel.write(ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        } catch (IOException e) {
+            throw new DownloadException(e, "Could not create journal: " + journalPath);
+        }
+        return new PartJournal(journalPath, header);
+    }
+
+    boolean matches(StartInfoFile startInfoFile) {
+        return url.equals(startInfoFile.url) && fileName.equals(startInfoFile.fileName) &&
+                summarySizeInMB == startInfoFile.summarySizeInMB && partSizeInMB == startInfoFile.partSizeInMB &&
+                checksumAlgorithm == startInfoFile.checksumAlgorithm;
+    }
+
+    StartInfoFile toStartInfoFile(String directory) throws DownloadException {
+        StartInfoFile startInfoFile = new StartInfoFile(directory, url, fileName, summarySizeInMB, partSizeInMB,
+                checksumAlgorithm, feedbackAddresses);
+        FilePartUtils.removeFile(startInfoFile.filePath);
+        return startInfoFile;
+    }
+
+    List<String> getFeedbackAddresses() {
+        return feedbackAddresses;
+    }
+
+    String getClientId() {
+        return clientId;
+    }
+
+    List<FileService.ProcessedPart> getParts() {
+        return parts;
+    }
+
+    long getJournaledSize() {
+        if (parts.isEmpty()) {
+            return 0;
+        }
+        FileService.ProcessedPart lastPart = parts.get(parts.size() - 1);
+        return lastPart.offset + lastPart.length;
+    }
+
+    synchronized void addPart(FileService.ProcessedPart part, Path finalFilePath) throws DownloadException {
+        String line = "part" + separator + part.offset + separator + part.length + separator + part.checksum + "\n";
+        try {
+            // part has to be on disk before journal says so
+            try (FileChannel channel = FileChannel.open(finalFilePath, WRITE)) {
+                channel.force(false);
+            }
+            try (FileChannel channel = FileChannel.open(journalPath, WRITE, APPEND)) {
+                channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new DownloadException(e, "Could not write journal: " + journalPath);
+        }
+        parts.add(part);
+    }
+
+    void delete() {
+        FilePartUtils.removeFile(journalPath);
+    }
+}
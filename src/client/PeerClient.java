@@ -0,0 +1,155 @@
+package client;
+
+import common.exceptions.DownloadException;
+import common.services.MulticastTransport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+
+class PeerClient {
+    private static final long discoveryTimeInMillis = 2000;
+    private static final long queryPeriodInMillis = 500;
+    private static final int connectTimeoutInMillis = 1000;
+    private static final long chunkSizeInBytes = 16 * 1024 * 1024;
+    private static final int maxPeers = 8;
+
+    private final String networkInterfaceName;
+    private final int discoveryPort;
+    private final String fileId;
+
+    PeerClient(String networkInterfaceName, int discoveryPort, String fileId) {
+        this.networkInterfaceName = networkInterfaceName;
+        this.discoveryPort = discoveryPort;
+        this.fileId = fileId;
+    }
+
+    List<InetSocketAddress> discoverPeers() throws DownloadException {
+        Set<InetSocketAddress> peers = new LinkedHashSet<>();
+        try (DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET)) {
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, MulticastTransport.findNetworkInterface(networkInterfaceName));
+            channel.bind(new InetSocketAddress(0));
+            channel.configureBlocking(false);
+
+            SocketAddress group = new InetSocketAddress(InetAddress.getByName(MulticastTransport.groupAddress), discoveryPort);
+            ByteBuffer query = ByteBuffer.wrap((PeerServer.queryPrefix + fileId).getBytes(StandardCharsets.US_ASCII));
+            ByteBuffer packet = ByteBuffer.allocate(1024);
+            long startTime = System.nanoTime();
+            long nextQueryTime = startTime;
+            while (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) < discoveryTimeInMillis && peers.size() < maxPeers) {
+                if (System.nanoTime() >= nextQueryTime) {
+                    query.rewind();
+                    channel.send(query, group);
+                    nextQueryTime += TimeUnit.MILLISECONDS.toNanos(queryPeriodInMillis);
+                }
+
+                packet.clear();
+                SocketAddress source = channel.receive(packet);
+                if (source == null) {
+                    Thread.sleep(10);
+                    continue;
+                }
+                packet.flip();
+                String[] reply = StandardCharsets.US_ASCII.decode(packet).toString().split(" ");
+                if (reply.length == 3 && (reply[0] + " ").equals(PeerServer.replyPrefix) && reply[1].equals(fileId)) {
+                    peers.add(new InetSocketAddress(((InetSocketAddress) source).getAddress(), Integer.parseInt(reply[2])));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new DownloadException(e, "Could not discover peers.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownloadException(e, "Interrupted while discovering peers.");
+        }
+
+        return new ArrayList<>(peers);
+    }
+
+    long fetchRanges(List<InetSocketAddress> peers, List<long[]> ranges, Path filePath) throws DownloadException {
+        Queue<long[]> chunks = new ConcurrentLinkedQueue<>();
+        for (long[] range : ranges) {
+            for (long offset = range[0]; offset < range[0] + range[1]; offset += chunkSizeInBytes) {
+                chunks.add(new long[]{offset, Math.min(chunkSizeInBytes, range[0] + range[1] - offset)});
+            }
+        }
+
+        AtomicLong fetchedBytes = new AtomicLong(0);
+        ExecutorService executorService = Executors.newFixedThreadPool(peers.size());
+        try {
+            List<InetSocketAddress> activePeers = new ArrayList<>(peers);
+            // chunks given back by failed peers can be left after others finished, so remaining peers fetch them again
+            while (!chunks.isEmpty() && !activePeers.isEmpty()) {
+                List<Future<Boolean>> futures = new ArrayList<>();
+                for (InetSocketAddress peer : activePeers) {
+                    futures.add(executorService.submit(() -> fetchChunks(peer, chunks, filePath, fetchedBytes)));
+                }
+                List<InetSocketAddress> workingPeers = new ArrayList<>();
+                for (int i = 0; i < futures.size(); i++) {
+                    if (futures.get(i).get()) {
+                        workingPeers.add(activePeers.get(i));
+                    }
+                }
+                activePeers = workingPeers;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownloadException(e, "Interrupted while fetching ranges from peers.");
+        } catch (ExecutionException e) {
+            throw new DownloadException(e, "Could not fetch ranges from peers.");
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        if (!chunks.isEmpty()) {
+            throw new DownloadException("Could not fetch all ranges from peers. Remaining chunks count: " + chunks.size());
+        }
+        return fetchedBytes.get();
+    }
+
+    private boolean fetchChunks(InetSocketAddress peer, Queue<long[]> chunks, Path filePath, AtomicLong fetchedBytes) {
+        long[] chunk = null;
+        try (SocketChannel socketChannel = SocketChannel.open();
+             FileChannel fileChannel = FileChannel.open(filePath, WRITE)) {
+            socketChannel.socket().connect(peer, connectTimeoutInMillis);
+            socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            while ((chunk = chunks.poll()) != null) {
+                ByteBuffer request = ByteBuffer.wrap((chunk[0] + " " + chunk[1] + "\n").getBytes(StandardCharsets.US_ASCII));
+                while (request.hasRemaining()) {
+                    socketChannel.write(request);
+                }
+
+                long position = 0;
+                while (position < chunk[1]) {
+                    long count = fileChannel.transferFrom(socketChannel, chunk[0] + position, chunk[1] - position);
+                    if (count <= 0) {
+                        throw new EOFException("Peer closed connection.");
+                    }
+                    position += count;
+                }
+                fetchedBytes.addAndGet(chunk[1]);
+            }
+            return true;
+        } catch (IOException e) {
+            if (chunk != null) {
+                chunks.add(chunk);
+            }
+            System.err.println("Could not fetch ranges from peer: " + peer);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package client;
+
+import common.exceptions.DownloadException;
+import common.services.MulticastTransport;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+class PeerServer implements Closeable {
+    static final String queryPrefix = "PGD-PEER-QUERY ";
+    static final String replyPrefix = "PGD-PEER ";
+
+    private final Path filePath;
+    private final String fileId;
+    private final ServerSocketChannel serverChannel;
+    private final DatagramChannel discoveryChannel;
+
+    PeerServer(String networkInterfaceName, int discoveryPort, Path filePath, String fileId) throws DownloadException {
+        this.filePath = filePath;
+        this.fileId = fileId;
+        NetworkInterface networkInterface = MulticastTransport.findNetworkInterface(networkInterfaceName);
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(0));
+
+            discoveryChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+            discoveryChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            discoveryChannel.bind(new InetSocketAddress(discoveryPort));
+            discoveryChannel.join(InetAddress.getByName(MulticastTransport.groupAddress), networkInterface);
+        } catch (IOException e) {
+            close();
+            throw new DownloadException(e, "Could not open peer ports.");
+        }
+
+        startDaemon(this::answerQueries, "peer-discovery");
+        startDaemon(this::acceptConnections, "peer-server");
+    }
+
+    static String getFileId(List<String> checksums) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(String.join(",", checksums).getBytes(StandardCharsets.US_ASCII));
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                builder.append(String.format("%02x", digest[i]));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            if (discoveryChannel != null) {
+                discoveryChannel.close();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void answerQueries() {
+        ByteBuffer packet = ByteBuffer.allocate(1024);
+        while (discoveryChannel.isOpen()) {
+            try {
+                packet.clear();
+                SocketAddress source = discoveryChannel.receive(packet);
+                packet.flip();
+                String query = StandardCharsets.US_ASCII.decode(packet).toString();
+                if (!query.equals(queryPrefix + fileId)) {
+                    continue;
+                }
+
+                int port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+                String reply = replyPrefix + fileId + " " + port;
+                discoveryChannel.send(ByteBuffer.wrap(reply.getBytes(StandardCharsets.US_ASCII)), source);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void acceptConnections() {
+        while (serverChannel.isOpen()) {
+            try {
+                SocketChannel socketChannel = serverChannel.accept();
+                startDaemon(() -> serveRanges(socketChannel), "peer-" + socketChannel.getRemoteAddress());
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void serveRanges(SocketChannel socketChannel) {
+        try (SocketChannel ignored = socketChannel;
+             FileChannel fileChannel = FileChannel.open(filePath, READ);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(socketChannel), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] range = line.split(" ");
+                long offset = Long.parseLong(range[0]);
+                long length = Long.parseLong(range[1]);
+                if (offset < 0 || length < 1 || offset + length > fileChannel.size()) {
+                    return;
+                }
+
+                long position = 0;
+                while (position < length) {
+                    long count = fileChannel.transferTo(offset + position, length - position, socketChannel);
+                    if (count <= 0) {
+                        return;
+                    }
+                    position += count;
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+        }
+    }
+
+    private static void startDaemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
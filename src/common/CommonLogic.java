@@ -3,7 +3,8 @@ package common;
 import common.exceptions.DownloadException;
 import common.models.StatusEnum;
 import common.services.FileService;
-import common.services.UdpcastService;
+import common.services.TransferProgress;
+import common.services.Transport;
 import common.utils.FilePartUtils;
 import common.utils.VariousUtils;
 
@@ -11,15 +12,24 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 public abstract class CommonLogic {
-    protected final UdpcastService udpcastService;
+    protected final Transport transport;
+    protected final List<? extends Transport> stripes;
     protected final String downloadDirectory;
 
     protected FileService fileService;
 
-    protected CommonLogic(UdpcastService udpcastService, String downloadDirectory) throws DownloadException {
-        this.udpcastService = udpcastService;
+    protected CommonLogic(List<? extends Transport> stripes, String downloadDirectory) throws DownloadException {
+        this.transport = stripes.get(0);
+        this.stripes = stripes;
+        if (stripes.size() > 1) {
+            TransferProgress progress = new TransferProgress();
+            for (Transport stripe : stripes) {
+                stripe.setProgress(progress);
+            }
+        }
         if (downloadDirectory == null) {
             this.downloadDirectory = "";
         } else {
@@ -41,7 +51,9 @@ public abstract class CommonLogic {
     protected void cleanup() {
         VariousUtils.suppressStdErr();
 
-        udpcastService.stopUdpcast();
+        for (Transport stripe : stripes) {
+            stripe.stop();
+        }
 
         if (fileService != null) {
             fileService.shutdownNow();
@@ -0,0 +1,111 @@
+package common.checksums;
+
+import common.models.ChecksumAlgorithmEnum;
+import common.utils.ChecksumUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BlockChecksum implements PartChecksum {
+    public static final long defaultBlockSizeInBytes = 4 * 1024 * 1024;
+
+    private final ChecksumAlgorithmEnum algorithm;
+    private final long blockSizeInBytes;
+    private final PartChecksum wholeChecksum;
+    private final List<PartChecksum> blocks = new ArrayList<>();
+    private long lastBlockLength = 0;
+
+    public BlockChecksum(ChecksumAlgorithmEnum algorithm, long blockSizeInBytes) {
+        this.algorithm = algorithm;
+        this.blockSizeInBytes = blockSizeInBytes;
+        // digests cannot be combined, so the part digest is calculated besides block digests and hashes every byte twice
+        this.wholeChecksum = ChecksumUtils.isCombinable(algorithm) ? null : ChecksumUtils.createChecksum(algorithm);
+    }
+
+    public long getBlockSizeInBytes() {
+        return blockSizeInBytes;
+    }
+
+    public List<String> getBlockValues() {
+        List<String> values = new ArrayList<>();
+        for (PartChecksum block : blocks) {
+            values.add(block.getValue());
+        }
+        return values;
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        if (wholeChecksum != null) {
+            wholeChecksum.update(bytes, offset, length);
+        }
+        while (length > 0) {
+            PartChecksum block = getCurrentBlock();
+            int count = (int) Math.min(length, blockSizeInBytes - lastBlockLength);
+            block.update(bytes, offset, count);
+            lastBlockLength += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        if (wholeChecksum != null) {
+            wholeChecksum.update(buffer.duplicate());
+        }
+        while (buffer.hasRemaining()) {
+            PartChecksum block = getCurrentBlock();
+            int count = (int) Math.min(buffer.remaining(), blockSizeInBytes - lastBlockLength);
+            ByteBuffer slice = buffer.duplicate();
+            slice.limit(slice.position() + count);
+            block.update(slice);
+            buffer.position(buffer.position() + count);
+            lastBlockLength += count;
+        }
+    }
+
+    @Override
+    public String getValue() {
+        if (wholeChecksum != null) {
+            return wholeChecksum.getValue();
+        }
+
+        PartChecksum checksum = ChecksumUtils.createChecksum(algorithm);
+        for (int i = 0; i < blocks.size(); i++) {
+            long length = i == blocks.size() - 1 ? lastBlockLength : blockSizeInBytes;
+            checksum.append(blocks.get(i), length);
+        }
+        return checksum.getValue();
+    }
+
+    @Override
+    public void append(PartChecksum next, long nextLength) {
+        if (!(next instanceof BlockChecksum)) {
+            PartChecksum.super.append(next, nextLength);
+            return;
+        }
+        append((BlockChecksum) next);
+    }
+
+    public void append(BlockChecksum next) {
+        if (wholeChecksum != null) {
+            throw new UnsupportedOperationException("Checksum cannot be combined.");
+        }
+        if (!blocks.isEmpty() && lastBlockLength != blockSizeInBytes) {
+            throw new IllegalStateException("Checksum ranges are not aligned to blocks.");
+        }
+
+        blocks.addAll(next.blocks);
+        lastBlockLength = next.lastBlockLength;
+    }
+
+    private PartChecksum getCurrentBlock() {
+        if (blocks.isEmpty() || lastBlockLength == blockSizeInBytes) {
+            blocks.add(ChecksumUtils.createChecksum(algorithm));
+            lastBlockLength = 0;
+        }
+        return blocks.get(blocks.size() - 1);
+    }
+}
@@ -0,0 +1,83 @@
+package common.checksums;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+public class Crc32c implements Checksum {
+    static final int polynomial = 0x82F63B78;
+    private static final int[][] tables = createTables();
+
+    private int crc = 0xFFFFFFFF;
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ tables[0][(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        int value = crc;
+        int end = offset + length;
+        while (end - offset >= 8) {
+            value ^= (bytes[offset] & 0xFF)
+                    | (bytes[offset + 1] & 0xFF) << 8
+                    | (bytes[offset + 2] & 0xFF) << 16
+                    | (bytes[offset + 3] & 0xFF) << 24;
+            value = tables[7][value & 0xFF]
+                    ^ tables[6][(value >>> 8) & 0xFF]
+                    ^ tables[5][(value >>> 16) & 0xFF]
+                    ^ tables[4][value >>> 24]
+                    ^ tables[3][bytes[offset + 4] & 0xFF]
+                    ^ tables[2][bytes[offset + 5] & 0xFF]
+                    ^ tables[1][bytes[offset + 6] & 0xFF]
+                    ^ tables[0][bytes[offset + 7] & 0xFF];
+            offset += 8;
+        }
+        while (offset < end) {
+            value = (value >>> 8) ^ tables[0][(value ^ bytes[offset++]) & 0xFF];
+        }
+        crc = value;
+    }
+
+    public void update(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+
+        byte[] bytes = new byte[Math.min(buffer.remaining(), 1024 * 64)];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(buffer.remaining(), bytes.length);
+            buffer.get(bytes, 0, length);
+            update(bytes, 0, length);
+        }
+    }
+
+    @Override
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+
+    private static int[][] createTables() {
+        int[][] tables = new int[8][256];
+        for (int i = 0; i < 256; i++) {
+            int value = i;
+            for (int bit = 0; bit < 8; bit++) {
+                value = (value & 1) != 0 ? (value >>> 1) ^ polynomial : value >>> 1;
+            }
+            tables[0][i] = value;
+        }
+        for (int i = 0; i < 256; i++) {
+            for (int table = 1; table < 8; table++) {
+                tables[table][i] = (tables[table - 1][i] >>> 8) ^ tables[0][tables[table - 1][i] & 0xFF];
+            }
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,15 @@
+package common.checksums;
+
+import java.nio.ByteBuffer;
+
+public interface PartChecksum {
+    void update(byte[] bytes, int offset, int length);
+
+    void update(ByteBuffer buffer);
+
+    String getValue();
+
+    default void append(PartChecksum next, long nextLength) {
+        throw new UnsupportedOperationException("Checksum cannot be combined.");
+    }
+}
@@ -0,0 +1,96 @@
+package common.checksums;
+
+import common.exceptions.InfoFileException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class PartHashTree {
+    private static final String fieldSeparator = "|";
+    private static final String leafSeparator = ",";
+
+    public final long blockSizeInBytes;
+    public final List<String> leaves;
+    public final String root;
+
+    public PartHashTree(long blockSizeInBytes, List<String> leaves) {
+        this.blockSizeInBytes = blockSizeInBytes;
+        this.leaves = leaves;
+        this.root = calcRoot(leaves);
+    }
+
+    public static PartHashTree parse(String value) throws InfoFileException {
+        String[] fields = value.split(Pattern.quote(fieldSeparator), -1);
+        if (fields.length != 3) {
+            throw new InfoFileException("Improper hash tree format.");
+        }
+
+        try {
+            List<String> leaves = fields[2].isEmpty() ? new ArrayList<>() : Arrays.asList(fields[2].split(leafSeparator));
+            PartHashTree tree = new PartHashTree(Long.parseLong(fields[0]), leaves);
+            if (!tree.root.equals(fields[1])) {
+                throw new InfoFileException("Hash tree root does not match its leaves.");
+            }
+            return tree;
+        } catch (NumberFormatException e) {
+            throw new InfoFileException("Improper hash tree block size.");
+        }
+    }
+
+    public List<Integer> findMismatchedBlocks(PartHashTree actual) {
+        List<Integer> mismatchedBlocks = new ArrayList<>();
+        if (root.equals(actual.root) && blockSizeInBytes == actual.blockSizeInBytes) {
+            return mismatchedBlocks;
+        }
+
+        int count = Math.max(leaves.size(), actual.leaves.size());
+        for (int i = 0; i < count; i++) {
+            if (i >= leaves.size() || i >= actual.leaves.size() || !leaves.get(i).equalsIgnoreCase(actual.leaves.get(i))) {
+                mismatchedBlocks.add(i);
+            }
+        }
+        return mismatchedBlocks;
+    }
+
+    @Override
+    public String toString() {
+        return blockSizeInBytes + fieldSeparator + root + fieldSeparator + String.join(leafSeparator, leaves);
+    }
+
+    private static String calcRoot(List<String> leaves) {
+        List<String> level = new ArrayList<>();
+        for (String leaf : leaves) {
+            level.add(hash(leaf));
+        }
+        if (level.isEmpty()) {
+            return hash("");
+        }
+
+        while (level.size() > 1) {
+            List<String> nextLevel = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += 2) {
+                if (i + 1 < level.size()) {
+                    nextLevel.add(hash(level.get(i) + level.get(i + 1)));
+                } else {
+                    nextLevel.add(level.get(i));
+                }
+            }
+            level = nextLevel;
+        }
+        return level.get(0);
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Sha256PartChecksum.toHex(digest.digest(value.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
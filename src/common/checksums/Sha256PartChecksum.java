@@ -0,0 +1,44 @@
+package common.checksums;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class Sha256PartChecksum implements PartChecksum {
+    private final MessageDigest digest;
+    private String value;
+
+    public Sha256PartChecksum() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        digest.update(bytes, offset, length);
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        digest.update(buffer);
+    }
+
+    @Override
+    public String getValue() {
+        if (value == null) {
+            value = toHex(digest.digest());
+        }
+        return value;
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package common.checksums;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+public class ZipPartChecksum implements PartChecksum {
+    private final Checksum checksum;
+    private final MethodHandle bufferUpdate;
+    private final Combiner combiner;
+    private Long combinedValue;
+
+    public ZipPartChecksum(Checksum checksum, Combiner combiner) {
+        this.checksum = checksum;
+        this.bufferUpdate = findBufferUpdate(checksum);
+        this.combiner = combiner;
+    }
+
+    public long getLongValue() {
+        return combinedValue != null ? combinedValue : checksum.getValue();
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        checkNotCombined();
+        checksum.update(bytes, offset, length);
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        checkNotCombined();
+        if (bufferUpdate == null) {
+            byte[] bytes = new byte[Math.min(buffer.remaining(), 1024 * 64)];
+            while (buffer.hasRemaining()) {
+                int length = Math.min(buffer.remaining(), bytes.length);
+                buffer.get(bytes, 0, length);
+                checksum.update(bytes, 0, length);
+            }
+            return;
+        }
+
+        try {
+            bufferUpdate.invokeExact(checksum, buffer);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String getValue() {
+        return String.valueOf(getLongValue());
+    }
+
+    @Override
+    public void append(PartChecksum next, long nextLength) {
+        if (!(next instanceof ZipPartChecksum)) {
+            PartChecksum.super.append(next, nextLength);
+            return;
+        }
+        combinedValue = combiner.combine(getLongValue(), ((ZipPartChecksum) next).getLongValue(), nextLength);
+    }
+
+    private void checkNotCombined() {
+        if (combinedValue != null) {
+            throw new IllegalStateException("Combined checksum cannot be updated.");
+        }
+    }
+
+    private static MethodHandle findBufferUpdate(Checksum checksum) {
+        // update(ByteBuffer) is not part of Checksum interface on Java 8
+        try {
+            MethodHandle handle = MethodHandles.publicLookup()
+                    .findVirtual(checksum.getClass(), "update", MethodType.methodType(void.class, ByteBuffer.class));
+            return handle.asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    public interface Combiner {
+        long combine(long checksum1, long checksum2, long length2);
+    }
+}
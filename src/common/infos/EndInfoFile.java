@@ -1,34 +1,51 @@
 package common.infos;
 
+import common.checksums.PartHashTree;
 import common.exceptions.DownloadException;
 import common.exceptions.InfoFileException;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 public class EndInfoFile extends InfoFile {
     public static final String errorContent = "ERROR!!!";
+    public static final String separator = "#!_@%&_#";
 
     public final Path filePath;
 
+    private static final String hashTreeSeparator = "|";
+
     private final List<String> checksums;
-    private final String separator = "#!_@%&_#";
+    private final List<PartHashTree> hashTrees;
 
     public List<String> getChecksums() {
         return checksums;
     }
 
+    public List<PartHashTree> getHashTrees() {
+        return hashTrees;
+    }
+
     public EndInfoFile(String saveDirectory, List<String> checksums) throws DownloadException {
+        this(saveDirectory, checksums, new ArrayList<>());
+    }
+
+    public EndInfoFile(String saveDirectory, List<String> checksums, List<PartHashTree> hashTrees) throws DownloadException {
         if (checksums == null || checksums.isEmpty()) {
             throw new DownloadException("No checksums are given.");
         }
+        if (hashTrees == null || (!hashTrees.isEmpty() && hashTrees.size() != checksums.size())) {
+            throw new DownloadException("Hash trees count does not equal checksums count.");
+        }
         if (saveDirectory == null || saveDirectory.isEmpty() || !Files.exists(Paths.get(saveDirectory))) {
             throw new DownloadException("Improper save directory.");
         }
 
         this.checksums = checksums;
+        this.hashTrees = hashTrees;
 
         filePath = Paths.get(saveDirectory, "endInfoServer.txt");
         saveToFile(filePath);
@@ -45,11 +62,35 @@ public class EndInfoFile extends InfoFile {
             throw new DownloadException("Server stopped. Exiting...");
         }
 
-        this.checksums = values;
+        List<String> checksums = new ArrayList<>();
+        List<PartHashTree> hashTrees = new ArrayList<>();
+        for (String value : values) {
+            int treeStart = value.indexOf(hashTreeSeparator);
+            if (treeStart < 0) {
+                checksums.add(value);
+            } else {
+                checksums.add(value.substring(0, treeStart));
+                hashTrees.add(PartHashTree.parse(value.substring(treeStart + 1)));
+            }
+        }
+        if (!hashTrees.isEmpty() && hashTrees.size() != checksums.size()) {
+            throw new InfoFileException(this.errorText + filePath);
+        }
+
+        this.checksums = checksums;
+        this.hashTrees = hashTrees;
     }
 
     @Override
     public String toString() {
-        return separator + String.join(separator, checksums) + separator;
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < checksums.size(); i++) {
+            if (hashTrees.isEmpty()) {
+                values.add(checksums.get(i));
+            } else {
+                values.add(checksums.get(i) + hashTreeSeparator + hashTrees.get(i));
+            }
+        }
+        return separator + String.join(separator, values) + separator;
     }
 }
@@ -0,0 +1,60 @@
+package common.infos;
+
+import common.models.FrameTypeEnum;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+public class SessionFrame {
+    public static final int headerSize = 21;
+
+    private static final int magic = 0x50474446;
+
+    public final FrameTypeEnum type;
+    public final int index;
+    public final long offset;
+    public final int length;
+
+    public SessionFrame(FrameTypeEnum type, int index, long offset, int length) {
+        this.type = type;
+        this.index = index;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public void writeTo(DataOutputStream outputStream) throws IOException {
+        outputStream.writeInt(magic);
+        outputStream.writeByte(type.ordinal());
+        outputStream.writeInt(index);
+        outputStream.writeLong(offset);
+        outputStream.writeInt(length);
+    }
+
+    public static SessionFrame readFrom(DataInputStream inputStream) throws IOException {
+        int frameMagic;
+        try {
+            frameMagic = inputStream.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (frameMagic != magic) {
+            throw new IOException("Improper session frame.");
+        }
+
+        int typeOrdinal = inputStream.readUnsignedByte();
+        if (typeOrdinal >= FrameTypeEnum.values().length) {
+            throw new IOException("Unknown session frame type: " + typeOrdinal);
+        }
+        FrameTypeEnum type = FrameTypeEnum.values()[typeOrdinal];
+        int index = inputStream.readInt();
+        long offset = inputStream.readLong();
+        int length = inputStream.readInt();
+        if (length < 0) {
+            throw new IOException("Improper session frame length.");
+        }
+
+        return new SessionFrame(type, index, offset, length);
+    }
+}
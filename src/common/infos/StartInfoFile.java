@@ -2,9 +2,12 @@ package common.infos;
 
 import common.exceptions.DownloadException;
 import common.exceptions.InfoFileException;
+import common.models.ChecksumAlgorithmEnum;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class StartInfoFile extends InfoFile {
@@ -14,11 +17,23 @@ public class StartInfoFile extends InfoFile {
     public final String fileName;
     public final int summarySizeInMB;
     public final int partSizeInMB;
+    public final ChecksumAlgorithmEnum checksumAlgorithm;
+    public final List<String> feedbackAddresses;
 
     private final String separator = "_#!@%&#_";
 
     public StartInfoFile(String saveDirectory, String url, String fileName, int summarySizeInMB, int partSizeInMB) throws DownloadException {
-        if (saveDirectory.isEmpty() || url.isEmpty() || fileName.isEmpty() || summarySizeInMB < 0 || partSizeInMB < 1) {
+        this(saveDirectory, url, fileName, summarySizeInMB, partSizeInMB, ChecksumAlgorithmEnum.Adler32);
+    }
+
+    public StartInfoFile(String saveDirectory, String url, String fileName, int summarySizeInMB, int partSizeInMB,
+                         ChecksumAlgorithmEnum checksumAlgorithm) throws DownloadException {
+        this(saveDirectory, url, fileName, summarySizeInMB, partSizeInMB, checksumAlgorithm, Collections.emptyList());
+    }
+
+    public StartInfoFile(String saveDirectory, String url, String fileName, int summarySizeInMB, int partSizeInMB,
+                         ChecksumAlgorithmEnum checksumAlgorithm, List<String> feedbackAddresses) throws DownloadException {
+        if (saveDirectory.isEmpty() || url.isEmpty() || fileName.isEmpty() || summarySizeInMB < 0 || partSizeInMB < 1 || checksumAlgorithm == null) {
             throw new DownloadException("Wrong StartInfo file data.");
         }
 
@@ -26,6 +41,8 @@ public class StartInfoFile extends InfoFile {
         this.fileName = fileName;
         this.summarySizeInMB = summarySizeInMB;
         this.partSizeInMB = partSizeInMB;
+        this.checksumAlgorithm = checksumAlgorithm;
+        this.feedbackAddresses = feedbackAddresses;
 
         filePath = Paths.get(saveDirectory, "startInfoServer.txt");
         saveToFile(filePath);
@@ -36,7 +53,7 @@ public class StartInfoFile extends InfoFile {
         String errorText = this.errorText + filePath;
         try {
             List<String> values = tryGetInfo(filePath, separator);
-            if (values.size() != 4) {
+            if (values.size() < 4 || values.size() > 6) {
                 throw new DownloadException(errorText);
             }
 
@@ -44,7 +61,9 @@ public class StartInfoFile extends InfoFile {
             this.fileName = values.get(1);
             this.summarySizeInMB = Integer.parseInt(values.get(2));
             this.partSizeInMB = Integer.parseInt(values.get(3));
-        } catch (InfoFileException | NumberFormatException e) {
+            this.checksumAlgorithm = values.size() >= 5 ? ChecksumAlgorithmEnum.valueOf(values.get(4)) : ChecksumAlgorithmEnum.Adler32;
+            this.feedbackAddresses = values.size() == 6 ? Arrays.asList(values.get(5).split(",")) : Collections.emptyList();
+        } catch (InfoFileException | IllegalArgumentException e) {
             throw new DownloadException(e, errorText);
         }
     }
@@ -55,6 +74,8 @@ public class StartInfoFile extends InfoFile {
                 url + separator +
                 fileName + separator +
                 summarySizeInMB + separator +
-                partSizeInMB + separator;
+                partSizeInMB + separator +
+                checksumAlgorithm + separator +
+                (feedbackAddresses.isEmpty() ? "" : String.join(",", feedbackAddresses) + separator);
     }
 }
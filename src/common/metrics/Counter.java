@@ -0,0 +1,60 @@
+package common.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter implements Metric {
+    private static final long rateWindowInNanos = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final String help;
+    private final LongAdder value = new LongAdder();
+
+    private long rateWindowStart = System.nanoTime();
+    private long rateWindowValue = 0;
+    private double rate = 0;
+
+    public Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+
+    public synchronized double getRatePerSecond() {
+        long now = System.nanoTime();
+        long elapsed = now - rateWindowStart;
+        if (elapsed >= rateWindowInNanos) {
+            long current = get();
+            rate = (current - rateWindowValue) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            rateWindowValue = current;
+            rateWindowStart = now;
+        }
+        return rate;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void writePrometheus(StringBuilder builder) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(" counter\n");
+        builder.append(name).append(' ').append(get()).append('\n');
+    }
+
+    @Override
+    public void addAttributes(Map<String, Object> attributes) {
+        attributes.put(name, get());
+        attributes.put(name + "_per_second", getRatePerSecond());
+    }
+}
@@ -0,0 +1,74 @@
+package common.metrics;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+public class Gauge implements Metric {
+    private final String name;
+    private final String help;
+    private final List<Source<?>> sources = new CopyOnWriteArrayList<>();
+    private volatile LongSupplier supplier = () -> 0;
+
+    public Gauge(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public void setSupplier(LongSupplier supplier) {
+        this.supplier = supplier;
+    }
+
+    public <T> void addSource(T owner, ToLongFunction<T> value) {
+        // owners are weakly referenced, so instances which were not removed do not stay reachable
+        sources.add(new Source<>(owner, value));
+    }
+
+    public void removeSource(Object owner) {
+        sources.removeIf(source -> source.owner.get() == owner);
+    }
+
+    public long get() {
+        long value = supplier.getAsLong();
+        for (Source<?> source : sources) {
+            value += source.get();
+        }
+        sources.removeIf(source -> source.owner.get() == null);
+        return value;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void writePrometheus(StringBuilder builder) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(" gauge\n");
+        builder.append(name).append(' ').append(get()).append('\n');
+    }
+
+    @Override
+    public void addAttributes(Map<String, Object> attributes) {
+        attributes.put(name, get());
+    }
+
+    private static class Source<T> {
+        private final WeakReference<T> owner;
+        private final ToLongFunction<T> value;
+
+        private Source(T owner, ToLongFunction<T> value) {
+            this.owner = new WeakReference<>(owner);
+            this.value = value;
+        }
+
+        private long get() {
+            T currentOwner = owner.get();
+            return currentOwner != null ? value.applyAsLong(currentOwner) : 0;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package common.metrics;
+
+import java.util.Map;
+
+public interface Metric {
+    String getName();
+
+    void writePrometheus(StringBuilder builder);
+
+    void addAttributes(Map<String, Object> attributes);
+}
@@ -0,0 +1,76 @@
+package common.metrics;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+public class MetricsMBean implements DynamicMBean {
+    public static final String objectName = "ParallelGroupDownloader:type=Metrics";
+
+    private final MetricsRegistry registry;
+
+    public MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public static void register(MetricsRegistry registry) {
+        try {
+            ObjectName name = new ObjectName(objectName);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMBean(registry), name);
+            }
+        } catch (JMException e) {
+            System.err.println("Cannot register metrics MBean. Error: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object value = registry.getAttributes().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Object> values = registry.getAttributes();
+        AttributeList result = new AttributeList();
+        for (String attribute : attributes) {
+            if (values.containsKey(attribute)) {
+                result.add(new Attribute(attribute, values.get(attribute)));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Object> values = registry.getAttributes();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+        int index = 0;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            attributes[index++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                    entry.getKey(), true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Transfer metrics of ParallelGroupDownloader.",
+                attributes, null, null, null);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+}
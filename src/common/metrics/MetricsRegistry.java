@@ -0,0 +1,58 @@
+package common.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+public class MetricsRegistry {
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    private final Map<String, Metric> metrics = new TreeMap<>();
+
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    public Counter counter(String name, String help) {
+        return register(name, Counter.class, metricName -> new Counter(metricName, help));
+    }
+
+    public Timer timer(String name, String help) {
+        return register(name, Timer.class, metricName -> new Timer(metricName, help));
+    }
+
+    public Gauge gauge(String name, String help) {
+        return register(name, Gauge.class, metricName -> new Gauge(metricName, help));
+    }
+
+    public String toPrometheusText() {
+        StringBuilder builder = new StringBuilder();
+        for (Metric metric : getMetrics()) {
+            metric.writePrometheus(builder);
+        }
+        return builder.toString();
+    }
+
+    public Map<String, Object> getAttributes() {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        for (Metric metric : getMetrics()) {
+            metric.addAttributes(attributes);
+        }
+        return attributes;
+    }
+
+    private synchronized Collection<Metric> getMetrics() {
+        return new ArrayList<>(metrics.values());
+    }
+
+    private synchronized <T extends Metric> T register(String name, Class<T> type, Function<String, T> factory) {
+        Metric metric = metrics.computeIfAbsent(name, factory);
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric already registered with different type: " + name);
+        }
+        return type.cast(metric);
+    }
+}
@@ -0,0 +1,63 @@
+package common.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Timer implements Metric {
+    private final String name;
+    private final String help;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumInNanos = new LongAdder();
+    private final LongAccumulator maxInNanos = new LongAccumulator(Math::max, 0);
+    private volatile long lastInNanos = 0;
+
+    public Timer(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public void recordSince(long startTimeInNanos) {
+        record(System.nanoTime() - startTimeInNanos);
+    }
+
+    public void record(long durationInNanos) {
+        count.increment();
+        sumInNanos.add(durationInNanos);
+        maxInNanos.accumulate(durationInNanos);
+        lastInNanos = durationInNanos;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void writePrometheus(StringBuilder builder) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(" summary\n");
+        builder.append(name).append("_count ").append(getCount()).append('\n');
+        builder.append(name).append("_sum ").append(toSeconds(sumInNanos.sum())).append('\n');
+        builder.append("# HELP ").append(name).append("_max Longest recorded duration in seconds.\n");
+        builder.append("# TYPE ").append(name).append("_max gauge\n");
+        builder.append(name).append("_max ").append(toSeconds(maxInNanos.get())).append('\n');
+    }
+
+    @Override
+    public void addAttributes(Map<String, Object> attributes) {
+        attributes.put(name + "_count", getCount());
+        attributes.put(name + "_sum", toSeconds(sumInNanos.sum()));
+        attributes.put(name + "_max", toSeconds(maxInNanos.get()));
+        attributes.put(name + "_last", toSeconds(lastInNanos));
+    }
+
+    private static double toSeconds(long nanos) {
+        return (double) nanos / TimeUnit.SECONDS.toNanos(1);
+    }
+}
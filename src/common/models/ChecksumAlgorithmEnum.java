@@ -0,0 +1,7 @@
+package common.models;
+
+public enum ChecksumAlgorithmEnum {
+    Adler32,
+    CRC32C,
+    SHA256
+}
@@ -0,0 +1,7 @@
+package common.models;
+
+public enum FeedbackCommandEnum {
+    Register,
+    Repair,
+    Done
+}
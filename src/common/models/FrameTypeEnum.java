@@ -0,0 +1,9 @@
+package common.models;
+
+public enum FrameTypeEnum {
+    Start,
+    Part,
+    PartEnd,
+    End,
+    Range
+}
@@ -0,0 +1,6 @@
+package common.models;
+
+public enum TransportEnum {
+    Udpcast,
+    Nio
+}
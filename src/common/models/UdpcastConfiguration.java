@@ -1,6 +1,7 @@
 package common.models;
 
 import common.exceptions.ConfigurationException;
+import common.utils.ChecksumUtils;
 import common.utils.VariousUtils;
 
 import java.nio.file.InvalidPathException;
@@ -15,10 +16,29 @@ public class UdpcastConfiguration {
     private String networkInterface;
     private String directory = "downloads";
     private String fileName;
+    private boolean isPersistent = false;
+    private boolean isDirect = false;
+    private boolean isCarousel = false;
+    private boolean isResume = false;
+    private int checksumThreads = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+    private int metricsPort = 0;
+    private Path tracePath;
+    private TransportEnum transport = TransportEnum.Udpcast;
+    private int stripes = 1;
+    private int peerMinutes = 0;
+    private int relayPortbase = 0;
+    private String relayInterface;
 
     private String url;
     private int delayMinutes = 0;
     private int blockSizeInMb = 2048;
+    private int connections = 1;
+    private boolean isStreaming = false;
+    private int pipelineDepth = 2;
+    private ChecksumAlgorithmEnum checksumAlgorithm = ChecksumUtils.getDefaultAlgorithm();
+    private int rateInMBps = 0;
+    private int joinWindowMinutes = 0;
+    private int repairMinutes = 0;
 
     public boolean isHelpInvoked() {
         return isHelpInvoked;
@@ -28,8 +48,28 @@ public class UdpcastConfiguration {
         return portbase;
     }
 
+    public int getFeedbackPort() {
+        return portbase + 1;
+    }
+
+    public int getPortbase(int stripe) {
+        return portbase + 2 * stripe;
+    }
+
+    public int getPeerPort() {
+        return getPortbase(stripes);
+    }
+
     public String getNetworkInterface() {
-        return networkInterface;
+        return getNetworkInterface(0);
+    }
+
+    public String getNetworkInterface(int stripe) {
+        if (networkInterface == null) {
+            return null;
+        }
+        String[] networkInterfaces = networkInterface.split(",");
+        return networkInterfaces[stripe % networkInterfaces.length];
     }
 
     public String getDirectory() {
@@ -40,6 +80,42 @@ public class UdpcastConfiguration {
         return fileName;
     }
 
+    public boolean isPersistent() {
+        return isPersistent;
+    }
+
+    public boolean isDirect() {
+        return isDirect;
+    }
+
+    public boolean isCarousel() {
+        return isCarousel;
+    }
+
+    public boolean isResume() {
+        return isResume;
+    }
+
+    public int getChecksumThreads() {
+        return checksumThreads;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public Path getTracePath() {
+        return tracePath;
+    }
+
+    public TransportEnum getTransport() {
+        return transport;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
     public String getUrl() {
         return url;
     }
@@ -52,6 +128,53 @@ public class UdpcastConfiguration {
         return blockSizeInMb;
     }
 
+    public int getConnections() {
+        return connections;
+    }
+
+    public boolean isStreaming() {
+        return isStreaming;
+    }
+
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    public ChecksumAlgorithmEnum getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    public int getRateInMBps() {
+        return rateInMBps;
+    }
+
+    public int getJoinWindowMinutes() {
+        return joinWindowMinutes;
+    }
+
+    public int getRepairMinutes() {
+        return repairMinutes;
+    }
+
+    public int getPeerMinutes() {
+        return peerMinutes;
+    }
+
+    public boolean isRelay() {
+        return relayPortbase > 0;
+    }
+
+    public UdpcastConfiguration getRelayConfiguration() {
+        UdpcastConfiguration relayConfiguration = new UdpcastConfiguration();
+        relayConfiguration.portbase = relayPortbase;
+        relayConfiguration.networkInterface = relayInterface;
+        relayConfiguration.transport = transport;
+        return relayConfiguration;
+    }
+
+    private UdpcastConfiguration() {
+    }
+
     public UdpcastConfiguration(String[] args) throws ConfigurationException {
         ArrayList<String> argsList = new ArrayList<>(Arrays.asList(args));
         if (argsList.contains("-help")) {
@@ -64,11 +187,37 @@ public class UdpcastConfiguration {
             VariousUtils.suppressStdOut();
         }
 
+        String persistentArg = "-persistent";
+        if (argsList.remove(persistentArg)) {
+            isPersistent = true;
+        }
+
+        String directArg = "-direct";
+        if (argsList.remove(directArg)) {
+            isDirect = true;
+        }
+
+        String carouselArg = "-carousel";
+        if (argsList.remove(carouselArg)) {
+            isCarousel = true;
+        }
+
+        String resumeArg = "-resume";
+        if (argsList.remove(resumeArg)) {
+            isResume = true;
+        }
+
+        boolean serverOptionGiven = false;
+        String streamingArg = "-streaming";
+        if (argsList.remove(streamingArg)) {
+            serverOptionGiven = true;
+            isStreaming = true;
+        }
+
         if (argsList.size() % 2 != 0) {
             throw new ConfigurationException("One of given parameters does not have corresponding value.");
         }
 
-        boolean serverOptionGiven = false;
         for (int i = 0; i < argsList.size(); i += 2) {
             String key = getKey(argsList.get(i));
             String value = getValue(argsList.get(i + 1));
@@ -85,6 +234,9 @@ public class UdpcastConfiguration {
                         }
                         break;
                     case "interface":
+                        if (value.startsWith(",") || value.endsWith(",") || value.contains(",,")) {
+                            throw new ConfigurationException("Wrong list of network interfaces.");
+                        }
                         networkInterface = value;
                         break;
                     case "directory":
@@ -97,6 +249,48 @@ public class UdpcastConfiguration {
                         }
                         this.fileName = String.valueOf(path);
                         break;
+                    case "threads":
+                        checksumThreads = Integer.parseInt(value);
+                        if (checksumThreads < 1 || checksumThreads > 64) {
+                            throw new ConfigurationException("Only threads count from range <1-64> is allowed.");
+                        }
+                        break;
+                    case "trace":
+                        tracePath = parsePath(value);
+                        break;
+                    case "metrics":
+                        metricsPort = Integer.parseInt(value);
+                        if (metricsPort < 1024 || metricsPort > 65535) {
+                            throw new ConfigurationException("Only metrics port from range <1024-65535> is allowed.");
+                        }
+                        break;
+                    case "transport":
+                        transport = parseTransport(value);
+                        break;
+                    case "stripes":
+                        stripes = Integer.parseInt(value);
+                        if (stripes < 1 || stripes > 16) {
+                            throw new ConfigurationException("Only stripes count from range <1-16> is allowed.");
+                        }
+                        break;
+                    case "relayportbase":
+                        relayPortbase = Integer.parseInt(value);
+                        if (relayPortbase < 1024 || relayPortbase > 65534) {
+                            throw new ConfigurationException("Only relay portbase from range <1024-65534> is allowed.");
+                        }
+                        break;
+                    case "relayinterface":
+                        if (value.contains(",")) {
+                            throw new ConfigurationException("Only one relay network interface is allowed.");
+                        }
+                        relayInterface = value;
+                        break;
+                    case "peers":
+                        peerMinutes = Integer.parseInt(value);
+                        if (peerMinutes < 0 || peerMinutes > 1440) {
+                            throw new ConfigurationException("Only peer serving time from range <0-1440> minutes is allowed.");
+                        }
+                        break;
 
                     case "url":
                         url = value;
@@ -115,6 +309,45 @@ public class UdpcastConfiguration {
                             throw new ConfigurationException("Block size must be at least equal 1MB.");
                         }
                         break;
+                    case "connections":
+                        serverOptionGiven = true;
+                        connections = Integer.parseInt(value);
+                        if (connections < 1 || connections > 32) {
+                            throw new ConfigurationException("Only connections count from range <1-32> is allowed.");
+                        }
+                        break;
+                    case "pipeline":
+                        serverOptionGiven = true;
+                        pipelineDepth = Integer.parseInt(value);
+                        if (pipelineDepth < 1 || pipelineDepth > 64) {
+                            throw new ConfigurationException("Only pipeline depth from range <1-64> is allowed.");
+                        }
+                        break;
+                    case "checksum":
+                        serverOptionGiven = true;
+                        checksumAlgorithm = parseChecksumAlgorithm(value);
+                        break;
+                    case "rate":
+                        serverOptionGiven = true;
+                        rateInMBps = Integer.parseInt(value);
+                        if (rateInMBps < 1 || rateInMBps > 100000) {
+                            throw new ConfigurationException("Only rate from range <1-100000> MBps is allowed.");
+                        }
+                        break;
+                    case "joinwindow":
+                        serverOptionGiven = true;
+                        joinWindowMinutes = Integer.parseInt(value);
+                        if (joinWindowMinutes < 0 || joinWindowMinutes > 1440) {
+                            throw new ConfigurationException("Only join window from range <0-1440> minutes is allowed.");
+                        }
+                        break;
+                    case "repair":
+                        serverOptionGiven = true;
+                        repairMinutes = Integer.parseInt(value);
+                        if (repairMinutes < 0 || repairMinutes > 1440) {
+                            throw new ConfigurationException("Only repair time from range <0-1440> minutes is allowed.");
+                        }
+                        break;
                     default:
                         throw new ConfigurationException(key, value);
                 }
@@ -124,8 +357,56 @@ public class UdpcastConfiguration {
         }
 
         if (url == null && serverOptionGiven) {
-            throw new ConfigurationException("Delay and blocksize options are applicable only when URL is given (when acting as a server).");
+            throw new ConfigurationException("Server only options are applicable only when URL is given (when acting as a server).");
+        }
+        if (stripes > 1 && (isPersistent || isDirect)) {
+            throw new ConfigurationException("Stripes cannot be used in persistent or direct mode.");
+        }
+        if (isCarousel && (isPersistent || isDirect || stripes > 1)) {
+            throw new ConfigurationException("Carousel cannot be used in persistent, direct or striped mode.");
+        }
+        if (joinWindowMinutes > 0 && !isCarousel) {
+            throw new ConfigurationException("Join window is applicable only in carousel mode.");
+        }
+        if (repairMinutes > 0 && isCarousel) {
+            throw new ConfigurationException("Repair cannot be used in carousel mode.");
+        }
+        if (getPortbase(stripes) - 1 > 65535) {
+            throw new ConfigurationException("Ports of the last stripe exceed allowed range.");
+        }
+        if (peerMinutes > 0 && url != null) {
+            throw new ConfigurationException("Peer repair is applicable only for clients.");
+        }
+        if (relayInterface != null && !isRelay()) {
+            throw new ConfigurationException("Relay interface is applicable only with relay portbase.");
+        }
+        if (isRelay() && (url != null || isDirect)) {
+            throw new ConfigurationException("Relay is applicable only for clients which do not use direct mode.");
+        }
+        if (peerMinutes > 0 && getPeerPort() > 65535) {
+            throw new ConfigurationException("Peer port exceeds allowed range.");
+        }
+        if (isResume && (url != null || isDirect || isRelay())) {
+            throw new ConfigurationException("Resume is applicable only for clients which do not use direct or relay mode.");
+        }
+    }
+
+    private ChecksumAlgorithmEnum parseChecksumAlgorithm(String value) throws ConfigurationException {
+        for (ChecksumAlgorithmEnum algorithm : ChecksumAlgorithmEnum.values()) {
+            if (algorithm.name().equalsIgnoreCase(value)) {
+                return algorithm;
+            }
+        }
+        throw new ConfigurationException("Only checksum algorithms adler32, crc32c and sha256 are allowed.");
+    }
+
+    private TransportEnum parseTransport(String value) throws ConfigurationException {
+        for (TransportEnum transport : TransportEnum.values()) {
+            if (transport.name().equalsIgnoreCase(value)) {
+                return transport;
+            }
         }
+        throw new ConfigurationException("Only transports udpcast and nio are allowed.");
     }
 
     private String getKey(String key) throws ConfigurationException {
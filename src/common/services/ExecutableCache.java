@@ -0,0 +1,130 @@
+package common.services;
+
+import common.checksums.Sha256PartChecksum;
+import common.utils.FilePartUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+public class ExecutableCache {
+    private final Path directory;
+
+    public ExecutableCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static Path getDefaultDirectory() {
+        String base = FilePartUtils.isWindows ? System.getenv("LOCALAPPDATA") : System.getenv("XDG_CACHE_HOME");
+        if (base == null || base.isEmpty()) {
+            base = FilePartUtils.isWindows
+                    ? Paths.get(System.getProperty("user.home"), "AppData", "Local").toString()
+                    : Paths.get(System.getProperty("user.home"), ".cache").toString();
+        }
+        return Paths.get(base, "ParallelGroupDownloader", "udpcast");
+    }
+
+    public Path extract(String resourcePath, String fileName) throws IOException {
+        byte[] content = readResource(resourcePath);
+        Path target = directory.resolve(hash(content)).resolve(fileName);
+
+        if (!isSameContent(target, content)) {
+            Files.createDirectories(target.getParent());
+            Path tempFile = Files.createTempFile(target.getParent(), fileName, ".tmp");
+            try {
+                Files.write(tempFile, content);
+                boolean ignored = tempFile.toFile().setExecutable(true);
+                try {
+                    Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                FilePartUtils.removeFile(tempFile);
+            }
+        }
+
+        return target;
+    }
+
+    public boolean isVerified(Path executablePath) {
+        return Files.exists(getVerifiedMarkerPath(executablePath));
+    }
+
+    public void markVerified(Path executablePath) {
+        try {
+            Files.createFile(getVerifiedMarkerPath(executablePath));
+        } catch (IOException ignored) {
+        }
+    }
+
+    public String readPreferredVariant(String programName) {
+        try {
+            return new String(Files.readAllBytes(getVariantPath(programName)), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void writePreferredVariant(String programName, String variant) {
+        try {
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, programName, ".tmp");
+            try {
+                Files.write(tempFile, variant.getBytes(StandardCharsets.UTF_8));
+                Files.move(tempFile, getVariantPath(programName), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                FilePartUtils.removeFile(tempFile);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private Path getVerifiedMarkerPath(Path executablePath) {
+        return executablePath.resolveSibling(executablePath.getFileName() + ".verified");
+    }
+
+    private Path getVariantPath(String programName) {
+        return directory.resolve(programName + ".variant");
+    }
+
+    private boolean isSameContent(Path path, byte[] content) {
+        try {
+            return Files.size(path) == content.length && Arrays.equals(Files.readAllBytes(path), content)
+                    && (FilePartUtils.isWindows || Files.isExecutable(path));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static byte[] readResource(String resourcePath) throws IOException {
+        URL resourceUrl = ExecutableCache.class.getResource(resourcePath);
+        if (resourceUrl == null) {
+            throw new NoSuchFileException(resourcePath);
+        }
+
+        try (InputStream inputStream = resourceUrl.openStream()) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024 * 1024);
+            byte[] buffer = new byte[64 * 1024];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            return Sha256PartChecksum.toHex(MessageDigest.getInstance("SHA-256").digest(content)).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
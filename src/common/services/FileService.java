@@ -1,87 +1,480 @@
 package common.services;
 
+import common.checksums.BlockChecksum;
+import common.checksums.PartChecksum;
+import common.checksums.PartHashTree;
 import common.exceptions.DownloadException;
+import common.metrics.Counter;
+import common.metrics.Gauge;
+import common.metrics.MetricsRegistry;
+import common.metrics.Timer;
+import common.tracing.FlightRecorderEventType;
+import common.tracing.FlightRecorderEvents;
+import common.tracing.Span;
+import common.tracing.Tracer;
+import common.models.ChecksumAlgorithmEnum;
+import common.utils.ChecksumUtils;
 import common.utils.FilePartUtils;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
-import java.util.zip.Adler32;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static common.utils.FilePartUtils.removeFile;
-import static java.nio.file.StandardOpenOption.APPEND;
-import static java.nio.file.StandardOpenOption.WRITE;
+import static java.nio.file.StandardOpenOption.*;
 
 public class FileService {
-    private final ConcurrentLinkedQueue<Future<String>> futures = new ConcurrentLinkedQueue<>();
+    private static final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    private static final Counter mergeBytes = metrics.counter("pgd_merge_bytes_total", "Bytes written into the final file.");
+    private static final Timer partMergeSeconds = metrics.timer("pgd_part_merge_seconds", "Time of joining single part into the final file.");
+    private static final Counter checksumBytes = metrics.counter("pgd_checksum_bytes_total", "Bytes read to calculate checksums.");
+    private static final Timer checksumRangeSeconds = metrics.timer("pgd_checksum_range_seconds", "Time of calculating checksum of single range.");
+    private static final Gauge mergeQueueParts = metrics.gauge("pgd_merge_queue_parts", "Parts waiting to be joined or checked.");
+    private static final Gauge checksumQueueRanges = metrics.gauge("pgd_checksum_queue_ranges", "Ranges waiting for checksum calculation.");
+
+    private final ConcurrentLinkedQueue<Future<ProcessedPart>> futures = new ConcurrentLinkedQueue<>();
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final ExecutorService checksumExecutorService;
     private final Path finalFilePath;
+    private final boolean isDirect;
+    private final AtomicLong writtenSizeInBytes = new AtomicLong(0);
+    private final int readBufferSizeInBytes = 256 * 1024;
+    private final ThreadLocal<ByteBuffer> readBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(readBufferSizeInBytes));
+    private final long minChecksumRangeSizeInBytes = 16 * 1024 * 1024;
+    private final long subBlockSizeInBytes = BlockChecksum.defaultBlockSizeInBytes;
+    private final int checksumThreads;
+    private final ChecksumAlgorithmEnum checksumAlgorithm;
+    private final AtomicInteger queuedParts = new AtomicInteger(0);
+    private final AtomicInteger queuedChecksumRanges = new AtomicInteger(0);
+    private final Map<Integer, PendingPart> pendingParts = new HashMap<>();
+    private int nextPartIndex = 0;
+    private volatile PartProcessedListener partProcessedListener;
 
     public FileService(Path finalFilePath) throws DownloadException {
+        this(finalFilePath, false, 0, Runtime.getRuntime().availableProcessors(), ChecksumAlgorithmEnum.Adler32);
+    }
+
+    public FileService(Path finalFilePath, boolean isDirect, long expectedSizeInBytes, int checksumThreads,
+                       ChecksumAlgorithmEnum checksumAlgorithm) throws DownloadException {
+        this(finalFilePath, isDirect, expectedSizeInBytes, checksumThreads, checksumAlgorithm, new ArrayList<>());
+    }
+
+    public FileService(Path finalFilePath, boolean isDirect, long expectedSizeInBytes, int checksumThreads,
+                       ChecksumAlgorithmEnum checksumAlgorithm, List<ProcessedPart> resumedParts) throws DownloadException {
+        if (checksumThreads < 1) {
+            throw new DownloadException("At least one checksum thread is required.");
+        }
         this.finalFilePath = finalFilePath;
+        this.isDirect = isDirect;
+        this.checksumThreads = checksumThreads;
+        this.checksumAlgorithm = checksumAlgorithm;
+        this.checksumExecutorService = Executors.newFixedThreadPool(checksumThreads);
+        mergeQueueParts.addSource(this, fileService -> fileService.queuedParts.get());
+        checksumQueueRanges.addSource(this, fileService -> fileService.queuedChecksumRanges.get());
+
+        if (!resumedParts.isEmpty()) {
+            resume(resumedParts);
+            return;
+        }
 
         FilePartUtils.removeFile(finalFilePath);
         try {
             Files.createFile(finalFilePath);
+            if (isDirect && expectedSizeInBytes > 0) {
+                try (RandomAccessFile file = new RandomAccessFile(finalFilePath.toFile(), "rw")) {
+                    file.setLength(expectedSizeInBytes);
+                }
+            }
         } catch (IOException e) {
             throw new DownloadException(e, "Cannot create file: " + finalFilePath);
         }
     }
 
+    public Path getFinalFilePath() {
+        return finalFilePath;
+    }
+
+    public void setPartProcessedListener(PartProcessedListener partProcessedListener) {
+        this.partProcessedListener = partProcessedListener;
+    }
+
     public void addFileToProcess(Path path) throws DownloadException {
+        addFileToProcess(path, () -> removeFile(path));
+    }
+
+    public void addFileToProcess(Path path, Runnable mergedListener) throws DownloadException {
+        try {
+            List<Future<BlockChecksum>> ranges = calcChecksumRanges(path, 0, getFileSize(path));
+            futures.add(submitPart(() -> merge(path, () -> combineChecksum(ranges), mergedListener)));
+        } catch (RejectedExecutionException exception) {
+            throw new DownloadException("Cannot add file to process");
+        }
+    }
+
+    public synchronized void addFileToProcess(int index, Path path) throws DownloadException {
+        addPartInOrder(index, () -> addFileToProcess(path));
+    }
+
+    public void addFileToProcess(Path path, BlockChecksum checksum) throws DownloadException {
+        try {
+            futures.add(submitPart(() -> merge(path, () -> checksum, () -> removeFile(path))));
+        } catch (RejectedExecutionException exception) {
+            throw new DownloadException("Cannot add file to process");
+        }
+    }
+
+    public void addWrittenRangeToProcess(long offset, long length) throws DownloadException {
+        try {
+            List<Future<BlockChecksum>> ranges = calcChecksumRanges(finalFilePath, offset, length);
+            futures.add(submitPart(() -> processWrittenRange(offset, length, () -> combineChecksum(ranges))));
+        } catch (RejectedExecutionException exception) {
+            throw new DownloadException("Cannot add file to process");
+        }
+    }
+
+    public void addWrittenRangeToProcess(long offset, long length, BlockChecksum checksum) throws DownloadException {
         try {
-            futures.add(executorService.submit(() -> calcChecksumAndMerge(path)));
+            futures.add(submitPart(() -> processWrittenRange(offset, length, () -> checksum)));
         } catch (RejectedExecutionException exception) {
             throw new DownloadException("Cannot add file to process");
         }
     }
 
+    public synchronized void addWrittenRangeToProcess(int index, long offset, long length, BlockChecksum checksum) throws DownloadException {
+        addPartInOrder(index, () -> addWrittenRangeToProcess(offset, length, checksum));
+    }
+
+    public PartWriter openPartWriter(long offset) throws DownloadException {
+        return openPartWriter(offset, true);
+    }
+
+    public PartWriter openRangeWriter(long offset) throws DownloadException {
+        // written range is added by caller only once it is complete, so unfinished range is simply written again
+        return openPartWriter(offset, false);
+    }
+
     public List<String> waitForChecksums() throws DownloadException {
-        System.out.println("Waiting for all files to join...");
         List<String> checksums = new ArrayList<>();
-        for (Future<String> future : futures) {
+        for (ProcessedPart processedPart : waitForProcessedParts()) {
+            checksums.add(processedPart.checksum);
+        }
+        return checksums;
+    }
+
+    public List<ProcessedPart> waitForProcessedParts() throws DownloadException {
+        System.out.println("Waiting for all files to join...");
+        List<ProcessedPart> processedParts = new ArrayList<>();
+        for (Future<ProcessedPart> future : futures) {
             try {
-                checksums.add(future.get(2, TimeUnit.HOURS));
+                processedParts.add(future.get(2, TimeUnit.HOURS));
             } catch (InterruptedException | ExecutionException | TimeoutException e) {
                 throw new DownloadException("Could not calculate checksums and join files.");
             }
         }
 
-        return checksums;
+        if (isDirect) {
+            trimToWrittenSize();
+        }
+
+        return processedParts;
+    }
+
+    public ProcessedPart recalculateProcessedPart(ProcessedPart processedPart) throws DownloadException {
+        try {
+            List<Future<BlockChecksum>> ranges = calcChecksumRanges(finalFilePath, processedPart.offset, processedPart.length);
+            return new ProcessedPart(processedPart.offset, processedPart.length, combineChecksum(ranges));
+        } catch (RejectedExecutionException exception) {
+            throw new DownloadException("Cannot recalculate checksum of file part.");
+        }
     }
 
     public void shutdownNow() {
+        mergeQueueParts.removeSource(this);
+        checksumQueueRanges.removeSource(this);
         executorService.shutdownNow();
+        checksumExecutorService.shutdownNow();
     }
 
-    private String calcChecksumAndMerge(Path filePart) throws DownloadException {
-        Adler32 adler = new Adler32();
-        try (FileChannel out = FileChannel.open(finalFilePath, WRITE, APPEND)) {
-            try (InputStream inputStream = Files.newInputStream(filePart)) {
-                byte[] buffer = new byte[1024 * 8];
-                int bytesRead;
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    adler.update(buffer, 0, bytesRead);
+    private PartWriter openPartWriter(long offset, boolean isProcessedOnClose) throws DownloadException {
+        try {
+            return new PartWriter(offset, isProcessedOnClose);
+        } catch (IOException e) {
+            throw new DownloadException(e, "Cannot open file: " + finalFilePath);
+        }
+    }
 
-                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, bytesRead);
-                    while (byteBuffer.hasRemaining()) {
-                        int ignored = out.write(byteBuffer);
+    private void addPartInOrder(int index, PendingPart part) throws DownloadException {
+        pendingParts.put(index, part);
+        PendingPart nextPart;
+        while ((nextPart = pendingParts.remove(nextPartIndex)) != null) {
+            nextPart.add();
+            nextPartIndex++;
+        }
+    }
+
+    private Future<ProcessedPart> submitPart(Callable<ProcessedPart> task) {
+        queuedParts.incrementAndGet();
+        try {
+            return executorService.submit(() -> {
+                try {
+                    ProcessedPart processedPart = task.call();
+                    if (partProcessedListener != null) {
+                        partProcessedListener.onPartProcessed(processedPart);
                     }
+                    return processedPart;
+                } finally {
+                    queuedParts.decrementAndGet();
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            queuedParts.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void resume(List<ProcessedPart> resumedParts) throws DownloadException {
+        ProcessedPart lastPart = resumedParts.get(resumedParts.size() - 1);
+        try (FileChannel channel = FileChannel.open(finalFilePath, WRITE)) {
+            if (channel.size() < lastPart.offset + lastPart.length) {
+                throw new DownloadException("Resumed file is shorter than its journal: " + finalFilePath);
             }
+            // bytes after the last journaled part may come from a merge interrupted in the middle
+            channel.truncate(lastPart.offset + lastPart.length);
+        } catch (IOException e) {
+            throw new DownloadException(e, "Cannot open resumed file: " + finalFilePath);
+        }
 
-            removeFile(filePart);
+        for (ProcessedPart resumedPart : resumedParts) {
+            futures.add(CompletableFuture.completedFuture(resumedPart));
+        }
+        nextPartIndex = resumedParts.size();
+        updateWrittenSize(lastPart.offset + lastPart.length);
+    }
+
+    private ProcessedPart processWrittenRange(long offset, long length, ChecksumSupplier checksumSupplier) throws DownloadException {
+        ProcessedPart processedPart = new ProcessedPart(offset, length, checksumSupplier.get());
+        updateWrittenSize(offset + length);
+        return processedPart;
+    }
+
+    private ProcessedPart merge(Path filePart, ChecksumSupplier checksumSupplier, Runnable mergedListener) throws DownloadException {
+        long startTime = System.nanoTime();
+        FlightRecorderEventType.Record event = FlightRecorderEvents.merge.begin();
+        long offset;
+        long size;
+        try (Span ignored = Tracer.getInstance().span("merge", String.valueOf(filePart.getFileName()));
+             FileChannel out = FileChannel.open(finalFilePath, WRITE, APPEND);
+             FileChannel in = FileChannel.open(filePart, READ)) {
+            offset = out.size();
+            size = in.size();
+            long position = 0;
+            while (position < size) {
+                long count = in.transferTo(position, size - position, out);
+                if (count <= 0) {
+                    throw new IOException("Unexpected end of file part.");
+                }
+                position += count;
+            }
         } catch (IOException e) {
             String error = e.getMessage() != null ? " Error: " + e.getMessage() : "";
             throw new DownloadException("Error while calculating checksum and joining parts of file." + error);
         }
+        mergeBytes.add(size);
+        partMergeSeconds.recordSince(startTime);
+        event.set("file", String.valueOf(filePart.getFileName())).set("offset", offset).set("bytes", size).commit();
+
+        ProcessedPart processedPart = new ProcessedPart(offset, size, checksumSupplier.get());
+        mergedListener.run();
+        return processedPart;
+    }
+
+    private List<Future<BlockChecksum>> calcChecksumRanges(Path path, long offset, long length) {
+        long rangeSize = Math.max(minChecksumRangeSizeInBytes, (length + checksumThreads - 1) / checksumThreads);
+        rangeSize = (rangeSize + subBlockSizeInBytes - 1) / subBlockSizeInBytes * subBlockSizeInBytes;
+        if (!ChecksumUtils.isCombinable(checksumAlgorithm)) {
+            rangeSize = Math.max(length, 1);
+        }
+        List<Future<BlockChecksum>> ranges = new ArrayList<>();
+        for (long position = offset; position < offset + length; position += rangeSize) {
+            long rangeOffset = position;
+            long rangeLength = Math.min(rangeSize, offset + length - position);
+            queuedChecksumRanges.incrementAndGet();
+            ranges.add(checksumExecutorService.submit(() -> {
+                queuedChecksumRanges.decrementAndGet();
+                return calcChecksum(path, rangeOffset, rangeLength);
+            }));
+        }
+        return ranges;
+    }
+
+    private BlockChecksum combineChecksum(List<Future<BlockChecksum>> ranges) throws DownloadException {
+        if (ranges.isEmpty()) {
+            return new BlockChecksum(checksumAlgorithm, subBlockSizeInBytes);
+        }
 
-        return String.valueOf(adler.getValue());
+        try {
+            BlockChecksum checksum = ranges.get(0).get();
+            for (int i = 1; i < ranges.size(); i++) {
+                checksum.append(ranges.get(i).get());
+            }
+            return checksum;
+        } catch (InterruptedException | ExecutionException e) {
+            String error = e.getCause() != null && e.getCause().getMessage() != null ? " Error: " + e.getCause().getMessage() : "";
+            throw new DownloadException("Error while calculating checksum of file part." + error);
+        }
+    }
+
+    private BlockChecksum calcChecksum(Path path, long offset, long length) throws IOException {
+        long startTime = System.nanoTime();
+        FlightRecorderEventType.Record event = FlightRecorderEvents.checksum.begin();
+        BlockChecksum checksum = new BlockChecksum(checksumAlgorithm, subBlockSizeInBytes);
+        try (Span ignored = Tracer.getInstance().span("checksum", String.valueOf(path.getFileName())).arg("offset", offset).arg("length", length);
+             FileChannel channel = FileChannel.open(path, READ)) {
+            if (channel.size() < offset + length) {
+                throw new IOException("Unexpected end of file.");
+            }
+            updateChecksum(checksum, channel, offset, length);
+        }
+        checksumBytes.add(length);
+        checksumRangeSeconds.recordSince(startTime);
+        event.set("file", String.valueOf(path.getFileName())).set("offset", offset).set("bytes", length).commit();
+        return checksum;
+    }
+
+    private long getFileSize(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void updateChecksum(PartChecksum checksum, FileChannel channel, long offset, long length) throws IOException {
+        // mapped buffers keep pages of removed ramdisk parts allocated until they are garbage collected
+        ByteBuffer buffer = readBuffers.get();
+        long position = offset;
+        while (position < offset + length) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), offset + length - position));
+            int bytesRead = channel.read(buffer, position);
+            if (bytesRead == -1) {
+                throw new IOException("Unexpected end of file.");
+            }
+            buffer.flip();
+            checksum.update(buffer);
+            position += bytesRead;
+        }
+    }
+
+    private void updateWrittenSize(long endPosition) {
+        writtenSizeInBytes.accumulateAndGet(endPosition, Math::max);
+    }
+
+    private void trimToWrittenSize() throws DownloadException {
+        try (FileChannel channel = FileChannel.open(finalFilePath, WRITE)) {
+            if (channel.size() > writtenSizeInBytes.get()) {
+                channel.truncate(writtenSizeInBytes.get());
+            }
+        } catch (IOException e) {
+            throw new DownloadException(e, "Cannot trim file: " + finalFilePath);
+        }
+    }
+
+    private interface ChecksumSupplier {
+        BlockChecksum get() throws DownloadException;
+    }
+
+    private interface PendingPart {
+        void add() throws DownloadException;
+    }
+
+    public interface PartProcessedListener {
+        void onPartProcessed(ProcessedPart processedPart) throws DownloadException;
+    }
+
+    public static class ProcessedPart {
+        public final long offset;
+        public final long length;
+        public final String checksum;
+        public final PartHashTree hashTree;
+
+        private ProcessedPart(long offset, long length, BlockChecksum checksum) {
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum.getValue();
+            this.hashTree = new PartHashTree(checksum.getBlockSizeInBytes(), checksum.getBlockValues());
+        }
+
+        public ProcessedPart(long offset, long length, String checksum) {
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum;
+            this.hashTree = null;
+        }
+    }
+
+    public class PartWriter implements Closeable {
+        private final FileChannel channel;
+        private final BlockChecksum checksum = new BlockChecksum(checksumAlgorithm, subBlockSizeInBytes);
+        private final long offset;
+        private final boolean isProcessedOnClose;
+        private long position;
+
+        private PartWriter(long offset, boolean isProcessedOnClose) throws IOException {
+            this.channel = FileChannel.open(finalFilePath, WRITE);
+            this.offset = offset;
+            this.isProcessedOnClose = isProcessedOnClose;
+            this.position = offset;
+        }
+
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            checksum.update(bytes, off, len);
+
+            ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, off, len);
+            while (byteBuffer.hasRemaining()) {
+                position += channel.write(byteBuffer, position);
+            }
+            mergeBytes.add(len);
+        }
+
+        public void writeFrom(InputStream inputStream, long count) throws IOException {
+            byte[] buffer = new byte[1024 * 64];
+            long remaining = count;
+            while (remaining > 0) {
+                int bytesRead = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (bytesRead == -1) {
+                    throw new EOFException("Unexpected end of stream.");
+                }
+                write(buffer, 0, bytesRead);
+                remaining -= bytesRead;
+            }
+        }
+
+        public long getWrittenBytes() {
+            return position - offset;
+        }
+
+        public BlockChecksum getChecksum() {
+            return checksum;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+
+            updateWrittenSize(position);
+            if (isProcessedOnClose) {
+                futures.add(CompletableFuture.completedFuture(new ProcessedPart(offset, position - offset, checksum)));
+            }
+        }
     }
 }
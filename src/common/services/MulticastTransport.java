@@ -0,0 +1,219 @@
+package common.services;
+
+import common.exceptions.DownloadException;
+import common.models.UdpcastConfiguration;
+import common.tracing.Span;
+import common.tracing.Tracer;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.Selector;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public abstract class MulticastTransport implements Transport {
+    protected static final short magic = 0x5047;
+    protected static final byte announceType = 1;
+    protected static final byte helloType = 2;
+    protected static final byte welcomeType = 3;
+    protected static final byte dataType = 4;
+    protected static final byte requestAckType = 5;
+    protected static final byte statusType = 6;
+    protected static final byte finishType = 7;
+    protected static final byte finishAckType = 8;
+    protected static final byte abortType = 9;
+
+    protected static final int headerSize = 25;
+    protected static final int payloadSize = 1400;
+    protected static final int packetsPerSlice = 512;
+    protected static final int windowSlices = 8;
+    protected static final int maxPacketSize = 64 * 1024;
+    public static final String groupAddress = "239.255.77.77";
+    private static final long progressPeriodInNanos = TimeUnit.SECONDS.toNanos(1);
+
+    protected final NetworkInterface networkInterface;
+    protected final InetSocketAddress group;
+    protected final int controlPort;
+    protected volatile boolean isStopped = false;
+
+    private TransferProgress progress = new TransferProgress();
+    private final List<AutoCloseable> openedResources = new CopyOnWriteArrayList<>();
+    private long transferredBytes = 0;
+    private long reportedBytes = 0;
+    private long reportTime = System.nanoTime();
+
+    protected MulticastTransport(UdpcastConfiguration configuration, int stripe) throws DownloadException {
+        networkInterface = findNetworkInterface(configuration.getNetworkInterface(stripe));
+        try {
+            group = new InetSocketAddress(InetAddress.getByName(groupAddress), configuration.getPortbase(stripe));
+        } catch (UnknownHostException e) {
+            throw new DownloadException(e, "Wrong multicast group address: " + groupAddress);
+        }
+        controlPort = configuration.getPortbase(stripe) + 1;
+    }
+
+    @Override
+    public void setDownloadSize(int downloadSizeInMB) {
+        progress.setDownloadSize(downloadSizeInMB);
+    }
+
+    @Override
+    public void printStatsOnSuccess() {
+        progress.printStatsOnSuccess();
+    }
+
+    @Override
+    public void setProgress(TransferProgress progress) {
+        this.progress = progress;
+    }
+
+    @Override
+    public void stop() {
+        // aborts current session (or the next one when none is running), channels are opened again by later sessions
+        isStopped = true;
+        for (AutoCloseable resource : openedResources) {
+            try {
+                resource.close();
+            } catch (Exception ignored) {
+            }
+            openedResources.remove(resource);
+        }
+    }
+
+    protected void runSession(Path filePath, Session session) throws DownloadException {
+        long startTime = System.nanoTime();
+        long bytesBefore = transferredBytes;
+        Span span = Tracer.getInstance().span("multicast", String.valueOf(filePath.getFileName()));
+        try {
+            session.run();
+        } catch (IOException e) {
+            throw new DownloadException(e, "Could not send/receive file: " + filePath.toAbsolutePath() + ". " + e.getMessage());
+        } catch (ClosedSelectorException e) {
+            throw new DownloadException(e, "Could not send/receive file: " + filePath.toAbsolutePath() + ". Transfer was stopped.");
+        } finally {
+            isStopped = false;
+            TransferProgress.sessionSeconds.recordSince(startTime);
+            reportProgress(true);
+            span.arg("bytes", transferredBytes - bytesBefore).close();
+        }
+    }
+
+    protected void addTransferredBytes(long bytes) {
+        transferredBytes += bytes;
+        reportProgress(false);
+    }
+
+    protected <T extends AutoCloseable> T register(T resource) {
+        openedResources.add(resource);
+        return resource;
+    }
+
+    protected DatagramChannel openChannel() throws IOException {
+        return register(DatagramChannel.open(StandardProtocolFamily.INET));
+    }
+
+    protected Selector openSelector() throws IOException {
+        return register(Selector.open());
+    }
+
+    protected void checkStopped() throws IOException {
+        if (isStopped) {
+            throw new IOException("Transfer was stopped.");
+        }
+    }
+
+    protected static void putHeader(ByteBuffer buffer, byte type, int sessionId, int slice, int index, int value, long receiverId) {
+        buffer.clear();
+        buffer.putShort(magic).put(type).putInt(sessionId).putInt(slice).putShort((short) index).putInt(value).putLong(receiverId);
+    }
+
+    protected static boolean isValid(ByteBuffer packet) {
+        return packet.limit() >= headerSize && packet.getShort(0) == magic;
+    }
+
+    protected static byte getType(ByteBuffer packet) {
+        return packet.get(2);
+    }
+
+    protected static int getSessionId(ByteBuffer packet) {
+        return packet.getInt(3);
+    }
+
+    protected static int getSlice(ByteBuffer packet) {
+        return packet.getInt(7);
+    }
+
+    protected static int getIndex(ByteBuffer packet) {
+        return packet.getShort(11) & 0xFFFF;
+    }
+
+    protected static int getValue(ByteBuffer packet) {
+        return packet.getInt(13);
+    }
+
+    protected static long getReceiverId(ByteBuffer packet) {
+        return packet.getLong(17);
+    }
+
+    protected static int getPacketsCount(int sliceLength, int payloadSize) {
+        return (sliceLength + payloadSize - 1) / payloadSize;
+    }
+
+    private void reportProgress(boolean isFinal) {
+        long now = System.nanoTime();
+        if ((isFinal && transferredBytes > reportedBytes) || now - reportTime >= progressPeriodInNanos) {
+            progress.addTransferredBytes(transferredBytes - reportedBytes);
+            reportedBytes = transferredBytes;
+            reportTime = now;
+        }
+    }
+
+    public static NetworkInterface findNetworkInterface(String name) throws DownloadException {
+        try {
+            if (name != null) {
+                NetworkInterface networkInterface = NetworkInterface.getByName(name);
+                if (networkInterface == null) {
+                    throw new DownloadException("Could not find network interface: " + name);
+                }
+                return networkInterface;
+            }
+
+            NetworkInterface loopback = null;
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!networkInterface.isUp()) {
+                    continue;
+                }
+                if (networkInterface.isLoopback()) {
+                    loopback = networkInterface;
+                } else if (networkInterface.supportsMulticast() && hasIpv4Address(networkInterface)) {
+                    return networkInterface;
+                }
+            }
+            if (loopback != null) {
+                return loopback;
+            }
+        } catch (SocketException e) {
+            throw new DownloadException(e, "Could not list network interfaces.");
+        }
+        throw new DownloadException("Could not find network interface for multicast.");
+    }
+
+    private static boolean hasIpv4Address(NetworkInterface networkInterface) {
+        for (InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+            if (address instanceof Inet4Address) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected interface Session {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,5 @@
+package common.services;
+
+public interface ServerTransport extends Transport {
+    void shutdownClients();
+}
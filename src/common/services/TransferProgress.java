@@ -0,0 +1,84 @@
+package common.services;
+
+import common.metrics.Counter;
+import common.metrics.MetricsRegistry;
+import common.metrics.Timer;
+import common.utils.FilePartUtils;
+
+import java.util.concurrent.TimeUnit;
+
+public class TransferProgress {
+    public static final Counter multicastBytes = MetricsRegistry.getInstance().counter("pgd_multicast_bytes_total",
+            "Bytes transferred by udpcast, parsed from its statistics output.");
+    public static final Timer sessionSeconds = MetricsRegistry.getInstance().timer("pgd_udpcast_session_seconds",
+            "Duration of single udpcast process runs.");
+    private static final byte[] lineSeparator = System.lineSeparator().getBytes();
+
+    private long downloadSizeInBytes = 0;
+    private long remainingSizeInBytes = 0;
+    private long startTime = System.nanoTime();
+    private final StringBuilder infoLine = new StringBuilder(128);
+    private byte[] infoLineBytes = new byte[128];
+
+    public synchronized void setDownloadSize(int downloadSizeInMB) {
+        this.downloadSizeInBytes = FilePartUtils.megabytesToBytes(downloadSizeInMB);
+        this.remainingSizeInBytes = this.downloadSizeInBytes;
+        this.startTime = System.nanoTime();
+    }
+
+    public synchronized void printStatsOnSuccess() {
+        long secondsElapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
+        long megabytesDownloaded = FilePartUtils.bytesToMegabytes(downloadSizeInBytes);
+        int avgSpeed = (int) Math.ceil((double) megabytesDownloaded / secondsElapsed);
+        int minutes = (int) (secondsElapsed / 60);
+        int seconds = (int) secondsElapsed - minutes * 60;
+
+        System.out.println("Average speed: " + avgSpeed + " MBps, time elapsed: " + minutes + "min " + seconds + "s");
+    }
+
+    public synchronized void addTransferredBytes(long currentBytes) {
+        if (currentBytes > 0) {
+            multicastBytes.add(currentBytes);
+        }
+        remainingSizeInBytes -= currentBytes;
+
+        printDownloadInfo(currentBytes);
+    }
+
+    private void printDownloadInfo(long currentBytes) {
+        long speedTenthsMBps = (long) Math.ceil(currentBytes * 10.0 / (1024 * 1024));
+        infoLine.setLength(0);
+        infoLine.append("Speed: ").append(speedTenthsMBps / 10);
+        if (speedTenthsMBps % 10 != 0) {
+            infoLine.append('.').append(speedTenthsMBps % 10);
+        }
+        infoLine.append(" MBps, estimated time left: ");
+
+        if (remainingSizeInBytes > 0) {
+            long secondsElapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
+            long megabytesDownloaded = FilePartUtils.bytesToMegabytes(downloadSizeInBytes - remainingSizeInBytes);
+            double ratioMBps = (double) megabytesDownloaded / secondsElapsed;
+            double estimatedTime = FilePartUtils.bytesToMegabytes(remainingSizeInBytes) / ratioMBps;
+            int estimatedMinutes = (int) (estimatedTime / 60);
+            int estimatedSeconds = (int) estimatedTime - estimatedMinutes * 60;
+
+            infoLine.append(estimatedMinutes).append(" minutes ").append(estimatedSeconds).append(" seconds");
+        } else {
+            infoLine.append("n/a");
+        }
+        printInfoLine();
+    }
+
+    private void printInfoLine() {
+        int length = infoLine.length() + lineSeparator.length;
+        if (infoLineBytes.length < length) {
+            infoLineBytes = new byte[length * 2];
+        }
+        for (int i = 0; i < infoLine.length(); i++) {
+            infoLineBytes[i] = (byte) infoLine.charAt(i);
+        }
+        System.arraycopy(lineSeparator, 0, infoLineBytes, infoLine.length(), lineSeparator.length);
+        System.out.write(infoLineBytes, 0, length);
+        System.out.flush();
+    }
+}
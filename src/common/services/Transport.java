@@ -0,0 +1,32 @@
+package common.services;
+
+import common.exceptions.DownloadException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+public interface Transport {
+    void processFile(Path filePath) throws DownloadException;
+
+    void processStream(Path filePath, StreamFeeder feeder) throws DownloadException;
+
+    void receiveStream(Path filePath, StreamConsumer consumer) throws DownloadException;
+
+    void setDownloadSize(int downloadSizeInMB);
+
+    void printStatsOnSuccess();
+
+    void setProgress(TransferProgress progress);
+
+    void stop();
+
+    interface StreamFeeder {
+        void feed(OutputStream outputStream) throws IOException;
+    }
+
+    interface StreamConsumer {
+        void consume(InputStream inputStream) throws IOException;
+    }
+}
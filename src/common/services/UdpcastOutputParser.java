@@ -0,0 +1,136 @@
+package common.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class UdpcastOutputParser {
+    public static final int latestLinesCount = 10;
+    private static final int maxLineLength = 512;
+
+    private final LineListener listener;
+    private final byte[] readBuffer = new byte[8 * 1024];
+    private final byte[] line = new byte[maxLineLength];
+    private final byte[][] latestLines = new byte[latestLinesCount][maxLineLength];
+    private final int[] latestLineLengths = new int[latestLinesCount];
+    private int lineLength = 0;
+    private int latestLinesStart = 0;
+    private int latestLinesSize = 0;
+
+    public UdpcastOutputParser(LineListener listener) {
+        this.listener = listener;
+    }
+
+    public static byte[] toBytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static boolean startsWith(byte[] line, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static long parseNumber(byte[] line, int offset, int end) {
+        long integerPart = 0;
+        long fractionPart = 0;
+        long fractionScale = 1;
+        boolean hasDigits = false;
+        boolean isFraction = false;
+        long multiplier = 1;
+
+        for (int i = offset; i < end; i++) {
+            byte character = line[i];
+            if (character >= '0' && character <= '9') {
+                hasDigits = true;
+                if (isFraction) {
+                    if (fractionScale < 1_000_000_000L) {
+                        fractionPart = fractionPart * 10 + (character - '0');
+                        fractionScale *= 10;
+                    }
+                } else {
+                    integerPart = integerPart * 10 + (character - '0');
+                }
+            } else if (character == '.' && hasDigits && !isFraction) {
+                isFraction = true;
+            } else if (character != ' ') {
+                if (character == 'K' || character == 'k') {
+                    multiplier = 1_000L;
+                } else if (character == 'M' || character == 'm') {
+                    multiplier = 1_000_000L;
+                } else if (character == 'G' || character == 'g') {
+                    multiplier = 1_000_000_000L;
+                }
+                break;
+            }
+        }
+
+        if (!hasDigits) {
+            return -1;
+        }
+        return integerPart * multiplier + fractionPart * multiplier / fractionScale;
+    }
+
+    public void parse(InputStream inputStream) throws IOException {
+        int bytesRead;
+        while ((bytesRead = inputStream.read(readBuffer)) != -1) {
+            feed(readBuffer, 0, bytesRead);
+        }
+        finish();
+    }
+
+    public void feed(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte character = bytes[i];
+            if (character == '\n' || character == '\r') {
+                completeLine();
+            } else if (lineLength < line.length) {
+                line[lineLength++] = character;
+            }
+        }
+    }
+
+    public void finish() {
+        completeLine();
+    }
+
+    public List<String> getLatestLines() {
+        List<String> result = new ArrayList<>(latestLinesSize);
+        for (int i = 0; i < latestLinesSize; i++) {
+            int index = (latestLinesStart + i) % latestLinesCount;
+            result.add(new String(latestLines[index], 0, latestLineLengths[index]));
+        }
+        return result;
+    }
+
+    private void completeLine() {
+        if (lineLength == 0) {
+            return;
+        }
+
+        int index = (latestLinesStart + latestLinesSize) % latestLinesCount;
+        if (latestLinesSize < latestLinesCount) {
+            latestLinesSize++;
+        } else {
+            latestLinesStart = (latestLinesStart + 1) % latestLinesCount;
+        }
+        System.arraycopy(line, 0, latestLines[index], 0, lineLength);
+        latestLineLengths[index] = lineLength;
+
+        listener.onLine(line, lineLength);
+        lineLength = 0;
+    }
+
+    public interface LineListener {
+        void onLine(byte[] line, int length);
+    }
+}
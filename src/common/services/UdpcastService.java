@@ -1,30 +1,43 @@
 package common.services;
 
 import common.exceptions.DownloadException;
+import common.tracing.FlightRecorderEventType;
+import common.tracing.FlightRecorderEvents;
+import common.tracing.Span;
+import common.tracing.Tracer;
 import common.models.UdpcastConfiguration;
 import common.utils.FilePartUtils;
 
 import java.io.*;
-import java.math.RoundingMode;
 import java.net.URL;
 import java.nio.file.Path;
-import java.text.DecimalFormat;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public abstract class UdpcastService implements Transport {
+    public static final String executableDirectoryProperty = "pgd.udpcast.directory";
+    private static final ExecutableCache executableCache = new ExecutableCache(ExecutableCache.getDefaultDirectory());
+
+    private static final byte[] speedLinePrefix = UdpcastOutputParser.toBytes("bytes=");
 
-public abstract class UdpcastService {
     protected Process process;
     private final List<String> runParams;
-    private long downloadSizeInBytes = 0;
-    private long remainingSizeInBytes = 0;
-    private long startTime = System.nanoTime();
+    private TransferProgress progress = new TransferProgress();
+    private long latestBytes = 0;
 
-    protected UdpcastService(String programName, UdpcastConfiguration configuration, List<String> params) throws DownloadException {
+    protected UdpcastService(String programName, UdpcastConfiguration configuration, int stripe, List<String> params) throws DownloadException {
         String executablePath;
-        if (FilePartUtils.isWindows) {
-            executablePath = extractExecutable("/udpcast/exe/" + programName + ".exe", programName);
+        String executableDirectory = System.getProperty(executableDirectoryProperty);
+        if (executableDirectory != null) {
+            executablePath = Paths.get(executableDirectory, programName).toString();
+        } else if (FilePartUtils.isWindows) {
+            String resourcePath = "/udpcast/exe/" + programName + ".exe";
+            Path cachedPath = extractCachedExecutable(resourcePath, programName + ".exe");
+            executablePath = cachedPath != null ? cachedPath.toString() : extractExecutable(resourcePath, programName);
         } else {
             executablePath = selectProperLinuxVersion(programName);
         }
@@ -32,17 +45,18 @@ public abstract class UdpcastService {
         params.add(0, executablePath);
         params.add("--nokbd");
         params.add("--portbase");
-        params.add(String.valueOf(configuration.getPortbase()));
+        params.add(String.valueOf(configuration.getPortbase(stripe)));
         params.add("--stat-period");
         params.add("1000");
-        if (configuration.getNetworkInterface() != null) {
+        if (configuration.getNetworkInterface(stripe) != null) {
             params.add("--interface");
-            params.add(configuration.getNetworkInterface());
+            params.add(configuration.getNetworkInterface(stripe));
         }
 
         runParams = params;
     }
 
+    @Override
     public void processFile(Path filePath) throws DownloadException {
         processFile(filePath, null);
     }
@@ -50,139 +64,210 @@ public abstract class UdpcastService {
     protected void processFile(Path filePath, List<String> additionalParams) throws DownloadException {
         FilePartUtils.markToDeleteOnExit(filePath);
 
-        List<String> params = new ArrayList<>(runParams);
-        if (additionalParams != null) {
-            params.addAll(additionalParams);
-        }
+        List<String> params = prepareParams(additionalParams);
         params.add("--file");
         params.add(filePath.toAbsolutePath().toString());
 
         System.out.println("UDPcast - processing file part: " + filePath.toAbsolutePath());
-        ProcessBuilder processBuilder = new ProcessBuilder(params).redirectErrorStream(true);
         try {
-            process = processBuilder.start();
-            List<String> latestLines = getProcessOutput(process);
-
-            process.waitFor(2, TimeUnit.SECONDS);
-            int exitCode = process.exitValue();
-            if (exitCode != 0) {
-                System.err.println("Latest 10 lines of UDPCast:");
-                System.err.println(latestLines);
-                throw new IOException("Error: exit code=" + exitCode);
-            }
+            runProcess(filePath, params, null, null);
         } catch (IOException | InterruptedException e) {
-            stopUdpcast();
+            stop();
             FilePartUtils.removeFile(filePath);
             throw new DownloadException(e, "Could not send/receive file: " + filePath.toAbsolutePath());
         }
     }
 
+    @Override
+    public void processStream(Path filePath, StreamFeeder feeder) throws DownloadException {
+        processStream(filePath, feeder, null);
+    }
+
+    protected void processStream(Path filePath, StreamFeeder feeder, List<String> additionalParams) throws DownloadException {
+        FilePartUtils.markToDeleteOnExit(filePath);
+
+        System.out.println("UDPcast - streaming file part: " + filePath.toAbsolutePath());
+        try {
+            runProcess(filePath, prepareParams(additionalParams), feeder, null);
+        } catch (IOException | InterruptedException e) {
+            stop();
+            throw new DownloadException(e, "Could not stream file: " + filePath.toAbsolutePath());
+        }
+    }
+
+    @Override
+    public void receiveStream(Path filePath, StreamConsumer consumer) throws DownloadException {
+        FilePartUtils.markToDeleteOnExit(filePath);
+
+        System.out.println("UDPcast - receiving stream: " + filePath.toAbsolutePath());
+        try {
+            runProcess(filePath, prepareParams(null), null, consumer);
+        } catch (IOException | InterruptedException e) {
+            stop();
+            throw new DownloadException(e, "Could not receive stream: " + filePath.toAbsolutePath());
+        }
+    }
+
+    @Override
     public void setDownloadSize(int downloadSizeInMB) {
-        this.downloadSizeInBytes = FilePartUtils.megabytesToBytes(downloadSizeInMB);
-        this.remainingSizeInBytes = this.downloadSizeInBytes;
-        this.startTime = System.nanoTime();
+        progress.setDownloadSize(downloadSizeInMB);
     }
 
+    @Override
     public void printStatsOnSuccess() {
-        long secondsElapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
-        long megabytesDownloaded = FilePartUtils.bytesToMegabytes(downloadSizeInBytes);
-        int avgSpeed = (int) Math.ceil((double) megabytesDownloaded / secondsElapsed);
-        int minutes = (int) (secondsElapsed / 60);
-        int seconds = (int) secondsElapsed - minutes * 60;
+        progress.printStatsOnSuccess();
+    }
 
-        System.out.println("Average speed: " + avgSpeed + " MBps, time elapsed: " + minutes + "min " + seconds + "s");
+    @Override
+    public void setProgress(TransferProgress progress) {
+        this.progress = progress;
     }
 
-    public void stopUdpcast() {
+    @Override
+    public void stop() {
         if (process != null) {
             process.destroyForcibly();
         }
     }
 
-    private List<String> getProcessOutput(Process process) throws IOException {
-        ArrayList<String> latestLines = new ArrayList<>();
-        try (InputStream is = process.getInputStream();
-             InputStreamReader isReader = new InputStreamReader(is);
-             BufferedReader reader = new BufferedReader(isReader)) {
-            long latestBytes = 0;
-            String line;
-            while ((line = reader.readLine()) != null) {
-                latestLines.add(line);
-                if (latestLines.size() > 10) {
-                    latestLines.remove(0);
-                }
-
-                latestBytes = processLine(line, latestBytes);
-            }
+    private List<String> prepareParams(List<String> additionalParams) {
+        List<String> params = new ArrayList<>(runParams);
+        if (additionalParams != null) {
+            params.addAll(additionalParams);
         }
+        return params;
+    }
 
-        return latestLines;
+    private void runProcess(Path filePath, List<String> params, StreamFeeder feeder, StreamConsumer consumer) throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
+        String fileName = String.valueOf(filePath.getFileName());
+        Span span = Tracer.getInstance().span("multicast", fileName);
+        FlightRecorderEventType.Record event = FlightRecorderEvents.udpcastProcess.begin();
+        process = null;
+        try {
+            runProcessAndWait(params, feeder, consumer);
+        } finally {
+            TransferProgress.sessionSeconds.recordSince(startTime);
+            span.arg("bytes", latestBytes).close();
+            event.set("file", fileName).set("bytes", latestBytes).set("exitCode", getExitCode()).commit();
+        }
     }
 
-    protected long processLine(String line, long latestBytes) {
-        String speedLineStart = "bytes=";
-        if (!line.startsWith(speedLineStart)) {
-            return latestBytes;
+    private long getExitCode() {
+        Process currentProcess = process;
+        if (currentProcess == null || currentProcess.isAlive()) {
+            return -1;
         }
+        return currentProcess.exitValue();
+    }
 
-        long bytes = parseBytes(line.substring(speedLineStart.length()));
-        long currentBytes = bytes - latestBytes;
-        latestBytes = bytes;
-        remainingSizeInBytes -= currentBytes;
-
-        printDownloadInfo(currentBytes);
-        return latestBytes;
-    }
-
-    private long parseBytes(String text) {
-        StringBuilder result = new StringBuilder();
-        for (char character : text.toCharArray()) {
-            boolean isDigit = Character.isDigit(character);
-            boolean isSpace = character == ' ';
-            if (isDigit) {
-                result.append(character);
-            } else if (!isSpace) {
-                if (character == 'K' || character == 'k') {
-                    result.append("000");
-                } else if (character == 'M' || character == 'm') {
-                    result.append("000000");
+    private void runProcessAndWait(List<String> params, StreamFeeder feeder, StreamConsumer consumer) throws IOException, InterruptedException {
+        ProcessBuilder processBuilder = new ProcessBuilder(params).redirectErrorStream(consumer == null);
+        Process process = processBuilder.start();
+        this.process = process;
+
+        AtomicReference<IOException> pipeError = new AtomicReference<>();
+        Thread pipeThread = null;
+        if (feeder != null) {
+            pipeThread = new Thread(() -> {
+                try (OutputStream outputStream = process.getOutputStream()) {
+                    feeder.feed(outputStream);
+                } catch (IOException e) {
+                    pipeError.set(e);
+                    process.destroyForcibly();
                 }
-                break;
+            });
+        } else if (consumer != null) {
+            pipeThread = new Thread(() -> {
+                try (InputStream inputStream = process.getInputStream()) {
+                    consumer.consume(inputStream);
+                    drain(inputStream);
+                } catch (IOException e) {
+                    pipeError.set(e);
+                    process.destroyForcibly();
+                }
+            });
+        }
+        if (pipeThread != null) {
+            pipeThread.start();
+        }
+
+        InputStream outputStream = consumer == null ? process.getInputStream() : process.getErrorStream();
+        UdpcastOutputParser outputParser = readProcessOutput(outputStream);
+
+        process.waitFor(2, TimeUnit.SECONDS);
+        if (pipeThread != null) {
+            if (feeder != null && !process.isAlive()) {
+                pipeThread.interrupt();
+            }
+            pipeThread.join();
+            if (pipeError.get() != null) {
+                throw pipeError.get();
             }
         }
 
-        return Long.parseLong(result.toString());
+        int exitCode = process.exitValue();
+        if (exitCode != 0) {
+            System.err.println("Latest " + UdpcastOutputParser.latestLinesCount + " lines of UDPCast:");
+            System.err.println(outputParser.getLatestLines());
+            throw new IOException("Error: exit code=" + exitCode);
+        }
     }
 
-    private void printDownloadInfo(long currentBytes) {
-        DecimalFormat formatter = new DecimalFormat("#.#");
-        formatter.setRoundingMode(RoundingMode.CEILING);
-        double speedMBps = (double) currentBytes / (1024 * 1024);
-        String outText = "Speed: " + formatter.format(speedMBps) + " MBps, estimated time left: ";
+    private void drain(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[1024 * 8];
+        int bytesRead;
+        do {
+            bytesRead = inputStream.read(buffer);
+        } while (bytesRead != -1);
+    }
 
-        if (remainingSizeInBytes > 0) {
-            long secondsElapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startTime);
-            long megabytesDownloaded = FilePartUtils.bytesToMegabytes(downloadSizeInBytes - remainingSizeInBytes);
-            double ratioMBps = (double) megabytesDownloaded / secondsElapsed;
-            double estimatedTime = FilePartUtils.bytesToMegabytes(remainingSizeInBytes) / ratioMBps;
-            int estimatedMinutes = (int) (estimatedTime / 60);
-            int estimatedSeconds = (int) estimatedTime - estimatedMinutes * 60;
+    private UdpcastOutputParser readProcessOutput(InputStream processOutput) throws IOException {
+        latestBytes = 0;
+        UdpcastOutputParser parser = new UdpcastOutputParser(this::processLine);
+        try (InputStream inputStream = processOutput) {
+            parser.parse(inputStream);
+        }
+        return parser;
+    }
 
-            outText += estimatedMinutes + " minutes " + estimatedSeconds + " seconds";
-        } else {
-            outText += "n/a";
+    protected void processLine(byte[] line, int length) {
+        if (!UdpcastOutputParser.startsWith(line, length, speedLinePrefix)) {
+            return;
+        }
+
+        long bytes = UdpcastOutputParser.parseNumber(line, speedLinePrefix.length, length);
+        if (bytes < 0) {
+            return;
         }
-        System.out.println(outText);
+        long currentBytes = bytes - latestBytes;
+        latestBytes = bytes;
+        progress.addTransferredBytes(currentBytes);
     }
 
     private String selectProperLinuxVersion(String programName) throws DownloadException {
-        List<String> versions = Arrays.asList("deb-x64", "rpm-x64", "deb-x86", "rpm-x86");
+        List<String> versions = new ArrayList<>(Arrays.asList("deb-x64", "rpm-x64", "deb-x86", "rpm-x86"));
+        String preferredVersion = executableCache.readPreferredVariant(programName);
+        if (versions.remove(preferredVersion)) {
+            versions.add(0, preferredVersion);
+        }
+
         for (String version : versions) {
+            String resourcePath = "/udpcast/" + version + "/" + programName;
+            Path cachedPath = extractCachedExecutable(resourcePath, programName);
+            if (cachedPath != null && executableCache.isVerified(cachedPath)) {
+                return cachedPath.toString();
+            }
+
             try {
-                String executableUrl = extractExecutable("/udpcast/" + version + "/" + programName, programName);
+                String executableUrl = cachedPath != null ? cachedPath.toString() : extractExecutable(resourcePath, programName);
                 Process process = new ProcessBuilder(executableUrl, "--license").redirectErrorStream(true).start();
                 process.waitFor(1, TimeUnit.SECONDS);
                 if (process.exitValue() == 0) {
+                    if (cachedPath != null) {
+                        executableCache.markVerified(cachedPath);
+                        executableCache.writePreferredVariant(programName, version);
+                    }
                     return executableUrl;
                 }
             } catch (IOException | InterruptedException | IllegalThreadStateException ignored) {
@@ -193,6 +278,14 @@ public abstract class UdpcastService {
                 "(required min version 2.34 - try install via 'sudo apt install libc6') or not supported OS.");
     }
 
+    private Path extractCachedExecutable(String resourcePath, String fileName) {
+        try {
+            return executableCache.extract(resourcePath, fileName);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
     private String extractExecutable(String resourcePath, String programName) throws DownloadException {
         URL executableUrl = UdpcastService.class.getResource(resourcePath);
         if (executableUrl == null) {
@@ -207,7 +300,7 @@ public abstract class UdpcastService {
 
             try (FileOutputStream outputStream = new FileOutputStream(file);
                  InputStream inputStream = executableUrl.openStream()) {
-                byte[] buffer = new byte[1024];
+                byte[] buffer = new byte[64 * 1024];
                 int length;
                 while ((length = inputStream.read(buffer)) != -1) {
                     outputStream.write(buffer, 0, length);
@@ -218,4 +311,5 @@ public abstract class UdpcastService {
             throw new DownloadException("Could not load udpcast packet files from resources.");
         }
     }
+
 }
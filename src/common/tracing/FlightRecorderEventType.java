@@ -0,0 +1,185 @@
+package common.tracing;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class FlightRecorderEventType {
+    private static final String category = "ParallelGroupDownloader";
+    private static final Api api = Api.load();
+
+    private final String name;
+    private final String[] fieldNames;
+    private final Object eventType;
+    private final Object factory;
+
+    private FlightRecorderEventType(String name, String label, String[] fieldNames, Class<?>[] fieldTypes) {
+        this.name = name;
+        this.fieldNames = fieldNames;
+
+        Object createdFactory = null;
+        Object createdEventType = null;
+        if (api != null) {
+            try {
+                createdFactory = api.create(name, label, fieldNames, fieldTypes);
+                createdEventType = api.getEventType.invoke(createdFactory);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                createdFactory = null;
+                createdEventType = null;
+            }
+        }
+        this.factory = createdFactory;
+        this.eventType = createdEventType;
+    }
+
+    public static FlightRecorderEventType define(String name, String label, String[] fieldNames, Class<?>... fieldTypes) {
+        if (fieldNames.length != fieldTypes.length) {
+            throw new IllegalArgumentException("Each field of event needs a type: " + name);
+        }
+        return new FlightRecorderEventType(name, label, fieldNames, fieldTypes);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isAvailable() {
+        return factory != null;
+    }
+
+    public boolean isEnabled() {
+        if (eventType == null) {
+            return false;
+        }
+        try {
+            return (boolean) api.isEnabled.invoke(eventType);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    public Record begin() {
+        if (!isEnabled()) {
+            return Record.disabled;
+        }
+        try {
+            Object event = api.newEvent.invoke(factory);
+            api.begin.invoke(event);
+            return new Record(this, event);
+        } catch (ReflectiveOperationException e) {
+            return Record.disabled;
+        }
+    }
+
+    private int indexOf(String fieldName) {
+        for (int i = 0; i < fieldNames.length; i++) {
+            if (fieldNames[i].equals(fieldName)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown field of event " + name + ": " + fieldName);
+    }
+
+    public static class Record {
+        static final Record disabled = new Record(null, null);
+
+        private final FlightRecorderEventType type;
+        private final Object event;
+
+        private Record(FlightRecorderEventType type, Object event) {
+            this.type = type;
+            this.event = event;
+        }
+
+        public Record set(String fieldName, long value) {
+            if (event != null) {
+                setValue(fieldName, value);
+            }
+            return this;
+        }
+
+        public Record set(String fieldName, String value) {
+            if (event != null) {
+                setValue(fieldName, value);
+            }
+            return this;
+        }
+
+        public void commit() {
+            if (event == null) {
+                return;
+            }
+            try {
+                api.end.invoke(event);
+                api.commit.invoke(event);
+            } catch (ReflectiveOperationException ignored) {
+            }
+        }
+
+        private void setValue(String fieldName, Object value) {
+            try {
+                api.set.invoke(event, type.indexOf(fieldName), value);
+            } catch (ReflectiveOperationException ignored) {
+            }
+        }
+    }
+
+    private static class Api {
+        private Method createFactory;
+        private Constructor<?> annotationElement;
+        private Constructor<?> valueDescriptor;
+        private Class<? extends Annotation> nameAnnotation;
+        private Class<? extends Annotation> labelAnnotation;
+        private Class<? extends Annotation> categoryAnnotation;
+        private Method getEventType;
+        private Method isEnabled;
+        private Method newEvent;
+        private Method begin;
+        private Method end;
+        private Method set;
+        private Method commit;
+
+        private static Api load() {
+            try {
+                Api api = new Api();
+                Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+                Class<?> eventClass = Class.forName("jdk.jfr.Event");
+                Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+                Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+
+                api.createFactory = factoryClass.getMethod("create", List.class, List.class);
+                api.annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+                api.valueDescriptor = valueDescriptorClass.getConstructor(Class.class, String.class);
+                api.nameAnnotation = Class.forName("jdk.jfr.Name").asSubclass(Annotation.class);
+                api.labelAnnotation = Class.forName("jdk.jfr.Label").asSubclass(Annotation.class);
+                api.categoryAnnotation = Class.forName("jdk.jfr.Category").asSubclass(Annotation.class);
+                api.getEventType = factoryClass.getMethod("getEventType");
+                api.isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+                api.newEvent = factoryClass.getMethod("newEvent");
+                api.begin = eventClass.getMethod("begin");
+                api.end = eventClass.getMethod("end");
+                api.set = eventClass.getMethod("set", int.class, Object.class);
+                api.commit = eventClass.getMethod("commit");
+                return api;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return null;
+            }
+        }
+
+        private Object create(String name, String label, String[] fieldNames, Class<?>[] fieldTypes) throws ReflectiveOperationException {
+            List<Object> annotations = Arrays.asList(
+                    annotationElement.newInstance(nameAnnotation, name),
+                    annotationElement.newInstance(labelAnnotation, label),
+                    annotationElement.newInstance(categoryAnnotation, new String[]{category})
+            );
+            List<Object> fields = new ArrayList<>();
+            for (int i = 0; i < fieldNames.length; i++) {
+                fields.add(valueDescriptor.newInstance(fieldTypes[i], fieldNames[i]));
+            }
+            return createFactory.invoke(null, annotations, fields);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package common.tracing;
+
+public class FlightRecorderEvents {
+    public static final FlightRecorderEventType partDownload = FlightRecorderEventType.define(
+            "pgd.PartDownload", "Part Download",
+            new String[]{"partIndex", "segments", "bytes"}, long.class, long.class, long.class);
+
+    public static final FlightRecorderEventType udpcastProcess = FlightRecorderEventType.define(
+            "pgd.UdpcastProcess", "Udpcast Process",
+            new String[]{"file", "bytes", "exitCode"}, String.class, long.class, long.class);
+
+    public static final FlightRecorderEventType checksum = FlightRecorderEventType.define(
+            "pgd.Checksum", "Checksum Range",
+            new String[]{"file", "offset", "bytes"}, String.class, long.class, long.class);
+
+    public static final FlightRecorderEventType merge = FlightRecorderEventType.define(
+            "pgd.Merge", "Part Merge",
+            new String[]{"file", "offset", "bytes"}, String.class, long.class, long.class);
+
+    public static final FlightRecorderEventType pipelineWait = FlightRecorderEventType.define(
+            "pgd.PipelineWait", "Pipeline Slot Wait",
+            new String[]{"partIndex", "pipelineDepth"}, long.class, long.class);
+}
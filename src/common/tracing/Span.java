@@ -0,0 +1,90 @@
+package common.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Span implements AutoCloseable {
+    static final Span disabled = new Span(null, null, null, 0, 0, false);
+
+    private final Tracer tracer;
+    private final String category;
+    private final String name;
+    private final long id;
+    private final long threadId;
+    private final boolean isAsync;
+    private final long startTime = System.nanoTime();
+    private Map<String, Object> args;
+    private boolean isClosed = false;
+
+    Span(Tracer tracer, String category, String name, long id, long threadId, boolean isAsync) {
+        this.tracer = tracer;
+        this.category = category;
+        this.name = name;
+        this.id = id;
+        this.threadId = threadId;
+        this.isAsync = isAsync;
+    }
+
+    public Span arg(String key, long value) {
+        if (tracer != null) {
+            addArg(key, value);
+        }
+        return this;
+    }
+
+    public Span arg(String key, String value) {
+        if (tracer != null) {
+            addArg(key, value);
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (tracer == null) {
+            return;
+        }
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+        }
+        tracer.record(this, System.nanoTime());
+    }
+
+    String getCategory() {
+        return category;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    long getThreadId() {
+        return threadId;
+    }
+
+    boolean isAsync() {
+        return isAsync;
+    }
+
+    long getStartTime() {
+        return startTime;
+    }
+
+    synchronized Map<String, Object> getArgs() {
+        return args;
+    }
+
+    private synchronized void addArg(String key, Object value) {
+        if (args == null) {
+            args = new LinkedHashMap<>();
+        }
+        args.put(key, value);
+    }
+}
@@ -0,0 +1,140 @@
+package common.tracing;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class Tracer {
+    private static final Tracer instance = new Tracer();
+
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+    private final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+    private final long originTime = System.nanoTime();
+    private volatile boolean isEnabled = false;
+
+    public static Tracer getInstance() {
+        return instance;
+    }
+
+    public void enable() {
+        isEnabled = true;
+    }
+
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    public Span span(String category, String name) {
+        if (!isEnabled) {
+            return Span.disabled;
+        }
+        return new Span(this, category, name, 0, registerCurrentThread(), false);
+    }
+
+    public Span asyncSpan(String category, String name, long id) {
+        if (!isEnabled) {
+            return Span.disabled;
+        }
+        return new Span(this, category, name, id, registerCurrentThread(), true);
+    }
+
+    public void writeTo(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            boolean isFirst = true;
+            for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+                isFirst = writeSeparator(writer, isFirst);
+                writer.write("{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":1,\"tid\":" + thread.getKey() +
+                        ",\"args\":{\"name\":" + quote(thread.getValue()) + "}}");
+            }
+            for (Event event : events) {
+                isFirst = writeSeparator(writer, isFirst);
+                writeEvent(writer, event);
+            }
+            writer.write("]}\n");
+        }
+    }
+
+    void record(Span span, long endTime) {
+        events.add(new Event(span, endTime));
+    }
+
+    private long registerCurrentThread() {
+        Thread thread = Thread.currentThread();
+        threadNames.putIfAbsent(thread.getId(), thread.getName());
+        return thread.getId();
+    }
+
+    private void writeEvent(Writer writer, Event event) throws IOException {
+        Span span = event.span;
+        String common = "\"cat\":" + quote(span.getCategory()) + ",\"name\":" + quote(span.getName()) +
+                ",\"pid\":1,\"tid\":" + span.getThreadId();
+        String args = ",\"args\":" + toJson(span.getArgs());
+
+        if (span.isAsync()) {
+            String id = ",\"id\":" + span.getId();
+            writer.write("{\"ph\":\"b\"," + common + id + ",\"ts\":" + toMicros(span.getStartTime()) + args + "},");
+            writer.write("{\"ph\":\"e\"," + common + id + ",\"ts\":" + toMicros(event.endTime) + "}");
+        } else {
+            writer.write("{\"ph\":\"X\"," + common + ",\"ts\":" + toMicros(span.getStartTime()) +
+                    ",\"dur\":" + (event.endTime - span.getStartTime()) / 1000.0 + args + "}");
+        }
+    }
+
+    private boolean writeSeparator(Writer writer, boolean isFirst) throws IOException {
+        if (!isFirst) {
+            writer.write(",\n");
+        }
+        return false;
+    }
+
+    private String toMicros(long time) {
+        return String.valueOf((time - originTime) / 1000.0);
+    }
+
+    private static String toJson(Map<String, Object> args) {
+        if (args == null) {
+            return "{}";
+        }
+        StringBuilder builder = new StringBuilder("{");
+        for (Map.Entry<String, Object> arg : args.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(quote(arg.getKey())).append(':');
+            Object value = arg.getValue();
+            builder.append(value instanceof Number ? value.toString() : quote(String.valueOf(value)));
+        }
+        return builder.append('}').toString();
+    }
+
+    static String quote(String text) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char character : text.toCharArray()) {
+            if (character == '"' || character == '\\') {
+                builder.append('\\').append(character);
+            } else if (character < 0x20) {
+                builder.append(String.format("\\u%04x", (int) character));
+            } else {
+                builder.append(character);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static class Event {
+        private final Span span;
+        private final long endTime;
+
+        private Event(Span span, long endTime) {
+            this.span = span;
+            this.endTime = endTime;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package common.utils;
+
+import common.checksums.Crc32c;
+import common.checksums.PartChecksum;
+import common.checksums.Sha256PartChecksum;
+import common.checksums.ZipPartChecksum;
+import common.models.ChecksumAlgorithmEnum;
+
+import java.util.zip.Adler32;
+import java.util.zip.Checksum;
+
+public class ChecksumUtils {
+    private static final long adlerBase = 65521;
+    private static final long crc32cPolynomial = 0x82F63B78L;
+    private static final Class<?> jdkCrc32cClass = findJdkCrc32cClass();
+
+    public static ChecksumAlgorithmEnum getDefaultAlgorithm() {
+        return jdkCrc32cClass != null ? ChecksumAlgorithmEnum.CRC32C : ChecksumAlgorithmEnum.Adler32;
+    }
+
+    public static boolean isCombinable(ChecksumAlgorithmEnum algorithm) {
+        return algorithm != ChecksumAlgorithmEnum.SHA256;
+    }
+
+    public static PartChecksum createChecksum(ChecksumAlgorithmEnum algorithm) {
+        switch (algorithm) {
+            case CRC32C:
+                return new ZipPartChecksum(createCrc32c(), ChecksumUtils::combineCrc32c);
+            case SHA256:
+                return new Sha256PartChecksum();
+            default:
+                return new ZipPartChecksum(new Adler32(), ChecksumUtils::combineAdler32);
+        }
+    }
+
+    public static long combineAdler32(long adler1, long adler2, long length2) {
+        long remainder = length2 % adlerBase;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (remainder * sum1) % adlerBase;
+        sum1 += (adler2 & 0xffff) + adlerBase - 1;
+        sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + adlerBase - remainder;
+
+        if (sum1 >= adlerBase) {
+            sum1 -= adlerBase;
+        }
+        if (sum1 >= adlerBase) {
+            sum1 -= adlerBase;
+        }
+        if (sum2 >= (adlerBase << 1)) {
+            sum2 -= (adlerBase << 1);
+        }
+        if (sum2 >= adlerBase) {
+            sum2 -= adlerBase;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    public static long combineCrc32c(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        odd[0] = crc32cPolynomial;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            length2 >>= 1;
+            if (length2 == 0) {
+                break;
+            }
+
+            gf2MatrixSquare(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            length2 >>= 1;
+        } while (length2 != 0);
+
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
+    private static Checksum createCrc32c() {
+        if (jdkCrc32cClass != null) {
+            try {
+                return (Checksum) jdkCrc32cClass.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException ignored) {
+            }
+        }
+        return new Crc32c();
+    }
+
+    private static Class<?> findJdkCrc32cClass() {
+        // java.util.zip.CRC32C is intrinsified on Java 9+, older runtimes use pure Java implementation
+        try {
+            return Class.forName("java.util.zip.CRC32C");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 public class FilePartUtils {
     public static final boolean isWindows = System.getProperty("os.name").toLowerCase().contains("win");
@@ -36,7 +38,9 @@ public class FilePartUtils {
             Path ramdisk = Paths.get("/dev/shm");
             int sizeInMBWithMargin = expectedSizeInMB + 128;
             if (Files.exists(ramdisk) && checkFreeSpace(ramdisk, sizeInMBWithMargin)) {
-                path = Paths.get(String.valueOf(ramdisk), fileName);
+                // ramdisk is shared by all processes, so parts of different download directories must not collide
+                String directoryId = Integer.toHexString(Paths.get(downloadDirectory).toAbsolutePath().hashCode());
+                path = Paths.get(String.valueOf(ramdisk), directoryId + "-" + fileName);
             }
         }
 
@@ -59,4 +63,48 @@ public class FilePartUtils {
         } catch (Exception ignored) {
         }
     }
+
+    public static List<long[]> mergeRanges(List<long[]> ranges) {
+        List<long[]> sortedRanges = new ArrayList<>(ranges);
+        sortedRanges.sort((range1, range2) -> Long.compare(range1[0], range2[0]));
+
+        List<long[]> mergedRanges = new ArrayList<>();
+        for (long[] range : sortedRanges) {
+            long[] lastRange = mergedRanges.isEmpty() ? null : mergedRanges.get(mergedRanges.size() - 1);
+            if (lastRange != null && range[0] <= lastRange[0] + lastRange[1]) {
+                lastRange[1] = Math.max(lastRange[1], range[0] + range[1] - lastRange[0]);
+            } else {
+                mergedRanges.add(new long[]{range[0], range[1]});
+            }
+        }
+        return mergedRanges;
+    }
+
+    public static String formatRanges(List<long[]> ranges) {
+        StringBuilder builder = new StringBuilder();
+        for (long[] range : ranges) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(range[0]).append(':').append(range[1]);
+        }
+        return builder.toString();
+    }
+
+    public static List<long[]> parseRanges(String value) {
+        List<long[]> ranges = new ArrayList<>();
+        for (String range : value.split(",")) {
+            String[] values = range.split(":");
+            if (values.length != 2) {
+                throw new IllegalArgumentException("Wrong range: " + range);
+            }
+            long offset = Long.parseLong(values[0]);
+            long length = Long.parseLong(values[1]);
+            if (offset < 0 || length < 1) {
+                throw new IllegalArgumentException("Wrong range: " + range);
+            }
+            ranges.add(new long[]{offset, length});
+        }
+        return ranges;
+    }
 }
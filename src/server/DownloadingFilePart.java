@@ -0,0 +1,141 @@
+package server;
+
+import common.checksums.BlockChecksum;
+import common.metrics.MetricsRegistry;
+import common.metrics.Timer;
+import common.tracing.FlightRecorderEventType;
+import common.tracing.FlightRecorderEvents;
+import common.tracing.Span;
+import common.tracing.Tracer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+public class DownloadingFilePart {
+    private static final Timer partDownloadSeconds = MetricsRegistry.getInstance().timer("pgd_part_download_seconds",
+            "Time from the start of a part download to its completion.");
+
+    public final int index;
+    public final Path path;
+    public final long fileOffset;
+    public final int segmentsCount;
+
+    private final long segmentLength;
+    private final long[] segmentsProgress;
+    private long availableBytes = 0;
+    private boolean finished = false;
+    private boolean failed = false;
+    private BlockChecksum checksum;
+    private final long startTime = System.nanoTime();
+    private final Span downloadSpan;
+    private final FlightRecorderEventType.Record downloadEvent;
+
+    public DownloadingFilePart(int index, Path path, long segmentLength, int segmentsCount) {
+        this(index, path, 0, segmentLength, segmentsCount);
+    }
+
+    public DownloadingFilePart(int index, Path path, long fileOffset, long segmentLength, int segmentsCount) {
+        this.index = index;
+        this.path = path;
+        this.fileOffset = fileOffset;
+        this.segmentsCount = segmentsCount;
+        this.segmentLength = segmentLength;
+        this.segmentsProgress = new long[segmentsCount];
+        this.downloadSpan = Tracer.getInstance().asyncSpan("download", "part " + index, index);
+        this.downloadEvent = FlightRecorderEvents.partDownload.begin();
+    }
+
+    public synchronized long getAvailableBytes() {
+        return availableBytes;
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+
+    public synchronized void updateProgress(int segment, long transferredBytes) {
+        segmentsProgress[segment] = transferredBytes;
+
+        long contiguousBytes = 0;
+        for (long progress : segmentsProgress) {
+            contiguousBytes += progress;
+            if (progress < segmentLength) {
+                break;
+            }
+        }
+        availableBytes = contiguousBytes;
+        notifyAll();
+    }
+
+    public synchronized BlockChecksum getChecksum() {
+        return checksum;
+    }
+
+    public synchronized void setChecksum(BlockChecksum checksum) {
+        this.checksum = checksum;
+    }
+
+    public synchronized void finish() {
+        if (!finished) {
+            partDownloadSeconds.recordSince(startTime);
+            downloadSpan.arg("bytes", availableBytes).close();
+            downloadEvent.set("partIndex", index).set("segments", segmentsCount).set("bytes", availableBytes).commit();
+        }
+        finished = true;
+        notifyAll();
+    }
+
+    public synchronized void fail() {
+        downloadSpan.arg("failed", 1).close();
+        failed = true;
+        notifyAll();
+    }
+
+    public synchronized boolean waitForFinish() throws InterruptedException {
+        while (!finished && !failed) {
+            wait();
+        }
+        return finished;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        WritableByteChannel outputChannel = outputStream instanceof WritableByteChannel
+                ? (WritableByteChannel) outputStream : Channels.newChannel(outputStream);
+        try (FileChannel fileChannel = FileChannel.open(path, READ)) {
+            long position = 0;
+            long available;
+            while ((available = waitForBytesAfter(position)) > position) {
+                while (position < available) {
+                    long count = fileChannel.transferTo(fileOffset + position, available - position, outputChannel);
+                    if (count <= 0) {
+                        throw new IOException("Could not send file part: " + path);
+                    }
+                    position += count;
+                }
+            }
+        }
+        outputStream.flush();
+    }
+
+    private synchronized long waitForBytesAfter(long position) throws IOException {
+        while (availableBytes <= position && !finished && !failed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for downloaded data.");
+            }
+        }
+        if (failed) {
+            throw new IOException("Download of file part failed: " + path.getFileName());
+        }
+
+        return availableBytes;
+    }
+}
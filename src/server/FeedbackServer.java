@@ -0,0 +1,225 @@
+package server;
+
+import common.exceptions.DownloadException;
+import common.models.FeedbackCommandEnum;
+import common.utils.FilePartUtils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+class FeedbackServer implements Closeable {
+    private final ServerSocket serverSocket;
+    private final Set<Receiver> receivers = ConcurrentHashMap.newKeySet();
+    private final Set<String> lostReceiverIds = ConcurrentHashMap.newKeySet();
+    private final List<long[]> returnedRanges = new ArrayList<>();
+
+    FeedbackServer(int port) throws DownloadException {
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            throw new DownloadException(e, "Could not open feedback port: " + port);
+        }
+
+        Thread acceptThread = new Thread(this::acceptConnections, "feedback-server");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    List<String> getAddresses(String networkInterfaceName) {
+        List<String> addresses = new ArrayList<>();
+        try {
+            List<NetworkInterface> networkInterfaces = networkInterfaceName != null
+                    ? Collections.singletonList(NetworkInterface.getByName(networkInterfaceName))
+                    : Collections.list(NetworkInterface.getNetworkInterfaces());
+            for (NetworkInterface networkInterface : networkInterfaces) {
+                if (networkInterface == null || !networkInterface.isUp() || networkInterface.isLoopback()) {
+                    continue;
+                }
+                for (InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                    if (address instanceof Inet4Address) {
+                        addresses.add(address.getHostAddress() + ":" + serverSocket.getLocalPort());
+                    }
+                }
+            }
+        } catch (SocketException ignored) {
+        }
+        addresses.add(InetAddress.getLoopbackAddress().getHostAddress() + ":" + serverSocket.getLocalPort());
+
+        return addresses;
+    }
+
+    boolean hasIncompleteReceivers() {
+        for (Receiver receiver : receivers) {
+            if (!receiver.isDone) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean hasLostReceivers() {
+        return !lostReceiverIds.isEmpty();
+    }
+
+    synchronized List<long[]> waitForRepairRequests(long deadline) throws DownloadException {
+        while (returnedRanges.isEmpty() && (hasVerifyingReceivers() || (!hasRequestedRanges() && hasLostReceivers()))) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                break;
+            }
+            try {
+                wait(remainingMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DownloadException(e, "Interrupted while waiting for repair requests.");
+            }
+        }
+
+        List<long[]> ranges = new ArrayList<>(returnedRanges);
+        returnedRanges.clear();
+        for (Receiver receiver : receivers) {
+            if (receiver.requestedRanges.isEmpty()) {
+                continue;
+            }
+            ranges.addAll(receiver.requestedRanges);
+            receiver.requestedRanges = Collections.emptyList();
+            receiver.announceRepair();
+        }
+        return FilePartUtils.mergeRanges(ranges);
+    }
+
+    synchronized void returnRepairRequests(List<long[]> ranges) {
+        // receivers were already told about repair, so ranges of failed session are sent again in next round
+        returnedRanges.addAll(ranges);
+        notifyAll();
+    }
+
+    private boolean hasRequestedRanges() {
+        for (Receiver receiver : receivers) {
+            if (!receiver.requestedRanges.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasVerifyingReceivers() {
+        for (Receiver receiver : receivers) {
+            if (!receiver.isDone && receiver.requestedRanges.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+        for (Receiver receiver : receivers) {
+            receiver.close();
+        }
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Receiver receiver = new Receiver(socket);
+                Thread receiverThread = new Thread(receiver::readCommands, "feedback-" + socket.getRemoteSocketAddress());
+                receiverThread.setDaemon(true);
+                receiverThread.start();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private class Receiver {
+        private final Socket socket;
+        private volatile boolean isDone = false;
+        private List<long[]> requestedRanges = Collections.emptyList();
+        private String id = "";
+
+        private Receiver(Socket socket) {
+            this.socket = socket;
+        }
+
+        private void readCommands() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] command = line.split(" ", 2);
+                    handleCommand(FeedbackCommandEnum.valueOf(command[0]), command.length > 1 ? command[1] : "");
+                }
+            } catch (IOException | IllegalArgumentException ignored) {
+            } finally {
+                synchronized (FeedbackServer.this) {
+                    if (receivers.remove(this) && !isDone) {
+                        System.out.println("Receiver disconnected: " + socket.getRemoteSocketAddress());
+                        if (!id.isEmpty()) {
+                            lostReceiverIds.add(id);
+                        }
+                    }
+                    FeedbackServer.this.notifyAll();
+                }
+                close();
+            }
+        }
+
+        private void handleCommand(FeedbackCommandEnum command, String argument) {
+            synchronized (FeedbackServer.this) {
+                switch (command) {
+                    case Register:
+                        receivers.add(this);
+                        id = argument;
+                        if (!id.isEmpty() && lostReceiverIds.remove(id)) {
+                            System.out.println("Receiver resumed: " + socket.getRemoteSocketAddress());
+                        } else {
+                            System.out.println("Receiver registered: " + socket.getRemoteSocketAddress());
+                        }
+                        break;
+                    case Repair:
+                        requestedRanges = FilePartUtils.parseRanges(argument);
+                        System.out.println("Receiver requested repair of ranges count: " + requestedRanges.size() + ", " + socket.getRemoteSocketAddress());
+                        break;
+                    case Done:
+                        isDone = true;
+                        System.out.println("Receiver done: " + socket.getRemoteSocketAddress());
+                        break;
+                }
+                FeedbackServer.this.notifyAll();
+            }
+        }
+
+        private void announceRepair() {
+            try {
+                OutputStream outputStream = socket.getOutputStream();
+                outputStream.write((FeedbackCommandEnum.Repair.name() + "\n").getBytes(StandardCharsets.US_ASCII));
+                outputStream.flush();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -1,45 +1,105 @@
 package server;
 
+import common.checksums.BlockChecksum;
 import common.exceptions.DownloadException;
+import common.metrics.Counter;
+import common.metrics.Gauge;
+import common.metrics.MetricsRegistry;
+import common.models.ChecksumAlgorithmEnum;
+import common.tracing.FlightRecorderEventType;
+import common.tracing.FlightRecorderEvents;
+import common.tracing.Span;
+import common.tracing.Tracer;
 import common.models.StatusEnum;
+import common.utils.ChecksumUtils;
 import common.utils.FilePartUtils;
 import common.utils.VariousUtils;
 
-import java.io.BufferedInputStream;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static java.nio.file.StandardOpenOption.*;
+
 public class FileDownloader implements Callable<StatusEnum> {
-    private final ConcurrentLinkedQueue<Path> processedFiles = new ConcurrentLinkedQueue<>();
-    private final AtomicInteger udpcastProcessedParts = new AtomicInteger(-1);
+    private static final Counter sourceBytes = MetricsRegistry.getInstance().counter("pgd_source_bytes_total",
+            "Bytes downloaded from the source URL.");
+    private static final Gauge partsWaitingForUdpcast = MetricsRegistry.getInstance().gauge("pgd_parts_waiting_for_udpcast",
+            "Downloaded or downloading parts not yet sent by udpcast.");
+
+    private final List<DownloadingFilePart> startedParts = new ArrayList<>();
+    private final Object partsLock = new Object();
+    private int udpcastProcessedParts = -1;
+    private boolean isDone = false;
+    private int pipelineDepth = 2;
+    private final AtomicBoolean failed = new AtomicBoolean(false);
     private final long blockSizeInBytes;
-    private final int fileSizeInMB;
+    private final int connections;
+    private long fileSizeInBytes = -1;
+    private boolean acceptsRanges = false;
     private final String fileName;
     private final URL url;
     private final String downloadDirectory;
+    private Path targetFilePath;
+    private ChecksumAlgorithmEnum checksumAlgorithm;
+    private final ThreadLocal<ByteBuffer> transferBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(1024 * 1024));
+    private final long minSegmentSizeInBytes = FilePartUtils.megabytesToBytes(1);
+    private final long progressChunkSizeInBytes = FilePartUtils.megabytesToBytes(1);
+    private final int maxRetries = 5;
+    private final int maxRetryDelayInSeconds = 16;
 
     public void incrementUdpcastProcessedParts() {
-        udpcastProcessedParts.incrementAndGet();
+        synchronized (partsLock) {
+            udpcastProcessedParts++;
+            partsLock.notifyAll();
+        }
+    }
+
+    public List<DownloadingFilePart> getStartedParts() {
+        synchronized (partsLock) {
+            return new ArrayList<>(startedParts);
+        }
     }
 
-    public List<Path> getProcessedFiles() {
-        return new ArrayList<>(processedFiles);
+    public DownloadingFilePart waitForStartedPart(int index) throws InterruptedException {
+        synchronized (partsLock) {
+            while (startedParts.size() <= index && !isDone && !failed.get()) {
+                partsLock.wait();
+            }
+            if (startedParts.size() <= index || failed.get()) {
+                return null;
+            }
+            return startedParts.get(index);
+        }
+    }
+
+    public int getPartsWaitingForUdpcast() {
+        synchronized (partsLock) {
+            return startedParts.size() - Math.max(udpcastProcessedParts, 0);
+        }
+    }
+
+    public void abort() {
+        markFailed();
+    }
+
+    public void setPipelineDepth(int pipelineDepth) {
+        this.pipelineDepth = pipelineDepth;
     }
 
     public int getFileSizeInMB() {
-        return fileSizeInMB;
+        return FilePartUtils.bytesToMegabytes(fileSizeInBytes);
     }
 
     public String getFileName() {
@@ -50,17 +110,36 @@ public class FileDownloader implements Callable<StatusEnum> {
         return url;
     }
 
+    public long getFileSizeInBytes() {
+        return fileSizeInBytes;
+    }
+
+    public void setTargetFilePath(Path targetFilePath) {
+        this.targetFilePath = targetFilePath;
+    }
+
+    public void setChecksumAlgorithm(ChecksumAlgorithmEnum checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
     public int getBlockSizeInMB() {
         return FilePartUtils.bytesToMegabytes(blockSizeInBytes);
     }
 
     public FileDownloader(String urlString, String downloadDirectory, String fileName, int blockSizeInMB) throws DownloadException {
+        this(urlString, downloadDirectory, fileName, blockSizeInMB, 1);
+    }
+
+    public FileDownloader(String urlString, String downloadDirectory, String fileName, int blockSizeInMB, int connections) throws DownloadException {
         if (urlString == null || urlString.isEmpty()) {
             throw new DownloadException("Empty url.");
         }
         if (blockSizeInMB < 1) {
             throw new DownloadException("Block size must be at least equal 1MB.");
         }
+        if (connections < 1) {
+            throw new DownloadException("At least one connection is required.");
+        }
 
         this.downloadDirectory = downloadDirectory;
         try {
@@ -77,48 +156,349 @@ public class FileDownloader implements Callable<StatusEnum> {
             throw new DownloadException(e, "Malformed URL.");
         }
 
-        fileSizeInMB = findFileSizeInMB();
+        findFileInfo();
         blockSizeInBytes = FilePartUtils.megabytesToBytes(blockSizeInMB);
+        this.connections = connections;
+        partsWaitingForUdpcast.addSource(this, FileDownloader::getPartsWaitingForUdpcast);
     }
 
     @Override
     public StatusEnum call() {
+        try {
+            if (connections > 1 && acceptsRanges && fileSizeInBytes > 0) {
+                return downloadSegmented();
+            }
+            return downloadSingleStream();
+        } finally {
+            synchronized (partsLock) {
+                isDone = true;
+                partsLock.notifyAll();
+            }
+        }
+    }
+
+    private StatusEnum downloadSingleStream() {
         int blockNumber = 0;
+        long sourceOffset = 0;
         long transferredCount;
 
-        try (BufferedInputStream inputStream = new BufferedInputStream(this.url.openStream());
-             ReadableByteChannel channel = Channels.newChannel(inputStream)) {
+        ReadableByteChannel channel;
+        try {
+            channel = openSource(0, -1);
+        } catch (IOException e) {
+            System.err.println("Cannot open given URL. Download aborted. Error: " + e.getMessage());
+            return StatusEnum.Error;
+        }
+
+        try {
             System.out.println("Download started! Url: " + url);
 
             do {
                 waitForUdpcastProgress(blockNumber);
 
-                Path filePartPath = FilePartUtils.generateFilePartPath(downloadDirectory, fileName + ".serverpart" + blockNumber, getBlockSizeInMB());
+                Path filePartPath = generateFilePartPath(blockNumber);
+                long fileOffset = targetFilePath != null ? sourceOffset : 0;
+                DownloadingFilePart part = new DownloadingFilePart(blockNumber, filePartPath, fileOffset, blockSizeInBytes, 1);
+                BlockChecksum checksum = checksumAlgorithm != null ? new BlockChecksum(checksumAlgorithm, BlockChecksum.defaultBlockSizeInBytes) : null;
                 blockNumber++;
 
-                try (FileOutputStream fileOutputStream = new FileOutputStream(filePartPath.toFile());
-                     FileChannel fileOutputChannel = fileOutputStream.getChannel()) {
+                transferredCount = 0;
+                try (FileChannel fileOutputChannel = openFilePart(filePartPath)) {
                     System.out.println("Server downloading: " + filePartPath.getFileName());
-                    transferredCount = fileOutputChannel.transferFrom(channel, 0, blockSizeInBytes);
+                    int attempt = 0;
+                    while (transferredCount < blockSizeInBytes) {
+                        try {
+                            long chunkSize = Math.min(progressChunkSizeInBytes, blockSizeInBytes - transferredCount);
+                            long count = transferChunk(channel, fileOutputChannel, fileOffset + transferredCount, chunkSize, checksum);
+                            if (count <= 0) {
+                                if (fileSizeInBytes > 0 && sourceOffset + transferredCount < fileSizeInBytes) {
+                                    throw new IOException("Unexpected end of stream.");
+                                }
+                                break;
+                            }
+                            if (transferredCount == 0) {
+                                addStartedPart(part);
+                            }
+                            transferredCount += count;
+                            part.updateProgress(0, transferredCount);
+                            attempt = 0;
+                        } catch (ClosedByInterruptException | TargetWriteException e) {
+                            throw e;
+                        } catch (IOException e) {
+                            closeQuietly(channel);
+                            channel = null;
+
+                            IOException cause = e;
+                            while (channel == null) {
+                                attempt = waitBeforeRetry(attempt, sourceOffset + transferredCount, cause);
+                                try {
+                                    channel = openSource(sourceOffset + transferredCount, -1);
+                                } catch (ClosedByInterruptException exception) {
+                                    throw exception;
+                                } catch (IOException exception) {
+                                    cause = exception;
+                                }
+                            }
+                        }
+                    }
                 } catch (SecurityException | IOException e) {
-                    System.err.println("Cannot save to file: " + filePartPath + ". Error: " + e.getMessage());
+                    System.err.println("Cannot download file part: " + filePartPath + ". Download aborted. Error: " + e.getMessage());
+                    part.fail();
                     return StatusEnum.Error;
                 }
+                sourceOffset += transferredCount;
+                part.setChecksum(checksum);
+                part.finish();
 
-                if (transferredCount > 0) {
-                    processedFiles.add(filePartPath);
-                } else {
+                if (transferredCount == 0 && targetFilePath == null) {
                     FilePartUtils.removeFile(filePartPath);
                 }
             } while (transferredCount == blockSizeInBytes);
-        } catch (IOException e) {
-            System.err.println("Cannot open given URL. Download aborted. Error: " + e.getMessage());
-            return StatusEnum.Error;
+        } finally {
+            closeQuietly(channel);
         }
 
         return StatusEnum.Success;
     }
 
+    private StatusEnum downloadSegmented() {
+        System.out.println("Download started! Url: " + url + ", connections: " + connections);
+
+        ExecutorService segmentExecutor = Executors.newFixedThreadPool(connections);
+        ConcurrentLinkedQueue<PendingPart> pendingParts = new ConcurrentLinkedQueue<>();
+        try {
+            int blockNumber = 0;
+            for (long blockStart = 0; blockStart < fileSizeInBytes && !failed.get(); blockStart += blockSizeInBytes) {
+                waitForUdpcastProgress(blockNumber);
+
+                Path filePartPath = generateFilePartPath(blockNumber);
+                long fileOffset = targetFilePath != null ? blockStart : 0;
+                blockNumber++;
+
+                long blockLength = Math.min(blockSizeInBytes, fileSizeInBytes - blockStart);
+                long segmentLength = Math.max(minSegmentSizeInBytes, (blockLength + connections - 1) / connections);
+                if (isChecksumCombinable()) {
+                    long checksumBlockSize = BlockChecksum.defaultBlockSizeInBytes;
+                    segmentLength = (segmentLength + checksumBlockSize - 1) / checksumBlockSize * checksumBlockSize;
+                }
+                int segmentsCount = (int) ((blockLength + segmentLength - 1) / segmentLength);
+
+                System.out.println("Server downloading: " + filePartPath.getFileName() + " at offset: " + fileOffset);
+                if (targetFilePath == null) {
+                    try (RandomAccessFile file = new RandomAccessFile(filePartPath.toFile(), "rw")) {
+                        file.setLength(blockLength);
+                    } catch (SecurityException | IOException e) {
+                        System.err.println("Cannot save to file: " + filePartPath + ". Error: " + e.getMessage());
+                        markFailed();
+                        break;
+                    }
+                }
+
+                PendingPart part = new PendingPart(new DownloadingFilePart(blockNumber - 1, filePartPath, fileOffset, segmentLength, segmentsCount));
+                pendingParts.add(part);
+                addStartedPart(part.filePart);
+                for (int i = 0; i < segmentsCount; i++) {
+                    int segment = i;
+                    long partOffset = i * segmentLength;
+                    long length = Math.min(segmentLength, blockLength - partOffset);
+                    long sourceOffset = blockStart + partOffset;
+                    segmentExecutor.submit(() -> {
+                        try {
+                            part.segmentChecksums[segment] = downloadRange(part.filePart, segment, partOffset, sourceOffset, length);
+                            if (part.remainingSegments.decrementAndGet() == 0) {
+                                publishCompletedParts(pendingParts);
+                            }
+                        } catch (IOException e) {
+                            if (markFailed()) {
+                                System.err.println("Cannot download range of file: " + part.filePart.path.getFileName() + ". Download aborted. Error: " + e.getMessage());
+                            }
+                        }
+                    });
+                }
+            }
+
+            segmentExecutor.shutdown();
+            while (!segmentExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+                if (failed.get()) {
+                    segmentExecutor.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            markFailed();
+        } finally {
+            segmentExecutor.shutdownNow();
+            for (PendingPart part : pendingParts) {
+                part.filePart.fail();
+            }
+        }
+
+        return failed.get() || !pendingParts.isEmpty() ? StatusEnum.Error : StatusEnum.Success;
+    }
+
+    private synchronized void publishCompletedParts(ConcurrentLinkedQueue<PendingPart> pendingParts) {
+        PendingPart part;
+        while ((part = pendingParts.peek()) != null && part.remainingSegments.get() == 0) {
+            part.filePart.setChecksum(part.combineSegmentChecksums());
+            part.filePart.finish();
+            pendingParts.poll();
+        }
+    }
+
+    private BlockChecksum downloadRange(DownloadingFilePart filePart, int segment, long partOffset, long sourceOffset, long length) throws IOException {
+        BlockChecksum checksum = isChecksumCombinable() ? new BlockChecksum(checksumAlgorithm, BlockChecksum.defaultBlockSizeInBytes) : null;
+        try (Span ignored = Tracer.getInstance().span("download", "segment").arg("part", filePart.index).arg("segment", segment).arg("bytes", length);
+             FileChannel fileChannel = FileChannel.open(filePart.path, WRITE)) {
+            long transferred = 0;
+            int attempt = 0;
+            while (transferred < length) {
+                try (ReadableByteChannel channel = openSource(sourceOffset + transferred, length - transferred)) {
+                    while (transferred < length) {
+                        long chunkSize = Math.min(progressChunkSizeInBytes, length - transferred);
+                        long count = transferChunk(channel, fileChannel, filePart.fileOffset + partOffset + transferred, chunkSize, checksum);
+                        if (count <= 0) {
+                            throw new IOException("Unexpected end of stream.");
+                        }
+                        transferred += count;
+                        filePart.updateProgress(segment, transferred);
+                        attempt = 0;
+                    }
+                } catch (ClosedByInterruptException | TargetWriteException e) {
+                    throw e;
+                } catch (IOException e) {
+                    attempt = waitBeforeRetry(attempt, sourceOffset + transferred, e);
+                }
+            }
+        }
+        return checksum;
+    }
+
+    private long transferChunk(ReadableByteChannel source, FileChannel target, long position, long count, BlockChecksum checksum) throws IOException {
+        if (checksum == null && source instanceof FileChannel) {
+            // both channels are local, so there is nothing to gain from retrying any failure
+            try {
+                long transferred = target.transferFrom(source, position, count);
+                sourceBytes.add(transferred);
+                return transferred;
+            } catch (ClosedByInterruptException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new TargetWriteException(e);
+            }
+        }
+
+        ByteBuffer buffer = transferBuffers.get();
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), count));
+        int bytesRead;
+        do {
+            bytesRead = source.read(buffer);
+        } while (bytesRead >= 0 && buffer.hasRemaining());
+        buffer.flip();
+
+        long transferred = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                transferred += target.write(buffer, position + transferred);
+            }
+        } catch (ClosedByInterruptException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new TargetWriteException(e);
+        }
+        if (checksum != null) {
+            buffer.rewind();
+            checksum.update(buffer);
+        }
+
+        sourceBytes.add(transferred);
+        return transferred;
+    }
+
+    private boolean isChecksumCombinable() {
+        return checksumAlgorithm != null && ChecksumUtils.isCombinable(checksumAlgorithm);
+    }
+
+    private Path generateFilePartPath(int blockNumber) {
+        if (targetFilePath != null) {
+            return targetFilePath;
+        }
+        return FilePartUtils.generateFilePartPath(downloadDirectory, fileName + ".serverpart" + blockNumber, getBlockSizeInMB());
+    }
+
+    private FileChannel openFilePart(Path filePartPath) throws IOException {
+        if (targetFilePath != null) {
+            return FileChannel.open(filePartPath, CREATE, WRITE);
+        }
+        return FileChannel.open(filePartPath, CREATE, WRITE, TRUNCATE_EXISTING);
+    }
+
+    private ReadableByteChannel openSource(long offset, long length) throws IOException {
+        if (url.getProtocol().equals("file")) {
+            try {
+                FileChannel channel = FileChannel.open(Paths.get(url.toURI()), READ);
+                channel.position(offset);
+                return channel;
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+
+        URLConnection connection = url.openConnection();
+        if (offset > 0 || length > 0) {
+            String end = length > 0 ? String.valueOf(offset + length - 1) : "";
+            connection.setRequestProperty("Range", "bytes=" + offset + "-" + end);
+        }
+
+        InputStream inputStream = connection.getInputStream();
+        if (offset > 0 && connection instanceof HttpURLConnection
+                && ((HttpURLConnection) connection).getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+            skipFully(inputStream, offset);
+        }
+        return Channels.newChannel(inputStream);
+    }
+
+    private void skipFully(InputStream inputStream, long count) throws IOException {
+        System.out.println("Source does not support ranges - skipping already downloaded bytes: " + count);
+        while (count > 0) {
+            long skipped = inputStream.skip(count);
+            if (skipped <= 0) {
+                if (inputStream.read() == -1) {
+                    throw new IOException("Unexpected end of stream.");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private int waitBeforeRetry(int attempt, long sourceOffset, IOException e) throws IOException {
+        attempt++;
+        if (attempt > maxRetries || failed.get()) {
+            throw e;
+        }
+
+        int delayInSeconds = Math.min(1 << (attempt - 1), maxRetryDelayInSeconds);
+        System.err.println("Download interrupted at byte " + sourceOffset + ", retrying in " + delayInSeconds +
+                "s (attempt " + attempt + "/" + maxRetries + "). Error: " + e.getMessage());
+        VariousUtils.sleep(delayInSeconds);
+        if (Thread.currentThread().isInterrupted()) {
+            throw new ClosedByInterruptException();
+        }
+
+        return attempt;
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
     private URI parseUrl(String urlString) {
         try {
             return new URL(urlString).toURI();
@@ -150,23 +530,20 @@ public class FileDownloader implements Callable<StatusEnum> {
         return path.getFileName().toString();
     }
 
-    private int findFileSizeInMB() {
+    private void findFileInfo() {
         URLConnection urlConnection = null;
         try {
             urlConnection = url.openConnection();
-            long fileSizeInBytes;
             if (urlConnection instanceof HttpURLConnection) {
                 HttpURLConnection httpURLConnection = (HttpURLConnection) urlConnection;
                 httpURLConnection.setRequestMethod("HEAD");
                 fileSizeInBytes = httpURLConnection.getContentLengthLong();
+                acceptsRanges = "bytes".equalsIgnoreCase(httpURLConnection.getHeaderField("Accept-Ranges"));
             } else {
                 fileSizeInBytes = urlConnection.getContentLengthLong();
             }
-
-            return FilePartUtils.bytesToMegabytes(fileSizeInBytes);
         } catch (IOException ignored) {
             System.out.println("Could not determine file size.");
-            return 0;
         } finally {
             if (urlConnection != null) {
                 if (urlConnection instanceof HttpURLConnection) {
@@ -181,9 +558,73 @@ public class FileDownloader implements Callable<StatusEnum> {
         }
     }
 
+    private boolean markFailed() {
+        boolean isFirstFailure = !failed.getAndSet(true);
+        synchronized (partsLock) {
+            partsLock.notifyAll();
+        }
+        return isFirstFailure;
+    }
+
+    private void addStartedPart(DownloadingFilePart part) {
+        synchronized (partsLock) {
+            startedParts.add(part);
+            partsLock.notifyAll();
+        }
+    }
+
     private void waitForUdpcastProgress(int blockNumber) {
-        while (udpcastProcessedParts.get() != -1 && (blockNumber - udpcastProcessedParts.get() >= 2)) {
-            VariousUtils.sleep(1);
+        synchronized (partsLock) {
+            if (!isWaitingForUdpcast(blockNumber)) {
+                return;
+            }
+
+            FlightRecorderEventType.Record event = FlightRecorderEvents.pipelineWait.begin();
+            while (isWaitingForUdpcast(blockNumber)) {
+                try {
+                    partsLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    markFailed();
+                }
+            }
+            event.set("partIndex", blockNumber).set("pipelineDepth", pipelineDepth).commit();
+        }
+    }
+
+    private boolean isWaitingForUdpcast(int blockNumber) {
+        return udpcastProcessedParts != -1 && (blockNumber - udpcastProcessedParts >= pipelineDepth) && !failed.get();
+    }
+
+    private static class TargetWriteException extends IOException {
+        private TargetWriteException(IOException cause) {
+            super("Cannot write downloaded bytes. Error: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static class PendingPart {
+        private final DownloadingFilePart filePart;
+        private final AtomicInteger remainingSegments;
+        private final BlockChecksum[] segmentChecksums;
+
+        private PendingPart(DownloadingFilePart filePart) {
+            this.filePart = filePart;
+            this.remainingSegments = new AtomicInteger(filePart.segmentsCount);
+            this.segmentChecksums = new BlockChecksum[filePart.segmentsCount];
+        }
+
+        private BlockChecksum combineSegmentChecksums() {
+            for (BlockChecksum checksum : segmentChecksums) {
+                if (checksum == null) {
+                    return null;
+                }
+            }
+
+            BlockChecksum checksum = segmentChecksums[0];
+            for (int i = 1; i < segmentChecksums.length; i++) {
+                checksum.append(segmentChecksums[i]);
+            }
+            return checksum;
         }
     }
 }
@@ -0,0 +1,222 @@
+package server;
+
+import common.exceptions.DownloadException;
+import common.infos.EndInfoFile;
+import common.infos.StartInfoFile;
+import common.models.TransportEnum;
+import common.models.UdpcastConfiguration;
+import common.services.ServerTransport;
+import common.utils.FilePartUtils;
+import common.utils.VariousUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PartRelay {
+    public static final int repairMinutes = 10;
+
+    private final ServerTransport transport;
+    private final UdpcastConfiguration relayConfiguration;
+    private final String directory;
+    private final PartConsumer partConsumer;
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final Map<Integer, Path> pendingParts = new HashMap<>();
+    private int nextPartIndex = 0;
+    private Future<?> lastTask;
+    private FeedbackServer feedbackServer;
+    private String fileName;
+    private volatile boolean isFailed = false;
+
+    public PartRelay(UdpcastConfiguration relayConfiguration, String directory, PartConsumer partConsumer) throws DownloadException {
+        if (relayConfiguration.getTransport() == TransportEnum.Nio) {
+            transport = new ServerMulticastTransport(relayConfiguration);
+        } else {
+            transport = new ServerUdpcastService(relayConfiguration);
+        }
+        this.relayConfiguration = relayConfiguration;
+        this.directory = directory;
+        this.partConsumer = partConsumer;
+    }
+
+    public void start(StartInfoFile startInfoFile) throws DownloadException {
+        // parts are relayed before they are verified, so clients of relay repair them from relay instead of server
+        feedbackServer = new FeedbackServer(relayConfiguration.getFeedbackPort());
+        fileName = startInfoFile.fileName;
+        StartInfoFile relayStartInfoFile = new StartInfoFile(directory, startInfoFile.url, startInfoFile.fileName,
+                startInfoFile.summarySizeInMB, startInfoFile.partSizeInMB, startInfoFile.checksumAlgorithm,
+                feedbackServer.getAddresses(relayConfiguration.getNetworkInterface()));
+        submit(() -> {
+            try {
+                System.out.println("Relay - sending start info.");
+                relayFile(relayStartInfoFile.filePath);
+                transport.setDownloadSize(relayStartInfoFile.summarySizeInMB);
+            } finally {
+                FilePartUtils.removeFile(relayStartInfoFile.filePath);
+            }
+        });
+    }
+
+    public synchronized void addPart(int index, Path path) throws DownloadException {
+        pendingParts.put(index, path);
+        Path nextPart;
+        while ((nextPart = pendingParts.remove(nextPartIndex)) != null) {
+            // part is joined locally while it is relayed and removed once both are done
+            SharedPart part = new SharedPart(nextPart);
+            partConsumer.accept(nextPart, part::release);
+            try {
+                submit(() -> {
+                    try {
+                        relayFile(part.path);
+                    } finally {
+                        part.release();
+                    }
+                });
+            } catch (DownloadException e) {
+                part.release();
+                throw e;
+            }
+            nextPartIndex++;
+        }
+    }
+
+    public void finish(EndInfoFile endInfoFile, Path verifiedFilePath) throws DownloadException {
+        EndInfoFile relayEndInfoFile = new EndInfoFile(directory, endInfoFile.getChecksums(), endInfoFile.getHashTrees());
+        byte[] endInfo = readInfoFile(relayEndInfoFile.filePath);
+        submit(() -> {
+            try {
+                System.out.println("Relay - sending end info.");
+                relayFile(relayEndInfoFile.filePath);
+            } finally {
+                FilePartUtils.removeFile(relayEndInfoFile.filePath);
+            }
+        });
+        waitForParts();
+        executorService.shutdown();
+        repairClients(verifiedFilePath, endInfo);
+    }
+
+    public void abort() {
+        executorService.shutdownNow();
+        if (feedbackServer != null) {
+            feedbackServer.close();
+        }
+        transport.shutdownClients();
+        transport.stop();
+    }
+
+    private void repairClients(Path verifiedFilePath, byte[] endInfo) throws DownloadException {
+        long repairEnd = System.nanoTime() + TimeUnit.MINUTES.toNanos(repairMinutes);
+        Path sessionPath = Paths.get(directory, fileName + ".relayrepair");
+        try {
+            long fileSize = Files.size(verifiedFilePath);
+            List<long[]> ranges;
+            while (!isFailed && System.nanoTime() < repairEnd && !(ranges = feedbackServer.waitForRepairRequests(repairEnd)).isEmpty()) {
+                PersistentSession session = new PersistentSession(part -> {
+                });
+                for (long[] range : ranges) {
+                    if (range[0] < fileSize) {
+                        session.addStoredRange(verifiedFilePath, range[0], Math.min(range[1], fileSize - range[0]));
+                    }
+                }
+                session.addEndInfo(endInfo);
+                session.finish();
+
+                System.out.println("Relay - sending repair of ranges count: " + ranges.size());
+                try {
+                    transport.processStream(sessionPath, session::feed);
+                } catch (DownloadException e) {
+                    System.err.println("Relay repair session failed, ranges will be sent again. Error: " + e.getMessage());
+                    feedbackServer.returnRepairRequests(ranges);
+                    VariousUtils.sleep(1);
+                }
+            }
+        } catch (IOException e) {
+            throw new DownloadException(e, "Could not read file: " + verifiedFilePath);
+        } finally {
+            if (feedbackServer.hasIncompleteReceivers() || feedbackServer.hasLostReceivers()) {
+                System.err.println("Relay repair finished, but some clients of relay are still incomplete.");
+            }
+            feedbackServer.close();
+        }
+    }
+
+    private byte[] readInfoFile(Path filePath) throws DownloadException {
+        try {
+            return Files.readAllBytes(filePath);
+        } catch (IOException e) {
+            FilePartUtils.removeFile(filePath);
+            throw new DownloadException(e, "Could not read file: " + filePath);
+        }
+    }
+
+    private void waitForParts() throws DownloadException {
+        Future<?> task;
+        synchronized (this) {
+            task = lastTask;
+        }
+        if (task == null) {
+            return;
+        }
+
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownloadException(e, "Interrupted while waiting for relayed parts.");
+        } catch (ExecutionException e) {
+            throw new DownloadException(e, "Could not relay file parts.");
+        }
+    }
+
+    private synchronized void submit(Runnable task) throws DownloadException {
+        try {
+            lastTask = executorService.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new DownloadException("Cannot add file part to relay.");
+        }
+    }
+
+    private void relayFile(Path filePath) {
+        if (isFailed) {
+            return;
+        }
+
+        try {
+            transport.processFile(filePath);
+        } catch (DownloadException e) {
+            isFailed = true;
+            System.err.println("Relay failed. Remaining file parts will not be relayed.");
+        }
+    }
+
+    public interface PartConsumer {
+        void accept(Path path, Runnable mergedListener) throws DownloadException;
+    }
+
+    private static class SharedPart {
+        private final Path path;
+        private final AtomicInteger users = new AtomicInteger(2);
+
+        private SharedPart(Path path) {
+            this.path = path;
+        }
+
+        private void release() {
+            if (users.decrementAndGet() == 0) {
+                FilePartUtils.removeFile(path);
+            }
+        }
+    }
+}
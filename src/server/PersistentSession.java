@@ -0,0 +1,226 @@
+package server;
+
+import common.exceptions.DownloadException;
+import common.infos.SessionFrame;
+import common.models.FrameTypeEnum;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+public class PersistentSession {
+    private static final Entry sessionEnd = new Entry(null, null, null, null);
+
+    private final BlockingQueue<Entry> entries = new LinkedBlockingQueue<>();
+    private final PartSentListener partSentListener;
+    private final int frameSizeInBytes = 64 * 1024;
+
+    private int sentPartsCount = 0;
+    private boolean isClosed = false;
+
+    public PersistentSession(PartSentListener partSentListener) {
+        this.partSentListener = partSentListener;
+    }
+
+    public void addStartInfo(byte[] content) {
+        entries.add(new Entry(FrameTypeEnum.Start, content, null, null));
+    }
+
+    public void addPart(DownloadingFilePart part) {
+        entries.add(new Entry(FrameTypeEnum.Part, null, part, null));
+    }
+
+    public void addStoredPart(int index, Path path, long offset, long length) {
+        entries.add(new Entry(FrameTypeEnum.Part, null, null, new StoredPart(index, path, offset, length)));
+    }
+
+    public void addStoredRange(Path path, long offset, long length) {
+        entries.add(new Entry(FrameTypeEnum.Range, null, null, new StoredPart(0, path, offset, length)));
+    }
+
+    public void addEndInfo(byte[] content) {
+        entries.add(new Entry(FrameTypeEnum.End, content, null, null));
+    }
+
+    public void finish() {
+        entries.add(sessionEnd);
+    }
+
+    public synchronized void waitForSentParts(int partsCount) throws DownloadException {
+        while (sentPartsCount < partsCount && !isClosed) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DownloadException(e, "Interrupted while waiting for parts to be sent.");
+            }
+        }
+        if (sentPartsCount < partsCount) {
+            throw new DownloadException("Persistent session ended before all parts were sent.");
+        }
+    }
+
+    public void feed(OutputStream outputStream) throws IOException {
+        try {
+            feedEntries(outputStream);
+        } finally {
+            synchronized (this) {
+                isClosed = true;
+                notifyAll();
+            }
+        }
+    }
+
+    private void feedEntries(OutputStream outputStream) throws IOException {
+        DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(outputStream, frameSizeInBytes + SessionFrame.headerSize));
+        Entry entry;
+        do {
+            try {
+                entry = entries.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Session interrupted.");
+            }
+
+            if (entry == sessionEnd) {
+                return;
+            } else if (entry.storedPart != null) {
+                writeStoredPart(dataOutputStream, entry.type, entry.storedPart);
+            } else if (entry.type == FrameTypeEnum.Part) {
+                FrameOutputStream frameOutputStream = new FrameOutputStream(dataOutputStream, FrameTypeEnum.Part, entry.part.index, 0);
+                entry.part.writeTo(frameOutputStream);
+                frameOutputStream.flush();
+
+                new SessionFrame(FrameTypeEnum.PartEnd, entry.part.index, frameOutputStream.offset, 0).writeTo(dataOutputStream);
+                dataOutputStream.flush();
+
+                try {
+                    partSentListener.onPartSent(entry.part);
+                } catch (DownloadException e) {
+                    throw new IOException(e);
+                }
+                synchronized (this) {
+                    sentPartsCount++;
+                    notifyAll();
+                }
+            } else {
+                new SessionFrame(entry.type, 0, 0, entry.content.length).writeTo(dataOutputStream);
+                dataOutputStream.write(entry.content);
+                dataOutputStream.flush();
+            }
+        } while (entry.type != FrameTypeEnum.End);
+    }
+
+    private void writeStoredPart(DataOutputStream dataOutputStream, FrameTypeEnum type, StoredPart storedPart) throws IOException {
+        // range frames carry offsets of the final file, so they need no part end
+        boolean isRange = type == FrameTypeEnum.Range;
+        FrameOutputStream frameOutputStream = new FrameOutputStream(dataOutputStream, type, storedPart.index, isRange ? storedPart.offset : 0);
+        WritableByteChannel outputChannel = Channels.newChannel(frameOutputStream);
+        try (FileChannel fileChannel = FileChannel.open(storedPart.path, READ)) {
+            long position = 0;
+            while (position < storedPart.length) {
+                long count = fileChannel.transferTo(storedPart.offset + position, storedPart.length - position, outputChannel);
+                if (count <= 0) {
+                    throw new EOFException("Unexpected end of stored file part.");
+                }
+                position += count;
+            }
+        }
+        frameOutputStream.flush();
+        if (isRange) {
+            return;
+        }
+
+        new SessionFrame(FrameTypeEnum.PartEnd, storedPart.index, frameOutputStream.offset, 0).writeTo(dataOutputStream);
+        dataOutputStream.flush();
+    }
+
+    public interface PartSentListener {
+        void onPartSent(DownloadingFilePart part) throws DownloadException;
+    }
+
+    private static class Entry {
+        private final FrameTypeEnum type;
+        private final byte[] content;
+        private final DownloadingFilePart part;
+        private final StoredPart storedPart;
+
+        private Entry(FrameTypeEnum type, byte[] content, DownloadingFilePart part, StoredPart storedPart) {
+            this.type = type;
+            this.content = content;
+            this.part = part;
+            this.storedPart = storedPart;
+        }
+    }
+
+    private static class StoredPart {
+        private final int index;
+        private final Path path;
+        private final long offset;
+        private final long length;
+
+        private StoredPart(int index, Path path, long offset, long length) {
+            this.index = index;
+            this.path = path;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private class FrameOutputStream extends OutputStream {
+        private final DataOutputStream outputStream;
+        private final FrameTypeEnum type;
+        private final int index;
+        private final byte[] buffer = new byte[frameSizeInBytes];
+        private int bufferedBytes = 0;
+        private long offset;
+
+        private FrameOutputStream(DataOutputStream outputStream, FrameTypeEnum type, int index, long offset) {
+            this.outputStream = outputStream;
+            this.type = type;
+            this.index = index;
+            this.offset = offset;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) throws IOException {
+            while (len > 0) {
+                int count = Math.min(len, buffer.length - bufferedBytes);
+                System.arraycopy(bytes, off, buffer, bufferedBytes, count);
+                bufferedBytes += count;
+                off += count;
+                len -= count;
+
+                if (bufferedBytes == buffer.length) {
+                    writeFrame();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (bufferedBytes > 0) {
+                writeFrame();
+            }
+            outputStream.flush();
+        }
+
+        private void writeFrame() throws IOException {
+            new SessionFrame(type, index, offset, bufferedBytes).writeTo(outputStream);
+            outputStream.write(buffer, 0, bufferedBytes);
+            offset += bufferedBytes;
+            bufferedBytes = 0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+class RateController {
+    private static final double bytesPerMB = 1024 * 1024;
+    private static final double nanosPerSecond = TimeUnit.SECONDS.toNanos(1);
+    private static final double lossThreshold = 0.02;
+    private static final double decreaseFactor = 0.75;
+    private static final double increaseFactor = 1.05;
+    private static final double minRate = bytesPerMB / nanosPerSecond;
+    private static final double defaultRate = 100 * bytesPerMB / nanosPerSecond;
+
+    private final double maxRate;
+    private double rate;
+    private long nextSendTime = 0;
+
+    RateController(int maxRateInMBps) {
+        this.maxRate = maxRateInMBps * bytesPerMB / nanosPerSecond;
+        this.rate = maxRate > 0 ? maxRate : defaultRate;
+    }
+
+    double getRateInMBps() {
+        return rate * nanosPerSecond / bytesPerMB;
+    }
+
+    void pace(int bytes) {
+        long now = System.nanoTime();
+        if (nextSendTime > now) {
+            LockSupport.parkNanos(nextSendTime - now);
+        } else {
+            nextSendTime = now;
+        }
+        nextSendTime += (long) (bytes / rate);
+    }
+
+    void onRoundFinished(int sentPackets, int missingPackets, long sentBytes, long elapsedNanos) {
+        if (sentPackets == 0) {
+            return;
+        }
+
+        double lossRatio = (double) missingPackets / sentPackets;
+        if (lossRatio > lossThreshold) {
+            double achievedRate = elapsedNanos > 0 ? sentBytes / (double) elapsedNanos : rate;
+            rate = Math.max(minRate, Math.min(rate, achievedRate) * decreaseFactor);
+        } else if (missingPackets == 0) {
+            rate *= increaseFactor;
+            if (maxRate > 0) {
+                rate = Math.min(rate, maxRate);
+            }
+        }
+    }
+}
@@ -1,33 +1,84 @@
 package server;
 
 import common.CommonLogic;
+import common.checksums.BlockChecksum;
+import common.checksums.PartHashTree;
 import common.exceptions.DownloadException;
 import common.infos.EndInfoFile;
 import common.infos.StartInfoFile;
+import common.models.ChecksumAlgorithmEnum;
 import common.models.StatusEnum;
+import common.models.TransportEnum;
 import common.models.UdpcastConfiguration;
 import common.services.FileService;
+import common.services.ServerTransport;
+import common.services.Transport;
+import common.tracing.Span;
+import common.tracing.Tracer;
 import common.utils.FilePartUtils;
 import common.utils.VariousUtils;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ServerLogic extends CommonLogic {
     private final int delayInMinutes;
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final boolean isStreaming;
+    private final boolean isPersistent;
+    private final boolean isDirect;
+    private final boolean isCarousel;
+    private final int joinWindowMinutes;
+    private final int repairMinutes;
+    private final int feedbackPort;
+    private final String networkInterface;
+    private final int checksumThreads;
+    private final ChecksumAlgorithmEnum checksumAlgorithm;
+    private final ExecutorService executorService = Executors.newFixedThreadPool(2);
     private final FileDownloader fileDownloader;
 
     private int processedPartsCount = 0;
     private final AtomicBoolean invokedCleanup = new AtomicBoolean(false);
+    private FeedbackServer feedbackServer;
 
     public ServerLogic(UdpcastConfiguration configuration) throws DownloadException {
-        super(new ServerUdpcastService(configuration), configuration.getDirectory());
+        super(createTransports(configuration), configuration.getDirectory());
 
         delayInMinutes = configuration.getDelayMinutes();
-        fileDownloader = new FileDownloader(configuration.getUrl(), downloadDirectory, configuration.getFileName(), configuration.getBlockSizeInMb());
+        isStreaming = configuration.isStreaming();
+        isPersistent = configuration.isPersistent();
+        isDirect = configuration.isDirect();
+        isCarousel = configuration.isCarousel();
+        joinWindowMinutes = configuration.getJoinWindowMinutes();
+        repairMinutes = configuration.getRepairMinutes();
+        feedbackPort = configuration.getFeedbackPort();
+        networkInterface = configuration.getNetworkInterface();
+        checksumThreads = configuration.getChecksumThreads();
+        checksumAlgorithm = configuration.getChecksumAlgorithm();
+        fileDownloader = new FileDownloader(configuration.getUrl(), downloadDirectory, configuration.getFileName(),
+                configuration.getBlockSizeInMb(), configuration.getConnections());
+        fileDownloader.setChecksumAlgorithm(checksumAlgorithm);
+        fileDownloader.setPipelineDepth(Math.max(configuration.getPipelineDepth(), configuration.getStripes()));
+    }
+
+    private static List<ServerTransport> createTransports(UdpcastConfiguration configuration) throws DownloadException {
+        List<ServerTransport> transports = new ArrayList<>();
+        for (int stripe = 0; stripe < configuration.getStripes(); stripe++) {
+            if (configuration.getTransport() == TransportEnum.Nio) {
+                transports.add(new ServerMulticastTransport(configuration, stripe));
+            } else {
+                transports.add(new ServerUdpcastService(configuration, stripe));
+            }
+        }
+        return transports;
     }
 
     public StatusEnum doWork() {
@@ -44,45 +95,41 @@ public class ServerLogic extends CommonLogic {
                 throw new DownloadException("Not enough free space.");
             }
 
+            if (isDirect) {
+                fileService = new FileService(finalFileTempPath, true, fileDownloader.getFileSizeInBytes(), checksumThreads, checksumAlgorithm);
+                fileDownloader.setTargetFilePath(finalFileTempPath);
+            }
+
             Future<StatusEnum> fileDownloaderFuture = executorService.submit(fileDownloader);
             checkDownloadIsProperlyStarted(fileDownloaderFuture);
 
             delayIfRequested();
-            fileService = new FileService(finalFileTempPath);
-
-            boolean processedStartFile;
-            do {
-                processedStartFile = processStartFile();
-                if (!processedStartFile) {
-                    System.out.println("Could not find any clients. Program will retry in next 1 minute if download will be still in progress.");
-                    VariousUtils.sleep(60);
-                }
-            } while (!processedStartFile && !fileDownloaderFuture.isDone());
-
-            if (processedStartFile) {
-                do {
-                    Path fileToProcess = tryGetUnprocessedFile();
-                    if (fileToProcess != null) {
-                        processFilePart(fileToProcess);
-                    } else {
-                        VariousUtils.sleep(1);
-                    }
-                } while (!fileDownloaderFuture.isDone());
+            if (!isDirect) {
+                fileService = new FileService(finalFileTempPath, false, 0, checksumThreads, checksumAlgorithm);
+            }
 
-                processRemainingParts(fileDownloaderFuture);
+            if (repairMinutes > 0) {
+                feedbackServer = new FeedbackServer(feedbackPort);
+            }
 
-                processEndFile();
+            if (isPersistent) {
+                processPersistentSession(fileDownloaderFuture);
+            } else if (isCarousel) {
+                processCarousel(fileDownloaderFuture);
             } else {
-                Path fileToProcess;
-                while ((fileToProcess = tryGetUnprocessedFile()) != null) {
-                    fileService.addFileToProcess(fileToProcess);
-                }
+                processPartsSeparately(fileDownloaderFuture);
             }
 
+            try (Span ignored = Tracer.getInstance().span("control", "waitForChecksums")) {
+                fileService.waitForChecksums();
+            }
+            if (repairMinutes > 0) {
+                repairClients();
+            }
             Path finalFile = renameFile(finalFileTempPath, fileDownloader.getFileName());
 
             System.out.println("Success! Downloaded file: " + finalFile);
-            udpcastService.printStatsOnSuccess();
+            transport.printStatsOnSuccess();
             result = StatusEnum.Success;
         } catch (DownloadException e) {
             result = StatusEnum.Error;
@@ -107,11 +154,289 @@ public class ServerLogic extends CommonLogic {
             fileService.shutdownNow();
         }
 
-        ((ServerUdpcastService) udpcastService).shutdownClients();
+        for (Transport stripe : stripes) {
+            ((ServerTransport) stripe).shutdownClients();
+        }
+
+        if (feedbackServer != null) {
+            feedbackServer.close();
+        }
 
         super.cleanup();
     }
 
+    private void processPartsSeparately(Future<StatusEnum> fileDownloaderFuture) throws DownloadException {
+        boolean processedStartFile;
+        do {
+            processedStartFile = processStartFile();
+            if (!processedStartFile) {
+                System.out.println("Could not find any clients. Program will retry in next 1 minute if download will be still in progress.");
+                VariousUtils.sleep(60);
+            }
+        } while (!processedStartFile && !fileDownloaderFuture.isDone());
+
+        DownloadingFilePart part;
+        if (processedStartFile && stripes.size() > 1) {
+            processPartsInStripes(fileDownloaderFuture);
+        } else if (processedStartFile) {
+            while ((part = waitForNextPart()) != null) {
+                processPart(part);
+            }
+            checkFileDownloaderSuccess(fileDownloaderFuture);
+
+            processEndFile();
+        } else {
+            while ((part = waitForNextPart()) != null) {
+                addPartToProcess(part);
+            }
+        }
+    }
+
+    private void processPartsInStripes(Future<StatusEnum> fileDownloaderFuture) throws DownloadException {
+        List<ExecutorService> stripeExecutors = new ArrayList<>();
+        for (int stripe = 0; stripe < stripes.size(); stripe++) {
+            stripeExecutors.add(Executors.newSingleThreadExecutor());
+        }
+
+        try {
+            Queue<Future<DownloadingFilePart>> sentParts = new ArrayDeque<>();
+            DownloadingFilePart nextPart;
+            while ((nextPart = waitForNextPart()) != null) {
+                DownloadingFilePart part = nextPart;
+                int stripe = (processedPartsCount - 1) % stripes.size();
+                sentParts.add(stripeExecutors.get(stripe).submit(() -> {
+                    try {
+                        sendPart(stripes.get(stripe), part);
+                    } catch (DownloadException e) {
+                        fileDownloader.abort();
+                        throw e;
+                    }
+                    fileDownloader.incrementUdpcastProcessedParts();
+                    return part;
+                }));
+
+                while (!sentParts.isEmpty() && sentParts.peek().isDone()) {
+                    addPartToProcess(waitForStripe(sentParts.poll()));
+                }
+            }
+            while (!sentParts.isEmpty()) {
+                addPartToProcess(waitForStripe(sentParts.poll()));
+            }
+            checkFileDownloaderSuccess(fileDownloaderFuture);
+
+            processEndFile();
+        } finally {
+            for (ExecutorService stripeExecutor : stripeExecutors) {
+                stripeExecutor.shutdownNow();
+            }
+        }
+    }
+
+    private <T> T waitForStripe(Future<T> future) throws DownloadException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DownloadException) {
+                throw (DownloadException) e.getCause();
+            }
+            throw new DownloadException(e, "Stripe transfer failed.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownloadException(e, "Interrupted while waiting for stripe transfer.");
+        }
+    }
+
+    private void processPersistentSession(Future<StatusEnum> fileDownloaderFuture) throws DownloadException {
+        PersistentSession session = new PersistentSession(this::onPartSent);
+        Path sessionPath = Paths.get(downloadDirectory, fileDownloader.getFileName() + ".session");
+        Future<?> sessionFuture = executorService.submit(() -> {
+            try {
+                transport.processStream(sessionPath, session::feed);
+            } catch (DownloadException e) {
+                fileDownloader.abort();
+                throw e;
+            }
+            return null;
+        });
+
+        StartInfoFile startInfoFile = createStartInfoFile();
+        session.addStartInfo(readInfoFile(startInfoFile.filePath));
+        transport.setDownloadSize(startInfoFile.summarySizeInMB);
+
+        DownloadingFilePart part;
+        while ((part = waitForNextPart()) != null) {
+            session.addPart(part);
+        }
+
+        if (sessionFuture.isDone()) {
+            waitForSession(sessionFuture);
+            throw new DownloadException("Persistent session ended before all parts were sent.");
+        }
+        checkFileDownloaderSuccess(fileDownloaderFuture);
+
+        session.waitForSentParts(processedPartsCount);
+        session.addEndInfo(readInfoFile(createEndInfoFile().filePath));
+
+        waitForSession(sessionFuture);
+    }
+
+    private void processCarousel(Future<StatusEnum> fileDownloaderFuture) throws DownloadException {
+        long joinWindowEnd = System.nanoTime() + TimeUnit.MINUTES.toNanos(joinWindowMinutes);
+        feedbackServer = new FeedbackServer(feedbackPort);
+        try {
+            StartInfoFile startInfoFile = createStartInfoFile();
+            byte[] startInfo = readInfoFile(startInfoFile.filePath);
+            transport.setDownloadSize(startInfoFile.summarySizeInMB);
+
+            Path sessionPath = Paths.get(downloadDirectory, fileDownloader.getFileName() + ".carousel");
+            DownloadingFilePart part;
+            while ((part = waitForNextPart()) != null) {
+                sendCarouselPart(sessionPath, startInfo, part);
+            }
+            checkFileDownloaderSuccess(fileDownloaderFuture);
+
+            List<FileService.ProcessedPart> processedParts = fileService.waitForProcessedParts();
+            if (processedParts.isEmpty()) {
+                throw new DownloadException("Downloaded file is empty, there is nothing to send in carousel.");
+            }
+            byte[] endInfo = readInfoFile(createEndInfoFile().filePath);
+            repeatCarousel(sessionPath, startInfo, endInfo, processedParts, joinWindowEnd);
+        } finally {
+            feedbackServer.close();
+        }
+    }
+
+    private void sendCarouselPart(Path sessionPath, byte[] startInfo, DownloadingFilePart part) throws DownloadException {
+        AtomicBoolean isPartSent = new AtomicBoolean(false);
+        PersistentSession session = new PersistentSession(sentPart -> {
+            isPartSent.set(true);
+            onPartSent(sentPart);
+        });
+        session.addStartInfo(startInfo);
+        session.addPart(part);
+        session.finish();
+        try {
+            transport.processStream(sessionPath, session::feed);
+        } catch (DownloadException e) {
+            if (isPartSent.get()) {
+                return;
+            }
+            // part will be sent again in next rounds of carousel, here it only has to be joined
+            try {
+                if (!part.waitForFinish()) {
+                    throw new DownloadException("Could not download file part: " + part.path);
+                }
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                throw new DownloadException(interruptedException, "Interrupted while waiting for file part.");
+            }
+            onPartSent(part);
+        }
+    }
+
+    private void repeatCarousel(Path sessionPath, byte[] startInfo, byte[] endInfo, List<FileService.ProcessedPart> processedParts,
+                                long joinWindowEnd) throws DownloadException {
+        AtomicInteger sentSessions = new AtomicInteger(0);
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+        watchdog.scheduleWithFixedDelay(() -> {
+            if (sentSessions.get() > 0 && !isCarouselActive(joinWindowEnd)) {
+                transport.stop();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+
+        try {
+            int index = 0;
+            do {
+                FileService.ProcessedPart processedPart = processedParts.get(index);
+                PersistentSession session = new PersistentSession(part -> {
+                });
+                session.addStartInfo(startInfo);
+                session.addStoredPart(index, fileService.getFinalFilePath(), processedPart.offset, processedPart.length);
+                session.addEndInfo(endInfo);
+                try {
+                    transport.processStream(sessionPath, session::feed);
+                } catch (DownloadException e) {
+                    if (sentSessions.get() > 0 && !isCarouselActive(joinWindowEnd)) {
+                        break;
+                    }
+                    // same part is sent again, so the end info is counted only after it really went out
+                    VariousUtils.sleep(1);
+                    continue;
+                }
+                sentSessions.incrementAndGet();
+                index = (index + 1) % processedParts.size();
+            } while (sentSessions.get() == 0 || isCarouselActive(joinWindowEnd));
+        } finally {
+            watchdog.shutdownNow();
+        }
+    }
+
+    private void repairClients() throws DownloadException {
+        long repairEnd = System.nanoTime() + TimeUnit.MINUTES.toNanos(repairMinutes);
+        Path finalFilePath = fileService.getFinalFilePath();
+        Path sessionPath = Paths.get(downloadDirectory, fileDownloader.getFileName() + ".repair");
+        try {
+            long fileSize = Files.size(finalFilePath);
+            byte[] endInfo = readInfoFile(createEndInfoFile().filePath);
+            List<long[]> ranges;
+            while (System.nanoTime() < repairEnd && !(ranges = feedbackServer.waitForRepairRequests(repairEnd)).isEmpty()) {
+                PersistentSession session = new PersistentSession(part -> {
+                });
+                for (long[] range : ranges) {
+                    if (range[0] < fileSize) {
+                        session.addStoredRange(finalFilePath, range[0], Math.min(range[1], fileSize - range[0]));
+                    }
+                }
+                // resumed clients may have missed the end info of the main transfer
+                session.addEndInfo(endInfo);
+                session.finish();
+
+                System.out.println("Sending repair of ranges count: " + ranges.size());
+                try (Span ignored = Tracer.getInstance().span("control", "repairClients")) {
+                    transport.processStream(sessionPath, session::feed);
+                } catch (DownloadException e) {
+                    System.err.println("Repair session failed, ranges will be sent again. Error: " + e.getMessage());
+                    feedbackServer.returnRepairRequests(ranges);
+                    VariousUtils.sleep(1);
+                }
+            }
+        } catch (IOException e) {
+            throw new DownloadException(e, "Could not read file: " + finalFilePath);
+        } finally {
+            if (feedbackServer.hasIncompleteReceivers() || feedbackServer.hasLostReceivers()) {
+                System.err.println("Repair finished, but some clients are still incomplete.");
+            }
+            feedbackServer.close();
+        }
+    }
+
+    private boolean isCarouselActive(long joinWindowEnd) {
+        return System.nanoTime() < joinWindowEnd || feedbackServer.hasIncompleteReceivers();
+    }
+
+    private byte[] readInfoFile(Path filePath) throws DownloadException {
+        try {
+            return Files.readAllBytes(filePath);
+        } catch (IOException e) {
+            throw new DownloadException(e, "Could not read file: " + filePath);
+        } finally {
+            FilePartUtils.removeFile(filePath);
+        }
+    }
+
+    private void waitForSession(Future<?> sessionFuture) throws DownloadException {
+        try {
+            sessionFuture.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new DownloadException(e, "Persistent session failed.");
+        }
+    }
+
+    private void onPartSent(DownloadingFilePart part) throws DownloadException {
+        addPartToProcess(part);
+        fileDownloader.incrementUdpcastProcessedParts();
+    }
+
     private void checkDownloadIsProperlyStarted(Future<StatusEnum> fileDownloaderFuture) throws DownloadException {
         VariousUtils.sleep(1);
         if (fileDownloaderFuture.isDone()) {
@@ -121,23 +446,52 @@ public class ServerLogic extends CommonLogic {
 
     private void delayIfRequested() {
         if (delayInMinutes > 0) {
-            System.out.println("Starting delay for minutes: " + delayInMinutes);
-            VariousUtils.sleep(delayInMinutes * 60);
-            System.out.println("Delay end.");
+            try (Span ignored = Tracer.getInstance().span("control", "delayIfRequested")) {
+                System.out.println("Starting delay for minutes: " + delayInMinutes);
+                VariousUtils.sleep(delayInMinutes * 60);
+                System.out.println("Delay end.");
+            }
         }
     }
 
-    private boolean processStartFile() throws DownloadException {
+    private StartInfoFile createStartInfoFile() throws DownloadException {
         String url = fileDownloader.getUrl().toString();
         String fileName = fileDownloader.getFileName();
         int fileSizeInMB = fileDownloader.getFileSizeInMB();
         int blockSizeInMB = fileDownloader.getBlockSizeInMB();
 
-        StartInfoFile startInfoFile = new StartInfoFile(downloadDirectory, url, fileName, fileSizeInMB, blockSizeInMB);
+        List<String> feedbackAddresses = feedbackServer != null ? feedbackServer.getAddresses(networkInterface) : new ArrayList<>();
+        return new StartInfoFile(downloadDirectory, url, fileName, fileSizeInMB, blockSizeInMB, checksumAlgorithm, feedbackAddresses);
+    }
+
+    private EndInfoFile createEndInfoFile() throws DownloadException {
+        List<String> checksums = new ArrayList<>();
+        List<PartHashTree> hashTrees = new ArrayList<>();
+
+        List<DownloadingFilePart> parts = fileDownloader.getStartedParts();
+        if (parts.stream().allMatch(part -> part.getChecksum() != null)) {
+            for (DownloadingFilePart part : parts) {
+                BlockChecksum checksum = part.getChecksum();
+                checksums.add(checksum.getValue());
+                hashTrees.add(new PartHashTree(checksum.getBlockSizeInBytes(), checksum.getBlockValues()));
+            }
+            return new EndInfoFile(downloadDirectory, checksums, hashTrees);
+        }
+
+        for (FileService.ProcessedPart processedPart : fileService.waitForProcessedParts()) {
+            checksums.add(processedPart.checksum);
+            hashTrees.add(processedPart.hashTree);
+        }
+
+        return new EndInfoFile(downloadDirectory, checksums, hashTrees);
+    }
+
+    private boolean processStartFile() throws DownloadException {
+        StartInfoFile startInfoFile = createStartInfoFile();
         long startTime = System.nanoTime();
-        try {
-            udpcastService.processFile(startInfoFile.filePath);
-            udpcastService.setDownloadSize(startInfoFile.summarySizeInMB);
+        try (Span ignored = Tracer.getInstance().span("control", "processStartFile")) {
+            transport.processFile(startInfoFile.filePath);
+            transport.setDownloadSize(startInfoFile.summarySizeInMB);
             return true;
         } catch (DownloadException e) {
             long executionTime = System.nanoTime() - startTime;
@@ -151,23 +505,47 @@ public class ServerLogic extends CommonLogic {
         }
     }
 
-    private Path tryGetUnprocessedFile() {
+    private DownloadingFilePart waitForNextPart() throws DownloadException {
         try {
-            Path path = fileDownloader.getProcessedFiles().get(processedPartsCount);
+            DownloadingFilePart part = fileDownloader.waitForStartedPart(processedPartsCount);
+            if (part == null || (!isStreaming && !part.waitForFinish())) {
+                return null;
+            }
             processedPartsCount++;
-            return path;
-        } catch (IndexOutOfBoundsException e) {
-            return null;
+            return part;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownloadException(e, "Interrupted while waiting for downloaded parts.");
         }
     }
 
-    private void processFilePart(Path filePath) throws DownloadException {
-        udpcastService.processFile(filePath);
-        fileService.addFileToProcess(filePath);
-
+    private void processPart(DownloadingFilePart part) throws DownloadException {
+        sendPart(transport, part);
+        addPartToProcess(part);
         fileDownloader.incrementUdpcastProcessedParts();
     }
 
+    private void sendPart(Transport stripe, DownloadingFilePart part) throws DownloadException {
+        if (isStreaming || isDirect) {
+            stripe.processStream(part.path, part::writeTo);
+        } else {
+            stripe.processFile(part.path);
+        }
+    }
+
+    private void addPartToProcess(DownloadingFilePart part) throws DownloadException {
+        BlockChecksum checksum = part.getChecksum();
+        if (isDirect && checksum != null) {
+            fileService.addWrittenRangeToProcess(part.fileOffset, part.getAvailableBytes(), checksum);
+        } else if (isDirect) {
+            fileService.addWrittenRangeToProcess(part.fileOffset, part.getAvailableBytes());
+        } else if (checksum != null) {
+            fileService.addFileToProcess(part.path, checksum);
+        } else {
+            fileService.addFileToProcess(part.path);
+        }
+    }
+
     private void checkFileDownloaderSuccess(Future<StatusEnum> fileDownloaderFuture) throws DownloadException {
         try {
             StatusEnum fileDownloaderStatus = fileDownloaderFuture.get();
@@ -179,19 +557,29 @@ public class ServerLogic extends CommonLogic {
         }
     }
 
-    private void processRemainingParts(Future<StatusEnum> fileDownloaderFuture) throws DownloadException {
-        checkFileDownloaderSuccess(fileDownloaderFuture);
-
-        Path fileToProcess;
-        while ((fileToProcess = tryGetUnprocessedFile()) != null) {
-            processFilePart(fileToProcess);
-        }
-    }
-
     private void processEndFile() throws DownloadException {
-        EndInfoFile endInfoFile = new EndInfoFile(downloadDirectory, fileService.waitForChecksums());
-        try {
-            udpcastService.processFile(endInfoFile.filePath);
+        EndInfoFile endInfoFile = createEndInfoFile();
+        try (Span ignored = Tracer.getInstance().span("control", "processEndFile")) {
+            if (stripes.size() == 1) {
+                transport.processFile(endInfoFile.filePath);
+                return;
+            }
+
+            ExecutorService endExecutor = Executors.newFixedThreadPool(stripes.size());
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (Transport stripe : stripes) {
+                    futures.add(endExecutor.submit(() -> {
+                        stripe.processFile(endInfoFile.filePath);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    waitForStripe(future);
+                }
+            } finally {
+                endExecutor.shutdownNow();
+            }
         } finally {
             FilePartUtils.removeFile(endInfoFile.filePath);
         }
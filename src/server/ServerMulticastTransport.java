@@ -0,0 +1,511 @@
+package server;
+
+import common.exceptions.DownloadException;
+import common.models.UdpcastConfiguration;
+import common.services.MulticastTransport;
+import common.services.ServerTransport;
+import common.utils.FilePartUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+public class ServerMulticastTransport extends MulticastTransport implements ServerTransport {
+    private static final long announcePeriodInNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long requestAckPeriodInNanos = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long receiverTimeoutInNanos = TimeUnit.SECONDS.toNanos(5);
+    private static final long finishTimeoutInNanos = TimeUnit.SECONDS.toNanos(2);
+    private static final long minWaitInNanos = TimeUnit.SECONDS.toNanos(1);
+    private static final long maxWaitInNanos = TimeUnit.SECONDS.toNanos(10);
+    private static final long startTimeoutInNanos = TimeUnit.SECONDS.toNanos(15);
+    private static final int sliceSize = payloadSize * packetsPerSlice;
+    private static final int slicesPerMapping = 64;
+    private static final int packetsPerControlRead = 64;
+
+    private final RateController rateController;
+    private final Map<Long, Receiver> receivers = new LinkedHashMap<>();
+    private final ByteBuffer header = ByteBuffer.allocateDirect(headerSize);
+    private final ByteBuffer controlPacket = ByteBuffer.allocateDirect(maxPacketSize);
+    private final ByteBuffer[] dataPacket = new ByteBuffer[2];
+    private final OutgoingSlice[] window = new OutgoingSlice[windowSlices];
+    private final ByteBuffer[] streamSlices = new ByteBuffer[windowSlices];
+    private DatagramChannel dataChannel;
+    private DatagramChannel controlChannel;
+    private Selector selector;
+    private int sessionId = 0;
+    private boolean isAnnouncing = false;
+    private int expectedReceivers = 0;
+    private int windowStart = 0;
+    private int windowEnd = 0;
+    private int sentPackets = 0;
+    private int resentPackets = 0;
+    private long sentBytes = 0;
+    private long sendingNanos = 0;
+
+    public ServerMulticastTransport(UdpcastConfiguration configuration) throws DownloadException {
+        this(configuration, 0);
+    }
+
+    public ServerMulticastTransport(UdpcastConfiguration configuration, int stripe) throws DownloadException {
+        super(configuration, stripe);
+        rateController = new RateController(configuration.getRateInMBps());
+        for (int i = 0; i < windowSlices; i++) {
+            window[i] = new OutgoingSlice();
+        }
+    }
+
+    @Override
+    public void processFile(Path filePath) throws DownloadException {
+        FilePartUtils.markToDeleteOnExit(filePath);
+
+        System.out.println("Multicast - sending file part: " + filePath.toAbsolutePath());
+        runSession(filePath, () -> {
+            try (FileChannel fileChannel = FileChannel.open(filePath, READ)) {
+                long size = fileChannel.size();
+                startSession();
+
+                long mappingSize = (long) sliceSize * slicesPerMapping;
+                for (long mappingOffset = 0; mappingOffset < size; mappingOffset += mappingSize) {
+                    ByteBuffer mapping = fileChannel.map(FileChannel.MapMode.READ_ONLY, mappingOffset, Math.min(mappingSize, size - mappingOffset));
+                    for (int offset = 0; offset < mapping.limit(); offset += sliceSize) {
+                        ByteBuffer data = mapping.duplicate();
+                        data.position(offset).limit(Math.min(offset + sliceSize, mapping.limit()));
+                        addSlice(data.slice());
+                    }
+                }
+                awaitWindow(0);
+                finishSession(windowEnd);
+            }
+        });
+    }
+
+    @Override
+    public void processStream(Path filePath, StreamFeeder feeder) throws DownloadException {
+        FilePartUtils.markToDeleteOnExit(filePath);
+
+        System.out.println("Multicast - streaming file part: " + filePath.toAbsolutePath());
+        runSession(filePath, () -> {
+            startSession();
+            SliceOutputStream outputStream = new SliceOutputStream();
+            feeder.feed(outputStream);
+            outputStream.finish();
+        });
+    }
+
+    @Override
+    public void receiveStream(Path filePath, StreamConsumer consumer) throws DownloadException {
+        throw new DownloadException("Server multicast transport cannot receive streams.");
+    }
+
+    @Override
+    public void shutdownClients() {
+        DatagramChannel channel = dataChannel;
+        if (channel == null || !channel.isOpen()) {
+            return;
+        }
+
+        ByteBuffer abortPacket = ByteBuffer.allocate(headerSize);
+        try {
+            for (int i = 0; i < 5; i++) {
+                putHeader(abortPacket, abortType, sessionId, 0, 0, 0, 0);
+                abortPacket.flip();
+                channel.write(abortPacket);
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void openChannels() throws IOException {
+        if (dataChannel != null && dataChannel.isOpen() && controlChannel.isOpen() && selector.isOpen()) {
+            return;
+        }
+
+        dataChannel = openChannel();
+        dataChannel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+        dataChannel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        dataChannel.setOption(StandardSocketOptions.SO_SNDBUF, 4 * 1024 * 1024);
+        dataChannel.connect(group);
+
+        controlChannel = openChannel();
+        controlChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        controlChannel.bind(new InetSocketAddress(controlPort));
+        controlChannel.configureBlocking(false);
+        selector = openSelector();
+        controlChannel.register(selector, SelectionKey.OP_READ);
+    }
+
+    private void startSession() throws IOException {
+        openChannels();
+        do {
+            sessionId = ThreadLocalRandom.current().nextInt();
+        } while (sessionId == 0);
+        receivers.clear();
+        windowStart = 0;
+        windowEnd = 0;
+
+        isAnnouncing = true;
+        try {
+            long startTime = System.nanoTime();
+            long firstConnectionTime = 0;
+            long nextAnnounceTime = 0;
+            while (true) {
+                checkStopped();
+                long now = System.nanoTime();
+                if (receivers.isEmpty()) {
+                    if (expectedReceivers > 0 && now - startTime > startTimeoutInNanos) {
+                        throw new IOException("No receivers connected.");
+                    }
+                } else {
+                    if (firstConnectionTime == 0) {
+                        firstConnectionTime = now;
+                    }
+                    long waited = now - firstConnectionTime;
+                    boolean isReady = receivers.size() >= expectedReceivers && waited >= minWaitInNanos;
+                    if (isReady || waited >= maxWaitInNanos) {
+                        break;
+                    }
+                }
+
+                if (now >= nextAnnounceTime) {
+                    sendControl(announceType, 0, packetsPerSlice, payloadSize);
+                    nextAnnounceTime = now + announcePeriodInNanos;
+                }
+                pollControl(10);
+            }
+        } finally {
+            isAnnouncing = false;
+        }
+
+        if (expectedReceivers > 0) {
+            System.out.println("Expected clients: " + expectedReceivers);
+        }
+    }
+
+    private void addSlice(ByteBuffer data) throws IOException {
+        awaitWindow(windowSlices - 1);
+        OutgoingSlice slice = window[windowEnd % windowSlices];
+        slice.data = data;
+        slice.length = data.remaining();
+        slice.round = 0;
+        slice.firstRequestTime = 0;
+        slice.packetsToSend.set(0, getPacketsCount(slice.length, payloadSize));
+        slice.pendingReceivers.addAll(receivers.keySet());
+        sendSlice(windowEnd++, slice);
+    }
+
+    private void awaitWindow(int maxSlicesInFlight) throws IOException {
+        while (true) {
+            checkStopped();
+            readControl();
+            completeSlices();
+
+            long now = System.nanoTime();
+            for (int index = windowStart; index < windowEnd; index++) {
+                OutgoingSlice slice = window[index % windowSlices];
+                if (!slice.packetsToSend.isEmpty()) {
+                    resentPackets += slice.packetsToSend.cardinality();
+                    sendSlice(index, slice);
+                } else if (!slice.pendingReceivers.isEmpty() && now - slice.requestTime >= requestAckPeriodInNanos) {
+                    requestStatus(index, slice);
+                }
+            }
+            if (windowEnd - windowStart <= maxSlicesInFlight) {
+                return;
+            }
+
+            dropSilentReceivers(now);
+            pollControl(5);
+        }
+    }
+
+    private void sendSlice(int index, OutgoingSlice slice) throws IOException {
+        long startTime = System.nanoTime();
+        // statuses of previous round do not include packets sent now, so they are ignored from now on
+        slice.round++;
+        BitSet packets = slice.packetsToSend;
+        for (int packet = packets.nextSetBit(0); packet >= 0; packet = packets.nextSetBit(packet + 1)) {
+            checkStopped();
+            int offset = packet * payloadSize;
+            int length = Math.min(payloadSize, slice.length - offset);
+
+            putHeader(header, dataType, sessionId, index, packet, length, 0);
+            header.flip();
+            ByteBuffer payload = slice.data.duplicate();
+            payload.position(offset).limit(offset + length);
+            dataPacket[0] = header;
+            dataPacket[1] = payload;
+
+            rateController.pace(headerSize + length);
+            dataChannel.write(dataPacket);
+            sentBytes += headerSize + length;
+            if (++sentPackets % packetsPerControlRead == 0) {
+                readControl();
+            }
+        }
+        packets.clear();
+        sendingNanos += System.nanoTime() - startTime;
+        requestStatus(index, slice);
+    }
+
+    private void requestStatus(int index, OutgoingSlice slice) throws IOException {
+        slice.requestTime = System.nanoTime();
+        if (slice.firstRequestTime == 0) {
+            slice.firstRequestTime = slice.requestTime;
+        }
+        sendControl(requestAckType, index, slice.round, slice.length);
+    }
+
+    private void completeSlices() {
+        while (windowStart < windowEnd) {
+            OutgoingSlice slice = window[windowStart % windowSlices];
+            if (!slice.pendingReceivers.isEmpty()) {
+                return;
+            }
+
+            slice.packetsToSend.clear();
+            slice.data = null;
+            addTransferredBytes(slice.length);
+            windowStart++;
+
+            rateController.onRoundFinished(sentPackets, resentPackets, sentBytes, sendingNanos);
+            sentPackets = 0;
+            resentPackets = 0;
+            sentBytes = 0;
+            sendingNanos = 0;
+        }
+    }
+
+    private void dropSilentReceivers(long now) throws IOException {
+        OutgoingSlice oldestSlice = window[windowStart % windowSlices];
+        if (windowStart == windowEnd || now - oldestSlice.firstRequestTime <= receiverTimeoutInNanos) {
+            return;
+        }
+
+        Iterator<Map.Entry<Long, Receiver>> iterator = receivers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Receiver> entry = iterator.next();
+            if (oldestSlice.pendingReceivers.contains(entry.getKey()) && now - entry.getValue().statusTime > receiverTimeoutInNanos) {
+                System.out.println("Dropping one of clients: " + entry.getValue().address);
+                iterator.remove();
+                for (OutgoingSlice slice : window) {
+                    slice.pendingReceivers.remove(entry.getKey());
+                }
+            }
+        }
+        if (receivers.isEmpty()) {
+            throw new IOException("All receivers were dropped.");
+        }
+    }
+
+    private void finishSession(int slices) throws IOException {
+        long startTime = System.nanoTime();
+        long nextFinishTime = 0;
+        while (!isEveryReceiverFinished() && System.nanoTime() - startTime < finishTimeoutInNanos) {
+            checkStopped();
+            long now = System.nanoTime();
+            if (now >= nextFinishTime) {
+                sendControl(finishType, slices, 0, 0);
+                nextFinishTime = now + requestAckPeriodInNanos;
+            }
+            pollControl(5);
+        }
+        expectedReceivers = receivers.size();
+    }
+
+    private boolean isEveryReceiverFinished() {
+        for (Receiver receiver : receivers.values()) {
+            if (!receiver.isFinished) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sendControl(byte type, int slice, int index, int value) throws IOException {
+        putHeader(header, type, sessionId, slice, index, value, 0);
+        header.flip();
+        dataChannel.write(header);
+    }
+
+    private void pollControl(long timeoutInMillis) throws IOException {
+        selector.select(timeoutInMillis);
+        selector.selectedKeys().clear();
+        readControl();
+    }
+
+    private void readControl() throws IOException {
+        SocketAddress address;
+        while ((address = receiveControl()) != null) {
+            if (!isValid(controlPacket) || getSessionId(controlPacket) != sessionId) {
+                continue;
+            }
+
+            long receiverId = getReceiverId(controlPacket);
+            Receiver receiver = receivers.get(receiverId);
+            switch (getType(controlPacket)) {
+                case helloType:
+                    if (!isAnnouncing) {
+                        break;
+                    }
+                    if (receiver == null) {
+                        receiver = new Receiver(address, System.nanoTime());
+                        receivers.put(receiverId, receiver);
+                        System.out.println("New connection from " + address);
+                    }
+                    putHeader(header, welcomeType, sessionId, 0, 0, 0, receiverId);
+                    header.flip();
+                    controlChannel.send(header, address);
+                    break;
+                case statusType:
+                    if (receiver != null) {
+                        receiver.statusTime = System.nanoTime();
+                        onStatus(receiverId);
+                    }
+                    break;
+                case finishAckType:
+                    if (receiver != null) {
+                        receiver.isFinished = true;
+                    }
+                    break;
+                default:
+            }
+        }
+    }
+
+    private void onStatus(long receiverId) {
+        int index = getSlice(controlPacket);
+        if (index < windowStart || index >= windowEnd) {
+            return;
+        }
+
+        OutgoingSlice slice = window[index % windowSlices];
+        controlPacket.position(headerSize);
+        BitSet missingPackets = BitSet.valueOf(controlPacket);
+        if (missingPackets.isEmpty()) {
+            slice.pendingReceivers.remove(receiverId);
+        } else if (getIndex(controlPacket) == (slice.round & 0xFFFF)) {
+            slice.packetsToSend.or(missingPackets);
+        }
+    }
+
+    private SocketAddress receiveControl() throws IOException {
+        controlPacket.clear();
+        SocketAddress address = controlChannel.receive(controlPacket);
+        controlPacket.flip();
+        return address;
+    }
+
+    private static class Receiver {
+        private final SocketAddress address;
+        private long statusTime;
+        private boolean isFinished = false;
+
+        private Receiver(SocketAddress address, long statusTime) {
+            this.address = address;
+            this.statusTime = statusTime;
+        }
+    }
+
+    private static class OutgoingSlice {
+        private final BitSet packetsToSend = new BitSet(packetsPerSlice);
+        private final Set<Long> pendingReceivers = new HashSet<>();
+        private ByteBuffer data;
+        private int length;
+        private int round;
+        private long requestTime;
+        private long firstRequestTime;
+    }
+
+    private class SliceOutputStream extends OutputStream implements WritableByteChannel {
+        private ByteBuffer slice;
+        private boolean isOpen = true;
+
+        @Override
+        public void write(int b) throws IOException {
+            nextSlice().put((byte) b);
+            sendIfFull();
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                int chunk = Math.min(length, nextSlice().remaining());
+                slice.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+                sendIfFull();
+            }
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            int written = source.remaining();
+            while (source.hasRemaining()) {
+                ByteBuffer chunk = source.duplicate();
+                chunk.limit(chunk.position() + Math.min(chunk.remaining(), nextSlice().remaining()));
+                slice.put(chunk);
+                source.position(chunk.position());
+                sendIfFull();
+            }
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return isOpen;
+        }
+
+        @Override
+        public void close() {
+            isOpen = false;
+        }
+
+        private void finish() throws IOException {
+            if (slice != null && slice.position() > 0) {
+                send();
+            }
+            awaitWindow(0);
+            finishSession(windowEnd);
+        }
+
+        private ByteBuffer nextSlice() throws IOException {
+            if (slice == null) {
+                // buffer of the slice which left the window is reused
+                awaitWindow(windowSlices - 1);
+                int index = windowEnd % windowSlices;
+                if (streamSlices[index] == null) {
+                    streamSlices[index] = ByteBuffer.allocateDirect(sliceSize);
+                }
+                slice = streamSlices[index];
+                slice.clear();
+            }
+            return slice;
+        }
+
+        private void sendIfFull() throws IOException {
+            if (!slice.hasRemaining()) {
+                send();
+            }
+        }
+
+        private void send() throws IOException {
+            slice.flip();
+            addSlice(slice);
+            slice = null;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package server;
 import common.exceptions.DownloadException;
 import common.infos.EndInfoFile;
 import common.models.UdpcastConfiguration;
+import common.services.UdpcastOutputParser;
+import common.services.ServerTransport;
 import common.services.UdpcastService;
 import common.utils.VariousUtils;
 
@@ -14,11 +16,18 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
-public class ServerUdpcastService extends UdpcastService {
+public class ServerUdpcastService extends UdpcastService implements ServerTransport {
+    private static final byte[] droppedClientPrefix = UdpcastOutputParser.toBytes("Dropping one of clients");
+    private static final byte[] newConnectionPrefix = UdpcastOutputParser.toBytes("New connection from");
+
     private int expectedClients = 0;
 
     public ServerUdpcastService(UdpcastConfiguration configuration) throws DownloadException {
-        super("udp-sender", configuration,
+        this(configuration, 0);
+    }
+
+    public ServerUdpcastService(UdpcastConfiguration configuration, int stripe) throws DownloadException {
+        super("udp-sender", configuration, stripe,
                 new ArrayList<>(Arrays.asList(
                         "--min-wait", "1",
                         "--full-duplex"
@@ -27,31 +36,27 @@ public class ServerUdpcastService extends UdpcastService {
 
     @Override
     public void processFile(Path filePath) throws DownloadException {System.out.println("Server processFile");
-        ArrayList<String> additionalParams = new ArrayList<>();
-        if (expectedClients > 0) {
-            additionalParams.add("--min-receivers");
-            additionalParams.add(String.valueOf(expectedClients));
-            additionalParams.add("--start-timeout");
-            additionalParams.add("15");
-            additionalParams.add("--max-wait");
-            additionalParams.add("10");
-
-            System.out.println("Expected clients: " + expectedClients);
-        }
-        expectedClients = 0;
-        super.processFile(filePath, additionalParams);
+        super.processFile(filePath, prepareReceiversParams());
 
         // udp-receiver has by default 500 delay in closing (--exit-wait parameter)
         // receiver waits 500ms after receiving the final REQACK in order to guard against loss of the final ACK
         VariousUtils.sleep(1);
     }
 
+    @Override
+    public void processStream(Path filePath, StreamFeeder feeder) throws DownloadException {
+        super.processStream(filePath, feeder, prepareReceiversParams());
+
+        VariousUtils.sleep(1);
+    }
+
+    @Override
     public void shutdownClients() {
         System.out.println("shutdownClients");
         if (process != null) {
             System.out.println("process != null");
             if (process.isAlive()) {
-                super.stopUdpcast();
+                super.stop();
                 System.out.println("stopUdpcast");
             }
 
@@ -76,15 +81,32 @@ public class ServerUdpcastService extends UdpcastService {
         }
     }
 
+    private ArrayList<String> prepareReceiversParams() {
+        ArrayList<String> additionalParams = new ArrayList<>();
+        if (expectedClients > 0) {
+            additionalParams.add("--min-receivers");
+            additionalParams.add(String.valueOf(expectedClients));
+            additionalParams.add("--start-timeout");
+            additionalParams.add("15");
+            additionalParams.add("--max-wait");
+            additionalParams.add("10");
+
+            System.out.println("Expected clients: " + expectedClients);
+        }
+        expectedClients = 0;
+
+        return additionalParams;
+    }
+
     @Override
-    protected long processLine(String line, long latestBytes) {
-        if (line.startsWith("Dropping one of clients")) {
+    protected void processLine(byte[] line, int length) {
+        if (UdpcastOutputParser.startsWith(line, length, droppedClientPrefix)) {
             System.out.println("Dropped one of clients");
             expectedClients -= 1;
-        } else if (line.startsWith("New connection from")) {
+        } else if (UdpcastOutputParser.startsWith(line, length, newConnectionPrefix)) {
             expectedClients += 1;
         }
 
-        return super.processLine(line, latestBytes);
+        super.processLine(line, length);
     }
 }
@@ -0,0 +1,204 @@
+package client;
+
+import common.checksums.PartChecksum;
+import common.infos.StartInfoFile;
+import common.models.ChecksumAlgorithmEnum;
+import common.models.StatusEnum;
+import common.models.UdpcastConfiguration;
+import common.services.FileService;
+import common.utils.ChecksumUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import server.ServerLogic;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static testingUtils.CommonTestingUtils.generateFile;
+
+public class PartJournalTests {
+    @Test
+    public void shouldLoadCreatedJournalWithParts() throws Exception {
+        // Arrange
+        String directory = Files.createTempDirectory(null).toString();
+        StartInfoFile startInfoFile = new StartInfoFile(directory, "url", "file", 3, 1, ChecksumAlgorithmEnum.CRC32C,
+                Arrays.asList("10.0.0.1:9001", "127.0.0.1:9001"));
+        Path journalPath = PartJournal.getPath(directory, "file");
+        Path filePath = Files.write(Files.createTempFile(null, null), new byte[30]);
+        PartJournal journal = PartJournal.create(journalPath, startInfoFile);
+
+        // Act
+        journal.addPart(new FileService.ProcessedPart(0, 10, "abc"), filePath);
+        journal.addPart(new FileService.ProcessedPart(10, 20, "def"), filePath);
+        PartJournal loadedJournal = PartJournal.load(journalPath);
+
+        // Assert
+        Assertions.assertNotNull(loadedJournal);
+        Assertions.assertTrue(loadedJournal.matches(startInfoFile));
+        Assertions.assertEquals(journal.getClientId(), loadedJournal.getClientId());
+        Assertions.assertEquals(startInfoFile.feedbackAddresses, loadedJournal.getFeedbackAddresses());
+        Assertions.assertEquals(2, loadedJournal.getParts().size());
+        Assertions.assertEquals("def", loadedJournal.getParts().get(1).checksum);
+        Assertions.assertEquals(30, loadedJournal.getJournaledSize());
+        Assertions.assertEquals("file", PartJournal.getFileName(journalPath));
+    }
+
+    @Test
+    public void shouldNotMatchStartInfoOfOtherDownload() throws Exception {
+        // Arrange
+        String directory = Files.createTempDirectory(null).toString();
+        StartInfoFile startInfoFile = new StartInfoFile(directory, "url", "file", 3, 1, ChecksumAlgorithmEnum.CRC32C);
+        PartJournal journal = PartJournal.create(PartJournal.getPath(directory, "file"), startInfoFile);
+
+        // Act & Assert
+        Assertions.assertTrue(journal.matches(new StartInfoFile(directory, "url", "file", 3, 1, ChecksumAlgorithmEnum.CRC32C)));
+        Assertions.assertFalse(journal.matches(new StartInfoFile(directory, "url2", "file", 3, 1, ChecksumAlgorithmEnum.CRC32C)));
+        Assertions.assertFalse(journal.matches(new StartInfoFile(directory, "url", "file", 3, 2, ChecksumAlgorithmEnum.CRC32C)));
+        Assertions.assertFalse(journal.matches(new StartInfoFile(directory, "url", "file", 3, 1, ChecksumAlgorithmEnum.Adler32)));
+    }
+
+    @Test
+    public void shouldSkipTornLastLine() throws Exception {
+        // Arrange
+        Path journalPath = createJournal("part\t0\t10\tabc\npart\t10\t1");
+
+        // Act
+        PartJournal journal = PartJournal.load(journalPath);
+
+        // Assert
+        Assertions.assertNotNull(journal);
+        Assertions.assertEquals(1, journal.getParts().size());
+        Assertions.assertEquals(10, journal.getJournaledSize());
+    }
+
+    @Test
+    public void shouldNotLoadJournalWithNonContiguousPart() throws Exception {
+        // Arrange
+        Path journalPath = createJournal("part\t0\t10\tabc\npart\t20\t10\tdef\n");
+
+        // Act
+        PartJournal journal = PartJournal.load(journalPath);
+
+        // Assert
+        Assertions.assertNull(journal);
+    }
+
+    @Test
+    public void shouldNotLoadJournalWithoutClientId() throws Exception {
+        // Arrange
+        Path journalPath = createJournal("");
+        String content = new String(Files.readAllBytes(journalPath), StandardCharsets.UTF_8);
+        Files.write(journalPath, content.replaceAll("id\t[^\n]*\n", "").getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        PartJournal journal = PartJournal.load(journalPath);
+
+        // Assert
+        Assertions.assertNull(journal);
+    }
+
+    @Test
+    public void shouldNotLoadMissingJournal() throws Exception {
+        // Arrange
+        String directory = Files.createTempDirectory(null).toString();
+
+        // Act
+        PartJournal journal = PartJournal.load(PartJournal.getPath(directory, "file"));
+
+        // Assert
+        Assertions.assertNull(journal);
+    }
+
+    @Test
+    public void shouldFindOnlySingleJournal() throws Exception {
+        // Arrange
+        String directory = Files.createTempDirectory(null).toString();
+        StartInfoFile startInfoFile = new StartInfoFile(directory, "url", "file", 3, 1);
+        PartJournal.create(PartJournal.getPath(directory, "file1"), startInfoFile);
+
+        // Act
+        Path singleJournal = PartJournal.find(directory);
+        PartJournal.create(PartJournal.getPath(directory, "file2"), startInfoFile);
+        Path oneOfTwoJournals = PartJournal.find(directory);
+
+        // Assert
+        Assertions.assertEquals(PartJournal.getPath(directory, "file1"), singleJournal);
+        Assertions.assertNull(oneOfTwoJournals);
+    }
+
+    @Test
+    public void shouldResumeInRepairSession() throws Exception {
+        // Arrange
+        Path sourceFile = generateFile(3);
+        byte[] content = Files.readAllBytes(sourceFile);
+        String fileName = sourceFile.getFileName().toString();
+        String serverDirectory = Files.createTempDirectory(null).toString();
+        String clientDirectory = Files.createTempDirectory(null).toString();
+        String resumedClientDirectory = Files.createTempDirectory(null).toString();
+        ChecksumAlgorithmEnum checksumAlgorithm = ChecksumUtils.getDefaultAlgorithm();
+
+        int partSize = 1024 * 1024;
+        Path resumedFile = Paths.get(resumedClientDirectory, fileName + ".client");
+        Files.write(resumedFile, Arrays.copyOf(content, partSize + 100));
+        PartChecksum checksum = ChecksumUtils.createChecksum(checksumAlgorithm);
+        checksum.update(content, 0, partSize);
+        StartInfoFile startInfoFile = new StartInfoFile(resumedClientDirectory, "url", fileName, 3, 1, checksumAlgorithm,
+                Collections.singletonList("127.0.0.1:9771"));
+        PartJournal.create(PartJournal.getPath(resumedClientDirectory, fileName), startInfoFile)
+                .addPart(new FileService.ProcessedPart(0, partSize, checksum.getValue()), resumedFile);
+
+        ServerLogic server = new ServerLogic(new UdpcastConfiguration(new String[]{"-interface", "lo", "-portbase", "9770",
+                "-transport", "nio", "-repair", "1", "-blocksize", "1", "-url", sourceFile.toString(), "-directory", serverDirectory}));
+        ClientLogic client = new ClientLogic(new UdpcastConfiguration(new String[]{"-interface", "lo", "-portbase", "9770",
+                "-transport", "nio", "-directory", clientDirectory}));
+        ClientLogic resumedClient = new ClientLogic(new UdpcastConfiguration(new String[]{"-interface", "lo", "-portbase", "9770",
+                "-transport", "nio", "-resume", "-directory", resumedClientDirectory}));
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+
+        try {
+            // Act
+            Future<StatusEnum> serverResult = executorService.submit(server::doWork);
+            waitForFeedbackServer(9771);
+            Future<StatusEnum> resumedClientResult = executorService.submit(resumedClient::doWork);
+            Future<StatusEnum> clientResult = executorService.submit(client::doWork);
+
+            // Assert
+            Assertions.assertEquals(StatusEnum.Success, resumedClientResult.get(2, TimeUnit.MINUTES));
+            Assertions.assertEquals(StatusEnum.Success, clientResult.get(2, TimeUnit.MINUTES));
+            Assertions.assertEquals(StatusEnum.Success, serverResult.get(2, TimeUnit.MINUTES));
+            Assertions.assertArrayEquals(content, Files.readAllBytes(Paths.get(resumedClientDirectory, fileName)));
+            Assertions.assertFalse(Files.exists(PartJournal.getPath(resumedClientDirectory, fileName)));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static Path createJournal(String partLines) throws Exception {
+        String directory = Files.createTempDirectory(null).toString();
+        Path journalPath = PartJournal.getPath(directory, "file");
+        PartJournal.create(journalPath, new StartInfoFile(directory, "url", "file", 3, 1));
+        Files.write(journalPath, partLines.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        return journalPath;
+    }
+
+    private static void waitForFeedbackServer(int port) throws InterruptedException {
+        for (int i = 0; i < 600; i++) {
+            try (Socket ignored = new Socket("127.0.0.1", port)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(100);
+            }
+        }
+    }
+}
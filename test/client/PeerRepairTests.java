@@ -0,0 +1,175 @@
+package client;
+
+import common.exceptions.DownloadException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static testingUtils.CommonTestingUtils.generateFile;
+
+public class PeerRepairTests {
+    private static final int chunkSize = 16 * 1024 * 1024;
+
+    @Test
+    public void shouldDiscoverOnlyPeersServingSameFile() throws Exception {
+        // Arrange
+        Path filePath = generateFile(1);
+
+        try (PeerServer ignored = new PeerServer("lo", 9750, filePath, "file1");
+             PeerServer ignoredOther = new PeerServer("lo", 9750, filePath, "file2")) {
+            // Act
+            List<InetSocketAddress> peers = new PeerClient("lo", 9750, "file1").discoverPeers();
+
+            // Assert
+            Assertions.assertEquals(1, peers.size());
+            Assertions.assertTrue(peers.get(0).getAddress().isLoopbackAddress());
+        }
+    }
+
+    @Test
+    public void shouldFetchRangesFromPeers() throws Exception {
+        // Arrange
+        Path filePath = generateFile(40);
+        Path targetPath = Files.createTempFile(null, null);
+        Files.write(targetPath, new byte[40 * 1024 * 1024]);
+        List<long[]> ranges = Arrays.asList(new long[]{100, 2 * chunkSize}, new long[]{38 * 1024 * 1024, 1000});
+
+        try (PeerServer ignored = new PeerServer("lo", 9752, filePath, "file");
+             PeerServer ignoredOther = new PeerServer("lo", 9752, filePath, "file")) {
+            PeerClient peerClient = new PeerClient("lo", 9752, "file");
+
+            // Act
+            long fetchedBytes = peerClient.fetchRanges(peerClient.discoverPeers(), ranges, targetPath);
+
+            // Assert
+            Assertions.assertEquals(2 * chunkSize + 1000, fetchedBytes);
+            assertRangesEqual(filePath, targetPath, ranges);
+        } finally {
+            Files.deleteIfExists(targetPath);
+        }
+    }
+
+    @Test
+    public void shouldFetchChunkOfFailedPeerFromOtherPeer() throws Exception {
+        // Arrange
+        Path filePath = generateFile(40);
+        Path targetPath = Files.createTempFile(null, null);
+        Files.write(targetPath, new byte[40 * 1024 * 1024]);
+        List<long[]> ranges = Collections.singletonList(new long[]{0, 40 * 1024 * 1024});
+        AtomicInteger failedRequests = new AtomicInteger(0);
+
+        try (PeerServer ignored = new PeerServer("lo", 9754, filePath, "file");
+             ServerSocketChannel failingPeer = startFailingPeer(failedRequests, 1000)) {
+            PeerClient peerClient = new PeerClient("lo", 9754, "file");
+            List<InetSocketAddress> peers = peerClient.discoverPeers();
+            peers.add(0, (InetSocketAddress) failingPeer.getLocalAddress());
+
+            // Act
+            long fetchedBytes = peerClient.fetchRanges(peers, ranges, targetPath);
+
+            // Assert
+            Assertions.assertTrue(failedRequests.get() > 0);
+            Assertions.assertEquals(40 * 1024 * 1024, fetchedBytes);
+            Assertions.assertArrayEquals(Files.readAllBytes(filePath), Files.readAllBytes(targetPath));
+        } finally {
+            Files.deleteIfExists(targetPath);
+        }
+    }
+
+    @Test
+    public void shouldThrowWhenNotAllChunksWereFetched() throws Exception {
+        // Arrange
+        Path targetPath = Files.createTempFile(null, null);
+        List<long[]> ranges = Collections.singletonList(new long[]{0, 3 * chunkSize});
+        AtomicInteger failedRequests = new AtomicInteger(0);
+
+        try (ServerSocketChannel failingPeer = startFailingPeer(failedRequests, 0)) {
+            List<InetSocketAddress> peers = Collections.singletonList((InetSocketAddress) failingPeer.getLocalAddress());
+
+            // Act
+            DownloadException exception = Assertions.assertThrows(DownloadException.class,
+                    () -> new PeerClient("lo", 9756, "file").fetchRanges(peers, ranges, targetPath));
+
+            // Assert
+            Assertions.assertTrue(exception.getMessage().contains("Remaining chunks count: 3"));
+            Assertions.assertEquals(1, failedRequests.get());
+        } finally {
+            Files.deleteIfExists(targetPath);
+        }
+    }
+
+    @Test
+    public void shouldNotServeRangeOutsideOfFile() throws Exception {
+        // Arrange
+        Path filePath = generateFile(1);
+        long fileSize = Files.size(filePath);
+
+        try (PeerServer ignored = new PeerServer("lo", 9758, filePath, "file")) {
+            InetSocketAddress peer = new PeerClient("lo", 9758, "file").discoverPeers().get(0);
+
+            // Act
+            int beyondEndResult = requestRange(peer, (fileSize - 10) + " 20\n");
+            int negativeOffsetResult = requestRange(peer, "-1 10\n");
+            int emptyRangeResult = requestRange(peer, "0 0\n");
+            int validRangeResult = requestRange(peer, (fileSize - 10) + " 10\n");
+
+            // Assert
+            Assertions.assertEquals(-1, beyondEndResult);
+            Assertions.assertEquals(-1, negativeOffsetResult);
+            Assertions.assertEquals(-1, emptyRangeResult);
+            Assertions.assertEquals(10, validRangeResult);
+        }
+    }
+
+    private static int requestRange(InetSocketAddress peer, String request) throws IOException {
+        try (SocketChannel socketChannel = SocketChannel.open(peer)) {
+            socketChannel.write(ByteBuffer.wrap(request.getBytes()));
+            socketChannel.shutdownOutput();
+
+            ByteBuffer response = ByteBuffer.allocate(100);
+            while (socketChannel.read(response) != -1) {
+            }
+            return response.position() == 0 ? -1 : response.position();
+        }
+    }
+
+    private static ServerSocketChannel startFailingPeer(AtomicInteger failedRequests, long delayInMillis) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+        Thread thread = new Thread(() -> {
+            while (serverChannel.isOpen()) {
+                try (SocketChannel socketChannel = serverChannel.accept()) {
+                    if (socketChannel.read(ByteBuffer.allocate(100)) > 0) {
+                        failedRequests.incrementAndGet();
+                        Thread.sleep(delayInMillis);
+                    }
+                } catch (IOException | InterruptedException ignored) {
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return serverChannel;
+    }
+
+    private static void assertRangesEqual(Path expectedPath, Path actualPath, List<long[]> ranges) throws IOException {
+        byte[] expected = Files.readAllBytes(expectedPath);
+        byte[] actual = Files.readAllBytes(actualPath);
+        for (long[] range : ranges) {
+            int from = (int) range[0];
+            int to = (int) (range[0] + range[1]);
+            Assertions.assertArrayEquals(Arrays.copyOfRange(expected, from, to), Arrays.copyOfRange(actual, from, to));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package common;
+
+import common.checksums.Crc32c;
+import common.checksums.PartChecksum;
+import common.models.ChecksumAlgorithmEnum;
+import common.utils.ChecksumUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Adler32;
+
+public class ChecksumUtilsTests {
+    @Test
+    public void combineAdler32_ShouldEqualChecksumOfWholeContent() {
+        // Arrange
+        byte[] content = new byte[3 * 1024 * 1024 + 17];
+        new Random().nextBytes(content);
+        int split = 1024 * 1024 + 5;
+
+        Adler32 whole = new Adler32();
+        whole.update(content, 0, content.length);
+        Adler32 first = new Adler32();
+        first.update(content, 0, split);
+        Adler32 second = new Adler32();
+        second.update(content, split, content.length - split);
+
+        // Act
+        long combined = ChecksumUtils.combineAdler32(first.getValue(), second.getValue(), content.length - split);
+
+        // Assert
+        Assertions.assertEquals(whole.getValue(), combined);
+    }
+
+    @Test
+    public void combineAdler32_ShouldReturnSecondChecksumWhenFirstIsEmpty() {
+        // Arrange
+        byte[] content = new byte[1024];
+        new Random().nextBytes(content);
+        Adler32 adler = new Adler32();
+        adler.update(content, 0, content.length);
+
+        // Act
+        long combined = ChecksumUtils.combineAdler32(new Adler32().getValue(), adler.getValue(), content.length);
+
+        // Assert
+        Assertions.assertEquals(adler.getValue(), combined);
+    }
+
+    @Test
+    public void combineCrc32c_ShouldEqualChecksumOfWholeContent() {
+        // Arrange
+        byte[] content = new byte[3 * 1024 * 1024 + 17];
+        new Random().nextBytes(content);
+        int split = 1024 * 1024 + 5;
+
+        Crc32c whole = new Crc32c();
+        whole.update(content, 0, content.length);
+        Crc32c first = new Crc32c();
+        first.update(content, 0, split);
+        Crc32c second = new Crc32c();
+        second.update(content, split, content.length - split);
+
+        // Act
+        long combined = ChecksumUtils.combineCrc32c(first.getValue(), second.getValue(), content.length - split);
+
+        // Assert
+        Assertions.assertEquals(whole.getValue(), combined);
+    }
+
+    @Test
+    public void crc32c_ShouldMatchKnownCheckValue() {
+        // Arrange
+        byte[] content = "123456789".getBytes(StandardCharsets.US_ASCII);
+        Crc32c crc = new Crc32c();
+
+        // Act
+        crc.update(content, 0, content.length);
+
+        // Assert
+        Assertions.assertEquals(0xE3069283L, crc.getValue());
+    }
+
+    @Test
+    public void crc32c_ShouldGiveTheSameValueForArrayAndBufferUpdates() {
+        // Arrange
+        byte[] content = new byte[100 * 1024 + 3];
+        new Random().nextBytes(content);
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(content.length);
+        directBuffer.put(content);
+        directBuffer.flip();
+
+        PartChecksum arrayChecksum = ChecksumUtils.createChecksum(ChecksumAlgorithmEnum.CRC32C);
+        PartChecksum bufferChecksum = ChecksumUtils.createChecksum(ChecksumAlgorithmEnum.CRC32C);
+        Crc32c fallbackChecksum = new Crc32c();
+
+        // Act
+        arrayChecksum.update(content, 0, content.length);
+        bufferChecksum.update(directBuffer);
+        fallbackChecksum.update(ByteBuffer.wrap(content));
+
+        // Assert
+        Assertions.assertEquals(arrayChecksum.getValue(), bufferChecksum.getValue());
+        Assertions.assertEquals(arrayChecksum.getValue(), String.valueOf(fallbackChecksum.getValue()));
+    }
+
+    @Test
+    public void append_ShouldThrowForSha256() {
+        // Arrange
+        PartChecksum first = ChecksumUtils.createChecksum(ChecksumAlgorithmEnum.SHA256);
+        PartChecksum second = ChecksumUtils.createChecksum(ChecksumAlgorithmEnum.SHA256);
+
+        // Act / Assert
+        Assertions.assertFalse(ChecksumUtils.isCombinable(ChecksumAlgorithmEnum.SHA256));
+        Assertions.assertThrowsExactly(UnsupportedOperationException.class, () -> first.append(second, 0));
+    }
+}
@@ -1,5 +1,6 @@
 package common;
 
+import common.checksums.PartHashTree;
 import common.exceptions.DownloadException;
 import common.exceptions.InfoFileException;
 import common.infos.EndInfoFile;
@@ -71,6 +72,33 @@ public class EndInfoFileTests {
         Assertions.assertEquals(endInfoFile1.toString(), endInfoFile2.toString());
     }
 
+    @Test
+    public void shouldSaveAndLoadHashTrees() throws IOException, DownloadException, InfoFileException {
+        // Arrange
+        Path currentTestDirectory = Files.createTempDirectory(null);
+        FileService fileService = new FileService(Files.createTempFile(null, null));
+        fileService.addFileToProcess(generateFile(9));
+        fileService.addFileToProcess(generateFile(1));
+
+        List<String> checksums = new ArrayList<>();
+        List<PartHashTree> hashTrees = new ArrayList<>();
+        for (FileService.ProcessedPart processedPart : fileService.waitForProcessedParts()) {
+            checksums.add(processedPart.checksum);
+            hashTrees.add(processedPart.hashTree);
+        }
+
+        // Act
+        EndInfoFile endInfoFile1 = new EndInfoFile(currentTestDirectory.toString(), checksums, hashTrees);
+        EndInfoFile endInfoFile2 = new EndInfoFile(endInfoFile1.filePath);
+
+        // Assert
+        Assertions.assertEquals(checksums, endInfoFile2.getChecksums());
+        Assertions.assertEquals(2, endInfoFile2.getHashTrees().size());
+        Assertions.assertEquals(3, endInfoFile2.getHashTrees().get(0).leaves.size());
+        Assertions.assertEquals(hashTrees.get(0).root, endInfoFile2.getHashTrees().get(0).root);
+        Assertions.assertEquals(endInfoFile1.toString(), endInfoFile2.toString());
+    }
+
     @Test
     public void shouldThrowWhenSaveDirectoryIsEmpty() {
         Assertions.assertThrowsExactly(DownloadException.class, () -> new EndInfoFile("", new ArrayList<>()));
@@ -0,0 +1,101 @@
+package common;
+
+import common.services.ExecutableCache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class ExecutableCacheTests {
+    private final String resourcePath = "/udpcast/copyright";
+
+    @Test
+    public void shouldExtractResourceContent() throws IOException {
+        // Arrange
+        ExecutableCache executableCache = new ExecutableCache(Files.createTempDirectory(null));
+
+        // Act
+        Path path = executableCache.extract(resourcePath, "copyright");
+
+        // Assert
+        Assertions.assertArrayEquals(readResource(), Files.readAllBytes(path));
+    }
+
+    @Test
+    public void shouldReuseExtractedFile() throws IOException {
+        // Arrange
+        ExecutableCache executableCache = new ExecutableCache(Files.createTempDirectory(null));
+        Path firstPath = executableCache.extract(resourcePath, "copyright");
+        FileTime oldTime = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(firstPath, oldTime);
+
+        // Act
+        Path secondPath = executableCache.extract(resourcePath, "copyright");
+
+        // Assert
+        Assertions.assertEquals(firstPath, secondPath);
+        Assertions.assertEquals(oldTime, Files.getLastModifiedTime(secondPath));
+    }
+
+    @Test
+    public void shouldReplaceCorruptedFile() throws IOException {
+        // Arrange
+        ExecutableCache executableCache = new ExecutableCache(Files.createTempDirectory(null));
+        Path path = executableCache.extract(resourcePath, "copyright");
+        Files.write(path, new byte[]{1, 2, 3});
+
+        // Act
+        executableCache.extract(resourcePath, "copyright");
+
+        // Assert
+        Assertions.assertArrayEquals(readResource(), Files.readAllBytes(path));
+    }
+
+    @Test
+    public void shouldRememberVerifiedExecutableAndPreferredVariant() throws IOException {
+        // Arrange
+        Path directory = Files.createTempDirectory(null);
+        ExecutableCache executableCache = new ExecutableCache(directory);
+        Path path = executableCache.extract(resourcePath, "copyright");
+        Assertions.assertFalse(executableCache.isVerified(path));
+        Assertions.assertNull(executableCache.readPreferredVariant("copyright"));
+
+        // Act
+        executableCache.markVerified(path);
+        executableCache.writePreferredVariant("copyright", "deb-x64");
+        ExecutableCache reopenedCache = new ExecutableCache(directory);
+
+        // Assert
+        Assertions.assertTrue(reopenedCache.isVerified(reopenedCache.extract(resourcePath, "copyright")));
+        Assertions.assertEquals("deb-x64", reopenedCache.readPreferredVariant("copyright"));
+    }
+
+    @Test
+    public void shouldThrowWhenResourceDoesNotExist() throws IOException {
+        // Arrange
+        ExecutableCache executableCache = new ExecutableCache(Files.createTempDirectory(null));
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(NoSuchFileException.class, () -> executableCache.extract("/udpcast/missing", "missing"));
+    }
+
+    private byte[] readResource() throws IOException {
+        try (InputStream inputStream = ExecutableCacheTests.class.getResourceAsStream(resourcePath)) {
+            Assertions.assertNotNull(inputStream);
+            byte[] buffer = new byte[64 * 1024];
+            int length = 0;
+            int read;
+            while ((read = inputStream.read(buffer, length, buffer.length - length)) > 0) {
+                length += read;
+            }
+            byte[] result = new byte[length];
+            System.arraycopy(buffer, 0, result, 0, length);
+            return result;
+        }
+    }
+}
@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -118,4 +119,56 @@ public class FilePartUtilsTests {
             Assertions.assertEquals(0, mb);
         }
     }
+
+    @Test
+    public void generateFilePartPath_ShouldDifferForDifferentDirectories() {
+        // Arrange
+        String firstDirectory = "client-1";
+        String secondDirectory = "client-2";
+
+        // Act
+        Path firstPath = FilePartUtils.generateFilePartPath(firstDirectory, "file.clientpart0", 1);
+        Path secondPath = FilePartUtils.generateFilePartPath(secondDirectory, "file.clientpart0", 1);
+
+        // Assert
+        Assertions.assertNotEquals(firstPath, secondPath);
+        Assertions.assertTrue(firstPath.getFileName().toString().endsWith("file.clientpart0"));
+    }
+
+    @Test
+    public void mergeRanges_ShouldMergeOverlappingAndAdjacentRanges() {
+        // Arrange
+        List<long[]> ranges = Arrays.asList(new long[]{100, 50}, new long[]{0, 10}, new long[]{120, 100}, new long[]{10, 5});
+
+        // Act
+        List<long[]> mergedRanges = FilePartUtils.mergeRanges(ranges);
+
+        // Assert
+        Assertions.assertEquals(2, mergedRanges.size());
+        Assertions.assertArrayEquals(new long[]{0, 15}, mergedRanges.get(0));
+        Assertions.assertArrayEquals(new long[]{100, 120}, mergedRanges.get(1));
+    }
+
+    @Test
+    public void parseRanges_ShouldReturnFormattedRanges() {
+        // Arrange
+        List<long[]> ranges = Arrays.asList(new long[]{0, 1048576}, new long[]{6291456, 12345});
+
+        // Act
+        List<long[]> parsedRanges = FilePartUtils.parseRanges(FilePartUtils.formatRanges(ranges));
+
+        // Assert
+        Assertions.assertEquals(2, parsedRanges.size());
+        Assertions.assertArrayEquals(ranges.get(0), parsedRanges.get(0));
+        Assertions.assertArrayEquals(ranges.get(1), parsedRanges.get(1));
+    }
+
+    @Test
+    public void parseRanges_ShouldThrowOnImproperRanges() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FilePartUtils.parseRanges(""));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FilePartUtils.parseRanges("10"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FilePartUtils.parseRanges("10:0"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FilePartUtils.parseRanges("-1:10"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FilePartUtils.parseRanges("a:10"));
+    }
 }
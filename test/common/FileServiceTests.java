@@ -1,17 +1,25 @@
 package common;
 
+import common.checksums.PartChecksum;
 import common.exceptions.DownloadException;
+import common.models.ChecksumAlgorithmEnum;
 import common.services.FileService;
+import common.utils.ChecksumUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import testingUtils.CommonTestingUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.Adler32;
 
 import static testingUtils.CommonTestingUtils.generateFile;
 
@@ -89,7 +97,247 @@ public class FileServiceTests {
         Assertions.assertEquals(expectedSize, Files.size(joinedFile));
     }
 
+    @Test
+    public void shouldJoinedFileContentEqualConcatenatedParts() throws DownloadException, IOException {
+        // Arrange
+        ByteArrayOutputStream expectedContent = new ByteArrayOutputStream();
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Path path = CommonTestingUtils.generateFile(1);
+            files.add(path);
+            expectedContent.write(Files.readAllBytes(path));
+        }
+        Path joinedFile = Files.createTempFile(null, null);
+
+        // Act
+        FileService fileService = new FileService(joinedFile);
+        for (Path path : files) {
+            fileService.addFileToProcess(path);
+        }
+        fileService.waitForChecksums();
+
+        // Assert
+        Assertions.assertArrayEquals(expectedContent.toByteArray(), Files.readAllBytes(joinedFile));
+        for (Path path : files) {
+            Assertions.assertFalse(Files.exists(path));
+        }
+    }
+
+    @Test
+    public void shouldJoinIndexedPartsInOrderWhenAddedOutOfOrder() throws DownloadException, IOException {
+        // Arrange
+        ByteArrayOutputStream expectedContent = new ByteArrayOutputStream();
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Path path = CommonTestingUtils.generateFile(1);
+            files.add(path);
+            expectedContent.write(Files.readAllBytes(path));
+        }
+        Path joinedFile = Files.createTempFile(null, null);
+
+        // Act
+        FileService fileService = new FileService(joinedFile);
+        fileService.addFileToProcess(2, files.get(2));
+        fileService.addFileToProcess(1, files.get(1));
+        fileService.addFileToProcess(3, files.get(3));
+        fileService.addFileToProcess(0, files.get(0));
+        List<String> checksums = fileService.waitForChecksums();
+
+        // Assert
+        Assertions.assertEquals(4, checksums.size());
+        Assertions.assertArrayEquals(expectedContent.toByteArray(), Files.readAllBytes(joinedFile));
+    }
+
+    @Test
+    public void shouldResumeAfterJournaledPartsAndDropTheRest() throws DownloadException, IOException {
+        // Arrange
+        ByteArrayOutputStream expectedContent = new ByteArrayOutputStream();
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Path path = CommonTestingUtils.generateFile(1);
+            files.add(path);
+            expectedContent.write(Files.readAllBytes(path));
+        }
+        Path joinedFile = Files.createTempFile(null, null);
+
+        FileService interruptedService = createFileService(joinedFile);
+        interruptedService.addFileToProcess(0, files.get(0));
+        interruptedService.addFileToProcess(1, files.get(1));
+        List<FileService.ProcessedPart> journaledParts = interruptedService.waitForProcessedParts();
+        Files.write(joinedFile, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        // Act
+        FileService resumedService = new FileService(joinedFile, false, 0, 2, ChecksumAlgorithmEnum.Adler32, journaledParts);
+        resumedService.addFileToProcess(2, files.get(2));
+        List<FileService.ProcessedPart> processedParts = resumedService.waitForProcessedParts();
+
+        // Assert
+        Assertions.assertEquals(3, processedParts.size());
+        Assertions.assertEquals(journaledParts.get(1).checksum, processedParts.get(1).checksum);
+        Assertions.assertEquals(journaledParts.get(1).offset + journaledParts.get(1).length, processedParts.get(2).offset);
+        Assertions.assertArrayEquals(expectedContent.toByteArray(), Files.readAllBytes(joinedFile));
+    }
+
+    @Test
+    public void shouldNotifyListenerAboutProcessedPartsInOrder() throws DownloadException, IOException {
+        // Arrange
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            files.add(CommonTestingUtils.generateFile(1));
+        }
+        List<FileService.ProcessedPart> notifiedParts = new ArrayList<>();
+
+        // Act
+        FileService fileService = createFileService();
+        fileService.setPartProcessedListener(notifiedParts::add);
+        fileService.addFileToProcess(1, files.get(1));
+        fileService.addFileToProcess(2, files.get(2));
+        fileService.addFileToProcess(0, files.get(0));
+        List<FileService.ProcessedPart> processedParts = fileService.waitForProcessedParts();
+
+        // Assert
+        Assertions.assertEquals(processedParts, notifiedParts);
+    }
+
+    @Test
+    public void shouldDirectWritesHaveTheSameChecksumsAsJoinedParts() throws DownloadException, IOException {
+        // Arrange
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            files.add(CommonTestingUtils.generateFile(1));
+        }
+        List<byte[]> contents = new ArrayList<>();
+        for (Path path : files) {
+            contents.add(Files.readAllBytes(path));
+        }
+        Path directFile = Files.createTempFile(null, null);
+
+        // Act
+        FileService joiningService = createFileService();
+        for (Path path : files) {
+            joiningService.addFileToProcess(path);
+        }
+        List<String> expectedChecksums = joiningService.waitForChecksums();
+
+        FileService directService = new FileService(directFile, true, 4 * 1024 * 1024, 2, ChecksumAlgorithmEnum.Adler32);
+        long offset = 0;
+        for (byte[] content : contents) {
+            try (FileService.PartWriter partWriter = directService.openPartWriter(offset)) {
+                partWriter.write(content, 0, content.length);
+            }
+            offset += content.length;
+        }
+        List<String> actualChecksums = directService.waitForChecksums();
+
+        // Assert
+        Assertions.assertEquals(expectedChecksums, actualChecksums);
+        Assertions.assertEquals(offset, Files.size(directFile));
+    }
+
+    @Test
+    public void shouldProcessRangesWrittenOutOfOrderByIndex() throws DownloadException, IOException {
+        // Arrange
+        List<Path> files = new ArrayList<>();
+        ByteArrayOutputStream expectedContent = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            Path path = CommonTestingUtils.generateFile(1);
+            files.add(path);
+            expectedContent.write(Files.readAllBytes(path));
+        }
+        Path directFile = Files.createTempFile(null, null);
+
+        FileService joiningService = createFileService();
+        for (Path path : files) {
+            joiningService.addFileToProcess(path);
+        }
+        List<String> expectedChecksums = joiningService.waitForChecksums();
+
+        // Act
+        FileService directService = new FileService(directFile, true, expectedContent.size() + 1024, 2, ChecksumAlgorithmEnum.Adler32);
+        try (FileService.PartWriter unfinishedWriter = directService.openRangeWriter(0)) {
+            unfinishedWriter.write(new byte[]{1, 2, 3}, 0, 3);
+        }
+        for (int index : new int[]{2, 0, 1}) {
+            byte[] content = Files.readAllBytes(files.get(index));
+            long offset = (long) index * content.length;
+            FileService.PartWriter partWriter = directService.openRangeWriter(offset);
+            partWriter.write(content, 0, content.length);
+            partWriter.close();
+            directService.addWrittenRangeToProcess(index, offset, partWriter.getWrittenBytes(), partWriter.getChecksum());
+        }
+        List<String> actualChecksums = directService.waitForChecksums();
+
+        // Assert
+        Assertions.assertEquals(expectedChecksums, actualChecksums);
+        Assertions.assertArrayEquals(expectedContent.toByteArray(), Files.readAllBytes(directFile));
+    }
+
+    @Test
+    public void shouldCalculateChecksumsOfWrittenRanges() throws DownloadException, IOException {
+        // Arrange
+        Path part = CommonTestingUtils.generateFile(1);
+        byte[] content = Files.readAllBytes(part);
+        Path directFile = Files.createTempFile(null, null);
+
+        FileService joiningService = createFileService();
+        joiningService.addFileToProcess(part);
+        String expectedChecksum = joiningService.waitForChecksums().get(0);
+
+        // Act
+        FileService directService = new FileService(directFile, true, content.length, 2, ChecksumAlgorithmEnum.Adler32);
+        try (FileChannel channel = FileChannel.open(directFile, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(content), 0);
+        }
+        directService.addWrittenRangeToProcess(0, content.length);
+        List<String> checksums = directService.waitForChecksums();
+
+        // Assert
+        Assertions.assertEquals(1, checksums.size());
+        Assertions.assertEquals(expectedChecksum, checksums.get(0));
+        Assertions.assertEquals(content.length, Files.size(directFile));
+    }
+
+    @Test
+    public void shouldParallelChecksumEqualSequentialChecksum() throws DownloadException, IOException {
+        // Arrange
+        Path part = CommonTestingUtils.generateFile(40);
+        byte[] content = Files.readAllBytes(part);
+        Adler32 adler = new Adler32();
+        adler.update(content, 0, content.length);
+
+        // Act
+        FileService fileService = new FileService(Files.createTempFile(null, null), false, 0, 4, ChecksumAlgorithmEnum.Adler32);
+        fileService.addFileToProcess(part);
+        List<String> checksums = fileService.waitForChecksums();
+
+        // Assert
+        Assertions.assertEquals(String.valueOf(adler.getValue()), checksums.get(0));
+    }
+
+    @Test
+    public void shouldParallelChecksumEqualSequentialChecksumForEachAlgorithm() throws DownloadException, IOException {
+        for (ChecksumAlgorithmEnum algorithm : ChecksumAlgorithmEnum.values()) {
+            // Arrange
+            Path part = CommonTestingUtils.generateFile(40);
+            byte[] content = Files.readAllBytes(part);
+            PartChecksum expected = ChecksumUtils.createChecksum(algorithm);
+            expected.update(content, 0, content.length);
+
+            // Act
+            FileService fileService = new FileService(Files.createTempFile(null, null), false, 0, 4, algorithm);
+            fileService.addFileToProcess(part);
+            List<String> checksums = fileService.waitForChecksums();
+
+            // Assert
+            Assertions.assertEquals(expected.getValue(), checksums.get(0));
+        }
+    }
+
     private FileService createFileService() throws IOException, DownloadException {
         return new FileService(Files.createTempFile(null, null));
     }
+
+    private FileService createFileService(Path path) throws DownloadException {
+        return new FileService(path, false, 0, 2, ChecksumAlgorithmEnum.Adler32);
+    }
 }
@@ -0,0 +1,61 @@
+package common;
+
+import common.tracing.FlightRecorderEventType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class FlightRecorderEventTypeTests {
+    @Test
+    public void shouldIgnoreEventsWhenNotRecording() {
+        // Arrange
+        FlightRecorderEventType eventType = FlightRecorderEventType.define("pgd.test.Ignored", "Ignored",
+                new String[]{"bytes"}, long.class);
+
+        // Act
+        FlightRecorderEventType.Record record = eventType.begin();
+
+        // Assert
+        Assertions.assertFalse(eventType.isEnabled());
+        Assertions.assertDoesNotThrow(() -> record.set("bytes", 1).set("missing", "value").commit());
+    }
+
+    @Test
+    public void shouldRecordEventWithFieldsWhenRecording() throws Exception {
+        // Arrange
+        FlightRecorderEventType eventType = FlightRecorderEventType.define("pgd.test.Recorded", "Recorded",
+                new String[]{"file", "bytes"}, String.class, long.class);
+        if (!eventType.isAvailable()) {
+            return;
+        }
+        Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+        Object recording = recordingClass.getConstructor().newInstance();
+        recordingClass.getMethod("enable", String.class).invoke(recording, eventType.getName());
+        recordingClass.getMethod("start").invoke(recording);
+
+        // Act
+        eventType.begin().set("file", "part0").set("bytes", 42).commit();
+        recordingClass.getMethod("stop").invoke(recording);
+        Path recordingPath = Files.createTempFile(null, ".jfr");
+        recordingClass.getMethod("dump", Path.class).invoke(recording, recordingPath);
+        recordingClass.getMethod("close").invoke(recording);
+
+        // Assert
+        Class<?> recordingFileClass = Class.forName("jdk.jfr.consumer.RecordingFile");
+        List<?> events = (List<?>) recordingFileClass.getMethod("readAllEvents", Path.class).invoke(null, recordingPath);
+        Class<?> recordedObjectClass = Class.forName("jdk.jfr.consumer.RecordedObject");
+        int matchingEvents = 0;
+        for (Object event : events) {
+            Object type = event.getClass().getMethod("getEventType").invoke(event);
+            if (eventType.getName().equals(type.getClass().getMethod("getName").invoke(type))) {
+                Assertions.assertEquals("part0", recordedObjectClass.getMethod("getString", String.class).invoke(event, "file"));
+                Assertions.assertEquals(42L, recordedObjectClass.getMethod("getLong", String.class).invoke(event, "bytes"));
+                matchingEvents++;
+            }
+        }
+        Assertions.assertEquals(1, matchingEvents);
+    }
+}
@@ -0,0 +1,132 @@
+package common;
+
+import common.exceptions.DownloadException;
+import common.metrics.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+public class MetricsTests {
+    @Test
+    public void shouldWriteCounterInPrometheusFormat() {
+        // Arrange
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("test_bytes_total", "Test bytes.");
+
+        // Act
+        counter.add(5);
+        counter.add(7);
+        String text = registry.toPrometheusText();
+
+        // Assert
+        Assertions.assertTrue(text.contains("# HELP test_bytes_total Test bytes.\n"));
+        Assertions.assertTrue(text.contains("# TYPE test_bytes_total counter\n"));
+        Assertions.assertTrue(text.contains("test_bytes_total 12\n"));
+    }
+
+    @Test
+    public void shouldWriteTimerAsSummary() {
+        // Arrange
+        MetricsRegistry registry = new MetricsRegistry();
+        Timer timer = registry.timer("test_seconds", "Test time.");
+
+        // Act
+        timer.record(1_000_000_000L);
+        timer.record(3_000_000_000L);
+        String text = registry.toPrometheusText();
+
+        // Assert
+        Assertions.assertTrue(text.contains("# TYPE test_seconds summary\n"));
+        Assertions.assertTrue(text.contains("test_seconds_count 2\n"));
+        Assertions.assertTrue(text.contains("test_seconds_sum 4.0\n"));
+        Assertions.assertTrue(text.contains("test_seconds_max 3.0\n"));
+    }
+
+    @Test
+    public void shouldExposeGaugeAndCounterAsAttributes() {
+        // Arrange
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.gauge("test_queue", "Test queue.").setSupplier(() -> 3);
+        registry.counter("test_total", "Test counter.").add(2);
+
+        // Act
+        Map<String, Object> attributes = registry.getAttributes();
+
+        // Assert
+        Assertions.assertEquals(3L, attributes.get("test_queue"));
+        Assertions.assertEquals(2L, attributes.get("test_total"));
+        Assertions.assertTrue(attributes.containsKey("test_total_per_second"));
+    }
+
+    @Test
+    public void shouldSumGaugeSourcesUntilTheyAreRemoved() {
+        // Arrange
+        Gauge gauge = new MetricsRegistry().gauge("test_queue", "Test queue.");
+        Object first = new Object();
+        Object second = new Object();
+
+        // Act
+        gauge.addSource(first, owner -> 2);
+        gauge.addSource(second, owner -> 5);
+        long bothValue = gauge.get();
+        gauge.removeSource(first);
+        long secondValue = gauge.get();
+
+        // Assert
+        Assertions.assertEquals(7, bothValue);
+        Assertions.assertEquals(5, secondValue);
+    }
+
+    @Test
+    public void shouldReturnSameMetricForSameName() {
+        // Arrange
+        MetricsRegistry registry = new MetricsRegistry();
+
+        // Act
+        Counter first = registry.counter("test_total", "Test counter.");
+        Counter second = registry.counter("test_total", "Test counter.");
+
+        // Assert
+        Assertions.assertSame(first, second);
+        Assertions.assertThrowsExactly(IllegalArgumentException.class, () -> registry.timer("test_total", "Test timer."));
+    }
+
+    @Test
+    public void shouldServeMetricsOverHttp() throws DownloadException, IOException {
+        // Arrange
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_total", "Test counter.").add(42);
+        MetricsServer server = new MetricsServer(registry, 0);
+        server.start();
+
+        try {
+            // Act
+            URL url = new URL("http://127.0.0.1:" + server.getPort() + "/metrics");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            String body;
+            try (InputStream inputStream = connection.getInputStream()) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                int length;
+                while ((length = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, length);
+                }
+                body = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+            }
+
+            // Assert
+            Assertions.assertEquals(200, connection.getResponseCode());
+            Assertions.assertTrue(connection.getContentType().startsWith("text/plain"));
+            Assertions.assertTrue(body.contains("test_total 42\n"));
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package common;
+
+import common.checksums.BlockChecksum;
+import common.checksums.PartChecksum;
+import common.checksums.PartHashTree;
+import common.exceptions.InfoFileException;
+import common.models.ChecksumAlgorithmEnum;
+import common.utils.ChecksumUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class PartHashTreeTests {
+    @Test
+    public void shouldFindOnlyCorruptedBlocks() {
+        // Arrange
+        byte[] content = new byte[10 * 1024 + 100];
+        new Random().nextBytes(content);
+        BlockChecksum expected = new BlockChecksum(ChecksumAlgorithmEnum.CRC32C, 1024);
+        expected.update(content, 0, content.length);
+
+        content[3 * 1024 + 7] ^= 1;
+        content[10 * 1024 + 50] ^= 1;
+        BlockChecksum actual = new BlockChecksum(ChecksumAlgorithmEnum.CRC32C, 1024);
+        actual.update(content, 0, content.length);
+
+        PartHashTree expectedTree = new PartHashTree(1024, expected.getBlockValues());
+        PartHashTree actualTree = new PartHashTree(1024, actual.getBlockValues());
+
+        // Act
+        List<Integer> mismatchedBlocks = expectedTree.findMismatchedBlocks(actualTree);
+
+        // Assert
+        Assertions.assertEquals(11, expectedTree.leaves.size());
+        Assertions.assertEquals(Arrays.asList(3, 10), mismatchedBlocks);
+        Assertions.assertNotEquals(expectedTree.root, actualTree.root);
+    }
+
+    @Test
+    public void shouldReturnNoBlocksForIdenticalTrees() {
+        // Arrange
+        PartHashTree tree1 = new PartHashTree(1024, Arrays.asList("1", "2", "3"));
+        PartHashTree tree2 = new PartHashTree(1024, Arrays.asList("1", "2", "3"));
+
+        // Act / Assert
+        Assertions.assertEquals(tree1.root, tree2.root);
+        Assertions.assertEquals(Collections.emptyList(), tree1.findMismatchedBlocks(tree2));
+    }
+
+    @Test
+    public void shouldParseSavedTree() throws InfoFileException {
+        // Arrange
+        PartHashTree tree = new PartHashTree(4096, Arrays.asList("11", "22", "33", "44", "55"));
+
+        // Act
+        PartHashTree parsedTree = PartHashTree.parse(tree.toString());
+
+        // Assert
+        Assertions.assertEquals(tree.blockSizeInBytes, parsedTree.blockSizeInBytes);
+        Assertions.assertEquals(tree.leaves, parsedTree.leaves);
+        Assertions.assertEquals(tree.root, parsedTree.root);
+    }
+
+    @Test
+    public void shouldThrowWhenRootDoesNotMatchLeaves() {
+        // Arrange
+        String tree = new PartHashTree(4096, Arrays.asList("11", "22")).toString().replace("|11,", "|12,");
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(InfoFileException.class, () -> PartHashTree.parse(tree));
+    }
+
+    @Test
+    public void shouldBlockChecksumEqualWholeChecksumForEachAlgorithm() {
+        for (ChecksumAlgorithmEnum algorithm : ChecksumAlgorithmEnum.values()) {
+            // Arrange
+            byte[] content = new byte[5 * 1024 + 10];
+            new Random().nextBytes(content);
+            PartChecksum whole = ChecksumUtils.createChecksum(algorithm);
+            whole.update(content, 0, content.length);
+
+            List<BlockChecksum> ranges = new ArrayList<>();
+            for (int offset = 0; offset < content.length; offset += 2048) {
+                BlockChecksum range = new BlockChecksum(algorithm, 1024);
+                range.update(content, offset, Math.min(2048, content.length - offset));
+                ranges.add(range);
+            }
+
+            // Act
+            BlockChecksum combined = ranges.get(0);
+            if (ChecksumUtils.isCombinable(algorithm)) {
+                for (int i = 1; i < ranges.size(); i++) {
+                    combined.append(ranges.get(i));
+                }
+            } else {
+                combined = new BlockChecksum(algorithm, 1024);
+                combined.update(content, 0, content.length);
+            }
+
+            // Assert
+            Assertions.assertEquals(whole.getValue(), combined.getValue());
+            Assertions.assertEquals(6, combined.getBlockValues().size());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package common;
 
 import common.exceptions.DownloadException;
 import common.infos.StartInfoFile;
+import common.models.ChecksumAlgorithmEnum;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -9,6 +10,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
 
 public class StartInfoFileTests {
     @Test
@@ -82,6 +85,60 @@ public class StartInfoFileTests {
         Assertions.assertEquals(info1.toString(), info2.toString());
     }
 
+    @Test
+    public void shouldLoadAnnouncedChecksumAlgorithm() throws DownloadException, IOException {
+        // Arrange
+        String directory = String.valueOf(Files.createTempDirectory(null));
+        StartInfoFile info = new StartInfoFile(directory, "testUrl", "testFile", 11, 44, ChecksumAlgorithmEnum.SHA256);
+
+        // Act
+        StartInfoFile loadedInfo = new StartInfoFile(info.filePath);
+
+        // Assert
+        Assertions.assertEquals(ChecksumAlgorithmEnum.SHA256, loadedInfo.checksumAlgorithm);
+    }
+
+    @Test
+    public void shouldUseAdler32WhenChecksumAlgorithmIsNotAnnounced() throws DownloadException, IOException {
+        // Arrange
+        Path filePath = Files.createTempFile(null, null);
+        Files.write(filePath, "_#!@%&#_testUrl_#!@%&#_testFile_#!@%&#_11_#!@%&#_44_#!@%&#_".getBytes());
+
+        // Act
+        StartInfoFile info = new StartInfoFile(filePath);
+
+        // Assert
+        Assertions.assertEquals(ChecksumAlgorithmEnum.Adler32, info.checksumAlgorithm);
+    }
+
+    @Test
+    public void shouldLoadAnnouncedFeedbackAddresses() throws DownloadException, IOException {
+        // Arrange
+        String directory = String.valueOf(Files.createTempDirectory(null));
+        List<String> addresses = Arrays.asList("10.0.0.1:9001", "127.0.0.1:9001");
+        StartInfoFile info = new StartInfoFile(directory, "testUrl", "testFile", 11, 44, ChecksumAlgorithmEnum.SHA256, addresses);
+
+        // Act
+        StartInfoFile loadedInfo = new StartInfoFile(info.filePath);
+
+        // Assert
+        Assertions.assertEquals(addresses, loadedInfo.feedbackAddresses);
+        Assertions.assertEquals(ChecksumAlgorithmEnum.SHA256, loadedInfo.checksumAlgorithm);
+    }
+
+    @Test
+    public void shouldHaveNoFeedbackAddressesWhenNotAnnounced() throws DownloadException, IOException {
+        // Arrange
+        String directory = String.valueOf(Files.createTempDirectory(null));
+        StartInfoFile info = new StartInfoFile(directory, "testUrl", "testFile", 11, 44, ChecksumAlgorithmEnum.SHA256);
+
+        // Act
+        StartInfoFile loadedInfo = new StartInfoFile(info.filePath);
+
+        // Assert
+        Assertions.assertTrue(loadedInfo.feedbackAddresses.isEmpty());
+    }
+
     @Test
     public void shouldThrowWhenFileIsNotProperStartFile() throws IOException {
         // Arrange
@@ -0,0 +1,74 @@
+package common;
+
+import common.tracing.Span;
+import common.tracing.Tracer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TracerTests {
+    @Test
+    public void shouldNotRecordSpansWhenDisabled() throws IOException {
+        // Arrange
+        Tracer tracer = new Tracer();
+        Path tracePath = Files.createTempFile(null, ".json");
+
+        // Act
+        tracer.span("merge", "part0").arg("bytes", 10).close();
+        tracer.writeTo(tracePath);
+
+        // Assert
+        Assertions.assertEquals("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[]}\n", read(tracePath));
+    }
+
+    @Test
+    public void shouldWriteCompleteEventWithArgs() throws IOException {
+        // Arrange
+        Tracer tracer = new Tracer();
+        tracer.enable();
+        Path tracePath = Files.createTempFile(null, ".json");
+
+        // Act
+        try (Span span = tracer.span("merge", "part0")) {
+            span.arg("bytes", 10).arg("file", "a\"b");
+        }
+        tracer.writeTo(tracePath);
+        String trace = read(tracePath);
+
+        // Assert
+        Assertions.assertTrue(trace.contains("{\"ph\":\"X\",\"cat\":\"merge\",\"name\":\"part0\",\"pid\":1,\"tid\":" + Thread.currentThread().getId()));
+        Assertions.assertTrue(trace.contains("\"args\":{\"bytes\":10,\"file\":\"a\\\"b\"}"));
+        Assertions.assertTrue(trace.contains("\"name\":\"thread_name\""));
+        Assertions.assertTrue(trace.endsWith("]}\n"));
+    }
+
+    @Test
+    public void shouldWriteAsyncSpanAsBeginEndPair() throws IOException, InterruptedException {
+        // Arrange
+        Tracer tracer = new Tracer();
+        tracer.enable();
+        Path tracePath = Files.createTempFile(null, ".json");
+        Span span = tracer.asyncSpan("download", "part 3", 3);
+
+        // Act
+        Thread thread = new Thread(span::close);
+        thread.start();
+        thread.join();
+        span.close();
+        tracer.writeTo(tracePath);
+        String trace = read(tracePath);
+
+        // Assert
+        Assertions.assertTrue(trace.contains("{\"ph\":\"b\",\"cat\":\"download\",\"name\":\"part 3\""));
+        Assertions.assertTrue(trace.contains("{\"ph\":\"e\",\"cat\":\"download\",\"name\":\"part 3\""));
+        Assertions.assertEquals(trace.indexOf("\"ph\":\"b\""), trace.lastIndexOf("\"ph\":\"b\""));
+    }
+
+    private String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+}
@@ -1,6 +1,8 @@
 package common;
 
 import common.exceptions.ConfigurationException;
+import common.models.ChecksumAlgorithmEnum;
+import common.models.TransportEnum;
 import common.models.UdpcastConfiguration;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -148,6 +150,403 @@ public class UdpcastConfigurationTests {
         Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"1", "4", "32"})
+    public void shouldAcceptProperConnectionsWhenUrlIsGiven(String connections) {
+        // Arrange
+        String[] args = new String[]{"-url", "test", "-connections", connections};
+
+        // Act / Assert
+        Assertions.assertDoesNotThrow(() -> new UdpcastConfiguration(args));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"-1", "0", "33", "a"})
+    public void shouldThrowOnImproperConnections(String connections) {
+        // Arrange
+        String[] args = new String[]{"-url", "test", "-connections", connections};
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
+    }
+
+    @Test
+    public void shouldThrowOnConnectionsWhenUrlIsNotGiven() {
+        // Arrange
+        String[] args = new String[]{"-connections", "2"};
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
+    }
+
+    @Test
+    public void shouldAcceptTracePath() throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-trace", "trace.json"};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertEquals("trace.json", String.valueOf(udpcastConfiguration.getTracePath()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1024", "9100", "65535"})
+    public void shouldAcceptProperMetricsPort(String port) throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-metrics", port};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertEquals(Integer.parseInt(port), udpcastConfiguration.getMetricsPort());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "1023", "65536", "a"})
+    public void shouldThrowOnImproperMetricsPort(String port) {
+        // Arrange
+        String[] args = new String[]{"-metrics", port};
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1", "2", "64"})
+    public void shouldAcceptProperPipelineDepthWhenUrlIsGiven(String pipelineDepth) throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-url", "test", "-pipeline", pipelineDepth};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertEquals(Integer.parseInt(pipelineDepth), udpcastConfiguration.getPipelineDepth());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"-1", "0", "65", "a"})
+    public void shouldThrowOnImproperPipelineDepth(String pipelineDepth) {
+        // Arrange
+        String[] args = new String[]{"-url", "test", "-pipeline", pipelineDepth};
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
+    }
+
+    @Test
+    public void shouldThrowOnPipelineDepthWhenUrlIsNotGiven() {
+        // Arrange
+        String[] args = new String[]{"-pipeline", "2"};
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
+    }
+
+    @Test
+    public void shouldAcceptStreamingWhenUrlIsGiven() throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-url", "test", "-streaming"};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertTrue(udpcastConfiguration.isStreaming());
+    }
+
+    @Test
+    public void shouldThrowOnStreamingWhenUrlIsNotGiven() {
+        // Arrange
+        String[] args = new String[]{"-streaming"};
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
+    }
+
+    @Test
+    public void shouldAcceptPersistentForClientAndServer() {
+        Assertions.assertDoesNotThrow(() -> new UdpcastConfiguration(new String[]{"-persistent"}));
+        Assertions.assertDoesNotThrow(() -> new UdpcastConfiguration(new String[]{"-url", "test", "-persistent"}));
+    }
+
+    @Test
+    public void shouldAcceptDirectForClientAndServer() throws ConfigurationException {
+        // Arrange
+        String[] clientArgs = new String[]{"-direct"};
+        String[] serverArgs = new String[]{"-url", "test", "-direct", "-persistent"};
+
+        // Act
+        UdpcastConfiguration clientConfiguration = new UdpcastConfiguration(clientArgs);
+        UdpcastConfiguration serverConfiguration = new UdpcastConfiguration(serverArgs);
+
+        // Assert
+        Assertions.assertTrue(clientConfiguration.isDirect());
+        Assertions.assertTrue(serverConfiguration.isDirect());
+        Assertions.assertFalse(new UdpcastConfiguration(new String[]{}).isDirect());
+    }
+
+    @Test
+    public void shouldAcceptThreadsFromAllowedRange() throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-threads", "8"};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertEquals(8, udpcastConfiguration.getChecksumThreads());
+    }
+
+    @Test
+    public void shouldThrowOnThreadsOutOfRange() {
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-threads", "0"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-threads", "65"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-threads", "a"}));
+    }
+
+    @Test
+    public void shouldAcceptChecksumAlgorithmWhenUrlIsGiven() throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-url", "test", "-checksum", "sha256"};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertEquals(ChecksumAlgorithmEnum.SHA256, udpcastConfiguration.getChecksumAlgorithm());
+    }
+
+    @Test
+    public void shouldThrowOnWrongChecksumAlgorithm() {
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-url", "test", "-checksum", "md5"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-checksum", "crc32c"}));
+    }
+
+    @Test
+    public void shouldAcceptTransportForClientAndServer() throws ConfigurationException {
+        // Arrange
+        String[] clientArgs = new String[]{"-transport", "nio"};
+        String[] serverArgs = new String[]{"-url", "test", "-transport", "udpcast"};
+
+        // Act
+        UdpcastConfiguration clientConfiguration = new UdpcastConfiguration(clientArgs);
+        UdpcastConfiguration serverConfiguration = new UdpcastConfiguration(serverArgs);
+
+        // Assert
+        Assertions.assertEquals(TransportEnum.Nio, clientConfiguration.getTransport());
+        Assertions.assertEquals(TransportEnum.Udpcast, serverConfiguration.getTransport());
+        Assertions.assertEquals(TransportEnum.Udpcast, new UdpcastConfiguration(new String[]{}).getTransport());
+    }
+
+    @Test
+    public void shouldThrowOnWrongTransport() {
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-transport", "tcp"}));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1", "100", "100000"})
+    public void shouldAcceptProperRateWhenUrlIsGiven(String rate) throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-url", "test", "-rate", rate};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertEquals(Integer.parseInt(rate), udpcastConfiguration.getRateInMBps());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "100001", "a"})
+    public void shouldThrowOnImproperRate(String rate) {
+        // Arrange
+        String[] args = new String[]{"-url", "test", "-rate", rate};
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
+    }
+
+    @Test
+    public void shouldThrowOnRateWhenUrlIsNotGiven() {
+        // Arrange
+        String[] args = new String[]{"-rate", "100"};
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
+    }
+
+    @Test
+    public void shouldAssignPortbaseAndInterfaceToStripes() throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-stripes", "3", "-portbase", "9000", "-interface", "eth0,eth1"};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertEquals(3, udpcastConfiguration.getStripes());
+        Assertions.assertEquals(9000, udpcastConfiguration.getPortbase(0));
+        Assertions.assertEquals(9004, udpcastConfiguration.getPortbase(2));
+        Assertions.assertEquals("eth0", udpcastConfiguration.getNetworkInterface());
+        Assertions.assertEquals("eth1", udpcastConfiguration.getNetworkInterface(1));
+        Assertions.assertEquals("eth0", udpcastConfiguration.getNetworkInterface(2));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "17", "a"})
+    public void shouldThrowOnImproperStripes(String stripes) {
+        // Arrange
+        String[] args = new String[]{"-stripes", stripes};
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
+    }
+
+    @Test
+    public void shouldThrowOnStripesWithSingleSessionModes() {
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-stripes", "2", "-persistent"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-stripes", "2", "-direct"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-stripes", "2", "-portbase", "65533"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-interface", "eth0,,eth1"}));
+    }
+
+    @Test
+    public void shouldDetectCarouselWithJoinWindow() throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-carousel", "-joinwindow", "15", "-url", "http://test.pl/file", "-portbase", "9000"};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertTrue(udpcastConfiguration.isCarousel());
+        Assertions.assertEquals(15, udpcastConfiguration.getJoinWindowMinutes());
+        Assertions.assertEquals(9001, udpcastConfiguration.getFeedbackPort());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"-1", "1441", "a"})
+    public void shouldThrowOnImproperJoinWindow(String joinWindow) {
+        // Arrange
+        String[] args = new String[]{"-carousel", "-joinwindow", joinWindow, "-url", "http://test.pl/file"};
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
+    }
+
+    @Test
+    public void shouldThrowOnCarouselWithIncompatibleModes() {
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-carousel", "-persistent"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-carousel", "-direct"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-carousel", "-stripes", "2"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class,
+                () -> new UdpcastConfiguration(new String[]{"-joinwindow", "5", "-url", "http://test.pl/file"}));
+    }
+
+    @Test
+    public void shouldSetRepairTime() throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-repair", "10", "-url", "http://test.pl/file"};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertEquals(10, udpcastConfiguration.getRepairMinutes());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"-1", "1441", "a"})
+    public void shouldThrowOnImproperRepairTime(String repair) {
+        // Arrange
+        String[] args = new String[]{"-repair", repair, "-url", "http://test.pl/file"};
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(args));
+    }
+
+    @Test
+    public void shouldThrowOnRepairInCarouselModeOrWithoutUrl() {
+        Assertions.assertThrowsExactly(ConfigurationException.class,
+                () -> new UdpcastConfiguration(new String[]{"-carousel", "-repair", "5", "-url", "http://test.pl/file"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-repair", "5"}));
+    }
+
+    @Test
+    public void shouldPlacePeerPortAfterStripes() throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-peers", "5", "-stripes", "2", "-portbase", "9000"};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertEquals(5, udpcastConfiguration.getPeerMinutes());
+        Assertions.assertEquals(9004, udpcastConfiguration.getPeerPort());
+    }
+
+    @Test
+    public void shouldThrowOnImproperPeers() {
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-peers", "-1"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-peers", "1441"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-peers", "5", "-portbase", "65534"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class,
+                () -> new UdpcastConfiguration(new String[]{"-peers", "5", "-url", "http://test.pl/file"}));
+    }
+
+    @Test
+    public void shouldCreateRelayConfiguration() throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-portbase", "9000", "-interface", "eth0", "-transport", "nio",
+                "-relayportbase", "9100", "-relayinterface", "eth1"};
+
+        // Act
+        UdpcastConfiguration relayConfiguration = new UdpcastConfiguration(args).getRelayConfiguration();
+
+        // Assert
+        Assertions.assertEquals(9100, relayConfiguration.getPortbase());
+        Assertions.assertEquals("eth1", relayConfiguration.getNetworkInterface());
+        Assertions.assertEquals(TransportEnum.Nio, relayConfiguration.getTransport());
+        Assertions.assertEquals(1, relayConfiguration.getStripes());
+    }
+
+    @Test
+    public void shouldThrowOnImproperRelay() {
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-relayportbase", "80"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-relayinterface", "eth1"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class,
+                () -> new UdpcastConfiguration(new String[]{"-relayportbase", "9100", "-relayinterface", "eth1,eth2"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-relayportbase", "9100", "-direct"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class,
+                () -> new UdpcastConfiguration(new String[]{"-relayportbase", "9100", "-url", "http://test.pl/file"}));
+    }
+
+    @Test
+    public void shouldParseResume() throws ConfigurationException {
+        // Arrange
+        String[] args = new String[]{"-resume", "-carousel"};
+
+        // Act
+        UdpcastConfiguration udpcastConfiguration = new UdpcastConfiguration(args);
+
+        // Assert
+        Assertions.assertTrue(udpcastConfiguration.isResume());
+        Assertions.assertTrue(udpcastConfiguration.isCarousel());
+        Assertions.assertFalse(new UdpcastConfiguration(new String[]{}).isResume());
+    }
+
+    @Test
+    public void shouldThrowOnImproperResume() {
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-resume", "-direct"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class, () -> new UdpcastConfiguration(new String[]{"-resume", "-relayportbase", "9100"}));
+        Assertions.assertThrowsExactly(ConfigurationException.class,
+                () -> new UdpcastConfiguration(new String[]{"-resume", "-url", "http://test.pl/file"}));
+    }
+
     @Test
     public void shouldDetectHelp() throws ConfigurationException {
         // Arrange
@@ -0,0 +1,109 @@
+package common;
+
+import common.services.UdpcastOutputParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class UdpcastOutputParserTests {
+    @ParameterizedTest
+    @CsvSource({
+            "'bytes=   1 234 567 re-xmits=0', 1234567",
+            "'bytes=12K', 12000",
+            "'bytes= 1 234M slice=112', 1234000000",
+            "'bytes=3G', 3000000000",
+            "'bytes=1.5G', 1500000000",
+            "'bytes=  42', 42"
+    })
+    public void shouldParseNumberWithSuffix(String line, long expectedNumber) {
+        // Arrange
+        byte[] bytes = UdpcastOutputParser.toBytes(line);
+
+        // Act
+        long number = UdpcastOutputParser.parseNumber(bytes, "bytes=".length(), bytes.length);
+
+        // Assert
+        Assertions.assertEquals(expectedNumber, number);
+    }
+
+    @Test
+    public void shouldReturnNegativeNumberWhenNoDigitsGiven() {
+        // Arrange
+        byte[] bytes = UdpcastOutputParser.toBytes("bytes= n/a");
+
+        // Act
+        long number = UdpcastOutputParser.parseNumber(bytes, "bytes=".length(), bytes.length);
+
+        // Assert
+        Assertions.assertEquals(-1, number);
+    }
+
+    @Test
+    public void shouldStopParsingNumberAtEnd() {
+        // Arrange
+        byte[] bytes = UdpcastOutputParser.toBytes("bytes=1234567");
+
+        // Act
+        long number = UdpcastOutputParser.parseNumber(bytes, "bytes=".length(), "bytes=123".length());
+
+        // Assert
+        Assertions.assertEquals(123, number);
+    }
+
+    @Test
+    public void shouldSplitLinesAcrossChunks() {
+        // Arrange
+        List<String> lines = new ArrayList<>();
+        UdpcastOutputParser parser = new UdpcastOutputParser((line, length) -> lines.add(new String(line, 0, length)));
+        byte[] output = UdpcastOutputParser.toBytes("first\r\nsec");
+        byte[] rest = UdpcastOutputParser.toBytes("ond\rthird");
+
+        // Act
+        parser.feed(output, 0, output.length);
+        parser.feed(rest, 0, rest.length);
+        parser.finish();
+
+        // Assert
+        Assertions.assertEquals(Arrays.asList("first", "second", "third"), lines);
+    }
+
+    @Test
+    public void shouldKeepOnlyLatestLines() throws IOException {
+        // Arrange
+        StringBuilder output = new StringBuilder();
+        List<String> expectedLines = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            output.append("line ").append(i).append('\n');
+            if (i >= 25 - UdpcastOutputParser.latestLinesCount) {
+                expectedLines.add("line " + i);
+            }
+        }
+        UdpcastOutputParser parser = new UdpcastOutputParser((line, length) -> {
+        });
+
+        // Act
+        parser.parse(new ByteArrayInputStream(UdpcastOutputParser.toBytes(output.toString())));
+
+        // Assert
+        Assertions.assertEquals(expectedLines, parser.getLatestLines());
+    }
+
+    @Test
+    public void shouldMatchLinePrefix() {
+        // Arrange
+        byte[] line = UdpcastOutputParser.toBytes("New connection from 10.0.0.2");
+        byte[] prefix = UdpcastOutputParser.toBytes("New connection from");
+
+        // Act / Assert
+        Assertions.assertTrue(UdpcastOutputParser.startsWith(line, line.length, prefix));
+        Assertions.assertFalse(UdpcastOutputParser.startsWith(line, 5, prefix));
+        Assertions.assertFalse(UdpcastOutputParser.startsWith(prefix, prefix.length, UdpcastOutputParser.toBytes("New connection to")));
+    }
+}
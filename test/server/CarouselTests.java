@@ -0,0 +1,66 @@
+package server;
+
+import client.ClientLogic;
+import common.models.StatusEnum;
+import common.models.UdpcastConfiguration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static testingUtils.CommonTestingUtils.generateFile;
+
+public class CarouselTests {
+    @Test
+    public void shouldTransferFileInCarousel() throws Exception {
+        // Arrange
+        Path sourceFile = generateFile(3);
+
+        // Act
+        Path receivedFile = transferInCarousel(sourceFile, "9730");
+
+        // Assert
+        Assertions.assertArrayEquals(Files.readAllBytes(sourceFile), Files.readAllBytes(receivedFile));
+    }
+
+    @Test
+    public void shouldFailCarouselOfEmptyFile() throws Exception {
+        // Arrange
+        Path sourceFile = generateFile(0);
+        ServerLogic server = new ServerLogic(new UdpcastConfiguration(new String[]{"-interface", "lo", "-portbase", "9740",
+                "-transport", "nio", "-carousel", "-url", sourceFile.toString(), "-directory", Files.createTempDirectory(null).toString()}));
+
+        // Act
+        StatusEnum result = server.doWork();
+
+        // Assert
+        Assertions.assertEquals(StatusEnum.Error, result);
+    }
+
+    private Path transferInCarousel(Path sourceFile, String portbase) throws Exception {
+        String serverDirectory = Files.createTempDirectory(null).toString();
+        String clientDirectory = Files.createTempDirectory(null).toString();
+        ServerLogic server = new ServerLogic(new UdpcastConfiguration(new String[]{"-interface", "lo", "-portbase", portbase,
+                "-transport", "nio", "-carousel", "-blocksize", "1", "-url", sourceFile.toString(), "-directory", serverDirectory}));
+        ClientLogic client = new ClientLogic(new UdpcastConfiguration(new String[]{"-interface", "lo", "-portbase", portbase,
+                "-transport", "nio", "-carousel", "-directory", clientDirectory}));
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<StatusEnum> serverResult = executorService.submit(server::doWork);
+            Future<StatusEnum> clientResult = executorService.submit(client::doWork);
+
+            Assertions.assertEquals(StatusEnum.Success, clientResult.get(2, TimeUnit.MINUTES));
+            Assertions.assertEquals(StatusEnum.Success, serverResult.get(2, TimeUnit.MINUTES));
+            return Paths.get(clientDirectory, sourceFile.getFileName().toString());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -1,21 +1,30 @@
 package server;
 
+import common.checksums.BlockChecksum;
 import common.exceptions.DownloadException;
+import common.models.ChecksumAlgorithmEnum;
 import common.models.StatusEnum;
 import common.services.FileService;
 import common.utils.FilePartUtils;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import static testingUtils.CommonTestingUtils.generateFile;
+import static testingUtils.CommonTestingUtils.*;
 
 public class DownloaderTests {
     @Test
@@ -32,7 +41,7 @@ public class DownloaderTests {
         Assertions.assertEquals(StatusEnum.Success, result);
 
         // join files
-        for (Path p : fileDownloader.getProcessedFiles()) {
+        for (Path p : getDownloadedParts(fileDownloader)) {
             fileService.addFileToProcess(p);
         }
         fileService.waitForChecksums();
@@ -49,6 +58,189 @@ public class DownloaderTests {
         Assertions.assertEquals(originalChecksum, downloadedChecksum);
     }
 
+    @Test
+    public void shouldSegmentedDownloadMatchOriginalFile() throws IOException, DownloadException {
+        // Arrange
+        Path filePathToDownload = generateFile(5);
+        HttpServer server = startHttpServer(filePathToDownload, true);
+
+        try {
+            // Act
+            FileDownloader fileDownloader = new FileDownloader(getUrl(server, filePathToDownload), Files.createTempDirectory(null).toString(), null, 2, 4);
+            StatusEnum result = fileDownloader.call();
+
+            // Assert
+            Assertions.assertEquals(StatusEnum.Success, result);
+            Assertions.assertEquals(3, getDownloadedParts(fileDownloader).size());
+            Assertions.assertArrayEquals(Files.readAllBytes(filePathToDownload), joinParts(getDownloadedParts(fileDownloader)));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void shouldFallbackToSingleStreamWhenRangesAreNotSupported() throws IOException, DownloadException {
+        // Arrange
+        Path filePathToDownload = generateFile(3);
+        HttpServer server = startHttpServer(filePathToDownload, false);
+
+        try {
+            // Act
+            FileDownloader fileDownloader = new FileDownloader(getUrl(server, filePathToDownload), Files.createTempDirectory(null).toString(), null, 1, 4);
+            StatusEnum result = fileDownloader.call();
+
+            // Assert
+            Assertions.assertEquals(StatusEnum.Success, result);
+            Assertions.assertArrayEquals(Files.readAllBytes(filePathToDownload), joinParts(getDownloadedParts(fileDownloader)));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void shouldResumeInterruptedDownload() throws IOException, DownloadException {
+        // Arrange
+        Path filePathToDownload = generateFile(3);
+        HttpServer server = startHttpServer(filePathToDownload, true, 2);
+
+        try {
+            // Act
+            FileDownloader fileDownloader = new FileDownloader(getUrl(server, filePathToDownload), Files.createTempDirectory(null).toString(), null, 1);
+            StatusEnum result = fileDownloader.call();
+
+            // Assert
+            Assertions.assertEquals(StatusEnum.Success, result);
+            Assertions.assertArrayEquals(Files.readAllBytes(filePathToDownload), joinParts(getDownloadedParts(fileDownloader)));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void shouldResumeInterruptedSegmentedDownload() throws IOException, DownloadException {
+        // Arrange
+        Path filePathToDownload = generateFile(4);
+        HttpServer server = startHttpServer(filePathToDownload, true, 2);
+
+        try {
+            // Act
+            FileDownloader fileDownloader = new FileDownloader(getUrl(server, filePathToDownload), Files.createTempDirectory(null).toString(), null, 2, 2);
+            StatusEnum result = fileDownloader.call();
+
+            // Assert
+            Assertions.assertEquals(StatusEnum.Success, result);
+            Assertions.assertArrayEquals(Files.readAllBytes(filePathToDownload), joinParts(getDownloadedParts(fileDownloader)));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void shouldCalculateInlineChecksumsOfSegmentedDownload() throws IOException, DownloadException {
+        // Arrange
+        Path filePathToDownload = generateFile(20);
+        HttpServer server = startHttpServer(filePathToDownload, true, 2);
+
+        try {
+            // Act
+            FileDownloader fileDownloader = new FileDownloader(getUrl(server, filePathToDownload), Files.createTempDirectory(null).toString(), null, 9, 2);
+            fileDownloader.setChecksumAlgorithm(ChecksumAlgorithmEnum.CRC32C);
+            StatusEnum result = fileDownloader.call();
+
+            // Assert
+            Assertions.assertEquals(StatusEnum.Success, result);
+            assertInlineChecksums(fileDownloader, ChecksumAlgorithmEnum.CRC32C);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void shouldCalculateInlineChecksumsOfSingleStreamDownload() throws IOException, DownloadException {
+        // Arrange
+        Path filePathToDownload = generateFile(7);
+        HttpServer server = startHttpServer(filePathToDownload, false, 1);
+
+        try {
+            // Act
+            FileDownloader fileDownloader = new FileDownloader(getUrl(server, filePathToDownload), Files.createTempDirectory(null).toString(), null, 3, 1);
+            fileDownloader.setChecksumAlgorithm(ChecksumAlgorithmEnum.SHA256);
+            StatusEnum result = fileDownloader.call();
+
+            // Assert
+            Assertions.assertEquals(StatusEnum.Success, result);
+            assertInlineChecksums(fileDownloader, ChecksumAlgorithmEnum.SHA256);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void shouldStreamStartedPartsWhileDownloading() throws IOException, DownloadException, InterruptedException, ExecutionException {
+        // Arrange
+        Path filePathToDownload = generateFile(5);
+        HttpServer server = startHttpServer(filePathToDownload, true);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+        try {
+            FileDownloader fileDownloader = new FileDownloader(getUrl(server, filePathToDownload), Files.createTempDirectory(null).toString(), null, 2, 2);
+            fileDownloader.incrementUdpcastProcessedParts();
+
+            // Act
+            Future<StatusEnum> future = executorService.submit(fileDownloader);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            int partIndex = 0;
+            while (!future.isDone() || partIndex < fileDownloader.getStartedParts().size()) {
+                if (partIndex < fileDownloader.getStartedParts().size()) {
+                    fileDownloader.getStartedParts().get(partIndex).writeTo(outputStream);
+                    fileDownloader.incrementUdpcastProcessedParts();
+                    partIndex++;
+                }
+            }
+
+            // Assert
+            Assertions.assertEquals(StatusEnum.Success, future.get());
+            Assertions.assertArrayEquals(Files.readAllBytes(filePathToDownload), outputStream.toByteArray());
+        } finally {
+            executorService.shutdownNow();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void shouldNotStartPartsBeyondPipelineDepth() throws IOException, DownloadException, InterruptedException, ExecutionException {
+        // Arrange
+        Path filePathToDownload = generateFile(5);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+        try {
+            FileDownloader fileDownloader = createFileDownloader(filePathToDownload.toString(), 1);
+            fileDownloader.setPipelineDepth(1);
+            fileDownloader.incrementUdpcastProcessedParts();
+
+            // Act
+            Future<StatusEnum> future = executorService.submit(fileDownloader);
+            Assertions.assertTrue(fileDownloader.waitForStartedPart(0).waitForFinish());
+            Thread.sleep(200);
+            int startedPartsBeforeProgress = fileDownloader.getStartedParts().size();
+
+            int partIndex = 0;
+            DownloadingFilePart part;
+            while ((part = fileDownloader.waitForStartedPart(partIndex)) != null) {
+                Assertions.assertTrue(part.waitForFinish());
+                fileDownloader.incrementUdpcastProcessedParts();
+                partIndex++;
+            }
+
+            // Assert
+            Assertions.assertEquals(1, startedPartsBeforeProgress);
+            Assertions.assertEquals(StatusEnum.Success, future.get());
+            Assertions.assertEquals(5, partIndex);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
     @Test
     public void shouldDivideDownloadedFileWithExactPartSize() throws IOException, DownloadException {
         // Arrange
@@ -61,7 +253,7 @@ public class DownloaderTests {
 
         Assertions.assertEquals(StatusEnum.Success, result);
 
-        Path firstPart = fileDownloader.getProcessedFiles().get(0);
+        Path firstPart = getDownloadedParts(fileDownloader).get(0);
         long sizeInBytes = Files.size(firstPart);
         int fileSizeInMB = FilePartUtils.bytesToMegabytes(sizeInBytes);
 
@@ -82,7 +274,7 @@ public class DownloaderTests {
         StatusEnum result = fileDownloader.call();
         Assertions.assertEquals(StatusEnum.Success, result);
 
-        List<Path> processedFiles = fileDownloader.getProcessedFiles();
+        List<Path> processedFiles = getDownloadedParts(fileDownloader);
         for (Path p : processedFiles) {
             fileService.addFileToProcess(p);
         }
@@ -230,6 +422,49 @@ public class DownloaderTests {
         Assertions.assertThrowsExactly(DownloadException.class, () -> new FileDownloader("test", null, null, -1));
     }
 
+    @Test
+    public void shouldThrowWhenConnectionsCountIsLowerThanOne() {
+        Assertions.assertThrowsExactly(DownloadException.class, () -> new FileDownloader("test", null, null, 1, 0));
+    }
+
+    private void assertInlineChecksums(FileDownloader fileDownloader, ChecksumAlgorithmEnum algorithm) throws IOException, DownloadException {
+        FileService fileService = new FileService(Files.createTempFile(null, null), false, 0, 2, algorithm);
+        List<DownloadingFilePart> parts = fileDownloader.getStartedParts();
+        for (DownloadingFilePart part : parts) {
+            Path copy = Files.createTempFile(null, null);
+            Files.copy(part.path, copy, StandardCopyOption.REPLACE_EXISTING);
+            fileService.addFileToProcess(copy);
+        }
+        List<FileService.ProcessedPart> expectedParts = fileService.waitForProcessedParts();
+
+        Assertions.assertEquals(expectedParts.size(), parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            BlockChecksum checksum = parts.get(i).getChecksum();
+            Assertions.assertNotNull(checksum);
+            Assertions.assertEquals(expectedParts.get(i).checksum, checksum.getValue());
+            Assertions.assertEquals(expectedParts.get(i).hashTree.leaves, checksum.getBlockValues());
+        }
+    }
+
+    private List<Path> getDownloadedParts(FileDownloader fileDownloader) throws IOException {
+        // empty last part of stream download is removed right after it was started
+        List<Path> parts = new ArrayList<>();
+        for (DownloadingFilePart part : fileDownloader.getStartedParts()) {
+            if (Files.exists(part.path) && Files.size(part.path) > 0) {
+                parts.add(part.path);
+            }
+        }
+        return parts;
+    }
+
+    private byte[] joinParts(List<Path> parts) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        for (Path part : parts) {
+            outputStream.write(Files.readAllBytes(part));
+        }
+        return outputStream.toByteArray();
+    }
+
     private FileDownloader createFileDownloader(String url, int blockSizeInMB) throws DownloadException, IOException {
         return new FileDownloader(url, Files.createTempDirectory(null).toString(), null, blockSizeInMB);
     }
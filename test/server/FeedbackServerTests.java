@@ -0,0 +1,41 @@
+package server;
+
+import common.utils.FilePartUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class FeedbackServerTests {
+    @Test
+    public void shouldReturnRangesOfFailedRepairSessionInNextRound() throws Exception {
+        // Arrange
+        try (FeedbackServer feedbackServer = new FeedbackServer(9781);
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), 9781)) {
+            OutputStream outputStream = socket.getOutputStream();
+            outputStream.write("Register client\nRepair 0:10,100:20\n".getBytes(StandardCharsets.US_ASCII));
+            outputStream.flush();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            List<long[]> requestedRanges;
+            do {
+                // commands of receiver are handled on its own thread
+                requestedRanges = feedbackServer.waitForRepairRequests(deadline);
+            } while (requestedRanges.isEmpty() && System.nanoTime() < deadline);
+
+            // Act
+            feedbackServer.returnRepairRequests(requestedRanges);
+            long startTime = System.nanoTime();
+            List<long[]> returnedRanges = feedbackServer.waitForRepairRequests(deadline);
+
+            // Assert
+            Assertions.assertEquals(2, requestedRanges.size());
+            Assertions.assertEquals(FilePartUtils.formatRanges(requestedRanges), FilePartUtils.formatRanges(returnedRanges));
+            Assertions.assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(10));
+        }
+    }
+}
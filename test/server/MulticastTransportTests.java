@@ -0,0 +1,170 @@
+package server;
+
+import client.ClientMulticastTransport;
+import common.exceptions.DownloadException;
+import common.models.UdpcastConfiguration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static testingUtils.CommonTestingUtils.generateFile;
+
+public class MulticastTransportTests {
+    @Test
+    public void rateControllerShouldDecreaseRateOnLoss() {
+        // Arrange
+        RateController rateController = new RateController(100);
+
+        // Act
+        rateController.onRoundFinished(100, 10, 140000, 1000000);
+
+        // Assert
+        Assertions.assertEquals(75, rateController.getRateInMBps(), 0.001);
+    }
+
+    @Test
+    public void rateControllerShouldNotExceedMaximumRate() {
+        // Arrange
+        RateController rateController = new RateController(100);
+        rateController.onRoundFinished(100, 50, 140000, 1000000);
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            rateController.onRoundFinished(100, 0, 140000, 1000000);
+        }
+
+        // Assert
+        Assertions.assertEquals(100, rateController.getRateInMBps(), 0.001);
+    }
+
+    @Test
+    public void rateControllerShouldStartUnlimitedRateFromDefaultRate() {
+        // Arrange
+        RateController rateController = new RateController(0);
+
+        // Act
+        double initialRate = rateController.getRateInMBps();
+        rateController.onRoundFinished(100, 0, 1024 * 1024, 1000000);
+        double rateBeforeLoss = rateController.getRateInMBps();
+        rateController.onRoundFinished(100, 10, 1024 * 1024, 1000000);
+
+        // Assert
+        Assertions.assertEquals(100, initialRate, 0.001);
+        Assertions.assertEquals(105, rateBeforeLoss, 0.001);
+        Assertions.assertEquals(78.75, rateController.getRateInMBps(), 0.001);
+    }
+
+    @Test
+    public void rateControllerShouldDecreaseFromAchievedRateOnLoss() {
+        // Arrange
+        RateController rateController = new RateController(100);
+
+        // Act
+        rateController.onRoundFinished(100, 10, 1024 * 1024, 1000000000);
+
+        // Assert
+        Assertions.assertEquals(1, rateController.getRateInMBps(), 0.001);
+    }
+
+    @Test
+    public void shouldTransferFileOverLoopback() throws Exception {
+        // Arrange
+        Path sourceFile = generateFile(3);
+        Path receivedFile = Files.createTempFile(null, null);
+        String[] args = new String[]{"-interface", "lo", "-portbase", "9710"};
+        ServerMulticastTransport server = new ServerMulticastTransport(new UdpcastConfiguration(args));
+        ClientMulticastTransport client = new ClientMulticastTransport(new UdpcastConfiguration(args));
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+        try {
+            // Act
+            Future<?> receiving = executorService.submit(() -> {
+                client.processFile(receivedFile);
+                return null;
+            });
+            server.processFile(sourceFile);
+            receiving.get();
+
+            // Assert
+            Assertions.assertArrayEquals(Files.readAllBytes(sourceFile), Files.readAllBytes(receivedFile));
+        } finally {
+            server.stop();
+            client.stop();
+            executorService.shutdownNow();
+            Files.deleteIfExists(receivedFile);
+        }
+    }
+
+    @Test
+    public void shouldTransferStreamOverLoopback() throws Exception {
+        // Arrange
+        byte[] data = Files.readAllBytes(generateFile(3));
+        Path sessionPath = Files.createTempFile(null, null);
+        String[] args = new String[]{"-interface", "lo", "-portbase", "9712"};
+        ServerMulticastTransport server = new ServerMulticastTransport(new UdpcastConfiguration(args));
+        ClientMulticastTransport client = new ClientMulticastTransport(new UdpcastConfiguration(args));
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+        try {
+            // Act
+            Future<byte[]> receiving = executorService.submit(() -> {
+                ByteArrayOutputStream receivedData = new ByteArrayOutputStream();
+                client.receiveStream(sessionPath, inputStream -> {
+                    byte[] buffer = new byte[10000];
+                    int length;
+                    while ((length = inputStream.read(buffer)) != -1) {
+                        receivedData.write(buffer, 0, length);
+                    }
+                });
+                return receivedData.toByteArray();
+            });
+            server.processStream(sessionPath, outputStream -> outputStream.write(data));
+
+            // Assert
+            Assertions.assertArrayEquals(data, receiving.get());
+        } finally {
+            server.stop();
+            client.stop();
+            executorService.shutdownNow();
+            Files.deleteIfExists(sessionPath);
+        }
+    }
+
+    @Test
+    public void shouldTransferFileAgainAfterStop() throws Exception {
+        // Arrange
+        Path sourceFile = generateFile(1);
+        Path receivedFile = Files.createTempFile(null, null);
+        String[] args = new String[]{"-interface", "lo", "-portbase", "9714"};
+        ServerMulticastTransport server = new ServerMulticastTransport(new UdpcastConfiguration(args));
+        ClientMulticastTransport client = new ClientMulticastTransport(new UdpcastConfiguration(args));
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+        try {
+            client.stop();
+            Assertions.assertThrows(DownloadException.class, () -> client.processFile(receivedFile));
+
+            // Act
+            Future<?> receiving = executorService.submit(() -> {
+                client.processFile(receivedFile);
+                return null;
+            });
+            server.processFile(sourceFile);
+            receiving.get();
+
+            // Assert
+            Assertions.assertArrayEquals(Files.readAllBytes(sourceFile), Files.readAllBytes(receivedFile));
+        } finally {
+            server.stop();
+            client.stop();
+            executorService.shutdownNow();
+            Files.deleteIfExists(receivedFile);
+        }
+    }
+}
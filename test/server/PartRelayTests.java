@@ -0,0 +1,123 @@
+package server;
+
+import client.ClientMulticastTransport;
+import common.infos.StartInfoFile;
+import common.models.UdpcastConfiguration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static testingUtils.CommonTestingUtils.generateFile;
+
+public class PartRelayTests {
+    @Test
+    public void shouldJoinPartsInOrderBeforeTheyAreRelayed() throws Exception {
+        // Arrange
+        String directory = Files.createTempDirectory(null).toString();
+        List<Path> joinedParts = new CopyOnWriteArrayList<>();
+        PartRelay relay = new PartRelay(new UdpcastConfiguration(new String[]{"-interface", "lo", "-portbase", "9760", "-transport", "nio"}),
+                directory, (path, mergedListener) -> joinedParts.add(path));
+        Path firstPart = generateFile(1);
+        Path secondPart = generateFile(1);
+
+        try {
+            // Act
+            relay.start(new StartInfoFile(directory, "url", "file", 2, 1));
+            relay.addPart(1, secondPart);
+            List<Path> joinedBeforeFirstPart = new ArrayList<>(joinedParts);
+            relay.addPart(0, firstPart);
+
+            // Assert
+            Assertions.assertTrue(joinedBeforeFirstPart.isEmpty());
+            Assertions.assertEquals(Arrays.asList(firstPart, secondPart), joinedParts);
+        } finally {
+            relay.abort();
+        }
+    }
+
+    @Test
+    public void shouldRemovePartWhenItWasRelayedAndJoined() throws Exception {
+        // Arrange
+        String directory = Files.createTempDirectory(null).toString();
+        List<Runnable> mergedListeners = new CopyOnWriteArrayList<>();
+        String[] args = new String[]{"-interface", "lo", "-portbase", "9762", "-transport", "nio"};
+        PartRelay relay = new PartRelay(new UdpcastConfiguration(args), directory, (path, mergedListener) -> mergedListeners.add(mergedListener));
+        ClientMulticastTransport client = new ClientMulticastTransport(new UdpcastConfiguration(args));
+        Path part = generateFile(1);
+        byte[] partContent = Files.readAllBytes(part);
+        Path receivedPart = Files.createTempFile(null, null);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+        try {
+            relay.start(new StartInfoFile(directory, "url", "file", 1, 1));
+            relay.addPart(0, part);
+
+            // Act
+            Future<?> receiving = executorService.submit(() -> {
+                client.processFile(Files.createTempFile(null, null));
+                client.processFile(receivedPart);
+                return null;
+            });
+            receiving.get(1, TimeUnit.MINUTES);
+            boolean existsAfterRelay = Files.exists(part);
+            mergedListeners.get(0).run();
+
+            // Assert
+            Assertions.assertArrayEquals(partContent, Files.readAllBytes(receivedPart));
+            Assertions.assertTrue(existsAfterRelay);
+            Assertions.assertTrue(waitForRemoval(part));
+        } finally {
+            relay.abort();
+            client.stop();
+            executorService.shutdownNow();
+            Files.deleteIfExists(receivedPart);
+        }
+    }
+
+    @Test
+    public void shouldAdvertiseRelayFeedbackInStartInfo() throws Exception {
+        // Arrange
+        String directory = Files.createTempDirectory(null).toString();
+        String[] args = new String[]{"-interface", "lo", "-portbase", "9764", "-transport", "nio"};
+        PartRelay relay = new PartRelay(new UdpcastConfiguration(args), directory, (path, mergedListener) -> mergedListener.run());
+        ClientMulticastTransport client = new ClientMulticastTransport(new UdpcastConfiguration(args));
+        Path receivedStartInfo = Files.createTempFile(null, null);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+
+        try {
+            // Act
+            relay.start(new StartInfoFile(directory, "url", "file", 1, 1));
+            executorService.submit(() -> {
+                client.processFile(receivedStartInfo);
+                return null;
+            }).get(1, TimeUnit.MINUTES);
+            StartInfoFile startInfoFile = new StartInfoFile(receivedStartInfo);
+
+            // Assert
+            Assertions.assertTrue(startInfoFile.feedbackAddresses.stream().anyMatch(address -> address.endsWith(":9765")));
+        } finally {
+            relay.abort();
+            client.stop();
+            executorService.shutdownNow();
+            Files.deleteIfExists(receivedStartInfo);
+        }
+    }
+
+    private static boolean waitForRemoval(Path path) throws InterruptedException {
+        // relay thread releases the part right after its session ended
+        for (int i = 0; i < 100 && Files.exists(path); i++) {
+            Thread.sleep(50);
+        }
+        return !Files.exists(path);
+    }
+}
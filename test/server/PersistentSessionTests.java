@@ -0,0 +1,162 @@
+package server;
+
+import common.exceptions.DownloadException;
+import common.infos.SessionFrame;
+import common.models.FrameTypeEnum;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static testingUtils.CommonTestingUtils.generateFile;
+
+public class PersistentSessionTests {
+    @Test
+    public void shouldFrameStartPartsAndEnd() throws IOException {
+        // Arrange
+        List<DownloadingFilePart> sentParts = new ArrayList<>();
+        PersistentSession session = new PersistentSession(sentParts::add);
+        byte[] startContent = "start".getBytes();
+        byte[] endContent = "end".getBytes();
+        Path file1 = generateFile(1);
+        Path file2 = generateFile(1);
+
+        session.addStartInfo(startContent);
+        session.addPart(createFinishedPart(0, file1));
+        session.addPart(createFinishedPart(1, file2));
+        session.addEndInfo(endContent);
+
+        // Act
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        session.feed(outputStream);
+
+        // Assert
+        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+        Assertions.assertArrayEquals(startContent, readControlFrame(inputStream, FrameTypeEnum.Start));
+        Assertions.assertArrayEquals(Files.readAllBytes(file1), readPart(inputStream, 0));
+        Assertions.assertArrayEquals(Files.readAllBytes(file2), readPart(inputStream, 1));
+        Assertions.assertArrayEquals(endContent, readControlFrame(inputStream, FrameTypeEnum.End));
+        Assertions.assertNull(SessionFrame.readFrom(inputStream));
+        Assertions.assertEquals(2, sentParts.size());
+    }
+
+    @Test
+    public void shouldThrowWhenFrameIsImproper() {
+        // Arrange
+        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream("someImproperFrameContent".getBytes()));
+
+        // Act / Assert
+        Assertions.assertThrowsExactly(IOException.class, () -> SessionFrame.readFrom(inputStream));
+    }
+
+    @Test
+    public void shouldFailWaitingWhenSessionEndedBeforeAllPartsWereSent() throws IOException {
+        // Arrange
+        PersistentSession session = new PersistentSession(part -> {
+        });
+        session.addStartInfo("start".getBytes());
+        session.addEndInfo("end".getBytes());
+
+        // Act
+        session.feed(new ByteArrayOutputStream());
+
+        // Assert
+        Assertions.assertThrowsExactly(DownloadException.class, () -> session.waitForSentParts(1));
+    }
+
+    @Test
+    public void shouldFrameStoredPartAndFinishWithoutEnd() throws IOException {
+        // Arrange
+        PersistentSession session = new PersistentSession(part -> {
+        });
+        byte[] startContent = "start".getBytes();
+        Path file = generateFile(2);
+        long offset = 1024 * 1024;
+
+        session.addStartInfo(startContent);
+        session.addStoredPart(3, file, offset, Files.size(file) - offset);
+        session.finish();
+
+        // Act
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        session.feed(outputStream);
+
+        // Assert
+        byte[] fileContent = Files.readAllBytes(file);
+        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+        Assertions.assertArrayEquals(startContent, readControlFrame(inputStream, FrameTypeEnum.Start));
+        Assertions.assertArrayEquals(Arrays.copyOfRange(fileContent, (int) offset, fileContent.length), readPart(inputStream, 3));
+        Assertions.assertNull(SessionFrame.readFrom(inputStream));
+    }
+
+    @Test
+    public void shouldFrameStoredRangesAtFileOffsets() throws IOException {
+        // Arrange
+        PersistentSession session = new PersistentSession(part -> {
+        });
+        Path file = generateFile(1);
+        session.addStoredRange(file, 1000, 100000);
+        session.finish();
+
+        // Act
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        session.feed(outputStream);
+
+        // Assert
+        byte[] fileContent = Files.readAllBytes(file);
+        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        SessionFrame frame;
+        while ((frame = SessionFrame.readFrom(inputStream)) != null) {
+            Assertions.assertEquals(FrameTypeEnum.Range, frame.type);
+            Assertions.assertEquals(1000 + content.size(), frame.offset);
+
+            byte[] bytes = new byte[frame.length];
+            inputStream.readFully(bytes);
+            content.write(bytes);
+        }
+        Assertions.assertArrayEquals(Arrays.copyOfRange(fileContent, 1000, 101000), content.toByteArray());
+    }
+
+    private DownloadingFilePart createFinishedPart(int index, Path path) throws IOException {
+        DownloadingFilePart part = new DownloadingFilePart(index, path, Files.size(path), 1);
+        part.updateProgress(0, Files.size(path));
+        part.finish();
+        return part;
+    }
+
+    private byte[] readControlFrame(DataInputStream inputStream, FrameTypeEnum type) throws IOException {
+        SessionFrame frame = SessionFrame.readFrom(inputStream);
+        Assertions.assertNotNull(frame);
+        Assertions.assertEquals(type, frame.type);
+
+        byte[] content = new byte[frame.length];
+        inputStream.readFully(content);
+        return content;
+    }
+
+    private byte[] readPart(DataInputStream inputStream, int index) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        SessionFrame frame;
+        while ((frame = SessionFrame.readFrom(inputStream)).type == FrameTypeEnum.Part) {
+            Assertions.assertEquals(index, frame.index);
+            Assertions.assertEquals(content.size(), frame.offset);
+
+            byte[] bytes = new byte[frame.length];
+            inputStream.readFully(bytes);
+            content.write(bytes);
+        }
+        Assertions.assertEquals(FrameTypeEnum.PartEnd, frame.type);
+        Assertions.assertEquals(content.size(), frame.offset);
+
+        return content.toByteArray();
+    }
+}
@@ -1,9 +1,15 @@
 package testingUtils;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CommonTestingUtils {
     public static Path generateFile(int sizeInMB) throws IOException {
@@ -16,4 +22,61 @@ public class CommonTestingUtils {
 
         return filePath;
     }
+
+    public static HttpServer startHttpServer(Path filePath, boolean acceptRanges) throws IOException {
+        return startHttpServer(filePath, acceptRanges, 0);
+    }
+
+    public static HttpServer startHttpServer(Path filePath, boolean acceptRanges, int interruptedResponsesCount) throws IOException {
+        byte[] content = Files.readAllBytes(filePath);
+        AtomicInteger remainingInterruptions = new AtomicInteger(interruptedResponsesCount);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> handleRequest(exchange, content, acceptRanges, remainingInterruptions));
+        server.start();
+
+        return server;
+    }
+
+    public static String getUrl(HttpServer server, Path filePath) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + filePath.getFileName();
+    }
+
+    private static void handleRequest(HttpExchange exchange, byte[] content, boolean acceptRanges,
+                                      AtomicInteger remainingInterruptions) throws IOException {
+        int start = 0;
+        int end = content.length - 1;
+        int responseCode = 200;
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (acceptRanges) {
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+            if (range != null) {
+                String[] values = range.substring("bytes=".length()).split("-");
+                start = Integer.parseInt(values[0]);
+                if (values.length > 1 && !values[1].isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(values[1]));
+                }
+                responseCode = 206;
+            }
+        }
+
+        int length = end - start + 1;
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(responseCode, -1);
+        } else {
+            exchange.sendResponseHeaders(responseCode, length);
+            OutputStream outputStream = exchange.getResponseBody();
+            if (remainingInterruptions.getAndDecrement() > 0) {
+                outputStream.write(content, start, length / 2);
+                outputStream.flush();
+                exchange.close();
+                return;
+            }
+            outputStream.write(content, start, length);
+            outputStream.close();
+        }
+        exchange.close();
+    }
 }